@@ -4,10 +4,13 @@ import android.support.multidex.MultiDexApplication;
 import android.widget.Toast;
 
 import com.http.common.SessionOutCallback;
+import com.http.util.AdaptiveNetworkPolicy;
 import com.http.util.HttpClientConfiguration;
 import com.http.util.HttpDirector;
+import com.http.util.RequestLanes;
 import com.util.ui.ContextUtils;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,7 +37,13 @@ public class App extends MultiDexApplication{
                 .headers(headers)
                 .context(getApplicationContext())
                 .baseUrl("http://api.1196u.cn/")
-                .retry(8).build();
+                .cacheDir(new File(getCacheDir(), "http"))
+                .cacheSize(10 * 1024 * 1024)
+                .offlineCache(true)
+                .requestLanes(new RequestLanes())
+                .adaptivePolicy(new AdaptiveNetworkPolicy())
+                .cachingDns(true)
+                .retry(3).build();
         HttpDirector.getInstance().initRetrofitFormConfig(mConfig);
         HttpDirector.getInstance().setmSessionOutCallback(new SessionOutCallback() {
             @Override
@@ -2,10 +2,14 @@ package com;
 
 import android.app.Application;
 
+import com.http.common.retry.RetryPolicy;
 import com.http.util.HttpClientConfiguration;
 import com.http.util.HttpDirector;
+import com.serviceImpl.LoginHttpApiService;
 import com.util.ui.ContextUtils;
 
+import java.util.Collections;
+
 /**
  * author : taowang
  * date :2018/7/25
@@ -29,7 +33,11 @@ public class StudyApplication extends Application {
                 .responseTimeout(30)
 //                .headers(headers)
                 .baseUrl("http://api.1196u.cn/")
-                .retry(8).build();
+                .retry(8)
+                //登录相关接口都是POST，默认策略不会重试，只读的校验接口通过这个策略重试
+                .retryPolicies(Collections.singletonMap(LoginHttpApiService.RETRY_POLICY_CHECK,
+                        new RetryPolicy.Builder().maxRetries(2).retryNonIdempotent(true).build()))
+                .build();
         HttpDirector.getInstance().initRetrofitFormConfig(mConfig);
     }
 }
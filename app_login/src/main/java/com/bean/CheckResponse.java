@@ -1,6 +1,8 @@
 package com.bean;
 
+import com.http.gson.GsonAdapter;
 
+@GsonAdapter
 public class CheckResponse {
 
     public String phone;
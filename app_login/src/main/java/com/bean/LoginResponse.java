@@ -1,7 +1,10 @@
 package com.bean;
 
+import com.http.gson.GsonAdapter;
+
 import java.util.ArrayList;
 
+@GsonAdapter
 public class LoginResponse {
 
     public String token;
@@ -0,0 +1,66 @@
+package com.model;
+
+import android.os.Bundle;
+import android.text.TextUtils;
+
+import com.bean.CheckResponse;
+import com.http.common.bean.BaseResultEntity;
+import com.http.prefetch.PrefetchRegistry;
+import com.http.prefetch.PrefetchTask;
+import com.http.util.HttpDirector;
+import com.serviceImpl.LoginHttpApiService;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Observable;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:登录模块页面的预加载。跳转到密码登录页时发出账号检查，LoginPwdViewModel通过consume取结果
+ **/
+public class LoginPrefetchTasks {
+
+    /**
+     * 密码登录页
+     */
+    public static final String PATH_LOGIN_PWD = "/login/pwd";
+    public static final String TASK_CHECK_USER = "checkUser";
+    public static final String EXTRA_PHONE = "phone";
+
+    private static final AtomicBoolean registered = new AtomicBoolean();
+
+    private LoginPrefetchTasks() {
+
+    }
+
+    /**
+     * 登记预加载请求，重复调用只登记一次
+     */
+    public static void register() {
+        if (!registered.compareAndSet(false, true)) {
+            return;
+        }
+        PrefetchRegistry.getInstance().register(PATH_LOGIN_PWD,
+                new PrefetchTask<BaseResultEntity<CheckResponse>>(TASK_CHECK_USER) {
+                    @Override
+                    public String key(Bundle extras) {
+                        return phoneOf(extras);
+                    }
+
+                    @Override
+                    public Observable<BaseResultEntity<CheckResponse>> request(Bundle extras) {
+                        String phone = phoneOf(extras);
+                        if (TextUtils.isEmpty(phone)) {
+                            return null;
+                        }
+                        return HttpDirector.getInstance().createReq(LoginHttpApiService.class).checkUserInfo(phone);
+                    }
+                });
+    }
+
+    private static String phoneOf(Bundle extras) {
+        String phone = extras != null ? extras.getString(EXTRA_PHONE) : null;
+        return phone != null ? phone : "";
+    }
+}
@@ -2,11 +2,14 @@ package com.serviceImpl;
 
 import com.bean.CheckResponse;
 import com.bean.LoginResponse;
+import com.http.common.HeaderCont;
 import com.http.common.bean.BaseResultEntity;
+import com.http.rx.Coalesce;
 
 import io.reactivex.Observable;
 import retrofit2.http.Field;
 import retrofit2.http.FormUrlEncoded;
+import retrofit2.http.Headers;
 import retrofit2.http.POST;
 
 /**
@@ -16,7 +19,13 @@ import retrofit2.http.POST;
  **/
 public interface LoginHttpApiService {
 
+    /**
+     * 只读校验接口使用的重试策略，login不重试
+     */
+    String RETRY_POLICY_CHECK = "check";
 
+    @Coalesce
+    @Headers(HeaderCont.RETRY_POLICY + ": " + RETRY_POLICY_CHECK)
     @POST("api/account/login")
     @FormUrlEncoded
     Observable<BaseResultEntity<CheckResponse>> checkUserInfo(@Field("phone") String phone);
@@ -1,6 +1,5 @@
 package com.viewModel;
 
-import android.app.Activity;
 import android.content.Context;
 import android.databinding.ObservableField;
 import android.databinding.ObservableInt;
@@ -9,15 +8,12 @@ import android.text.TextUtils;
 import android.view.View;
 
 import com.activity.LoginMainActivity;
-import com.bean.CheckResponse;
 import com.binding.command.BindingAction;
 import com.binding.command.BindingCommand;
 import com.binding.command.BindingConsumer;
 import com.duiafudao.app_login.R;
-import com.http.rx.DataCallBackListener;
-import com.http.rx.RxResultHelper;
-import com.http.util.HttpDirector;
-import com.serviceImpl.LoginHttpApiService;
+import com.http.prefetch.PrefetchRegistry;
+import com.model.LoginPrefetchTasks;
 import com.util.ui.ToastUtils;
 
 /**
@@ -32,11 +28,10 @@ public class CheckUserInfoViewModel extends BaseViewModel {
     //用户名清除按钮的显示隐藏绑定
     public ObservableInt clearBtnVisibility = new ObservableInt();
 
-    LoginHttpApiService mLoginHttpApiService ;
     public CheckUserInfoViewModel(Context context) {
         super(context);
         clearBtnVisibility.set(View.INVISIBLE);
-        mLoginHttpApiService = HttpDirector.getInstance().createReq(LoginHttpApiService.class);
+        LoginPrefetchTasks.register();
 
     }
 
@@ -91,8 +86,10 @@ public class CheckUserInfoViewModel extends BaseViewModel {
 
     private void pageToLoginByPwd(){
         Bundle mBundle = new Bundle();
-        mBundle.putString("phone",mPhone.get());
-        startActivity(LoginMainActivity.class);
+        mBundle.putString(LoginPrefetchTasks.EXTRA_PHONE,mPhone.get());
+        //验证是否注册的请求和页面创建同时进行，结果在密码登录页取用
+        PrefetchRegistry.getInstance().fire(LoginPrefetchTasks.PATH_LOGIN_PWD,mBundle);
+        startActivity(LoginMainActivity.class,mBundle);
     }
 
     private void checkUserInfoRequest(){
@@ -104,28 +101,6 @@ public class CheckUserInfoViewModel extends BaseViewModel {
 
         pageToLoginByPwd();
 
-        //网络请求验证是否注册
-        RxResultHelper.getHttpRepose((Activity) context,mLoginHttpApiService.checkUserInfo(mPhone.get()),
-                new DataCallBackListener<CheckResponse>(){
-
-                    @Override
-                    public void onSuccess(CheckResponse data) {
-                        //成功，已经注册，进入登录
-
-
-                    }
-
-                    @Override
-                    public void onError(String code, String msg) {
-
-                        //判断是否是没有注册的错误；
-                        //进入注册界面；
-
-                    }
-                });
-//
-
-
     }
 
 }
@@ -1,5 +1,6 @@
 package com.viewModel;
 
+import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.databinding.ObservableBoolean;
@@ -7,13 +8,23 @@ import android.databinding.ObservableField;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.support.v4.content.ContextCompat;
+import android.text.TextUtils;
+
+import com.bean.CheckResponse;
 import com.binding.command.BindingAction;
 import com.binding.command.BindingCommand;
 import com.duiafudao.app_login.R;
+import com.http.common.bean.BaseResultEntity;
+import com.http.prefetch.PrefetchRegistry;
+import com.http.rx.DataCallBackListener;
+import com.http.rx.RxResultHelper;
 import com.http.util.HttpDirector;
+import com.model.LoginPrefetchTasks;
 import com.serviceImpl.LoginHttpApiService;
 import com.util.ui.ToastUtils;
 
+import io.reactivex.Observable;
+
 /**
  * author : taowang
  * date :2018/8/3
@@ -49,8 +60,39 @@ public class LoginPwdViewModel extends BaseViewModel {
         /**
          * 获取上一个页面传过来的参数
          */
-        mPhone = mIntent.getStringExtra("phone");
+        mPhone = mIntent.getStringExtra(LoginPrefetchTasks.EXTRA_PHONE);
+        checkUserInfoRequest(mIntent.getExtras());
+
+    }
+
+    /**
+     * 验证是否注册，跳转时已经预加载，没有可用结果时重新请求
+     */
+    private void checkUserInfoRequest(Bundle extras){
+        if (TextUtils.isEmpty(mPhone)) {
+            return;
+        }
+        Observable<BaseResultEntity<CheckResponse>> request = PrefetchRegistry.getInstance().consume(
+                LoginPrefetchTasks.PATH_LOGIN_PWD, LoginPrefetchTasks.TASK_CHECK_USER, extras,
+                mLoginHttpApiService.checkUserInfo(mPhone));
+        RxResultHelper.getHttpRepose((Activity) context, request,
+                new DataCallBackListener<CheckResponse>(){
+
+                    @Override
+                    public void onSuccess(CheckResponse data) {
+                        //成功，已经注册，进入登录
+
+
+                    }
+
+                    @Override
+                    public void onError(String code, String msg) {
+
+                        //判断是否是没有注册的错误；
+                        //进入注册界面；
 
+                    }
+                });
     }
 
 
@@ -59,7 +101,7 @@ public class LoginPwdViewModel extends BaseViewModel {
         layoutPwdLayoutVisibility.set(true);
         layoutCodeLayoutVisibility.set(false);
         showBtnVisibility.set(false);
-        mLoginHttpApiService = HttpDirector.getInstance().getApiRetrofit().create(LoginHttpApiService.class);
+        mLoginHttpApiService = HttpDirector.getInstance().createReq(LoginHttpApiService.class);
 
     }
 
@@ -0,0 +1,421 @@
+package com.http.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * author : taowang
+ * date :2018/8/23
+ * description:为@GsonAdapter标注的实体类生成TypeAdapter。
+ * String和基本类型直接读写，其他字段类型交给gson.getAdapter，支持泛型实体(如BaseResultEntity&lt;T&gt;)
+ **/
+public class GsonAdapterProcessor extends AbstractProcessor {
+
+    private static final String ANNOTATION = "com.http.gson.GsonAdapter";
+    private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+    private static final String SUFFIX = "_TypeAdapter";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@GsonAdapter只能用于类");
+                    continue;
+                }
+                TypeElement type = (TypeElement) element;
+                if (!check(type)) {
+                    continue;
+                }
+                try {
+                    write(type);
+                } catch (IOException e) {
+                    error(type, "生成TypeAdapter失败: " + e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean check(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@GsonAdapter不能用于抽象类");
+            return false;
+        }
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "@GsonAdapter用于内部类时必须是static");
+            return false;
+        }
+        boolean hasDefaultConstructor = false;
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        for (ExecutableElement constructor : constructors) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                hasDefaultConstructor = true;
+            }
+        }
+        if (!hasDefaultConstructor) {
+            error(type, "@GsonAdapter需要非private的无参构造方法");
+            return false;
+        }
+        boolean ok = true;
+        for (VariableElement field : fields(type)) {
+            if (field.getModifiers().contains(Modifier.PRIVATE)) {
+                error(field, "@GsonAdapter的字段不能是private");
+                ok = false;
+            }
+            if (field.getModifiers().contains(Modifier.FINAL)) {
+                error(field, "@GsonAdapter的字段不能是final");
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * 参与序列化的字段，包括父类的字段，和Gson默认规则一致排除static和transient
+     */
+    private List<VariableElement> fields(TypeElement type) {
+        List<VariableElement> result = new ArrayList<>();
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().toString().equals("java.lang.Object")) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (!modifiers.contains(Modifier.STATIC) && !modifiers.contains(Modifier.TRANSIENT)) {
+                    result.add(field);
+                }
+            }
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        return result;
+    }
+
+    private void write(TypeElement type) throws IOException {
+        String packageName = packageOf(type).getQualifiedName().toString();
+        String adapterName = adapterSimpleName(type);
+        String typeName = rawName(type);
+        List<? extends TypeParameterElement> typeParameters = type.getTypeParameters();
+        List<VariableElement> fields = fields(type);
+
+        StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("import com.google.gson.Gson;\n");
+        sb.append("import com.google.gson.TypeAdapter;\n");
+        sb.append("import com.google.gson.reflect.TypeToken;\n");
+        sb.append("import com.google.gson.stream.JsonReader;\n");
+        sb.append("import com.google.gson.stream.JsonToken;\n");
+        sb.append("import com.google.gson.stream.JsonWriter;\n");
+        sb.append("import com.http.gson.GsonTypes;\n");
+        sb.append("import java.io.IOException;\n");
+        sb.append("import java.lang.reflect.ParameterizedType;\n");
+        sb.append("import java.lang.reflect.Type;\n\n");
+        sb.append("/**\n * 由GsonAdapterProcessor生成，不要修改\n */\n");
+        sb.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        sb.append("public final class ").append(adapterName).append(" extends TypeAdapter<").append(typeName).append("> {\n\n");
+
+        for (int i = 0; i < fields.size(); i++) {
+            if (!isDirect(memberType(type, fields.get(i)))) {
+                sb.append("    private final TypeAdapter adapter").append(i).append(";\n");
+            }
+        }
+        sb.append("\n    public ").append(adapterName).append("(Gson gson, TypeToken<?> typeToken) {\n");
+        if (!typeParameters.isEmpty()) {
+            sb.append("        Type type = typeToken.getType();\n");
+            sb.append("        Type[] typeArgs = type instanceof ParameterizedType\n");
+            sb.append("                ? ((ParameterizedType) type).getActualTypeArguments() : null;\n");
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            TypeMirror fieldType = memberType(type, fields.get(i));
+            if (!isDirect(fieldType)) {
+                sb.append("        adapter").append(i).append(" = gson.getAdapter(TypeToken.get(")
+                        .append(typeExpression(fieldType, typeParameters)).append("));\n");
+            }
+        }
+        sb.append("    }\n\n");
+
+        if (!typeParameters.isEmpty()) {
+            sb.append("    private static Type typeArg(Type[] typeArgs, int index) {\n");
+            sb.append("        return typeArgs != null && index < typeArgs.length ? typeArgs[index] : Object.class;\n");
+            sb.append("    }\n\n");
+        }
+
+        //read
+        sb.append("    @Override\n");
+        sb.append("    public ").append(typeName).append(" read(JsonReader in) throws IOException {\n");
+        sb.append("        if (in.peek() == JsonToken.NULL) {\n");
+        sb.append("            in.nextNull();\n");
+        sb.append("            return null;\n");
+        sb.append("        }\n");
+        sb.append("        ").append(typeName).append(" value = new ").append(typeName).append("();\n");
+        sb.append("        in.beginObject();\n");
+        sb.append("        while (in.hasNext()) {\n");
+        sb.append("            switch (in.nextName()) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            VariableElement field = fields.get(i);
+            for (String name : jsonNames(field)) {
+                sb.append("                case \"").append(escape(name)).append("\":\n");
+            }
+            String fieldName = field.getSimpleName().toString();
+            TypeMirror fieldType = memberType(type, field);
+            if (fieldType.getKind().isPrimitive()) {
+                sb.append("                    if (in.peek() == JsonToken.NULL) {\n");
+                sb.append("                        in.nextNull();\n");
+                sb.append("                    } else {\n");
+                sb.append("                        value.").append(fieldName).append(" = ")
+                        .append(readPrimitive(fieldType.getKind())).append(";\n");
+                sb.append("                    }\n");
+            } else if (isString(fieldType)) {
+                sb.append("                    value.").append(fieldName).append(" = readString(in);\n");
+            } else {
+                String castType = rawName(fieldType);
+                String cast = castType.equals("java.lang.Object") ? "" : "(" + castType + ") ";
+                sb.append("                    value.").append(fieldName).append(" = ").append(cast)
+                        .append("adapter").append(i).append(".read(in);\n");
+            }
+            sb.append("                    break;\n");
+        }
+        sb.append("                default:\n");
+        sb.append("                    in.skipValue();\n");
+        sb.append("                    break;\n");
+        sb.append("            }\n");
+        sb.append("        }\n");
+        sb.append("        in.endObject();\n");
+        sb.append("        return value;\n");
+        sb.append("    }\n\n");
+
+        //write
+        sb.append("    @Override\n");
+        sb.append("    public void write(JsonWriter out, ").append(typeName).append(" value) throws IOException {\n");
+        sb.append("        if (value == null) {\n");
+        sb.append("            out.nullValue();\n");
+        sb.append("            return;\n");
+        sb.append("        }\n");
+        sb.append("        out.beginObject();\n");
+        for (int i = 0; i < fields.size(); i++) {
+            VariableElement field = fields.get(i);
+            String fieldName = field.getSimpleName().toString();
+            TypeMirror fieldType = memberType(type, field);
+            sb.append("        out.name(\"").append(escape(jsonNames(field).get(0))).append("\");\n");
+            if (fieldType.getKind() == TypeKind.CHAR) {
+                sb.append("        out.value(String.valueOf(value.").append(fieldName).append("));\n");
+            } else if (isDirect(fieldType)) {
+                sb.append("        out.value(value.").append(fieldName).append(");\n");
+            } else {
+                sb.append("        adapter").append(i).append(".write(out, value.").append(fieldName).append(");\n");
+            }
+        }
+        sb.append("        out.endObject();\n");
+        sb.append("    }\n\n");
+
+        sb.append("    private static String readString(JsonReader in) throws IOException {\n");
+        sb.append("        JsonToken token = in.peek();\n");
+        sb.append("        if (token == JsonToken.NULL) {\n");
+        sb.append("            in.nextNull();\n");
+        sb.append("            return null;\n");
+        sb.append("        }\n");
+        sb.append("        if (token == JsonToken.BOOLEAN) {\n");
+        sb.append("            return Boolean.toString(in.nextBoolean());\n");
+        sb.append("        }\n");
+        sb.append("        return in.nextString();\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        String qualifiedName = packageName.isEmpty() ? adapterName : packageName + "." + adapterName;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+        Writer writer = file.openWriter();
+        try {
+            writer.write(sb.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * 字段在当前类中的实际类型，父类字段上的类型变量会替换为子类给出的类型
+     */
+    private TypeMirror memberType(TypeElement type, VariableElement field) {
+        return processingEnv.getTypeUtils().asMemberOf((DeclaredType) type.asType(), field);
+    }
+
+    /**
+     * 直接读写、不需要委托TypeAdapter的类型
+     */
+    private boolean isDirect(TypeMirror type) {
+        return type.getKind().isPrimitive() || isString(type);
+    }
+
+    private boolean isString(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED && type.toString().equals("java.lang.String");
+    }
+
+    private String readPrimitive(TypeKind kind) {
+        switch (kind) {
+            case BOOLEAN:
+                return "in.nextBoolean()";
+            case BYTE:
+                return "(byte) in.nextInt()";
+            case SHORT:
+                return "(short) in.nextInt()";
+            case INT:
+                return "in.nextInt()";
+            case LONG:
+                return "in.nextLong()";
+            case FLOAT:
+                return "(float) in.nextDouble()";
+            case DOUBLE:
+                return "in.nextDouble()";
+            case CHAR:
+                return "in.nextString().charAt(0)";
+            default:
+                throw new IllegalArgumentException(kind.toString());
+        }
+    }
+
+    /**
+     * 生成运行时Type的表达式，类型变量从typeToken的实际类型参数中取
+     */
+    private String typeExpression(TypeMirror type, List<? extends TypeParameterElement> typeParameters) {
+        switch (type.getKind()) {
+            case TYPEVAR: {
+                String name = ((TypeVariable) type).asElement().getSimpleName().toString();
+                for (int i = 0; i < typeParameters.size(); i++) {
+                    if (typeParameters.get(i).getSimpleName().toString().equals(name)) {
+                        return "typeArg(typeArgs, " + i + ")";
+                    }
+                }
+                return "Object.class";
+            }
+            case ARRAY:
+                return "GsonTypes.arrayOf(" + typeExpression(((ArrayType) type).getComponentType(), typeParameters) + ")";
+            case WILDCARD: {
+                TypeMirror bound = ((WildcardType) type).getExtendsBound();
+                return bound == null ? "Object.class" : typeExpression(bound, typeParameters);
+            }
+            case DECLARED: {
+                DeclaredType declared = (DeclaredType) type;
+                String raw = rawName(declared) + ".class";
+                if (declared.getTypeArguments().isEmpty()) {
+                    return raw;
+                }
+                StringBuilder sb = new StringBuilder("GsonTypes.parameterized(");
+                sb.append(raw);
+                for (TypeMirror arg : declared.getTypeArguments()) {
+                    sb.append(", ").append(typeExpression(arg, typeParameters));
+                }
+                return sb.append(')').toString();
+            }
+            default:
+                return type.toString() + ".class";
+        }
+    }
+
+    private String rawName(TypeElement type) {
+        return type.getQualifiedName().toString();
+    }
+
+    private String rawName(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            return rawName((TypeElement) ((DeclaredType) type).asElement());
+        }
+        if (type.getKind() == TypeKind.ARRAY) {
+            return rawName(((ArrayType) type).getComponentType()) + "[]";
+        }
+        if (type.getKind() == TypeKind.TYPEVAR) {
+            return rawName(((TypeVariable) type).getUpperBound());
+        }
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    /**
+     * json中的名称，第一个用于序列化，其余为@SerializedName的alternate
+     */
+    private List<String> jsonNames(VariableElement field) {
+        List<String> names = new ArrayList<>();
+        for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().toString().equals(SERIALIZED_NAME)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+                String key = entry.getKey().getSimpleName().toString();
+                if (key.equals("value")) {
+                    names.add(0, (String) entry.getValue().getValue());
+                } else if (key.equals("alternate")) {
+                    for (Object alternate : (List<?>) entry.getValue().getValue()) {
+                        names.add((String) ((AnnotationValue) alternate).getValue());
+                    }
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            names.add(field.getSimpleName().toString());
+        }
+        return names;
+    }
+
+    private static String adapterSimpleName(TypeElement type) {
+        StringBuilder sb = new StringBuilder(type.getSimpleName());
+        Element enclosing = type.getEnclosingElement();
+        while (enclosing.getKind() != ElementKind.PACKAGE) {
+            sb.insert(0, enclosing.getSimpleName() + "_");
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return sb.append(SUFFIX).toString();
+    }
+
+    private static PackageElement packageOf(Element element) {
+        while (element.getKind() != ElementKind.PACKAGE) {
+            element = element.getEnclosingElement();
+        }
+        return (PackageElement) element;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,8 @@
+# 随lib_core一起打包，依赖它的模块开启混淆时自动生效
+
+# @GsonAdapter生成的TypeAdapter由GeneratedAdapterFactory按类名通过Class.forName查找，
+# 实体类和生成的类都不能改名，生成的类需要保留(Gson, TypeToken)构造方法
+-keepnames @com.http.gson.GsonAdapter class *
+-keep class **_TypeAdapter {
+    <init>(com.google.gson.Gson, com.google.gson.reflect.TypeToken);
+}
@@ -0,0 +1,128 @@
+package com.room;
+
+import android.arch.persistence.room.Room;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:outbox表的查询：到期顺序、退避中的资源、未发送计数、重启恢复和失败重试
+ **/
+@RunWith(AndroidJUnit4.class)
+public class OutboxDaoTest {
+
+    private AppDatabase db;
+    private OutboxDao dao;
+
+    @Before
+    public void setUp() {
+        db = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getTargetContext(), AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = db.outboxDao();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void pendingDueInInsertOrder() {
+        long first = dao.insert(entity("k1", "a", OutboxEntity.STATUS_PENDING, 0));
+        dao.insert(entity("k2", "b", OutboxEntity.STATUS_PENDING, 5000));
+        long third = dao.insert(entity("k3", "a", OutboxEntity.STATUS_PENDING, 1000));
+        dao.insert(entity("k4", "c", OutboxEntity.STATUS_FAILED, 0));
+        dao.insert(entity("k5", "c", OutboxEntity.STATUS_SENDING, 0));
+
+        List<OutboxEntity> due = dao.pendingDue(1000, 10);
+
+        assertEquals(2, due.size());
+        assertEquals(first, due.get(0).id);
+        assertEquals(third, due.get(1).id);
+        assertEquals(1, dao.pendingDue(1000, 1).size());
+    }
+
+    @Test
+    public void backingOffResourcesAndNextAttempt() {
+        dao.insert(entity("k1", "a", OutboxEntity.STATUS_PENDING, 3000));
+        dao.insert(entity("k2", "a", OutboxEntity.STATUS_PENDING, 2000));
+        dao.insert(entity("k3", "b", OutboxEntity.STATUS_PENDING, 500));
+        dao.insert(entity("k4", "c", OutboxEntity.STATUS_FAILED, 9000));
+
+        List<String> resources = dao.backingOffResources(1000);
+
+        assertEquals(1, resources.size());
+        assertEquals("a", resources.get(0));
+        assertEquals(Long.valueOf(2000), dao.nextAttemptAfter(1000));
+        assertNull(dao.nextAttemptAfter(5000));
+    }
+
+    @Test
+    public void countUnsentIgnoresFailed() {
+        dao.insert(entity("k1", "a", OutboxEntity.STATUS_PENDING, 0));
+        dao.insert(entity("k2", "a", OutboxEntity.STATUS_SENDING, 0));
+        dao.insert(entity("k3", "a", OutboxEntity.STATUS_FAILED, 0));
+        dao.insert(entity("k4", "b", OutboxEntity.STATUS_FAILED, 0));
+
+        assertEquals(2, dao.countUnsent("a"));
+        assertEquals(0, dao.countUnsent("b"));
+        assertEquals(0, dao.countUnsent("missing"));
+    }
+
+    @Test
+    public void resetSendingAndRetryFailed() {
+        dao.insert(entity("k1", "a", OutboxEntity.STATUS_SENDING, 0));
+        OutboxEntity failed = entity("k2", "b", OutboxEntity.STATUS_FAILED, 7000);
+        failed.attempts = 10;
+        dao.insert(failed);
+
+        dao.resetSending();
+        assertEquals(1, dao.pendingDue(0, 10).size());
+
+        dao.retryFailed();
+        List<OutboxEntity> due = dao.pendingDue(0, 10);
+        assertEquals(2, due.size());
+        assertEquals(0, due.get(1).attempts);
+        assertEquals(0, due.get(1).nextAttemptAt);
+    }
+
+    @Test
+    public void deleteAndUpdate() {
+        long id = dao.insert(entity("k1", "a", OutboxEntity.STATUS_PENDING, 0));
+        OutboxEntity entity = dao.pendingDue(0, 1).get(0);
+        entity.status = OutboxEntity.STATUS_FAILED;
+        entity.lastError = "HTTP 400";
+        dao.update(entity);
+        assertTrue(dao.pendingDue(0, 10).isEmpty());
+
+        dao.delete(id);
+        assertEquals(0, dao.countUnsent("a"));
+        dao.retryFailed();
+        assertTrue(dao.pendingDue(0, 10).isEmpty());
+    }
+
+    private static OutboxEntity entity(String idempotencyKey, String resourceKey, int status, long nextAttemptAt) {
+        OutboxEntity entity = new OutboxEntity();
+        entity.idempotencyKey = idempotencyKey;
+        entity.resourceKey = resourceKey;
+        entity.method = "POST";
+        entity.url = "http://example.com/" + resourceKey;
+        entity.status = status;
+        entity.nextAttemptAt = nextAttemptAt;
+        entity.createdAt = System.currentTimeMillis();
+        return entity;
+    }
+}
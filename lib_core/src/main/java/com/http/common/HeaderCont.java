@@ -0,0 +1,67 @@
+package com.http.common;
+
+/**
+ * author : taowang
+ * date :2018/8/7
+ * description:标记用的请求头，在service接口上通过@Headers声明，由对应的拦截器读取并在发出请求前移除；
+ * 对应功能没有配置时由MarkerHeaderIntercept移除
+ **/
+public class HeaderCont {
+
+    /**
+     * 服务端未返回Cache-Control时使用的缓存时长(秒)，例如 @Headers(HeaderCont.CACHE_MAX_AGE + ": 600")
+     */
+    public static final String CACHE_MAX_AGE = "X-Cache-Max-Age";
+
+    /**
+     * 使用的重试策略名称，对应HttpClientConfiguration.Builder.retryPolicies中的key
+     */
+    public static final String RETRY_POLICY = "X-Retry-Policy";
+
+    /**
+     * 不重试
+     */
+    public static final String RETRY_POLICY_NONE = "none";
+
+    /**
+     * 允许对冲请求，只对GET生效，例如 @Headers(HeaderCont.HEDGE + ": true")
+     */
+    public static final String HEDGE = "X-Hedge";
+
+    /**
+     * 请求优先级：user/normal/prefetch/background，可以用@Header在调用时指定
+     */
+    public static final String PRIORITY = "X-Priority";
+
+    /**
+     * 不压缩请求体
+     */
+    public static final String NO_COMPRESS = "X-No-Compress";
+
+    /**
+     * 响应格式：msgpack/json，例如 @Headers(HeaderCont.WIRE_FORMAT + ": " + HeaderCont.WIRE_FORMAT_MSGPACK)，
+     * 服务端不支持时仍返回json
+     */
+    public static final String WIRE_FORMAT = "X-Wire-Format";
+
+    public static final String WIRE_FORMAT_MSGPACK = "msgpack";
+
+    public static final String WIRE_FORMAT_JSON = "json";
+
+    /**
+     * 不参与会话刷新，登录、刷新token等接口使用，例如 @Headers(HeaderCont.NO_SESSION_REFRESH + ": true")
+     */
+    public static final String NO_SESSION_REFRESH = "X-No-Session-Refresh";
+
+    /**
+     * 离线时保存到RequestOutbox，联网后重放，值为资源key，同一资源的请求按顺序提交，
+     * 例如 @Headers(HeaderCont.OUTBOX + ": profile")
+     */
+    public static final String OUTBOX = "X-Outbox";
+
+    /**
+     * 允许和同一时间的其他请求合并发送，需要服务端提供批量接口，见BatchIntercept
+     */
+    public static final String BATCH = "X-Batch";
+
+}
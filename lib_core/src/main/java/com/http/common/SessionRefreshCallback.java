@@ -0,0 +1,17 @@
+package com.http.common;
+
+/**
+ * author : taowang
+ * date :2018/8/31
+ * description:可以自动刷新会话的seesion过期处理，配合SessionRefreshIntercept使用。
+ * 刷新成功后被挂起的请求会重新发出，新的token需要通过HttpClientConfiguration.Builder.dynamicHeader提供
+ **/
+public interface SessionRefreshCallback extends SessionOutCallback {
+
+    /**
+     * 刷新会话，在请求线程同步调用，同一时间只会有一次调用。
+     * 刷新用的请求需要带上HeaderCont.NO_SESSION_REFRESH，否则会等待自己
+     * @return 刷新成功返回true，失败时按原来的方式走commandUi
+     */
+    boolean refreshSession();
+}
@@ -1,10 +1,13 @@
 package com.http.common.bean;
 
+import com.http.gson.GsonAdapter;
+
 /**
  * author : taowang
  * date :2018/7/27
  * description:
  **/
+@GsonAdapter
 public class BaseResultEntity<T> {
     //判断标示
     public String code;
@@ -13,7 +16,7 @@ public class BaseResultEntity<T> {
     //显示数据（用户需要关心的数据）
     public T resultMap;
     public boolean isOk() {
-        return code.equals("1");
+        return "1".equals(code);
     }
 
 }
@@ -0,0 +1,42 @@
+package com.http.common.intercept;
+
+import com.http.util.AdaptiveNetworkPolicy;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * author : taowang
+ * date :2018/8/16
+ * description:按当前网络类型设置每个请求的超时时间，网络类型由NetworkClassMonitor缓存。
+ * 网络类型参数是下限：OkHttpClient上配置的超时(或前面的拦截器设置的超时)更长时保留，
+ * 弱网下延长超时，不会把App配置的超时缩短；0表示不限制，同样保留
+ **/
+public class AdaptiveTimeoutIntercept implements Interceptor {
+
+    private final AdaptiveNetworkPolicy policy;
+
+    public AdaptiveTimeoutIntercept(AdaptiveNetworkPolicy policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        AdaptiveNetworkPolicy.Profile profile = policy.currentProfile();
+        return chain
+                .withConnectTimeout(atLeast(chain.connectTimeoutMillis(), profile.connectTimeoutMillis),
+                        TimeUnit.MILLISECONDS)
+                .withReadTimeout(atLeast(chain.readTimeoutMillis(), profile.readTimeoutMillis),
+                        TimeUnit.MILLISECONDS)
+                .withWriteTimeout(atLeast(chain.writeTimeoutMillis(), profile.writeTimeoutMillis),
+                        TimeUnit.MILLISECONDS)
+                .proceed(chain.request());
+    }
+
+    private static int atLeast(int configured, int profile) {
+        return configured == 0 ? 0 : Math.max(configured, profile);
+    }
+}
@@ -0,0 +1,338 @@
+package com.http.common.intercept;
+
+import android.util.Log;
+
+import com.http.util.NetworkMetrics;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Timeout;
+import okhttp3.FormBody;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * author : taowang
+ * date :2018/8/21
+ * description:异步http日志，请求线程只采集请求头和限定长度的body前缀，
+ * 格式化和输出在单独的线程中完成；按接口采样，并隐藏敏感请求头。
+ * 所有实例共用一个输出线程，第一次记录日志时启动。请求线程通过无锁队列交给输出线程，
+ * 队列满时丢弃，输出线程空闲时park，有新日志时才unpark
+ **/
+public class AsyncLogIntercept implements Interceptor {
+
+    private static final String TAG = "HttpLog";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int LOGCAT_MAX_LENGTH = 3000;
+    static final int MAX_QUEUE_SIZE = 256;
+
+    private static final ConcurrentLinkedQueue<LogRecord> QUEUE = new ConcurrentLinkedQueue<>();
+    /**
+     * ConcurrentLinkedQueue.size()需要遍历，单独计数
+     */
+    private static final AtomicInteger QUEUE_SIZE = new AtomicInteger();
+    private static volatile Thread writer;
+    /**
+     * 输出线程准备park，请求线程只在这时unpark
+     */
+    private static volatile boolean writerWaiting;
+
+    /**
+     * 日志输出，单元测试中替换
+     */
+    static volatile Printer printer = new Printer() {
+        @Override
+        public void print(String message) {
+            for (int i = 0; i < message.length(); i += LOGCAT_MAX_LENGTH) {
+                Log.d(TAG, message.substring(i, Math.min(message.length(), i + LOGCAT_MAX_LENGTH)));
+            }
+        }
+    };
+
+    private final long maxBodyPrefix;
+    private final int sampleEvery;
+    private final Set<String> redactHeaders = new HashSet<>();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicInteger> sampleCounters = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxBodyPrefix 最多记录的body字节数
+     * @param sampleEvery 每个接口每N次请求记录一次，1表示全部记录
+     * @param redactHeaders 需要隐藏值的请求头，例如token
+     */
+    public AsyncLogIntercept(long maxBodyPrefix, int sampleEvery, Collection<String> redactHeaders) {
+        this.maxBodyPrefix = maxBodyPrefix;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.redactHeaders.add("authorization");
+        this.redactHeaders.add("cookie");
+        this.redactHeaders.add("set-cookie");
+        if (redactHeaders != null) {
+            for (String name : redactHeaders) {
+                this.redactHeaders.add(name.toLowerCase(Locale.US));
+            }
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!sampled(request)) {
+            return chain.proceed(request);
+        }
+
+        LogRecord record = new LogRecord(this);
+        record.method = request.method();
+        record.url = request.url().toString();
+        record.requestHeaders = request.headers();
+        if (request.body() != null) {
+            record.requestBody = requestBodyPrefix(request.body());
+            record.requestLength = request.body().contentLength();
+        }
+
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            record.tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            record.error = e.toString();
+            enqueue(record);
+            throw e;
+        }
+        record.tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        record.code = response.code();
+        record.responseHeaders = response.headers();
+        if (response.body() != null) {
+            //只读取前缀，不影响后续完整读取
+            record.responseBody = response.peekBody(maxBodyPrefix).bytes();
+            record.responseLength = response.body().contentLength();
+        }
+        enqueue(record);
+        return response;
+    }
+
+    boolean sampled(Request request) {
+        if (sampleEvery == 1) {
+            return true;
+        }
+        String endpoint = NetworkMetrics.template(request.method(), request.url());
+        AtomicInteger counter = sampleCounters.get(endpoint);
+        if (counter == null) {
+            AtomicInteger created = new AtomicInteger();
+            counter = sampleCounters.putIfAbsent(endpoint, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter.getAndIncrement() % sampleEvery == 0;
+    }
+
+    /**
+     * 复制请求体的前maxBodyPrefix字节，写满后停止，文件等较大的请求体不会整体读一遍
+     */
+    private byte[] requestBodyPrefix(RequestBody body) throws IOException {
+        if (!isRepeatable(body)) {
+            //只能写一次的请求体不复制，上传进度等也不会多算一次
+            return null;
+        }
+        PrefixSink prefix = new PrefixSink(maxBodyPrefix);
+        BufferedSink sink = Okio.buffer(prefix);
+        try {
+            body.writeTo(sink);
+            sink.flush();
+        } catch (PrefixSink.Full ignored) {
+            //已经取到前缀
+        }
+        return prefix.buffer.readByteArray();
+    }
+
+    /**
+     * 表单和RequestBody.create创建的请求体可以重复写，其他类型(上传进度、分片、文件流等)不确定
+     */
+    private static boolean isRepeatable(RequestBody body) {
+        return body instanceof FormBody
+                || body instanceof RequestDecorIntercept.AppendedFormBody
+                || body.getClass().getEnclosingClass() == RequestBody.class;
+    }
+
+    void enqueue(LogRecord record) {
+        if (QUEUE_SIZE.incrementAndGet() > MAX_QUEUE_SIZE) {
+            QUEUE_SIZE.decrementAndGet();
+            droppedCount.incrementAndGet();
+            return;
+        }
+        QUEUE.offer(record);
+        Thread current = writer;
+        if (current == null) {
+            startWriter();
+        } else if (writerWaiting) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    private static synchronized void startWriter() {
+        if (writer != null) {
+            return;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, "AsyncHttpLog");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    private static void drainLoop() {
+        while (true) {
+            LogRecord record = QUEUE.poll();
+            if (record == null) {
+                //先标记再检查一次，请求线程要么看到标记后unpark，要么这里取到它放入的日志
+                writerWaiting = true;
+                if (QUEUE.isEmpty()) {
+                    LockSupport.park();
+                }
+                writerWaiting = false;
+                continue;
+            }
+            QUEUE_SIZE.decrementAndGet();
+            try {
+                printer.print(record.owner.format(record));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    String format(LogRecord record) {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("--> ").append(record.method).append(' ').append(record.url).append('\n');
+        appendHeaders(sb, record.requestHeaders);
+        if (record.requestBody != null && record.requestBody.length > 0) {
+            sb.append(new String(record.requestBody, UTF8));
+            appendTruncated(sb, record.requestLength, record.requestBody.length);
+            sb.append('\n');
+        }
+        if (record.error != null) {
+            sb.append("<-- FAILED ").append(record.error)
+                    .append(" (").append(record.tookMillis).append("ms)");
+            return sb.toString();
+        }
+        sb.append("<-- ").append(record.code).append(' ').append(record.url)
+                .append(" (").append(record.tookMillis).append("ms)\n");
+        appendHeaders(sb, record.responseHeaders);
+        if (record.responseBody != null) {
+            sb.append(new String(record.responseBody, UTF8));
+            appendTruncated(sb, record.responseLength, record.responseBody.length);
+        }
+        return sb.toString();
+    }
+
+    private static void appendTruncated(StringBuilder sb, long length, int prefixLength) {
+        if (length < 0 || length > prefixLength) {
+            sb.append("...(").append(length < 0 ? "?" : String.valueOf(length)).append(" bytes)");
+        }
+    }
+
+    private void appendHeaders(StringBuilder sb, Headers headers) {
+        if (headers == null) {
+            return;
+        }
+        for (int i = 0; i < headers.size(); i++) {
+            String name = headers.name(i);
+            sb.append(name).append(": ");
+            sb.append(redactHeaders.contains(name.toLowerCase(Locale.US)) ? "██" : headers.value(i));
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * 队列满时丢弃的日志数
+     */
+    public long droppedCount() {
+        return droppedCount.get();
+    }
+
+    interface Printer {
+        void print(String message);
+    }
+
+    /**
+     * 只保留前limit字节，写满后抛出Full结束writeTo
+     */
+    private static final class PrefixSink implements Sink {
+
+        static final class Full extends IOException {
+        }
+
+        final Buffer buffer = new Buffer();
+        private final long limit;
+
+        PrefixSink(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            long take = Math.min(byteCount, limit - buffer.size());
+            buffer.write(source, take);
+            source.skip(byteCount - take);
+            if (buffer.size() >= limit) {
+                throw new Full();
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    static final class LogRecord {
+        final AsyncLogIntercept owner;
+        String method;
+        String url;
+        Headers requestHeaders;
+        byte[] requestBody;
+        long requestLength;
+        int code;
+        Headers responseHeaders;
+        byte[] responseBody;
+        long responseLength;
+        long tookMillis;
+        String error;
+
+        LogRecord(AsyncLogIntercept owner) {
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.http.common.intercept;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.http.common.HeaderCont;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+/**
+ * author : taowang
+ * date :2018/9/4
+ * description:请求合并，标记了HeaderCont.BATCH的请求在很短的时间窗口内按host收集，合成一个请求发到服务端的批量接口，
+ * 再把结果拆回各自的Response，后面的解析和调用方都不需要改动。
+ * 批量请求：{"requests":[{"id":0,"method":"GET","url":"/api/a?x=1","headers":{...},"body":"..."}]}
+ * 批量响应：{"responses":[{"id":0,"status":200,"body":{...}}]}
+ * 批量接口返回非2xx时各请求单独发出；服务端不支持(404/501)时一段时间内不再合并。
+ * 放在公共参数之前，公共参数和token加在批量请求上。批量请求是单独的Call，在领头请求的线程上同步执行，
+ * 不属于任何一个被合并的请求：领头请求取消时批量请求照常完成，跟随者取消时只有它自己退出等待
+ **/
+public class BatchIntercept implements Interceptor {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final MediaType MEDIA_TYPE_JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final long DEFAULT_WINDOW_MILLIS = 10;
+    private static final int DEFAULT_MAX_BATCH = 10;
+    /**
+     * 合并的请求超过这个大小时单独发送
+     */
+    private static final long MAX_ITEM_BODY_BYTES = 16 * 1024;
+    private static final long DISABLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * 跟随者等待批量结果的最长时间，超过后单独发送
+     */
+    private static final long WAIT_TIMEOUT_MILLIS = 60000;
+    /**
+     * OkHttp取消请求时没有通知，等待中的请求隔这么久检查一次是否已取消
+     */
+    private static final long CANCEL_CHECK_MILLIS = 200;
+
+    private final String batchPath;
+    private final long windowMillis;
+    private final int maxBatch;
+
+    private final Object lock = new Object();
+    /**
+     * host -> 正在收集的批次
+     */
+    private final Map<String, Batch> open = new HashMap<>();
+    private volatile long disabledUntil;
+    private volatile Call.Factory callFactory;
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong batchedCallCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+
+    /**
+     * @param batchPath 批量接口路径，例如/api/batch，按各请求的host解析
+     */
+    public BatchIntercept(String batchPath) {
+        this(batchPath, DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * @param batchPath
+     * @param windowMillis 第一个请求到达后等待其他请求的时间
+     * @param maxBatch 一批最多的请求数，满了立即发出
+     */
+    public BatchIntercept(String batchPath, long windowMillis, int maxBatch) {
+        this.batchPath = batchPath;
+        this.windowMillis = windowMillis;
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * 发出批量请求的client，只包含本拦截器之后的拦截器，由HttpDirector在构造client时设置
+     * @param callFactory
+     */
+    public void setCallFactory(Call.Factory callFactory) {
+        this.callFactory = callFactory;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header(HeaderCont.BATCH) == null) {
+            return chain.proceed(request);
+        }
+        request = request.newBuilder().removeHeader(HeaderCont.BATCH).build();
+        if (callFactory == null || now() < disabledUntil || !isBatchable(request)) {
+            return chain.proceed(request);
+        }
+
+        String host = request.url().scheme() + "://" + request.url().host() + ":" + request.url().port();
+        Item item = new Item(request);
+        Batch batch;
+        boolean leader;
+        synchronized (lock) {
+            batch = open.get(host);
+            leader = batch == null;
+            if (leader) {
+                batch = new Batch();
+                open.put(host, batch);
+            }
+            item.id = batch.items.size();
+            batch.items.add(item);
+            if (batch.items.size() >= maxBatch) {
+                close(host, batch);
+            }
+        }
+
+        if (leader) {
+            collect(host, batch);
+            if (batch.items.size() > 1) {
+                send(request.url(), batch);
+            } else {
+                batch.done.countDown();
+            }
+        }
+        await(chain, batch, item);
+        if (leader && chain.call().isCanceled()) {
+            //领头请求在批量请求进行中被取消
+            throw new IOException("Canceled");
+        }
+
+        if (item.response != null && !item.fallback) {
+            return item.response;
+        }
+        if (item.error != null && !item.fallback) {
+            throw item.error;
+        }
+        if (batch.items.size() > 1) {
+            fallbackCount.incrementAndGet();
+        }
+        return chain.proceed(request);
+    }
+
+    /**
+     * 等待批量结果，调用方取消时立即退出，超时后单独发送
+     */
+    private void await(Chain chain, Batch batch, Item item) throws IOException {
+        long deadline = now() + windowMillis + WAIT_TIMEOUT_MILLIS;
+        try {
+            while (!batch.done.await(CANCEL_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (chain.call().isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                if (now() >= deadline) {
+                    item.fallback = true;
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for batch");
+        }
+    }
+
+    /**
+     * 等到时间窗口结束或批次已满
+     */
+    private void collect(String host, Batch batch) throws InterruptedIOException {
+        synchronized (lock) {
+            long deadline = now() + windowMillis;
+            while (!batch.closed) {
+                long remaining = deadline - now();
+                if (remaining <= 0) {
+                    close(host, batch);
+                    break;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    close(host, batch);
+                    //跟随者改为单独发送
+                    markFallback(batch.items);
+                    batch.done.countDown();
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while collecting batch");
+                }
+            }
+        }
+    }
+
+    /**
+     * 需要持有lock
+     */
+    private void close(String host, Batch batch) {
+        if (open.get(host) == batch) {
+            open.remove(host);
+        }
+        batch.closed = true;
+        lock.notifyAll();
+    }
+
+    private boolean isBatchable(Request request) throws IOException {
+        RequestBody body = request.body();
+        if (body == null) {
+            return true;
+        }
+        MediaType contentType = body.contentType();
+        if (contentType == null || !isText(contentType)) {
+            return false;
+        }
+        long length = body.contentLength();
+        return length >= 0 && length <= MAX_ITEM_BODY_BYTES;
+    }
+
+    private static boolean isText(MediaType contentType) {
+        String subtype = contentType.subtype().toLowerCase();
+        return "text".equals(contentType.type()) || subtype.contains("json") || subtype.contains("x-www-form-urlencoded");
+    }
+
+    /**
+     * 在单独的Call上同步发出批量请求，结果分给各个请求，出错时按请求是否可以重发决定单独发送还是直接失败。
+     * 在领头请求的线程上execute，不占用Dispatcher的并发名额：被合并的请求本身是enqueue发出时，
+     * 它们已经占着单host的名额，批量请求再排队就要等到超时
+     */
+    private void send(HttpUrl url, Batch batch) {
+        HttpUrl batchUrl = url.resolve(batchPath);
+        Request batchRequest;
+        try {
+            batchRequest = batchUrl == null ? null : new Request.Builder()
+                    .url(batchUrl)
+                    //批量结果按json拆分
+                    .header(HeaderCont.WIRE_FORMAT, HeaderCont.WIRE_FORMAT_JSON)
+                    .post(RequestBody.create(MEDIA_TYPE_JSON, encode(batch.items)))
+                    .build();
+        } catch (IOException e) {
+            batchRequest = null;
+        }
+        if (batchRequest == null) {
+            markFallback(batch.items);
+            batch.done.countDown();
+            return;
+        }
+        batchCount.incrementAndGet();
+        Response response = null;
+        try {
+            response = callFactory.newCall(batchRequest).execute();
+            if (!response.isSuccessful()) {
+                if (response.code() == 404 || response.code() == 501) {
+                    //服务端没有批量接口
+                    disabledUntil = now() + DISABLE_MILLIS;
+                }
+                //批量请求整体被拒绝，各请求都没有执行
+                markFallback(batch.items);
+                return;
+            }
+            decode(response, batch.items);
+            batchedCallCount.addAndGet(batch.items.size());
+        } catch (IOException | RuntimeException e) {
+            fail(batch.items, e instanceof IOException ? (IOException) e : new IOException(e));
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+            batch.done.countDown();
+        }
+    }
+
+    /**
+     * 批量请求中途失败，GET单独重发，其他请求服务端可能已经执行，不能自动重发
+     */
+    private static void fail(List<Item> items, IOException error) {
+        for (Item item : items) {
+            if (item.response != null) {
+                continue;
+            }
+            if ("GET".equals(item.request.method())) {
+                item.fallback = true;
+            } else {
+                item.error = error;
+            }
+        }
+    }
+
+    private static void markFallback(List<Item> items) {
+        for (Item item : items) {
+            item.fallback = true;
+        }
+    }
+
+    private byte[] encode(List<Item> items) throws IOException {
+        Buffer buffer = new Buffer();
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(buffer.outputStream(), UTF8));
+        writer.beginObject();
+        writer.name("requests").beginArray();
+        for (Item item : items) {
+            Request request = item.request;
+            writer.beginObject();
+            writer.name("id").value(item.id);
+            writer.name("method").value(request.method());
+            String query = request.url().encodedQuery();
+            writer.name("url").value(request.url().encodedPath() + (query != null ? "?" + query : ""));
+            Headers headers = request.headers();
+            RequestBody body = request.body();
+            if (headers.size() > 0 || body != null) {
+                writer.name("headers").beginObject();
+                for (int i = 0; i < headers.size(); i++) {
+                    writer.name(headers.name(i)).value(headers.value(i));
+                }
+                if (body != null && body.contentType() != null) {
+                    writer.name("Content-Type").value(body.contentType().toString());
+                }
+                writer.endObject();
+            }
+            if (body != null) {
+                Buffer content = new Buffer();
+                body.writeTo(content);
+                writer.name("body").value(content.readUtf8());
+            }
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+        return buffer.readByteArray();
+    }
+
+    /**
+     * 流式读取批量响应，每个结果的body转成单独的Response
+     */
+    private void decode(Response response, List<Item> items) throws IOException {
+        JsonReader reader = new JsonReader(response.body().charStream());
+        JsonParser parser = new JsonParser();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"responses".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                int id = -1;
+                int status = 0;
+                String body = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if ("id".equals(name)) {
+                        id = reader.nextInt();
+                    } else if ("status".equals(name)) {
+                        status = reader.nextInt();
+                    } else if ("body".equals(name)) {
+                        if (reader.peek() == JsonToken.STRING) {
+                            body = reader.nextString();
+                        } else {
+                            JsonElement element = parser.parse(reader);
+                            body = element.toString();
+                        }
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                if (id >= 0 && id < items.size() && status > 0) {
+                    Item item = items.get(id);
+                    item.response = new Response.Builder()
+                            .request(item.request)
+                            .protocol(response.protocol())
+                            .code(status)
+                            .message("")
+                            .sentRequestAtMillis(response.sentRequestAtMillis())
+                            .receivedResponseAtMillis(response.receivedResponseAtMillis())
+                            .body(ResponseBody.create(MEDIA_TYPE_JSON, body != null ? body : ""))
+                            .build();
+                }
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        for (Item item : items) {
+            if (item.response == null) {
+                //服务端漏掉的结果，GET单独重发，其他请求不确定是否执行过
+                if ("GET".equals(item.request.method())) {
+                    item.fallback = true;
+                } else {
+                    item.error = new IOException("missing batch response for " + item.request.url());
+                }
+            }
+        }
+    }
+
+    /**
+     * 发出的批量请求数
+     */
+    public long batchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * 通过批量请求完成的调用数
+     */
+    public long batchedCallCount() {
+        return batchedCallCount.get();
+    }
+
+    /**
+     * 批量失败后单独发送的调用数
+     */
+    public long fallbackCount() {
+        return fallbackCount.get();
+    }
+
+    public String dumpStats() {
+        return "batches=" + batchCount.get()
+                + ", batchedCalls=" + batchedCallCount.get()
+                + ", fallbacks=" + fallbackCount.get()
+                + ", disabled=" + (now() < disabledUntil);
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static final class Batch {
+        final List<Item> items = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        boolean closed;
+    }
+
+    private static final class Item {
+        final Request request;
+        int id;
+        volatile Response response;
+        volatile IOException error;
+        volatile boolean fallback;
+
+        Item(Request request) {
+            this.request = request;
+        }
+    }
+}
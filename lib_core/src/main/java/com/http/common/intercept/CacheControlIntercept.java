@@ -0,0 +1,57 @@
+package com.http.common.intercept;
+
+import com.http.common.HeaderCont;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * author : taowang
+ * date :2018/8/7
+ * description:网络拦截器，服务端没有返回Cache-Control时按service上声明的时长或默认时长补上，
+ * 使OkHttp的磁盘缓存能够命中
+ **/
+public class CacheControlIntercept implements Interceptor {
+
+    public int defaultMaxAge;//默认缓存时长(秒)，0表示不补充
+
+    public CacheControlIntercept(int defaultMaxAge) {
+        this.defaultMaxAge = defaultMaxAge;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String marker = request.header(HeaderCont.CACHE_MAX_AGE);
+        if (marker != null) {
+            request = request.newBuilder().removeHeader(HeaderCont.CACHE_MAX_AGE).build();
+        }
+        Response response = chain.proceed(request);
+        if (!"GET".equals(request.method()) || !response.isSuccessful()) {
+            return response;
+        }
+        String cacheControl = response.header("Cache-Control");
+        if (cacheControl != null && !cacheControl.isEmpty()) {
+            //以服务端为准
+            return response;
+        }
+        int maxAge = defaultMaxAge;
+        if (marker != null) {
+            try {
+                maxAge = Integer.parseInt(marker.trim());
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        if (maxAge <= 0) {
+            return response;
+        }
+        return response.newBuilder()
+                .removeHeader("Pragma")
+                .header("Cache-Control", "public, max-age=" + maxAge)
+                .build();
+    }
+}
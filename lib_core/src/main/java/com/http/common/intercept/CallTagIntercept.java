@@ -0,0 +1,23 @@
+package com.http.common.intercept;
+
+import com.http.util.CallTags;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * author : taowang
+ * date :2018/9/5
+ * description:把Call登记到订阅它的页面下，页面销毁时由HttpDirector.cancelByOwner取消。
+ * 放在最外层，登记的是调用方持有的Call，取消后重试和对冲也会停止
+ **/
+public class CallTagIntercept implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        CallTags.register(chain.call());
+        return chain.proceed(chain.request());
+    }
+}
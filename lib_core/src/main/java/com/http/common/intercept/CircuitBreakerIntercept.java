@@ -0,0 +1,284 @@
+package com.http.common.intercept;
+
+import com.http.exception.CircuitOpenException;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * author : taowang
+ * date :2018/8/10
+ * description:按host熔断，统计滑动窗口内的错误率和慢请求比例，超过阈值后快速失败，
+ * 熔断时间过后放行少量探测请求，探测成功再恢复
+ **/
+public class CircuitBreakerIntercept implements Interceptor {
+
+    public static final int STATE_CLOSED = 0;
+    public static final int STATE_OPEN = 1;
+    public static final int STATE_HALF_OPEN = 2;
+
+    private final int windowSeconds;
+    private final int minRequests;
+    private final float failureRateThreshold;
+    private final long slowCallMillis;
+    private final long openMillis;
+    private final int halfOpenProbes;
+
+    private final ConcurrentHashMap<String, HostCircuit> circuits = new ConcurrentHashMap<>();
+
+    /**
+     * 毫秒时钟，测试中可以替换
+     */
+    Ticker ticker = new Ticker() {
+        @Override
+        public long millis() {
+            return System.nanoTime() / 1000000;
+        }
+    };
+
+    private CircuitBreakerIntercept(Builder builder) {
+        this.windowSeconds = builder.windowSeconds;
+        this.minRequests = builder.minRequests;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallMillis = builder.slowCallMillis;
+        this.openMillis = builder.openMillis;
+        this.halfOpenProbes = builder.halfOpenProbes;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = request.url().host();
+        HostCircuit circuit = getCircuit(host);
+        int acquired = circuit.tryAcquire();
+        if (acquired == STATE_OPEN) {
+            throw new CircuitOpenException(host);
+        }
+        boolean probe = acquired == STATE_HALF_OPEN;
+
+        long start = ticker.millis();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            if (chain.call().isCanceled()) {
+                circuit.onIgnored(probe);
+            } else {
+                circuit.onResult(probe, false);
+            }
+            throw e;
+        }
+        long tookMillis = ticker.millis() - start;
+        circuit.onResult(probe, response.code() < 500 && tookMillis < slowCallMillis);
+        return response;
+    }
+
+    private HostCircuit getCircuit(String host) {
+        HostCircuit circuit = circuits.get(host);
+        if (circuit == null) {
+            HostCircuit created = new HostCircuit();
+            circuit = circuits.putIfAbsent(host, created);
+            if (circuit == null) {
+                circuit = created;
+            }
+        }
+        return circuit;
+    }
+
+    /**
+     * 获取host当前的熔断状态
+     * @param host
+     * @return {@link #STATE_CLOSED},{@link #STATE_OPEN},{@link #STATE_HALF_OPEN}
+     */
+    public int getState(String host) {
+        HostCircuit circuit = circuits.get(host);
+        return circuit == null ? STATE_CLOSED : circuit.state();
+    }
+
+    /**
+     * 单个host的熔断器，窗口按秒分桶
+     */
+    private final class HostCircuit {
+        private final long[] bucketSecond = new long[windowSeconds];
+        private final int[] bucketTotal = new int[windowSeconds];
+        private final int[] bucketFailure = new int[windowSeconds];
+
+        private int state = STATE_CLOSED;
+        private long openedAt;
+        private int probesInFlight;
+        private int probeSuccess;
+
+        synchronized int state() {
+            return state;
+        }
+
+        /**
+         * @return 放行时返回当前状态，拒绝时返回STATE_OPEN
+         */
+        synchronized int tryAcquire() {
+            if (state == STATE_OPEN) {
+                if (now() - openedAt < openMillis) {
+                    return STATE_OPEN;
+                }
+                state = STATE_HALF_OPEN;
+                probesInFlight = 0;
+                probeSuccess = 0;
+            }
+            if (state == STATE_HALF_OPEN) {
+                if (probesInFlight >= halfOpenProbes) {
+                    return STATE_OPEN;
+                }
+                probesInFlight++;
+            }
+            return state;
+        }
+
+        synchronized void onIgnored(boolean probe) {
+            if (probe && state == STATE_HALF_OPEN && probesInFlight > 0) {
+                probesInFlight--;
+            }
+        }
+
+        synchronized void onResult(boolean probe, boolean success) {
+            if (state == STATE_HALF_OPEN) {
+                if (!probe) {
+                    //半开前发出的请求，结果不再统计
+                    return;
+                }
+                if (probesInFlight > 0) {
+                    probesInFlight--;
+                }
+                if (!success) {
+                    open();
+                } else if (++probeSuccess >= halfOpenProbes) {
+                    close();
+                }
+                return;
+            }
+            if (state == STATE_OPEN || probe) {
+                //熔断前发出的请求，或者已经失效的探测请求，结果不再统计
+                return;
+            }
+
+            long second = now() / 1000;
+            int index = (int) (second % windowSeconds);
+            if (bucketSecond[index] != second) {
+                bucketSecond[index] = second;
+                bucketTotal[index] = 0;
+                bucketFailure[index] = 0;
+            }
+            bucketTotal[index]++;
+            if (!success) {
+                bucketFailure[index]++;
+            }
+
+            int total = 0;
+            int failure = 0;
+            for (int i = 0; i < windowSeconds; i++) {
+                if (second - bucketSecond[i] < windowSeconds) {
+                    total += bucketTotal[i];
+                    failure += bucketFailure[i];
+                }
+            }
+            if (total >= minRequests && failure >= total * failureRateThreshold) {
+                open();
+            }
+        }
+
+        private void open() {
+            state = STATE_OPEN;
+            openedAt = now();
+        }
+
+        private void close() {
+            state = STATE_CLOSED;
+            for (int i = 0; i < windowSeconds; i++) {
+                bucketSecond[i] = 0;
+                bucketTotal[i] = 0;
+                bucketFailure[i] = 0;
+            }
+        }
+
+        private long now() {
+            return ticker.millis();
+        }
+    }
+
+    interface Ticker {
+        long millis();
+    }
+
+    /**
+     * 构造者熔断器
+     */
+    public static class Builder {
+        private int windowSeconds = 10;
+        private int minRequests = 20;
+        private float failureRateThreshold = 0.5f;
+        private long slowCallMillis = 10000;
+        private long openMillis = 15000;
+        private int halfOpenProbes = 3;
+
+        /**
+         * 统计窗口(秒)
+         */
+        public Builder windowSeconds(int windowSeconds) {
+
+            this.windowSeconds = Math.max(1, windowSeconds);
+            return this;
+        }
+
+        /**
+         * 窗口内请求数达到这个值才会计算错误率
+         */
+        public Builder minRequests(int minRequests) {
+
+            this.minRequests = minRequests;
+            return this;
+        }
+
+        /**
+         * 错误和慢请求占比达到这个值时熔断，0~1
+         */
+        public Builder failureRateThreshold(float failureRateThreshold) {
+
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * 耗时超过这个值的请求按失败统计
+         */
+        public Builder slowCallMillis(long slowCallMillis) {
+
+            this.slowCallMillis = slowCallMillis;
+            return this;
+        }
+
+        /**
+         * 熔断持续时间，过后进入半开状态
+         */
+        public Builder openMillis(long openMillis) {
+
+            this.openMillis = openMillis;
+            return this;
+        }
+
+        /**
+         * 半开状态同时放行的探测请求数，全部成功后恢复
+         */
+        public Builder halfOpenProbes(int halfOpenProbes) {
+
+            this.halfOpenProbes = Math.max(1, halfOpenProbes);
+            return this;
+        }
+
+        public CircuitBreakerIntercept build() {
+            return new CircuitBreakerIntercept(this);
+        }
+    }
+}
@@ -13,7 +13,9 @@ import okhttp3.Response;
  * author : taowang
  * date :2018/7/23
  * description:
+ * @deprecated 使用RequestDecorIntercept，公共参数只编码一次，不逐项复制原表单
  **/
+@Deprecated
 public class CommonParamIntercept implements Interceptor {
 
     public Map<String, String> commonParam;
@@ -53,7 +55,7 @@ public class CommonParamIntercept implements Interceptor {
 
                     bodyBuilder.addEncoded(entry.getKey(), entry.getValue());
                 }
-                request = request.newBuilder().post(formBody).build();
+                request = request.newBuilder().post(bodyBuilder.build()).build();
             }
 
         }
@@ -0,0 +1,184 @@
+package com.http.common.intercept;
+
+import com.http.util.ValidatorStore;
+
+import java.io.IOException;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * author : taowang
+ * date :2018/8/30
+ * description:条件请求，GET响应带ETag或Last-Modified时保存内容，再次请求时带上If-None-Match/If-Modified-Since，
+ * 服务端返回304时用保存的内容作为200响应，304带回的验证信息和响应头会更新到记录中。
+ * 不依赖Cache-Control，每次都会向服务端确认。
+ * 记录只按url区分，会话变化时需要清空(HttpDirector.clearSessionCache)，清空前发出的请求不会再写入
+ **/
+public class ConditionalCacheIntercept implements Interceptor {
+
+    /**
+     * 超过这个大小的响应不保存
+     */
+    private static final long DEFAULT_MAX_BODY_BYTES = 512 * 1024;
+    /**
+     * 不保存、也不用304更新的响应头，body保存的是解压后的完整内容
+     */
+    private static final String[] SKIPPED_HEADERS = {
+            "Content-Length", "Content-Encoding", "Transfer-Encoding", "Connection", "Set-Cookie"
+    };
+
+    private final ValidatorStore store;
+    private final long maxBodyBytes;
+
+    public ConditionalCacheIntercept(ValidatorStore store) {
+        this(store, DEFAULT_MAX_BODY_BYTES);
+    }
+
+    public ConditionalCacheIntercept(ValidatorStore store, long maxBodyBytes) {
+        this.store = store;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method())
+                || request.header("If-None-Match") != null || request.header("If-Modified-Since") != null) {
+            //调用方自己处理条件请求
+            return chain.proceed(request);
+        }
+        String url = request.url().toString();
+        int generation = store.generation();
+        ValidatorStore.Entry entry = store.get(url);
+        if (entry != null) {
+            Request.Builder builder = request.newBuilder();
+            if (entry.etag != null) {
+                builder.header("If-None-Match", entry.etag);
+            }
+            if (entry.lastModified != null) {
+                builder.header("If-Modified-Since", entry.lastModified);
+            }
+            store.onRequest();
+            Response response = chain.proceed(builder.build());
+            if (response.code() == 304) {
+                store.onHit(entry.body.length);
+                response.close();
+                ValidatorStore.Entry updated = update(entry, response.headers());
+                if (updated != entry) {
+                    store.put(url, updated, generation);
+                }
+                return fromEntry(response, updated);
+            }
+            return save(url, response, true, generation);
+        }
+        return save(url, chain.proceed(request), false, generation);
+    }
+
+    /**
+     * 用304的响应头更新记录，验证信息和其他响应头(Date除外)都没变化时返回原记录
+     */
+    private ValidatorStore.Entry update(ValidatorStore.Entry entry, Headers notModified) {
+        Headers.Builder builder = entry.headers != null ? entry.headers.newBuilder() : new Headers.Builder();
+        for (String name : notModified.names()) {
+            if (!isSkipped(name)) {
+                builder.removeAll(name);
+                for (String value : notModified.values(name)) {
+                    builder.add(name, value);
+                }
+            }
+        }
+        Headers headers = builder.build();
+        String etag = headers.get("ETag");
+        String lastModified = headers.get("Last-Modified");
+        if (equal(etag, entry.etag) && equal(lastModified, entry.lastModified) && entry.headers != null
+                && headers.newBuilder().removeAll("Date").build()
+                .equals(entry.headers.newBuilder().removeAll("Date").build())) {
+            return entry;
+        }
+        return new ValidatorStore.Entry(etag, lastModified, entry.contentType, headers, entry.body);
+    }
+
+    /**
+     * 保存的响应头加上内容，还原为200
+     */
+    private Response fromEntry(Response response, ValidatorStore.Entry entry) {
+        MediaType mediaType = entry.contentType != null ? MediaType.parse(entry.contentType) : null;
+        Response.Builder builder = response.newBuilder()
+                .code(200)
+                .message("OK");
+        if (entry.headers != null) {
+            builder.headers(entry.headers);
+        }
+        builder.removeHeader("Content-Encoding")
+                .header("Content-Length", String.valueOf(entry.body.length))
+                .body(ResponseBody.create(mediaType, entry.body));
+        if (entry.contentType != null) {
+            builder.header("Content-Type", entry.contentType);
+        }
+        return builder.build();
+    }
+
+    private static Headers storedHeaders(Headers headers) {
+        Headers.Builder builder = headers.newBuilder();
+        for (String name : SKIPPED_HEADERS) {
+            builder.removeAll(name);
+        }
+        return builder.build();
+    }
+
+    private static boolean isSkipped(String name) {
+        for (String skipped : SKIPPED_HEADERS) {
+            if (skipped.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * @param stored 之前是否保存过，服务端不再返回验证信息时删除旧记录
+     * @param generation 请求发出时记录的generation
+     */
+    private Response save(String url, Response response, boolean stored, int generation) throws IOException {
+        if (response.code() != 200 || response.body() == null || response.networkResponse() == null) {
+            return response;
+        }
+        String etag = response.header("ETag");
+        String lastModified = response.header("Last-Modified");
+        if (etag == null && lastModified == null) {
+            if (stored) {
+                store.remove(url);
+            }
+            return response;
+        }
+        String cacheControl = response.header("Cache-Control");
+        if (cacheControl != null && cacheControl.contains("no-store")) {
+            store.remove(url);
+            return response;
+        }
+        ResponseBody body = response.body();
+        //长度未知(chunked、gzip)时最多预读maxBodyBytes + 1字节，超出的响应原样交给调用方继续流式读取
+        if (body.contentLength() > maxBodyBytes || body.source().request(maxBodyBytes + 1)) {
+            store.remove(url);
+            return response;
+        }
+        //内容需要整体保存，已经全部在缓冲区中，读出后重新包装
+        MediaType mediaType = body.contentType();
+        byte[] bytes = body.bytes();
+        store.put(url, new ValidatorStore.Entry(etag, lastModified,
+                mediaType != null ? mediaType.toString() : null, storedHeaders(response.headers()), bytes),
+                generation);
+        return response.newBuilder()
+                .body(ResponseBody.create(mediaType, bytes))
+                .build();
+    }
+}
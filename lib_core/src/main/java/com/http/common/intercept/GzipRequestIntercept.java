@@ -0,0 +1,174 @@
+package com.http.common.intercept;
+
+import android.os.Debug;
+
+import com.http.common.HeaderCont;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * author : taowang
+ * date :2018/8/20
+ * description:请求体超过阈值时gzip压缩，压缩边写边发不会缓存整个请求体。
+ * 需要服务端支持Content-Encoding: gzip，单个接口可以通过HeaderCont.NO_COMPRESS关闭
+ **/
+public class GzipRequestIntercept implements Interceptor {
+
+    public long threshold;//超过这个字节数才压缩，长度未知的请求体总是压缩
+
+    private final AtomicLong compressCount = new AtomicLong();
+    private final AtomicLong originalBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong cpuNanos = new AtomicLong();
+
+    /**
+     * 线程CPU时间，测试中可以替换
+     */
+    CpuClock cpuClock = new CpuClock() {
+        @Override
+        public long threadCpuNanos() {
+            return Debug.threadCpuTimeNanos();
+        }
+    };
+
+    public GzipRequestIntercept(long threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header(HeaderCont.NO_COMPRESS) != null) {
+            return chain.proceed(request.newBuilder().removeHeader(HeaderCont.NO_COMPRESS).build());
+        }
+        RequestBody body = request.body();
+        if (body == null || request.header("Content-Encoding") != null || !shouldCompress(body)) {
+            return chain.proceed(request);
+        }
+        Request compressed = request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .removeHeader("Content-Length")
+                .method(request.method(), new GzipRequestBody(body))
+                .build();
+        return chain.proceed(compressed);
+    }
+
+    private boolean shouldCompress(RequestBody body) throws IOException {
+        MediaType contentType = body.contentType();
+        if (contentType != null && "multipart".equals(contentType.type())) {
+            //文件上传一般已经是压缩格式
+            return false;
+        }
+        long length = body.contentLength();
+        return length < 0 || length >= threshold;
+    }
+
+    public long compressCount() {
+        return compressCount.get();
+    }
+
+    /**
+     * 压缩率，压缩后字节数/原始字节数
+     */
+    public float compressionRatio() {
+        long original = originalBytes.get();
+        return original == 0 ? 1f : (float) compressedBytes.get() / original;
+    }
+
+    /**
+     * 节省的上行字节数
+     */
+    public long savedBytes() {
+        return originalBytes.get() - compressedBytes.get();
+    }
+
+    /**
+     * 压缩消耗的线程CPU时间(毫秒)，包括写入请求体本身
+     */
+    public long cpuMillis() {
+        return cpuNanos.get() / 1000000;
+    }
+
+    interface CpuClock {
+        long threadCpuNanos();
+    }
+
+    private final class GzipRequestBody extends RequestBody {
+        private final RequestBody delegate;
+
+        GzipRequestBody(RequestBody delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            //压缩后长度未知，使用chunked传输
+            return -1;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            long cpuStart = cpuClock.threadCpuNanos();
+            CountingSink compressedCounter = new CountingSink(sink);
+            GzipSink gzipSink = new GzipSink(compressedCounter);
+            CountingSink originalCounter = new CountingSink(gzipSink);
+            BufferedSink gzip = Okio.buffer(originalCounter);
+            delegate.writeTo(gzip);
+            gzip.close();
+
+            compressCount.incrementAndGet();
+            originalBytes.addAndGet(originalCounter.count);
+            compressedBytes.addAndGet(compressedCounter.count);
+            long cpuEnd = cpuClock.threadCpuNanos();
+            if (cpuStart >= 0 && cpuEnd >= cpuStart) {
+                cpuNanos.addAndGet(cpuEnd - cpuStart);
+            }
+        }
+    }
+
+    /**
+     * 统计写入字节数，close时不关闭外层的请求sink
+     */
+    private static final class CountingSink extends ForwardingSink {
+        long count;
+        private final boolean closeDelegate;
+
+        CountingSink(Sink delegate) {
+            super(delegate);
+            this.closeDelegate = !(delegate instanceof BufferedSink);
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            count += byteCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closeDelegate) {
+                super.close();
+            } else {
+                flush();
+            }
+        }
+    }
+}
@@ -11,7 +11,9 @@ import okhttp3.Response;
  * author : taowang
  * date :2018/7/23
  * description:
+ * @deprecated 使用RequestDecorIntercept，请求头只编码一次
  **/
+@Deprecated
 public class HeaderIntercept implements Interceptor {
 
     public Map<String, String> headers;
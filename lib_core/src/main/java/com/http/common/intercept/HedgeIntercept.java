@@ -0,0 +1,388 @@
+package com.http.common.intercept;
+
+import com.http.common.HeaderCont;
+import com.http.common.retry.RetryBudget;
+import com.http.util.NetworkMetricsListener;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * author : taowang
+ * date :2018/8/13
+ * description:对冲请求，只对通过HeaderCont.HEDGE标记的GET请求生效。
+ * 超过该host历史耗时的分位数仍未返回时再发一次，先成功返回的结果生效，另一个取消
+ **/
+public class HedgeIntercept implements Interceptor {
+
+    private static final int SAMPLE_SIZE = 64;
+    private static final int MIN_SAMPLES = 16;
+    private static final long POLL_MILLIS = 100;
+
+    private final float percentile;
+    private final long defaultDelayMillis;
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private final RetryBudget budget;
+
+    private volatile Call.Factory callFactory;
+
+    private final ConcurrentHashMap<String, LatencySamples> latencies = new ConcurrentHashMap<>();
+
+    private final AtomicLong hedgeableCount = new AtomicLong();
+    private final AtomicLong hedgeSentCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+
+    private HedgeIntercept(Builder builder) {
+        this.percentile = builder.percentile;
+        this.defaultDelayMillis = builder.defaultDelayMillis;
+        this.minDelayMillis = builder.minDelayMillis;
+        this.maxDelayMillis = builder.maxDelayMillis;
+        this.budget = new RetryBudget(builder.budgetRatio, builder.budgetReserve);
+    }
+
+    /**
+     * 真正发出请求的client，不能包含本拦截器，由HttpDirector在构造client时设置
+     * @param callFactory
+     */
+    public void setCallFactory(Call.Factory callFactory) {
+        this.callFactory = callFactory;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header(HeaderCont.HEDGE) == null) {
+            return chain.proceed(request);
+        }
+        request = request.newBuilder().removeHeader(HeaderCont.HEDGE).build();
+        if (callFactory == null || !"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+
+        hedgeableCount.incrementAndGet();
+        //外层请求不经过网络，耗时和流量由下面发出的请求统计
+        NetworkMetricsListener.skip(chain.call());
+        budget.onRequest();
+        String host = request.url().host();
+        HedgeState state = new HedgeState();
+        state.start(request, false);
+
+        Object result = poll(chain, state, hedgeDelay(host));
+        if (result == null && budget.tryAcquire()) {
+            hedgeSentCount.incrementAndGet();
+            state.start(request, true);
+        }
+        while (result == null) {
+            result = poll(chain, state, POLL_MILLIS);
+        }
+
+        if (result instanceof Attempt) {
+            Attempt attempt = (Attempt) result;
+            if (attempt.hedge) {
+                hedgeWinCount.incrementAndGet();
+            }
+            getSamples(host).add(attempt.tookMillis);
+            return attempt.response;
+        }
+        throw (IOException) result;
+    }
+
+    /**
+     * 等待结果，外层请求被取消时同时取消正在进行的请求
+     */
+    private Object poll(Chain chain, HedgeState state, long timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            while (true) {
+                if (chain.call().isCanceled()) {
+                    state.cancelAll();
+                    throw new IOException("Canceled");
+                }
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return null;
+                }
+                Object result = state.results.poll(Math.min(remaining, POLL_MILLIS), TimeUnit.MILLISECONDS);
+                if (result != null) {
+                    return result;
+                }
+            }
+        } catch (InterruptedException e) {
+            state.cancelAll();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("hedge interrupted");
+        }
+    }
+
+    private long hedgeDelay(String host) {
+        long delay = getSamples(host).percentile(percentile);
+        if (delay < 0) {
+            delay = defaultDelayMillis;
+        }
+        return Math.max(minDelayMillis, Math.min(maxDelayMillis, delay));
+    }
+
+    private LatencySamples getSamples(String host) {
+        LatencySamples samples = latencies.get(host);
+        if (samples == null) {
+            LatencySamples created = new LatencySamples();
+            samples = latencies.putIfAbsent(host, created);
+            if (samples == null) {
+                samples = created;
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * 可以对冲的请求数
+     */
+    public long hedgeableCount() {
+        return hedgeableCount.get();
+    }
+
+    /**
+     * 实际发出的对冲请求数
+     */
+    public long hedgeSentCount() {
+        return hedgeSentCount.get();
+    }
+
+    /**
+     * 对冲请求先返回的次数
+     */
+    public long hedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    /**
+     * 因预算不足没有发出的对冲请求数
+     */
+    public long budgetRejectedCount() {
+        return budget.rejectedCount();
+    }
+
+    /**
+     * 一次对冲中的全部请求，第一个成功(2xx)的结果生效，其余的取消并关闭。
+     * 失败的响应(如5xx)先保留，全部请求都结束仍没有成功时才返回它
+     */
+    private final class HedgeState {
+        final LinkedBlockingQueue<Object> results = new LinkedBlockingQueue<>();
+        private final Call[] calls = new Call[2];
+        private int started;
+        private int completed;
+        private boolean decided;
+        private Attempt fallback;
+
+        void start(Request request, final boolean hedge) {
+            final Call call = callFactory.newCall(request);
+            final long start = System.nanoTime();
+            synchronized (this) {
+                if (decided) {
+                    //已经有结果了，不再发出
+                    return;
+                }
+                calls[started++] = call;
+            }
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    Object result;
+                    synchronized (HedgeState.this) {
+                        completed++;
+                        if (decided || completed < started) {
+                            //另一个请求还在进行
+                            return;
+                        }
+                        decided = true;
+                        result = fallback != null ? fallback : e;
+                        fallback = null;
+                    }
+                    results.offer(result);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    Attempt attempt = new Attempt(response, hedge,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    Attempt loser = null;
+                    Attempt result = null;
+                    synchronized (HedgeState.this) {
+                        completed++;
+                        if (decided) {
+                            loser = attempt;
+                        } else if (response.isSuccessful()) {
+                            decided = true;
+                            result = attempt;
+                            loser = fallback;
+                            fallback = null;
+                        } else {
+                            //失败的响应不能抢先，等另一个请求的结果
+                            if (fallback == null) {
+                                fallback = attempt;
+                            } else {
+                                loser = attempt;
+                            }
+                            if (completed >= started) {
+                                decided = true;
+                                result = fallback;
+                                fallback = null;
+                            }
+                        }
+                    }
+                    if (loser != null) {
+                        loser.response.close();
+                    }
+                    if (result != null) {
+                        cancelOthers(call);
+                        results.offer(result);
+                    }
+                }
+            });
+        }
+
+        synchronized void cancelOthers(Call winner) {
+            for (int i = 0; i < started; i++) {
+                if (calls[i] != winner) {
+                    calls[i].cancel();
+                }
+            }
+        }
+
+        void cancelAll() {
+            Attempt held;
+            synchronized (this) {
+                decided = true;
+                for (int i = 0; i < started; i++) {
+                    calls[i].cancel();
+                }
+                held = fallback;
+                fallback = null;
+            }
+            if (held != null) {
+                held.response.close();
+            }
+            Object result;
+            while ((result = results.poll()) != null) {
+                if (result instanceof Attempt) {
+                    ((Attempt) result).response.close();
+                }
+            }
+        }
+    }
+
+    private static final class Attempt {
+        final Response response;
+        final boolean hedge;
+        final long tookMillis;
+
+        Attempt(Response response, boolean hedge, long tookMillis) {
+            this.response = response;
+            this.hedge = hedge;
+            this.tookMillis = tookMillis;
+        }
+    }
+
+    /**
+     * 最近的耗时样本，环形数组
+     */
+    private static final class LatencySamples {
+        private final long[] samples = new long[SAMPLE_SIZE];
+        private int count;
+        private int next;
+
+        synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % SAMPLE_SIZE;
+            if (count < SAMPLE_SIZE) {
+                count++;
+            }
+        }
+
+        /**
+         * @return 样本不足时返回-1
+         */
+        synchronized long percentile(float p) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = Math.min(count - 1, (int) Math.ceil(p * count) - 1);
+            return sorted[Math.max(0, index)];
+        }
+    }
+
+    /**
+     * 构造者对冲请求
+     */
+    public static class Builder {
+        private float percentile = 0.95f;
+        private long defaultDelayMillis = 1000;
+        private long minDelayMillis = 50;
+        private long maxDelayMillis = 5000;
+        private float budgetRatio = 0.05f;
+        private int budgetReserve = 5;
+
+        /**
+         * 超过这个分位数的耗时后发出对冲请求，0~1
+         */
+        public Builder percentile(float percentile) {
+
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * 样本不足时的等待时间
+         */
+        public Builder defaultDelayMillis(long defaultDelayMillis) {
+
+            this.defaultDelayMillis = defaultDelayMillis;
+            return this;
+        }
+
+        public Builder minDelayMillis(long minDelayMillis) {
+
+            this.minDelayMillis = minDelayMillis;
+            return this;
+        }
+
+        public Builder maxDelayMillis(long maxDelayMillis) {
+
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * 对冲请求最多占可对冲请求的比例
+         */
+        public Builder budgetRatio(float budgetRatio) {
+
+            this.budgetRatio = budgetRatio;
+            return this;
+        }
+
+        public Builder budgetReserve(int budgetReserve) {
+
+            this.budgetReserve = budgetReserve;
+            return this;
+        }
+
+        public HedgeIntercept build() {
+            return new HedgeIntercept(this);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.http.common.intercept;
+
+import com.http.common.HeaderCont;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * author : taowang
+ * date :2018/8/29
+ * description:网络拦截器，放在最后。对应功能没有配置时HeaderCont的标记没有拦截器读取，
+ * 在这里统一移除，不会发到服务端
+ **/
+public class MarkerHeaderIntercept implements Interceptor {
+
+    private static final String[] MARKERS = {
+            HeaderCont.CACHE_MAX_AGE, HeaderCont.RETRY_POLICY, HeaderCont.HEDGE, HeaderCont.PRIORITY,
+            HeaderCont.NO_COMPRESS, HeaderCont.WIRE_FORMAT, HeaderCont.NO_SESSION_REFRESH,
+            HeaderCont.OUTBOX, HeaderCont.BATCH
+    };
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Request.Builder builder = null;
+        for (String marker : MARKERS) {
+            if (request.header(marker) != null) {
+                if (builder == null) {
+                    builder = request.newBuilder();
+                }
+                builder.removeHeader(marker);
+            }
+        }
+        return chain.proceed(builder != null ? builder.build() : request);
+    }
+}
@@ -0,0 +1,89 @@
+package com.http.common.intercept;
+
+import com.http.util.NetworkMonitor;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * author : taowang
+ * date :2018/8/7
+ * description:离线/出错时使用磁盘缓存(stale-if-error)，只处理GET请求。
+ * 缓存按url区分，不区分账号，退出登录或切换账号时需要调用HttpDirector.clearSessionCache
+ **/
+public class OfflineCacheIntercept implements Interceptor {
+
+    private static final int CODE_UNSATISFIABLE = 504;//only-if-cached未命中时OkHttp返回504
+
+    public NetworkMonitor networkMonitor;
+    public int maxStale;//允许使用的过期缓存时长(秒)
+
+    public OfflineCacheIntercept(NetworkMonitor networkMonitor, int maxStale) {
+        this.networkMonitor = networkMonitor;
+        this.maxStale = maxStale;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+
+        if (networkMonitor != null && !networkMonitor.isConnected()) {
+            //没有网络，直接读缓存
+            return chain.proceed(staleRequest(request));
+        }
+
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            Response cached = proceedCache(chain, request);
+            if (cached != null) {
+                return cached;
+            }
+            throw e;
+        }
+
+        if (response.code() >= 500) {
+            Response cached = proceedCache(chain, request);
+            if (cached != null) {
+                response.close();
+                return cached;
+            }
+        }
+        return response;
+    }
+
+    /**
+     * 仅从缓存中读取
+     * @return 缓存未命中返回null
+     */
+    private Response proceedCache(Chain chain, Request request) {
+        try {
+            Response cached = chain.proceed(staleRequest(request));
+            if (cached.code() == CODE_UNSATISFIABLE) {
+                cached.close();
+                return null;
+            }
+            return cached;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Request staleRequest(Request request) {
+        return request.newBuilder()
+                .cacheControl(new CacheControl.Builder()
+                        .onlyIfCached()
+                        .maxStale(maxStale, TimeUnit.SECONDS)
+                        .build())
+                .build();
+    }
+}
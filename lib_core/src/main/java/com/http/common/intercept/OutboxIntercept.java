@@ -0,0 +1,107 @@
+package com.http.common.intercept;
+
+import android.text.TextUtils;
+
+import com.http.common.HeaderCont;
+import com.http.exception.QueuedOfflineException;
+import com.http.outbox.RequestOutbox;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * author : taowang
+ * date :2018/9/1
+ * description:标记了HeaderCont.OUTBOX的写请求，离线或发送失败时保存到RequestOutbox，
+ * 以QueuedOfflineException结束本次调用，联网后自动重放。
+ * 放在最外层，重试都失败后才入队；保存的是公共参数处理之前的请求，重放时重新加上token。
+ * 同一resourceKey的在线写请求逐个发送，检查队列、发送和入队之间不会被同资源的其他请求插入
+ **/
+public class OutboxIntercept implements Interceptor {
+
+    private final RequestOutbox outbox;
+    /**
+     * 正在发送的resourceKey，没有请求使用时移除
+     */
+    private final Map<String, KeyLock> keyLocks = new HashMap<>();
+
+    public OutboxIntercept(RequestOutbox outbox) {
+        this.outbox = outbox;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String resourceKey = request.header(HeaderCont.OUTBOX);
+        if (resourceKey == null) {
+            return chain.proceed(request);
+        }
+        Request.Builder builder = request.newBuilder().removeHeader(HeaderCont.OUTBOX);
+        if ("GET".equals(request.method()) || "HEAD".equals(request.method())) {
+            //读请求离线时没有意义
+            return chain.proceed(builder.build());
+        }
+        if (TextUtils.isEmpty(resourceKey.trim())) {
+            resourceKey = request.url().encodedPath();
+        }
+        String idempotencyKey = request.header(RequestOutbox.HEADER_IDEMPOTENCY_KEY);
+        if (idempotencyKey == null) {
+            idempotencyKey = RequestOutbox.newIdempotencyKey();
+            builder.header(RequestOutbox.HEADER_IDEMPOTENCY_KEY, idempotencyKey);
+        }
+        request = builder.build();
+
+        KeyLock keyLock = acquire(resourceKey);
+        try {
+            synchronized (keyLock) {
+                if (!outbox.isConnected() || outbox.hasUnsent(resourceKey)) {
+                    //离线，或者同一资源还有排队的请求，不能越过它们先发
+                    outbox.enqueue(request, resourceKey, idempotencyKey);
+                    throw new QueuedOfflineException(idempotencyKey);
+                }
+                try {
+                    return chain.proceed(request);
+                } catch (IOException e) {
+                    if (chain.call().isCanceled()) {
+                        //调用方主动取消的不入队
+                        throw e;
+                    }
+                    //服务端可能已经收到，重放时靠Idempotency-Key去重
+                    outbox.enqueue(request, resourceKey, idempotencyKey);
+                    throw new QueuedOfflineException(idempotencyKey);
+                }
+            }
+        } finally {
+            release(resourceKey, keyLock);
+        }
+    }
+
+    private KeyLock acquire(String resourceKey) {
+        synchronized (keyLocks) {
+            KeyLock keyLock = keyLocks.get(resourceKey);
+            if (keyLock == null) {
+                keyLock = new KeyLock();
+                keyLocks.put(resourceKey, keyLock);
+            }
+            keyLock.users++;
+            return keyLock;
+        }
+    }
+
+    private void release(String resourceKey, KeyLock keyLock) {
+        synchronized (keyLocks) {
+            if (--keyLock.users == 0) {
+                keyLocks.remove(resourceKey);
+            }
+        }
+    }
+
+    private static final class KeyLock {
+        int users;
+    }
+}
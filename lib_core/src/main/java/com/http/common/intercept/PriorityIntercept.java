@@ -0,0 +1,140 @@
+package com.http.common.intercept;
+
+import com.http.common.HeaderCont;
+import com.http.util.RequestLanes;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Observable;
+import io.reactivex.Observer;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * author : taowang
+ * date :2018/8/15
+ * description:按HeaderCont.PRIORITY把请求分到不同的优先级通道排队，未标记的请求进入normal通道。
+ * 通道在响应体关闭时才释放，读取大响应的时间也计入并发。
+ * 通过inLane订阅的请求固定进入指定通道，忽略请求头
+ **/
+public class PriorityIntercept implements Interceptor {
+
+    /**
+     * 当前线程上正在订阅的请求指定的通道
+     */
+    private static final ThreadLocal<Integer> SCOPED_LANE = new ThreadLocal<>();
+
+    public RequestLanes lanes;
+
+    public PriorityIntercept(RequestLanes lanes) {
+        this.lanes = lanes;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String priority = request.header(HeaderCont.PRIORITY);
+        if (priority != null) {
+            request = request.newBuilder().removeHeader(HeaderCont.PRIORITY).build();
+        }
+        Integer scoped = SCOPED_LANE.get();
+        int lane = scoped != null ? scoped : RequestLanes.laneOf(priority);
+        lanes.acquire(lane, chain.call());
+        Response response = null;
+        try {
+            response = chain.proceed(request);
+        } finally {
+            if (response == null || response.body() == null) {
+                lanes.release(lane);
+            }
+        }
+        if (response.body() == null) {
+            return response;
+        }
+        return response.newBuilder()
+                .body(new LaneBody(response.body(), lanes, lane))
+                .build();
+    }
+
+    /**
+     * 订阅期间发出的请求都进入指定通道，例如预加载固定使用prefetch通道。
+     * Retrofit的Rx适配器在订阅线程上同步执行Call，需要在subscribeOn之前调用
+     * @param lane RequestLanes中的通道
+     * @param upstream Retrofit返回的Observable
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable<T> inLane(final int lane, final Observable<T> upstream) {
+        return new Observable<T>() {
+            @Override
+            protected void subscribeActual(Observer<? super T> observer) {
+                Integer previous = SCOPED_LANE.get();
+                SCOPED_LANE.set(lane);
+                try {
+                    upstream.subscribe(observer);
+                } finally {
+                    if (previous != null) {
+                        SCOPED_LANE.set(previous);
+                    } else {
+                        SCOPED_LANE.remove();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * 当前线程上通过inLane指定的通道，切换线程前取出后重新指定
+     * @return 没有指定时返回null
+     */
+    public static Integer scopedLane() {
+        return SCOPED_LANE.get();
+    }
+
+    /**
+     * 关闭时释放通道，只释放一次
+     */
+    private static final class LaneBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        LaneBody(ResponseBody delegate, final RequestLanes lanes, final int lane) {
+            this.delegate = delegate;
+            final AtomicBoolean released = new AtomicBoolean();
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (released.compareAndSet(false, true)) {
+                            lanes.release(lane);
+                        }
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
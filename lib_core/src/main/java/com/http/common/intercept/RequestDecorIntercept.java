@@ -0,0 +1,342 @@
+package com.http.common.intercept;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.FormBody;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+
+/**
+ * author : taowang
+ * date :2018/8/22
+ * description:公共请求头和公共参数，替代HeaderIntercept和CommonParamIntercept。
+ * 固定的头和参数在创建时编码一次，请求时直接拼接：GET追加到query，表单追加到body末尾，
+ * json插入到最外层对象中，multipart追加为表单字段；token等会变化的值通过ValueSupplier每次请求时获取。
+ * 与原来的CommonParamIntercept一致，DELETE、HEAD等其他没有body的请求不加公共参数，
+ * 其他类型的body(文件流、纯文本等)也不加
+ **/
+public class RequestDecorIntercept implements Interceptor {
+
+    /**
+     * 动态值，例如会刷新的token，返回null时不添加
+     */
+    public interface ValueSupplier {
+        String get();
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Gson GSON = new Gson();
+
+    private final String[] headerNamesAndValues;
+    private final String[] dynamicHeaderNames;
+    private final ValueSupplier[] dynamicHeaderSuppliers;
+    private final String[] dynamicParamNames;
+    private final ValueSupplier[] dynamicParamSuppliers;
+    private final String[] paramNamesAndValues;
+
+    /**
+     * 预编码的query，例如 a=1&b=2
+     */
+    private final String encodedQuery;
+    /**
+     * 预编码的表单，格式同query
+     */
+    private final byte[] encodedForm;
+    /**
+     * 预编码的json字段，例如 "a":"1","b":"2"
+     */
+    private final byte[] encodedJsonFields;
+
+    public RequestDecorIntercept(Map<String, String> headers, Map<String, String> params,
+                                 Map<String, ValueSupplier> dynamicHeaders, Map<String, ValueSupplier> dynamicParams) {
+        List<String> namesAndValues = new ArrayList<>();
+        if (headers != null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                namesAndValues.add(entry.getKey());
+                namesAndValues.add(entry.getValue());
+            }
+        }
+        headerNamesAndValues = namesAndValues.toArray(new String[namesAndValues.size()]);
+
+        dynamicHeaderNames = dynamicHeaders == null ? new String[0]
+                : dynamicHeaders.keySet().toArray(new String[dynamicHeaders.size()]);
+        dynamicHeaderSuppliers = dynamicHeaders == null ? new ValueSupplier[0]
+                : dynamicHeaders.values().toArray(new ValueSupplier[dynamicHeaders.size()]);
+        dynamicParamNames = dynamicParams == null ? new String[0]
+                : dynamicParams.keySet().toArray(new String[dynamicParams.size()]);
+        dynamicParamSuppliers = dynamicParams == null ? new ValueSupplier[0]
+                : dynamicParams.values().toArray(new ValueSupplier[dynamicParams.size()]);
+
+        List<String> paramList = new ArrayList<>();
+        if (params != null) {
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                paramList.add(entry.getKey());
+                paramList.add(entry.getValue());
+            }
+        }
+        paramNamesAndValues = paramList.toArray(new String[paramList.size()]);
+
+        if (params != null && !params.isEmpty()) {
+            encodedQuery = encodeQuery(params);
+            encodedForm = encodeForm(params);
+            String json = GSON.toJson(params);
+            encodedJsonFields = json.substring(1, json.length() - 1).getBytes(UTF8);
+        } else {
+            encodedQuery = null;
+            encodedForm = null;
+            encodedJsonFields = null;
+        }
+    }
+
+    private static String encodeQuery(Map<String, String> params) {
+        HttpUrl.Builder builder = new HttpUrl.Builder().scheme("http").host("localhost");
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            builder.addQueryParameter(entry.getKey(), entry.getValue());
+        }
+        return builder.build().encodedQuery();
+    }
+
+    private static byte[] encodeForm(Map<String, String> params) {
+        FormBody.Builder builder = new FormBody.Builder();
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            builder.add(entry.getKey(), entry.getValue());
+        }
+        Buffer buffer = new Buffer();
+        try {
+            builder.build().writeTo(buffer);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return buffer.readByteArray();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Request.Builder builder = null;
+
+        if (headerNamesAndValues.length > 0 || dynamicHeaderNames.length > 0) {
+            builder = request.newBuilder();
+            for (int i = 0; i < headerNamesAndValues.length; i += 2) {
+                builder.addHeader(headerNamesAndValues[i], headerNamesAndValues[i + 1]);
+            }
+            for (int i = 0; i < dynamicHeaderNames.length; i++) {
+                String value = dynamicHeaderSuppliers[i].get();
+                if (value != null) {
+                    builder.header(dynamicHeaderNames[i], value);
+                }
+            }
+        }
+
+        if (encodedQuery != null || dynamicParamNames.length > 0) {
+            RequestBody body = request.body();
+            if (body == null) {
+                if ("GET".equals(request.method())) {
+                    builder = builder != null ? builder : request.newBuilder();
+                    builder.url(appendQuery(request.url()));
+                }
+            } else if (body instanceof FormBody) {
+                builder = builder != null ? builder : request.newBuilder();
+                builder.method(request.method(), new AppendedFormBody((FormBody) body, formParams()));
+            } else if (body instanceof MultipartBody) {
+                builder = builder != null ? builder : request.newBuilder();
+                builder.method(request.method(), appendParts((MultipartBody) body));
+            } else if (isJson(body.contentType())) {
+                builder = builder != null ? builder : request.newBuilder();
+                builder.method(request.method(), spliceJson(body));
+            }
+        }
+
+        return chain.proceed(builder != null ? builder.build() : request);
+    }
+
+    private HttpUrl appendQuery(HttpUrl url) {
+        StringBuilder query = new StringBuilder();
+        String original = url.encodedQuery();
+        if (original != null && original.length() > 0) {
+            query.append(original);
+        }
+        if (encodedQuery != null) {
+            appendSeparator(query).append(encodedQuery);
+        }
+        HttpUrl.Builder builder = url.newBuilder().encodedQuery(query.length() > 0 ? query.toString() : null);
+        for (int i = 0; i < dynamicParamNames.length; i++) {
+            String value = dynamicParamSuppliers[i].get();
+            if (value != null) {
+                builder.addQueryParameter(dynamicParamNames[i], value);
+            }
+        }
+        return builder.build();
+    }
+
+    private static StringBuilder appendSeparator(StringBuilder sb) {
+        if (sb.length() > 0) {
+            sb.append('&');
+        }
+        return sb;
+    }
+
+    /**
+     * 需要追加到表单末尾的字节，不含开头的&
+     */
+    private byte[] formParams() {
+        if (dynamicParamNames.length == 0) {
+            return encodedForm;
+        }
+        Buffer buffer = new Buffer();
+        if (encodedForm != null) {
+            buffer.write(encodedForm);
+        }
+        FormBody.Builder dynamic = new FormBody.Builder();
+        boolean hasDynamic = false;
+        for (int i = 0; i < dynamicParamNames.length; i++) {
+            String value = dynamicParamSuppliers[i].get();
+            if (value != null) {
+                dynamic.add(dynamicParamNames[i], value);
+                hasDynamic = true;
+            }
+        }
+        if (hasDynamic) {
+            if (buffer.size() > 0) {
+                buffer.writeByte('&');
+            }
+            try {
+                dynamic.build().writeTo(buffer);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return buffer.readByteArray();
+    }
+
+    /**
+     * 原有的part不复制，公共参数作为表单字段加在后面，boundary不变
+     */
+    private MultipartBody appendParts(MultipartBody body) {
+        MultipartBody.Builder builder = new MultipartBody.Builder(body.boundary()).setType(body.type());
+        for (MultipartBody.Part part : body.parts()) {
+            builder.addPart(part);
+        }
+        for (int i = 0; i < paramNamesAndValues.length; i += 2) {
+            builder.addFormDataPart(paramNamesAndValues[i], paramNamesAndValues[i + 1]);
+        }
+        for (int i = 0; i < dynamicParamNames.length; i++) {
+            String value = dynamicParamSuppliers[i].get();
+            if (value != null) {
+                builder.addFormDataPart(dynamicParamNames[i], value);
+            }
+        }
+        return builder.build();
+    }
+
+    private static boolean isJson(MediaType contentType) {
+        return contentType != null && contentType.subtype().toLowerCase().contains("json");
+    }
+
+    /**
+     * 把公共参数插入到最外层json对象的末尾，body不是json对象时原样返回
+     */
+    private RequestBody spliceJson(RequestBody body) throws IOException {
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        byte[] json = buffer.readByteArray();
+
+        int start = 0;
+        int end = json.length - 1;
+        while (start <= end && isWhitespace(json[start])) {
+            start++;
+        }
+        while (end >= start && isWhitespace(json[end])) {
+            end--;
+        }
+        if (start >= end || json[start] != '{' || json[end] != '}') {
+            return RequestBody.create(body.contentType(), json);
+        }
+        boolean empty = true;
+        for (int i = start + 1; i < end; i++) {
+            if (!isWhitespace(json[i])) {
+                empty = false;
+                break;
+            }
+        }
+
+        Buffer out = new Buffer();
+        out.write(json, 0, end);
+        boolean needComma = !empty;
+        if (encodedJsonFields != null) {
+            if (needComma) {
+                out.writeByte(',');
+            }
+            out.write(encodedJsonFields);
+            needComma = true;
+        }
+        for (int i = 0; i < dynamicParamNames.length; i++) {
+            String value = dynamicParamSuppliers[i].get();
+            if (value != null) {
+                if (needComma) {
+                    out.writeByte(',');
+                }
+                out.writeUtf8(GSON.toJson(dynamicParamNames[i])).writeByte(':').writeUtf8(GSON.toJson(value));
+                needComma = true;
+            }
+        }
+        out.write(json, end, json.length - end);
+        return RequestBody.create(body.contentType(), out.readByteString());
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * 原表单后面直接拼接预编码的参数，不逐项复制原表单
+     */
+    static final class AppendedFormBody extends RequestBody {
+        private final FormBody original;
+        private final byte[] extra;
+
+        AppendedFormBody(FormBody original, byte[] extra) {
+            this.original = original;
+            this.extra = extra;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return original.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            long length = original.contentLength();
+            if (extra == null || extra.length == 0) {
+                return length;
+            }
+            return length + (length > 0 ? 1 : 0) + extra.length;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            original.writeTo(sink);
+            if (extra == null || extra.length == 0) {
+                return;
+            }
+            if (original.size() > 0) {
+                sink.writeByte('&');
+            }
+            sink.write(extra);
+        }
+    }
+}
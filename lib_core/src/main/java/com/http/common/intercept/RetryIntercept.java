@@ -1,6 +1,14 @@
 package com.http.common.intercept;
 
+import com.http.common.HeaderCont;
+import com.http.common.retry.RetryBudget;
+import com.http.common.retry.RetryPolicy;
+import com.http.exception.CircuitOpenException;
+
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Map;
 
 import okhttp3.Interceptor;
 import okhttp3.Request;
@@ -9,27 +17,99 @@ import okhttp3.Response;
 /**
  * author : taowang
  * date :2018/7/23
- * description:
+ * description:按重试策略重试，单个接口可以通过HeaderCont.RETRY_POLICY指定策略名称，
+ * 每次调用的重试次数是独立计算的
  **/
 public class RetryIntercept implements Interceptor {
 
-    public int maxRetry;//最大重试次数
-    private int retryNum = 0;//假如设置为3次重试的话，则最大可能请求4次（默认1次+3次重试）
+    public RetryPolicy defaultPolicy;
+    public Map<String, RetryPolicy> policies;
+    public RetryBudget budget;
 
+    /**
+     * @param maxRetry 最大重试次数，假如设置为3次重试的话，则最大可能请求4次（默认1次+3次重试）
+     */
     public RetryIntercept(int maxRetry) {
-        this.maxRetry = maxRetry;
+        this(new RetryPolicy.Builder().maxRetries(maxRetry).build(), null, RetryBudget.createDefault());
+    }
+
+    public RetryIntercept(RetryPolicy defaultPolicy, Map<String, RetryPolicy> policies, RetryBudget budget) {
+        this.defaultPolicy = defaultPolicy == null ? RetryPolicy.NONE : defaultPolicy;
+        this.policies = policies == null ? Collections.<String, RetryPolicy>emptyMap() : policies;
+        this.budget = budget;
     }
 
     @Override
     public Response intercept(Chain chain) throws IOException {
         Request request = chain.request();
-        System.out.println("retryNum=" + retryNum);
-        Response response = chain.proceed(request);
-        while (!response.isSuccessful() && retryNum < maxRetry) {
-            retryNum++;
-            System.out.println("retryNum=" + retryNum);
-            response = chain.proceed(request);
+        RetryPolicy policy = defaultPolicy;
+        String policyName = request.header(HeaderCont.RETRY_POLICY);
+        if (policyName != null) {
+            request = request.newBuilder().removeHeader(HeaderCont.RETRY_POLICY).build();
+            if (HeaderCont.RETRY_POLICY_NONE.equals(policyName)) {
+                policy = RetryPolicy.NONE;
+            } else if (policies.containsKey(policyName)) {
+                policy = policies.get(policyName);
+            }
+        }
+        if (budget != null) {
+            budget.onRequest();
+        }
+
+        int attempt = 0;
+        while (true) {
+            Response response = null;
+            IOException error = null;
+            try {
+                response = chain.proceed(request);
+            } catch (CircuitOpenException e) {
+                //熔断中，重试没有意义
+                throw e;
+            } catch (IOException e) {
+                error = e;
+            }
+
+            if (!retryable(chain, policy, request, attempt, response)) {
+                return result(response, error);
+            }
+            long delay = policy.delayMillis(attempt, response);
+            if (delay < 0 || (budget != null && !budget.tryAcquire())) {
+                return result(response, error);
+            }
+            if (response != null) {
+                response.close();
+            }
+            sleep(delay);
+            attempt++;
+        }
+    }
+
+    private boolean retryable(Chain chain, RetryPolicy policy, Request request, int attempt, Response response) {
+        if (chain.call().isCanceled()) {
+            return false;
+        }
+        if (response != null && response.isSuccessful()) {
+            return false;
+        }
+        return policy.canRetry(request, attempt) && policy.shouldRetry(response);
+    }
+
+    private static Response result(Response response, IOException error) throws IOException {
+        if (error != null) {
+            throw error;
         }
         return response;
     }
-}
\ No newline at end of file
+
+    private static void sleep(long delay) throws InterruptedIOException {
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("retry interrupted");
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.http.common.intercept;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.http.common.HeaderCont;
+import com.http.common.SessionOutCallback;
+import com.http.common.SessionRefreshCallback;
+import com.http.exception.ExceptionCont;
+import com.http.gson.MsgPackReader;
+import com.http.util.HttpDirector;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * author : taowang
+ * date :2018/8/31
+ * description:会话过期时只刷新一次。第一个收到ExceptionCont.SIGN_OUT的请求通过SessionRefreshCallback刷新，
+ * 刷新期间新发出的请求和同样掉线的请求挂起等待，刷新成功后重新发出。
+ * 需要放在公共请求头之前，重新发出时才会取到新的token；放在PriorityIntercept之外，
+ * 挂起的请求不占用RequestLanes的通道，刷新用的请求总能拿到通道；
+ * 挂起的请求数和等待时间有上限，超出后按原来的掉线流程处理
+ **/
+public class SessionRefreshIntercept implements Interceptor {
+
+    private static final int DEFAULT_MAX_PARKED = 32;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 15000;
+    /**
+     * 刷新失败后这段时间内不再刷新，直接走掉线流程
+     */
+    private static final long FAILURE_COOLDOWN_MILLIS = 5000;
+    /**
+     * 只读取响应开头的这些字节查找code
+     */
+    private static final long PEEK_BYTES = 8 * 1024;
+
+    private final int maxParked;
+    private final long timeoutMillis;
+
+    private final Object lock = new Object();
+    /**
+     * 每完成一次刷新加1，请求发出时记下，用于判断掉线后是否已经有人刷新过
+     */
+    private int generation;
+    private boolean refreshing;
+    private boolean lastRefreshOk = true;
+    private long lastFailureAt;
+    private int parked;
+
+    public SessionRefreshIntercept() {
+        this(DEFAULT_MAX_PARKED, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param maxParked 最多挂起的请求数
+     * @param timeoutMillis 刷新和挂起等待的最长时间
+     */
+    public SessionRefreshIntercept(int maxParked, long timeoutMillis) {
+        this.maxParked = maxParked;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header(HeaderCont.NO_SESSION_REFRESH) != null) {
+            return chain.proceed(request.newBuilder().removeHeader(HeaderCont.NO_SESSION_REFRESH).build());
+        }
+
+        //正在刷新时先等待，避免带着旧的token发出
+        int sentGeneration = awaitRefresh();
+        Response response = chain.proceed(request);
+        if (!isSignOut(response)) {
+            return response;
+        }
+        SessionOutCallback callback = HttpDirector.getInstance().getMmSessionOutCallback();
+        if (!(callback instanceof SessionRefreshCallback)) {
+            return response;
+        }
+        //刷新期间不再持有连接和通道，刷新失败时返回读到内存中的掉线响应
+        response = buffer(response);
+        if (!refresh((SessionRefreshCallback) callback, sentGeneration)) {
+            return response;
+        }
+        //重新经过后面的拦截器，公共请求头会取新的token
+        return chain.proceed(request);
+    }
+
+    /**
+     * 有刷新在进行时挂起，直到刷新结束、超时或挂起数已满
+     * @return 当前的刷新次数
+     */
+    private int awaitRefresh() throws IOException {
+        synchronized (lock) {
+            if (refreshing && parked < maxParked) {
+                parked++;
+                try {
+                    waitForRefresh();
+                } finally {
+                    parked--;
+                }
+            }
+            return generation;
+        }
+    }
+
+    /**
+     * 掉线后刷新会话，已有刷新在进行时等待它的结果
+     * @param sentGeneration 请求发出时的刷新次数
+     * @return 会话已刷新，可以重新发出请求
+     */
+    private boolean refresh(SessionRefreshCallback callback, int sentGeneration) throws IOException {
+        synchronized (lock) {
+            if (generation != sentGeneration) {
+                //请求发出后已经刷新过
+                return lastRefreshOk;
+            }
+            if (refreshing) {
+                if (parked >= maxParked) {
+                    return false;
+                }
+                parked++;
+                try {
+                    waitForRefresh();
+                } finally {
+                    parked--;
+                }
+                return generation != sentGeneration && lastRefreshOk;
+            }
+            if (!lastRefreshOk && now() - lastFailureAt < FAILURE_COOLDOWN_MILLIS) {
+                return false;
+            }
+            refreshing = true;
+        }
+
+        boolean ok = false;
+        try {
+            ok = callback.refreshSession();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (lock) {
+                generation++;
+                refreshing = false;
+                lastRefreshOk = ok;
+                if (!ok) {
+                    lastFailureAt = now();
+                }
+                lock.notifyAll();
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * 需要持有lock
+     */
+    private void waitForRefresh() throws IOException {
+        long deadline = now() + timeoutMillis;
+        while (refreshing) {
+            long remaining = deadline - now();
+            if (remaining <= 0) {
+                return;
+            }
+            try {
+                lock.wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for session refresh");
+            }
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * 掉线的响应体很小，读到内存后关闭原来的响应
+     */
+    private static Response buffer(Response response) throws IOException {
+        ResponseBody body = response.body();
+        byte[] bytes = body.bytes();
+        return response.newBuilder().body(ResponseBody.create(body.contentType(), bytes)).build();
+    }
+
+    /**
+     * 读取响应开头的code判断是否掉线，不消耗响应体
+     */
+    private boolean isSignOut(Response response) {
+        if (!response.isSuccessful() || response.body() == null) {
+            return false;
+        }
+        JsonReader reader = null;
+        try {
+            ResponseBody peek = response.peekBody(PEEK_BYTES);
+            MediaType contentType = peek.contentType();
+            if (contentType != null && contentType.subtype().toLowerCase().contains("msgpack")) {
+                reader = new MsgPackReader(peek.source());
+            } else {
+                reader = new JsonReader(peek.charStream());
+            }
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return false;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"code".equals(reader.nextName())) {
+                    reader.skipValue();
+                    continue;
+                }
+                JsonToken token = reader.peek();
+                return (token == JsonToken.STRING || token == JsonToken.NUMBER)
+                        && ExceptionCont.SIGN_OUT.equals(reader.nextString());
+            }
+            return false;
+        } catch (Exception e) {
+            //不是信封格式，或code在读取范围之外
+            return false;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.http.common.intercept;
+
+import com.http.common.HeaderCont;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * author : taowang
+ * date :2018/8/27
+ * description:按HeaderCont.WIRE_FORMAT协商响应格式，要求msgpack时通过Accept告诉服务端，
+ * 服务端按Content-Type返回实际格式，不支持时返回json即可
+ **/
+public class WireFormatIntercept implements Interceptor {
+
+    public static final String MEDIA_TYPE_MSGPACK = "application/x-msgpack";
+
+    private static final String ACCEPT_MSGPACK = MEDIA_TYPE_MSGPACK + ", application/json;q=0.9";
+
+    /**
+     * 未标记的请求是否默认使用msgpack
+     */
+    public boolean preferMsgPack;
+
+    public WireFormatIntercept(boolean preferMsgPack) {
+        this.preferMsgPack = preferMsgPack;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String format = request.header(HeaderCont.WIRE_FORMAT);
+        Request.Builder builder = null;
+        if (format != null) {
+            builder = request.newBuilder().removeHeader(HeaderCont.WIRE_FORMAT);
+        }
+        boolean msgPack = format != null ? HeaderCont.WIRE_FORMAT_MSGPACK.equalsIgnoreCase(format) : preferMsgPack;
+        if (msgPack && request.header("Accept") == null) {
+            builder = builder != null ? builder : request.newBuilder();
+            builder.header("Accept", ACCEPT_MSGPACK);
+        }
+        return chain.proceed(builder != null ? builder.build() : request);
+    }
+}
@@ -0,0 +1,86 @@
+package com.http.common.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * author : taowang
+ * date :2018/8/9
+ * description:重试预算，限制重试请求占全部请求的比例，防止服务端故障时重试风暴。
+ * 每个原始请求存入ratio个令牌，每次重试消耗1个令牌
+ **/
+public class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long depositPerRequest;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * @param ratio 重试请求最多占原始请求的比例，例如0.1
+     * @param reserve 流量很小时也允许的重试次数
+     */
+    public RetryBudget(float ratio, int reserve) {
+        this.depositPerRequest = (long) (ratio * SCALE);
+        this.maxBalance = Math.max(reserve, 1) * SCALE;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    /**
+     * 默认重试占比不超过10%
+     */
+    public static RetryBudget createDefault() {
+        return new RetryBudget(0.1f, 10);
+    }
+
+    /**
+     * 记录一个原始请求
+     */
+    public void onRequest() {
+        requestCount.incrementAndGet();
+        while (true) {
+            long current = balance.get();
+            long next = Math.min(maxBalance, current + depositPerRequest);
+            if (next == current || balance.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 申请一次重试
+     * @return 预算不足返回false
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            long current = balance.get();
+            if (current < SCALE) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                retryCount.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    public long retryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * 因预算不足被拒绝的重试次数
+     */
+    public long rejectedCount() {
+        return rejectedCount.get();
+    }
+}
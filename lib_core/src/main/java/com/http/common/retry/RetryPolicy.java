@@ -0,0 +1,224 @@
+package com.http.common.retry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * author : taowang
+ * date :2018/8/9
+ * description:重试策略，指数退避+随机抖动，只重试幂等请求或者指定的状态码
+ **/
+public class RetryPolicy {
+
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>(
+            Arrays.asList("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE"));
+
+    private static final Integer[] DEFAULT_RETRY_CODES = {408, 429, 500, 502, 503, 504};
+
+    private static final Random RANDOM = new Random();
+
+    /**
+     * 不重试，需要放在默认状态码之后初始化
+     */
+    public static final RetryPolicy NONE = new Builder().maxRetries(0).build();
+
+    public final int maxRetries;
+    public final long baseDelayMillis;
+    public final long maxDelayMillis;
+    public final float jitter;
+    public final boolean retryNonIdempotent;
+    public final boolean retryOnConnectionFailure;
+    public final boolean honorRetryAfter;
+    public final long maxRetryAfterMillis;
+    public final Set<Integer> retryCodes;
+
+    private RetryPolicy(Builder builder) {
+        this.maxRetries = builder.maxRetries;
+        this.baseDelayMillis = builder.baseDelayMillis;
+        this.maxDelayMillis = builder.maxDelayMillis;
+        this.jitter = builder.jitter;
+        this.retryNonIdempotent = builder.retryNonIdempotent;
+        this.retryOnConnectionFailure = builder.retryOnConnectionFailure;
+        this.honorRetryAfter = builder.honorRetryAfter;
+        this.maxRetryAfterMillis = builder.maxRetryAfterMillis;
+        this.retryCodes = Collections.unmodifiableSet(builder.retryCodes);
+    }
+
+    /**
+     * 是否可以重试这个请求
+     * @param request
+     * @param attempt 已经重试的次数
+     * @return
+     */
+    public boolean canRetry(Request request, int attempt) {
+        if (attempt >= maxRetries) {
+            return false;
+        }
+        return retryNonIdempotent || IDEMPOTENT_METHODS.contains(request.method());
+    }
+
+    /**
+     * 返回结果是否需要重试
+     * @param response 为null表示连接失败
+     * @return
+     */
+    public boolean shouldRetry(Response response) {
+        if (response == null) {
+            return retryOnConnectionFailure;
+        }
+        return retryCodes.contains(response.code());
+    }
+
+    /**
+     * 计算下一次重试前等待的时间
+     * @param attempt 已经重试的次数
+     * @param response 上一次的结果，可以为null
+     * @return 等待的毫秒数，返回-1表示服务端要求等待的时间过长，放弃重试
+     */
+    public long delayMillis(int attempt, Response response) {
+        if (honorRetryAfter && response != null) {
+            long retryAfter = parseRetryAfter(response.header("Retry-After"));
+            if (retryAfter >= 0) {
+                return retryAfter <= maxRetryAfterMillis ? retryAfter : -1;
+            }
+        }
+        long delay = baseDelayMillis << Math.min(attempt, 30);
+        if (delay <= 0 || delay > maxDelayMillis) {
+            delay = maxDelayMillis;
+        }
+        //保留(1 - jitter)的固定部分，其余部分随机，避免大量客户端同时重试
+        long fixed = (long) (delay * (1 - jitter));
+        long random = delay - fixed;
+        synchronized (RANDOM) {
+            return fixed + (random > 0 ? (long) (RANDOM.nextDouble() * random) : 0);
+        }
+    }
+
+    /**
+     * 只支持秒数格式的Retry-After
+     */
+    private static long parseRetryAfter(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            long seconds = Long.parseLong(value.trim());
+            return seconds < 0 ? -1 : seconds * 1000;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public Builder newBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * 构造者重试策略
+     */
+    public static class Builder {
+        private int maxRetries = 2;
+        private long baseDelayMillis = 200;
+        private long maxDelayMillis = 5000;
+        private float jitter = 0.5f;
+        private boolean retryNonIdempotent;
+        private boolean retryOnConnectionFailure = true;
+        private boolean honorRetryAfter = true;
+        private long maxRetryAfterMillis = 10000;
+        private Set<Integer> retryCodes = new HashSet<>(Arrays.asList(DEFAULT_RETRY_CODES));
+
+        public Builder() {
+        }
+
+        private Builder(RetryPolicy policy) {
+            this.maxRetries = policy.maxRetries;
+            this.baseDelayMillis = policy.baseDelayMillis;
+            this.maxDelayMillis = policy.maxDelayMillis;
+            this.jitter = policy.jitter;
+            this.retryNonIdempotent = policy.retryNonIdempotent;
+            this.retryOnConnectionFailure = policy.retryOnConnectionFailure;
+            this.honorRetryAfter = policy.honorRetryAfter;
+            this.maxRetryAfterMillis = policy.maxRetryAfterMillis;
+            this.retryCodes = new HashSet<>(policy.retryCodes);
+        }
+
+        public Builder maxRetries(int maxRetries) {
+
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * 第一次重试前的等待时间，之后每次翻倍
+         */
+        public Builder baseDelayMillis(long baseDelayMillis) {
+
+            this.baseDelayMillis = baseDelayMillis;
+            return this;
+        }
+
+        public Builder maxDelayMillis(long maxDelayMillis) {
+
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * 随机抖动比例，0~1，1表示完全随机
+         */
+        public Builder jitter(float jitter) {
+
+            this.jitter = Math.max(0f, Math.min(1f, jitter));
+            return this;
+        }
+
+        /**
+         * 是否重试POST等非幂等请求，默认不重试
+         */
+        public Builder retryNonIdempotent(boolean retryNonIdempotent) {
+
+            this.retryNonIdempotent = retryNonIdempotent;
+            return this;
+        }
+
+        public Builder retryOnConnectionFailure(boolean retryOnConnectionFailure) {
+
+            this.retryOnConnectionFailure = retryOnConnectionFailure;
+            return this;
+        }
+
+        public Builder honorRetryAfter(boolean honorRetryAfter) {
+
+            this.honorRetryAfter = honorRetryAfter;
+            return this;
+        }
+
+        /**
+         * Retry-After超过这个时间则放弃重试
+         */
+        public Builder maxRetryAfterMillis(long maxRetryAfterMillis) {
+
+            this.maxRetryAfterMillis = maxRetryAfterMillis;
+            return this;
+        }
+
+        /**
+         * 需要重试的状态码，会替换默认的408/429/5xx
+         */
+        public Builder retryCodes(Integer... retryCodes) {
+
+            this.retryCodes = new HashSet<>(Arrays.asList(retryCodes));
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
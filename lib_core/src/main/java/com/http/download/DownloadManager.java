@@ -0,0 +1,453 @@
+package com.http.download;
+
+import com.google.gson.Gson;
+import com.http.gson.GsonProvider;
+import com.http.util.HttpClientRegistry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+/**
+ * author : taowang
+ * date :2018/8/28
+ * description:大文件下载，使用共享的OkHttp连接池。
+ * 支持Range时按分段并行下载，各段通过FileChannel按偏移写入同一个临时文件；
+ * 进度保存在目标文件旁的.dl文件中，中断后重新订阅即可续传；同时下载的文件数受全局限制
+ **/
+public class DownloadManager {
+
+    private static final int DEFAULT_MAX_DOWNLOADS = 2;
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final long PROGRESS_INTERVAL_MILLIS = 200;
+    private static final long PERSIST_INTERVAL_MILLIS = 1000;
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final String PART_SUFFIX = ".part";
+    private static final String STATE_SUFFIX = ".dl";
+
+    private final OkHttpClient client;
+    private final Semaphore permits;
+    private final Gson gson;
+    /**
+     * 正在下载的目标文件，同一个文件不能同时下载
+     */
+    private final ConcurrentHashMap<String, Boolean> active = new ConcurrentHashMap<>();
+
+    public static DownloadManager getInstance() {
+        return Holder.instance;
+    }
+
+    private DownloadManager() {
+        client = HttpClientRegistry.getInstance().newBuilder()
+                .readTimeout(30, TimeUnit.SECONDS)
+                .build();
+        permits = new Semaphore(DEFAULT_MAX_DOWNLOADS, true);
+        gson = GsonProvider.getInstance().getGson();
+    }
+
+    private static class Holder {
+        private static final DownloadManager instance = new DownloadManager();
+    }
+
+    /**
+     * 开始或继续下载，订阅后在io线程执行，超过并发数时排队等待。
+     * 取消订阅会停止下载并保留进度
+     * @param task
+     * @return 进度，最后一个进度的file为下载好的文件
+     */
+    public Observable<DownloadProgress> download(final DownloadTask task) {
+        return Observable.create(new ObservableOnSubscribe<DownloadProgress>() {
+            @Override
+            public void subscribe(ObservableEmitter<DownloadProgress> emitter) throws Exception {
+                new Job(task, emitter).run();
+            }
+        }).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * 删除未完成的临时文件和进度记录
+     * @param task
+     */
+    public void clearProgress(DownloadTask task) {
+        new File(task.target.getPath() + PART_SUFFIX).delete();
+        new File(task.target.getPath() + STATE_SUFFIX).delete();
+    }
+
+    private final class Job implements Cancellable {
+        private final DownloadTask task;
+        private final ObservableEmitter<DownloadProgress> emitter;
+        private final File partFile;
+        private final File stateFile;
+        private final List<Call> calls = new CopyOnWriteArrayList<>();
+        private volatile boolean cancelled;
+        /**
+         * 某一段失败后停止其他段
+         */
+        private volatile boolean aborted;
+        /**
+         * 服务端文件已变化，进度作废
+         */
+        private volatile boolean stale;
+
+        Job(DownloadTask task, ObservableEmitter<DownloadProgress> emitter) {
+            this.task = task;
+            this.emitter = emitter;
+            this.partFile = new File(task.target.getPath() + PART_SUFFIX);
+            this.stateFile = new File(task.target.getPath() + STATE_SUFFIX);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            cancelCalls();
+        }
+
+        private void abort() {
+            aborted = true;
+            cancelCalls();
+        }
+
+        private void cancelCalls() {
+            for (Call call : calls) {
+                call.cancel();
+            }
+        }
+
+        private boolean isStopped() {
+            return cancelled || aborted;
+        }
+
+        void run() {
+            emitter.setCancellable(this);
+            String key = task.target.getAbsolutePath();
+            if (active.putIfAbsent(key, Boolean.TRUE) != null) {
+                emitter.tryOnError(new IOException(key + " is already downloading"));
+                return;
+            }
+            try {
+                permits.acquire();
+                try {
+                    execute();
+                } finally {
+                    permits.release();
+                }
+            } catch (InterruptedException e) {
+                cancel();
+            } catch (Throwable t) {
+                if (stale) {
+                    clearProgress(task);
+                }
+                if (!cancelled) {
+                    emitter.tryOnError(t);
+                }
+            } finally {
+                active.remove(key);
+            }
+        }
+
+        private void execute() throws Exception {
+            DownloadState state = DownloadState.read(gson, stateFile);
+            if (state == null || !task.url.equals(state.url) || !partFile.exists()) {
+                partFile.delete();
+                state = probe();
+            }
+
+            File parent = partFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("mkdirs " + parent + " failed");
+            }
+            RandomAccessFile file = new RandomAccessFile(partFile, "rw");
+            try {
+                if (state.length > 0 && file.length() != state.length) {
+                    file.setLength(state.length);
+                }
+                downloadSegments(state, file.getChannel());
+            } finally {
+                file.close();
+            }
+            if (cancelled) {
+                return;
+            }
+
+            verify();
+            if (task.target.exists() && !task.target.delete()) {
+                throw new IOException("delete " + task.target + " failed");
+            }
+            if (!partFile.renameTo(task.target)) {
+                throw new IOException("rename " + partFile + " failed");
+            }
+            stateFile.delete();
+            emitter.onNext(new DownloadProgress(state.length, state.length, 0, task.target));
+            emitter.onComplete();
+        }
+
+        /**
+         * 请求第一个字节，判断是否支持Range并获取文件大小
+         */
+        private DownloadState probe() throws IOException {
+            Request request = new Request.Builder()
+                    .url(task.url)
+                    .header("Range", "bytes=0-0")
+                    .build();
+            Response response = execute(request);
+            DownloadState state = new DownloadState();
+            state.url = task.url;
+            try {
+                if (response.code() == 206) {
+                    state.rangeSupported = true;
+                    state.length = parseTotalLength(response.header("Content-Range"));
+                    state.etag = response.header("ETag");
+                    if (state.etag == null) {
+                        state.etag = response.header("Last-Modified");
+                    }
+                } else if (response.isSuccessful()) {
+                    state.length = response.body() != null ? response.body().contentLength() : -1;
+                } else {
+                    throw new IOException("HTTP " + response.code() + " " + task.url);
+                }
+            } finally {
+                response.close();
+            }
+
+            if (!state.rangeSupported || state.length <= 0) {
+                state.rangeSupported = false;
+                state.segments.add(new DownloadState.Segment(0, state.length > 0 ? state.length - 1 : -1));
+                return state;
+            }
+            long count = Math.max(1, Math.min(task.segments, state.length / MIN_SEGMENT_SIZE));
+            long size = state.length / count;
+            for (int i = 0; i < count; i++) {
+                long start = i * size;
+                long end = i == count - 1 ? state.length - 1 : start + size - 1;
+                state.segments.add(new DownloadState.Segment(start, end));
+            }
+            return state;
+        }
+
+        private long parseTotalLength(String contentRange) {
+            //bytes 0-0/12345
+            if (contentRange == null) {
+                return -1;
+            }
+            int slash = contentRange.lastIndexOf('/');
+            if (slash < 0) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(contentRange.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        private void downloadSegments(final DownloadState state, final FileChannel channel) throws Exception {
+            int pending = 0;
+            for (DownloadState.Segment segment : state.segments) {
+                if (!segment.isDone()) {
+                    pending++;
+                }
+            }
+            final CountDownLatch latch = new CountDownLatch(pending);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            for (final DownloadState.Segment segment : state.segments) {
+                if (segment.isDone()) {
+                    continue;
+                }
+                Schedulers.io().scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            downloadSegment(state, segment, channel);
+                        } catch (Throwable t) {
+                            //一段失败时停止其他段，进度已保存，下次从断点继续
+                            if (failure.compareAndSet(null, t)) {
+                                abort();
+                            }
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+
+            long lastBytes = state.downloadedBytes();
+            long lastTime = System.currentTimeMillis();
+            long lastPersist = lastTime;
+            try {
+                while (!latch.await(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    long now = System.currentTimeMillis();
+                    long bytes = state.downloadedBytes();
+                    long speed = now > lastTime ? (bytes - lastBytes) * 1000 / (now - lastTime) : 0;
+                    emitter.onNext(new DownloadProgress(bytes, state.length, speed, null));
+                    lastBytes = bytes;
+                    lastTime = now;
+                    if (now - lastPersist >= PERSIST_INTERVAL_MILLIS) {
+                        persist(state, channel);
+                        lastPersist = now;
+                    }
+                }
+            } catch (InterruptedException e) {
+                //取消订阅时io线程会被中断，等各段停下后保存进度
+                cancel();
+                latch.await(PERSIST_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            if (!stale) {
+                persist(state, channel);
+            }
+
+            Throwable t = failure.get();
+            if (t != null && !cancelled) {
+                throw t instanceof Exception ? (Exception) t : new RuntimeException(t);
+            }
+        }
+
+        private void downloadSegment(DownloadState state, DownloadState.Segment segment, FileChannel channel)
+                throws IOException {
+            if (!state.rangeSupported) {
+                //不支持Range时只能从头开始
+                segment.downloaded = 0;
+            }
+            long position = segment.start + segment.downloaded;
+            Request.Builder builder = new Request.Builder().url(task.url);
+            if (state.rangeSupported) {
+                builder.header("Range", "bytes=" + position + "-" + segment.end);
+                if (state.etag != null) {
+                    builder.header("If-Range", state.etag);
+                }
+            }
+            Response response = execute(builder.build());
+            try {
+                if (state.rangeSupported && response.code() == 200) {
+                    //If-Range不匹配，服务端返回了完整的新文件
+                    stale = true;
+                    throw new IOException("file changed on server: " + task.url);
+                }
+                if (!response.isSuccessful() || response.body() == null) {
+                    throw new IOException("HTTP " + response.code() + " " + task.url);
+                }
+                BufferedSource source = response.body().source();
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                byte[] bytes = buffer.array();
+                long limit = segment.end >= 0 ? segment.end - position + 1 : Long.MAX_VALUE;
+                while (limit > 0 && !isStopped()) {
+                    int read = source.read(bytes, 0, (int) Math.min(bytes.length, limit));
+                    if (read == -1) {
+                        break;
+                    }
+                    buffer.clear();
+                    buffer.limit(read);
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    segment.downloaded += read;
+                    limit -= read;
+                }
+                if (isStopped()) {
+                    return;
+                }
+                if (segment.end < 0) {
+                    //大小未知，读到结尾即完成
+                    segment.end = segment.start + segment.downloaded - 1;
+                    state.length = segment.downloaded;
+                } else if (limit > 0) {
+                    throw new IOException("unexpected end of stream: " + task.url);
+                }
+            } finally {
+                response.close();
+            }
+        }
+
+        private Response execute(Request request) throws IOException {
+            Call call = client.newCall(request);
+            calls.add(call);
+            try {
+                if (isStopped()) {
+                    call.cancel();
+                }
+                return call.execute();
+            } finally {
+                calls.remove(call);
+            }
+        }
+
+        /**
+         * 先记下进度，再把已写入的数据刷到磁盘，最后保存记录，记录中的进度不会超过已落盘的数据。
+         * 刷盘失败时保留上一次的记录
+         */
+        private void persist(DownloadState state, FileChannel channel) {
+            DownloadState snapshot = state.snapshot();
+            try {
+                channel.force(false);
+                snapshot.write(gson, stateFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void verify() throws IOException {
+            if (task.checksumAlgorithm == null || task.checksum == null) {
+                return;
+            }
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance(task.checksumAlgorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+            byte[] buffer = new byte[64 * 1024];
+            InputStream in = new FileInputStream(partFile);
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (cancelled) {
+                        throw new InterruptedIOException("cancelled");
+                    }
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+            String actual = toHex(digest.digest());
+            if (!actual.equalsIgnoreCase(task.checksum)) {
+                clearProgress(task);
+                throw new IOException("checksum mismatch, expected " + task.checksum + " but was " + actual);
+            }
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] result = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            result[i * 2] = digits[(bytes[i] >> 4) & 0x0f];
+            result[i * 2 + 1] = digits[bytes[i] & 0x0f];
+        }
+        return new String(result);
+    }
+}
@@ -0,0 +1,40 @@
+package com.http.download;
+
+import java.io.File;
+
+/**
+ * author : taowang
+ * date :2018/8/28
+ * description:下载进度，完成时file不为null
+ **/
+public class DownloadProgress {
+
+    public final long downloadedBytes;
+    /**
+     * 总大小，未知时为-1
+     */
+    public final long totalBytes;
+    /**
+     * 最近一段时间的速度(字节/秒)
+     */
+    public final long bytesPerSecond;
+    public final File file;
+
+    DownloadProgress(long downloadedBytes, long totalBytes, long bytesPerSecond, File file) {
+        this.downloadedBytes = downloadedBytes;
+        this.totalBytes = totalBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.file = file;
+    }
+
+    public boolean isCompleted() {
+        return file != null;
+    }
+
+    /**
+     * 百分比，总大小未知时返回-1
+     */
+    public int percent() {
+        return totalBytes > 0 ? (int) (downloadedBytes * 100 / totalBytes) : -1;
+    }
+}
@@ -0,0 +1,117 @@
+package com.http.download;
+
+import com.google.gson.Gson;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * author : taowang
+ * date :2018/8/28
+ * description:下载进度记录，以json保存在目标文件旁边(.dl)，中断后按记录续传
+ **/
+class DownloadState {
+
+    String url;
+    /**
+     * 用于If-Range，文件变化后服务端会返回完整内容，需要重新下载
+     */
+    String etag;
+    long length = -1;
+    boolean rangeSupported;
+    List<Segment> segments = new ArrayList<>();
+
+    static class Segment {
+        long start;
+        /**
+         * 包含，总大小未知时为-1
+         */
+        long end;
+        volatile long downloaded;
+
+        Segment(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean isDone() {
+            return end >= 0 && start + downloaded > end;
+        }
+    }
+
+    long downloadedBytes() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.downloaded;
+        }
+        return total;
+    }
+
+    /**
+     * 复制当前的进度，下载线程之后的写入不影响副本
+     */
+    DownloadState snapshot() {
+        DownloadState copy = new DownloadState();
+        copy.url = url;
+        copy.etag = etag;
+        copy.length = length;
+        copy.rangeSupported = rangeSupported;
+        for (Segment segment : segments) {
+            Segment s = new Segment(segment.start, segment.end);
+            s.downloaded = segment.downloaded;
+            copy.segments.add(s);
+        }
+        return copy;
+    }
+
+    static DownloadState read(Gson gson, File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            return gson.fromJson(reader, DownloadState.class);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * 先写临时文件再重命名，写到一半被杀时旧记录仍然可用
+     */
+    synchronized void write(Gson gson, File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+            gson.toJson(this, writer);
+        } finally {
+            close(writer);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("rename " + tmp + " failed");
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.http.download;
+
+import java.io.File;
+
+/**
+ * author : taowang
+ * date :2018/8/28
+ * description:下载任务，通过Builder构造
+ **/
+public class DownloadTask {
+
+    public final String url;
+    public final File target;
+    /**
+     * 分段数，服务端不支持Range时退化为1
+     */
+    public final int segments;
+    /**
+     * 校验算法，例如MD5、SHA-256，为空时不校验
+     */
+    public final String checksumAlgorithm;
+    /**
+     * 期望的摘要，十六进制
+     */
+    public final String checksum;
+
+    private DownloadTask(Builder builder) {
+        this.url = builder.url;
+        this.target = builder.target;
+        this.segments = builder.segments;
+        this.checksumAlgorithm = builder.checksumAlgorithm;
+        this.checksum = builder.checksum;
+    }
+
+    public static class Builder {
+        private String url;
+        private File target;
+        private int segments = 3;
+        private String checksumAlgorithm;
+        private String checksum;
+
+        public Builder url(String url) {
+
+            this.url = url;
+            return this;
+        }
+
+        public Builder target(File target) {
+
+            this.target = target;
+            return this;
+        }
+
+        public Builder segments(int segments) {
+
+            this.segments = segments;
+            return this;
+        }
+
+        /**
+         * @param algorithm MessageDigest算法名，例如MD5、SHA-256
+         * @param hex 期望的摘要
+         */
+        public Builder checksum(String algorithm, String hex) {
+
+            this.checksumAlgorithm = algorithm;
+            this.checksum = hex;
+            return this;
+        }
+
+        public DownloadTask build() {
+            if (url == null || target == null) {
+                throw new IllegalArgumentException("url and target are required");
+            }
+            return new DownloadTask(this);
+        }
+    }
+}
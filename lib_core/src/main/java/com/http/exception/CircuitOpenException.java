@@ -0,0 +1,22 @@
+package com.http.exception;
+
+import java.io.IOException;
+
+/**
+ * author : taowang
+ * date :2018/8/10
+ * description:熔断打开时快速失败，继承IOException以便从OkHttp拦截器中抛出
+ **/
+public class CircuitOpenException extends IOException {
+
+    public String code;
+    public String message;
+    public String host;
+
+    public CircuitOpenException(String host) {
+        super("circuit open: " + host);
+        this.message = "circuit open: " + host;
+        this.code = ExceptionCont.CIRCUIT_OPEN;
+        this.host = host;
+    }
+}
@@ -21,6 +21,14 @@ public class ExceptionCont {
      * 掉线了
      */
     public static final String SIGN_OUT = "1001";
+    /**
+     * 服务熔断中，请求被快速失败
+     */
+    public static final String CIRCUIT_OPEN = "1002";
+    /**
+     * 离线时写请求已保存，联网后自动提交
+     */
+    public static final String QUEUED_OFFLINE = "1003";
 
 
 }
@@ -0,0 +1,25 @@
+package com.http.exception;
+
+import java.io.IOException;
+
+/**
+ * author : taowang
+ * date :2018/9/1
+ * description:写请求没有发出，已保存到RequestOutbox，联网后自动重放。继承IOException以便从OkHttp拦截器中抛出
+ **/
+public class QueuedOfflineException extends IOException {
+
+    public String code;
+    public String message;
+    /**
+     * 重放时携带的Idempotency-Key，可以用来在RequestOutbox.observe()中查询状态
+     */
+    public String idempotencyKey;
+
+    public QueuedOfflineException(String idempotencyKey) {
+        super("queued offline: " + idempotencyKey);
+        this.message = "queued offline: " + idempotencyKey;
+        this.code = ExceptionCont.QUEUED_OFFLINE;
+        this.idempotencyKey = idempotencyKey;
+    }
+}
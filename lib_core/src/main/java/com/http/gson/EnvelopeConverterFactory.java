@@ -0,0 +1,150 @@
+package com.http.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.http.common.bean.BaseResultEntity;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * author : taowang
+ * date :2018/8/24
+ * description:流式解析BaseResultEntity，先读code和description，失败或掉线时跳过resultMap，
+ * 成功时resultMap直接解析成目标类型，不经过中间的JsonElement。
+ * 只处理返回类型是BaseResultEntity的接口，其余交给后面的GsonConverterFactory
+ **/
+public class EnvelopeConverterFactory extends Converter.Factory {
+
+    private static final String CODE_OK = "1";
+
+    protected final Gson gson;
+
+    public static EnvelopeConverterFactory create(Gson gson) {
+        return new EnvelopeConverterFactory(gson);
+    }
+
+    protected EnvelopeConverterFactory(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        if (TypeToken.get(type).getRawType() != BaseResultEntity.class) {
+            return null;
+        }
+        Type dataType = type instanceof ParameterizedType
+                ? ((ParameterizedType) type).getActualTypeArguments()[0] : Object.class;
+        return new EnvelopeConverter<>(this, TypeToken.get(dataType));
+    }
+
+    /**
+     * 创建响应的JsonReader，子类可以按Content-Type换成其他格式的reader
+     * @param body
+     * @return
+     */
+    protected JsonReader newJsonReader(ResponseBody body) throws IOException {
+        return gson.newJsonReader(body.charStream());
+    }
+
+    /**
+     * 解析reader使用的Gson，子类的其他格式可以使用单独配置的Gson
+     */
+    protected Gson gsonFor(JsonReader reader) {
+        return gson;
+    }
+
+    /**
+     * @param jsonAdapter gson中对应的TypeAdapter，reader使用gson时直接返回它
+     */
+    final <T> TypeAdapter<T> adapterFor(JsonReader reader, TypeToken<T> type, TypeAdapter<T> jsonAdapter) {
+        Gson readerGson = gsonFor(reader);
+        return readerGson == gson ? jsonAdapter : readerGson.getAdapter(type);
+    }
+
+    private static final class EnvelopeConverter<T> implements Converter<ResponseBody, BaseResultEntity<T>> {
+        private final EnvelopeConverterFactory factory;
+        private final TypeToken<T> dataType;
+        private final TypeAdapter<T> dataAdapter;
+
+        EnvelopeConverter(EnvelopeConverterFactory factory, TypeToken<T> dataType) {
+            this.factory = factory;
+            this.dataType = dataType;
+            this.dataAdapter = factory.gson.getAdapter(dataType);
+        }
+
+        @Override
+        public BaseResultEntity<T> convert(ResponseBody value) throws IOException {
+            try {
+                return read(factory.newJsonReader(value));
+            } finally {
+                value.close();
+            }
+        }
+
+        private BaseResultEntity<T> read(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            TypeAdapter<T> dataAdapter = factory.adapterFor(reader, dataType, this.dataAdapter);
+            BaseResultEntity<T> entity = new BaseResultEntity<>();
+            boolean hasCode = false;
+            //resultMap出现在code之前时先暂存，读到code后再决定是否解析
+            JsonElement pending = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "code":
+                        entity.code = readString(reader);
+                        hasCode = true;
+                        break;
+                    case "description":
+                        entity.description = readString(reader);
+                        break;
+                    case "resultMap":
+                        if (!hasCode) {
+                            pending = factory.gsonFor(reader).getAdapter(JsonElement.class).read(reader);
+                        } else if (CODE_OK.equals(entity.code)) {
+                            entity.resultMap = dataAdapter.read(reader);
+                        } else {
+                            reader.skipValue();
+                        }
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            if (pending != null && CODE_OK.equals(entity.code)) {
+                entity.resultMap = dataAdapter.fromJsonTree(pending);
+            }
+            return entity;
+        }
+
+        private static String readString(JsonReader reader) throws IOException {
+            JsonToken token = reader.peek();
+            if (token == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            if (token == JsonToken.BOOLEAN) {
+                return Boolean.toString(reader.nextBoolean());
+            }
+            return reader.nextString();
+        }
+    }
+}
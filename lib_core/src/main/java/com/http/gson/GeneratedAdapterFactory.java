@@ -0,0 +1,76 @@
+package com.http.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * author : taowang
+ * date :2018/8/23
+ * description:查找@GsonAdapter生成的TypeAdapter，没有生成的类型交给Gson默认的反射解析。
+ * 每个类型只查找一次
+ **/
+public class GeneratedAdapterFactory implements TypeAdapterFactory {
+
+    private static final String SUFFIX = "_TypeAdapter";
+
+    /**
+     * 没有生成TypeAdapter的类型
+     */
+    private static final Constructor<?> NONE;
+
+    static {
+        try {
+            NONE = Object.class.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private final ConcurrentHashMap<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<?> rawType = type.getRawType();
+        if (rawType.isPrimitive() || rawType.isArray() || rawType.getName().startsWith("java")
+                || rawType.getName().startsWith("android")) {
+            return null;
+        }
+        Constructor<?> constructor = constructors.get(rawType);
+        if (constructor == null) {
+            constructor = find(rawType);
+            constructors.put(rawType, constructor);
+        }
+        if (constructor == NONE) {
+            return null;
+        }
+        try {
+            return (TypeAdapter<T>) constructor.newInstance(gson, type);
+        } catch (Exception e) {
+            throw new IllegalStateException("create " + adapterName(rawType) + " failed", e);
+        }
+    }
+
+    private static Constructor<?> find(Class<?> rawType) {
+        try {
+            Class<?> adapterClass = Class.forName(adapterName(rawType), true, rawType.getClassLoader());
+            return adapterClass.getConstructor(Gson.class, TypeToken.class);
+        } catch (ClassNotFoundException e) {
+            return NONE;
+        } catch (NoSuchMethodException e) {
+            return NONE;
+        }
+    }
+
+    /**
+     * com.a.Outer$Inner -> com.a.Outer_Inner_TypeAdapter
+     */
+    static String adapterName(Class<?> rawType) {
+        return rawType.getName().replace('$', '_') + SUFFIX;
+    }
+}
@@ -0,0 +1,18 @@
+package com.http.gson;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * author : taowang
+ * date :2018/8/23
+ * description:编译时为实体类生成TypeAdapter，解析时不再反射访问字段。
+ * 生成的类名为 类名_TypeAdapter，内部类为 外部类_内部类_TypeAdapter；
+ * 字段不能是private，需要有无参构造方法
+ **/
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GsonAdapter {
+}
@@ -0,0 +1,67 @@
+package com.http.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * author : taowang
+ * date :2018/8/23
+ * description:全局共用的Gson，所有Retrofit实例共享，注册了生成的TypeAdapter。
+ * Gson内部会缓存每个类型的TypeAdapter，共用一个实例后首次解析的开销只有一次。
+ * MessagePack响应使用单独的Gson，只在这里注册StringMapAdapterFactory，json仍使用Gson自带的Map解析
+ **/
+public class GsonProvider {
+
+    private final Gson gson;
+    private final Gson msgPackGson;
+
+    public static GsonProvider getInstance() {
+        return Holder.instance;
+    }
+
+    private GsonProvider() {
+        gson = new GsonBuilder()
+                .registerTypeAdapterFactory(new GeneratedAdapterFactory())
+                .create();
+        msgPackGson = new GsonBuilder()
+                .registerTypeAdapterFactory(new GeneratedAdapterFactory())
+                .registerTypeAdapterFactory(new StringMapAdapterFactory())
+                .create();
+    }
+
+    private static class Holder {
+        private static final GsonProvider instance = new GsonProvider();
+    }
+
+    public Gson getGson() {
+        return gson;
+    }
+
+    /**
+     * 解析MsgPackReader使用的Gson
+     */
+    public Gson getMsgPackGson() {
+        return msgPackGson;
+    }
+
+    /**
+     * 在后台提前创建TypeAdapter，首个请求不用再等待
+     * @param types
+     */
+    public void warmUp(final Class<?>... types) {
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                for (Class<?> type : types) {
+                    try {
+                        gson.getAdapter(type);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,501 @@
+package com.http.gson;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import okio.BufferedSource;
+
+/**
+ * author : taowang
+ * date :2018/8/27
+ * description:以JsonReader的接口读取MessagePack，已有的TypeAdapter(包括生成的)不用修改即可解析二进制响应。
+ * map的key必须是字符串或整数；不支持bin和ext类型。
+ * Gson自带的Map解析依赖JsonReader内部状态，Map字段需要配合StringMapAdapterFactory
+ **/
+public class MsgPackReader extends JsonReader {
+
+    private static final Reader UNREADABLE = new Reader() {
+        @Override
+        public int read(char[] buffer, int offset, int count) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    private static final int CONTAINER_ARRAY = 1;
+    private static final int CONTAINER_MAP = 2;
+
+    private final BufferedSource source;
+
+    private int[] containerTypes = new int[32];
+    /**
+     * 容器中剩余的元素数，map按键值对计
+     */
+    private long[] remaining = new long[32];
+    /**
+     * map中下一个是否为key
+     */
+    private boolean[] expectingName = new boolean[32];
+    private int stackSize;
+    private boolean documentConsumed;
+
+    public MsgPackReader(BufferedSource source) {
+        super(UNREADABLE);
+        this.source = source;
+    }
+
+    @Override
+    public JsonToken peek() throws IOException {
+        if (stackSize == 0) {
+            return documentConsumed ? JsonToken.END_DOCUMENT : tokenOf(nextByte());
+        }
+        int top = stackSize - 1;
+        if (containerTypes[top] == CONTAINER_ARRAY) {
+            return remaining[top] == 0 ? JsonToken.END_ARRAY : tokenOf(nextByte());
+        }
+        if (expectingName[top]) {
+            return remaining[top] == 0 ? JsonToken.END_OBJECT : JsonToken.NAME;
+        }
+        return tokenOf(nextByte());
+    }
+
+    private int nextByte() throws IOException {
+        source.require(1);
+        return source.buffer().getByte(0) & 0xff;
+    }
+
+    private static JsonToken tokenOf(int b) {
+        if (b <= 0x7f || b >= 0xe0) {
+            return JsonToken.NUMBER;
+        }
+        if (b <= 0x8f) {
+            return JsonToken.BEGIN_OBJECT;
+        }
+        if (b <= 0x9f) {
+            return JsonToken.BEGIN_ARRAY;
+        }
+        if (b <= 0xbf) {
+            return JsonToken.STRING;
+        }
+        switch (b) {
+            case 0xc0:
+                return JsonToken.NULL;
+            case 0xc2:
+            case 0xc3:
+                return JsonToken.BOOLEAN;
+            case 0xca:
+            case 0xcb:
+            case 0xcc:
+            case 0xcd:
+            case 0xce:
+            case 0xcf:
+            case 0xd0:
+            case 0xd1:
+            case 0xd2:
+            case 0xd3:
+                return JsonToken.NUMBER;
+            case 0xd9:
+            case 0xda:
+            case 0xdb:
+                return JsonToken.STRING;
+            case 0xdc:
+            case 0xdd:
+                return JsonToken.BEGIN_ARRAY;
+            case 0xde:
+            case 0xdf:
+                return JsonToken.BEGIN_OBJECT;
+            default:
+                throw new JsonSyntaxException("Unsupported MessagePack type 0x" + Integer.toHexString(b));
+        }
+    }
+
+    /**
+     * 读取一个值之前调用，更新所在容器的计数
+     */
+    private void beforeValue() {
+        if (stackSize == 0) {
+            documentConsumed = true;
+            return;
+        }
+        int top = stackSize - 1;
+        if (containerTypes[top] == CONTAINER_ARRAY) {
+            remaining[top]--;
+        } else {
+            if (expectingName[top]) {
+                throw new IllegalStateException("Expected a name at " + getPath());
+            }
+            remaining[top]--;
+            expectingName[top] = true;
+        }
+    }
+
+    private void push(int type, long count) {
+        if (stackSize == containerTypes.length) {
+            int newLength = stackSize * 2;
+            int[] newTypes = new int[newLength];
+            long[] newRemaining = new long[newLength];
+            boolean[] newExpecting = new boolean[newLength];
+            System.arraycopy(containerTypes, 0, newTypes, 0, stackSize);
+            System.arraycopy(remaining, 0, newRemaining, 0, stackSize);
+            System.arraycopy(expectingName, 0, newExpecting, 0, stackSize);
+            containerTypes = newTypes;
+            remaining = newRemaining;
+            expectingName = newExpecting;
+        }
+        containerTypes[stackSize] = type;
+        remaining[stackSize] = count;
+        expectingName[stackSize] = type == CONTAINER_MAP;
+        stackSize++;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        int b = nextByte();
+        long count;
+        if (b >= 0x90 && b <= 0x9f) {
+            source.skip(1);
+            count = b & 0x0f;
+        } else if (b == 0xdc) {
+            source.skip(1);
+            count = source.readShort() & 0xffff;
+        } else if (b == 0xdd) {
+            source.skip(1);
+            count = source.readInt() & 0xffffffffL;
+        } else {
+            throw unexpected(JsonToken.BEGIN_ARRAY);
+        }
+        beforeValue();
+        push(CONTAINER_ARRAY, count);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        if (stackSize == 0 || containerTypes[stackSize - 1] != CONTAINER_ARRAY || remaining[stackSize - 1] != 0) {
+            throw unexpected(JsonToken.END_ARRAY);
+        }
+        stackSize--;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        int b = nextByte();
+        long count;
+        if (b >= 0x80 && b <= 0x8f) {
+            source.skip(1);
+            count = b & 0x0f;
+        } else if (b == 0xde) {
+            source.skip(1);
+            count = source.readShort() & 0xffff;
+        } else if (b == 0xdf) {
+            source.skip(1);
+            count = source.readInt() & 0xffffffffL;
+        } else {
+            throw unexpected(JsonToken.BEGIN_OBJECT);
+        }
+        beforeValue();
+        push(CONTAINER_MAP, count);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        int top = stackSize - 1;
+        if (stackSize == 0 || containerTypes[top] != CONTAINER_MAP || remaining[top] != 0 || !expectingName[top]) {
+            throw unexpected(JsonToken.END_OBJECT);
+        }
+        stackSize--;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        JsonToken token = peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        if (peek() != JsonToken.NAME) {
+            throw unexpected(JsonToken.NAME);
+        }
+        expectingName[stackSize - 1] = false;
+        int b = nextByte();
+        JsonToken keyToken = tokenOf(b);
+        if (keyToken == JsonToken.STRING) {
+            return readString(b);
+        }
+        if (keyToken == JsonToken.NUMBER) {
+            return readNumberAsString(b);
+        }
+        throw new JsonSyntaxException("Unsupported MessagePack map key at " + getPath());
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        if (peek() == JsonToken.NAME) {
+            //Map的key作为值读取时
+            return nextName();
+        }
+        int b = nextByte();
+        JsonToken token = tokenOf(b);
+        if (token == JsonToken.STRING) {
+            beforeValue();
+            return readString(b);
+        }
+        if (token == JsonToken.NUMBER) {
+            beforeValue();
+            return readNumberAsString(b);
+        }
+        throw unexpected(JsonToken.STRING);
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        int b = nextByte();
+        if (b != 0xc2 && b != 0xc3) {
+            throw unexpected(JsonToken.BOOLEAN);
+        }
+        source.skip(1);
+        beforeValue();
+        return b == 0xc3;
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        if (nextByte() != 0xc0) {
+            throw unexpected(JsonToken.NULL);
+        }
+        source.skip(1);
+        beforeValue();
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        int b = nextByte();
+        if (b == 0xca) {
+            source.skip(1);
+            beforeValue();
+            return Float.intBitsToFloat(source.readInt());
+        }
+        if (b == 0xcb) {
+            source.skip(1);
+            beforeValue();
+            return Double.longBitsToDouble(source.readLong());
+        }
+        if (tokenOf(b) == JsonToken.STRING) {
+            return parseDouble(nextString());
+        }
+        if (tokenOf(b) != JsonToken.NUMBER) {
+            throw unexpected(JsonToken.NUMBER);
+        }
+        beforeValue();
+        return readInteger(b);
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        int b = nextByte();
+        if (b == 0xca || b == 0xcb) {
+            double value = nextDouble();
+            long result = (long) value;
+            if (result != value) {
+                throw new NumberFormatException("Expected a long but was " + value + " at " + getPath());
+            }
+            return result;
+        }
+        if (tokenOf(b) == JsonToken.STRING) {
+            String value = nextString();
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new NumberFormatException("Expected a long but was " + value + " at " + getPath());
+            }
+        }
+        if (tokenOf(b) != JsonToken.NUMBER) {
+            throw unexpected(JsonToken.NUMBER);
+        }
+        beforeValue();
+        return readInteger(b);
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw new NumberFormatException("Expected an int but was " + value + " at " + getPath());
+        }
+        return (int) value;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        if (peek() == JsonToken.NAME) {
+            nextName();
+            return;
+        }
+        int depth = 0;
+        do {
+            JsonToken token = peek();
+            switch (token) {
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case NAME:
+                    nextName();
+                    break;
+                case END_DOCUMENT:
+                    throw unexpected(JsonToken.END_DOCUMENT);
+                default:
+                    skipScalar();
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    private void skipScalar() throws IOException {
+        int b = nextByte();
+        source.skip(1);
+        beforeValue();
+        if (b <= 0x7f || b >= 0xe0 || b == 0xc0 || b == 0xc2 || b == 0xc3) {
+            return;
+        }
+        if (b >= 0xa0 && b <= 0xbf) {
+            source.skip(b & 0x1f);
+            return;
+        }
+        switch (b) {
+            case 0xcc:
+            case 0xd0:
+                source.skip(1);
+                break;
+            case 0xcd:
+            case 0xd1:
+                source.skip(2);
+                break;
+            case 0xca:
+            case 0xce:
+            case 0xd2:
+                source.skip(4);
+                break;
+            case 0xcb:
+            case 0xcf:
+            case 0xd3:
+                source.skip(8);
+                break;
+            case 0xd9:
+                source.skip(source.readByte() & 0xff);
+                break;
+            case 0xda:
+                source.skip(source.readShort() & 0xffff);
+                break;
+            case 0xdb:
+                source.skip(source.readInt() & 0xffffffffL);
+                break;
+            default:
+                throw new JsonSyntaxException("Unsupported MessagePack type 0x" + Integer.toHexString(b));
+        }
+    }
+
+    private String readString(int b) throws IOException {
+        source.skip(1);
+        long length;
+        if (b >= 0xa0 && b <= 0xbf) {
+            length = b & 0x1f;
+        } else if (b == 0xd9) {
+            length = source.readByte() & 0xff;
+        } else if (b == 0xda) {
+            length = source.readShort() & 0xffff;
+        } else {
+            length = source.readInt() & 0xffffffffL;
+        }
+        return source.readUtf8(length);
+    }
+
+    private String readNumberAsString(int b) throws IOException {
+        if (b == 0xca || b == 0xcb) {
+            source.skip(1);
+            return b == 0xca ? Float.toString(Float.intBitsToFloat(source.readInt()))
+                    : Double.toString(Double.longBitsToDouble(source.readLong()));
+        }
+        return Long.toString(readInteger(b));
+    }
+
+    /**
+     * 读取整数类型，uint64超出long范围时会溢出
+     */
+    private long readInteger(int b) throws IOException {
+        source.skip(1);
+        if (b <= 0x7f) {
+            return b;
+        }
+        if (b >= 0xe0) {
+            return (byte) b;
+        }
+        switch (b) {
+            case 0xcc:
+                return source.readByte() & 0xff;
+            case 0xcd:
+                return source.readShort() & 0xffff;
+            case 0xce:
+                return source.readInt() & 0xffffffffL;
+            case 0xcf:
+            case 0xd3:
+                return source.readLong();
+            case 0xd0:
+                return source.readByte();
+            case 0xd1:
+                return source.readShort();
+            case 0xd2:
+                return source.readInt();
+            default:
+                throw unexpected(JsonToken.NUMBER);
+        }
+    }
+
+    private double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Expected a double but was " + value + " at " + getPath());
+        }
+    }
+
+    private IllegalStateException unexpected(JsonToken expected) throws IOException {
+        return new IllegalStateException("Expected " + expected + " but was " + peek() + " at " + getPath());
+    }
+
+    @Override
+    public String getPath() {
+        return "$[depth " + stackSize + "]";
+    }
+
+    @Override
+    public void close() throws IOException {
+        stackSize = 0;
+        source.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " at " + getPath();
+    }
+}
@@ -0,0 +1,132 @@
+package com.http.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * author : taowang
+ * date :2018/8/27
+ * description:key为String的Map，key直接用nextName读取。
+ * Gson自带的Map解析会访问JsonReader的内部状态，换成MsgPackReader等其他reader时无法使用
+ **/
+public class StringMapAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        if (!Map.class.isAssignableFrom(rawType)) {
+            return null;
+        }
+        Type valueType = Object.class;
+        if (type.getType() instanceof ParameterizedType) {
+            Type[] args = ((ParameterizedType) type.getType()).getActualTypeArguments();
+            if (args.length != 2 || args[0] != String.class) {
+                return null;
+            }
+            valueType = args[1];
+        } else if (rawType != Map.class && rawType != LinkedHashMap.class) {
+            //无法确定key类型的Map子类交给Gson处理
+            return null;
+        }
+        Constructor<?> constructor = null;
+        if (!rawType.isInterface() && !Modifier.isAbstract(rawType.getModifiers())) {
+            try {
+                constructor = rawType.getDeclaredConstructor();
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+        @SuppressWarnings("unchecked")
+        TypeAdapter<T> adapter = (TypeAdapter<T>) new Adapter<>(gson.getAdapter(TypeToken.get(valueType)),
+                constructor, SortedMap.class.isAssignableFrom(rawType));
+        return adapter;
+    }
+
+    private static final class Adapter<V> extends TypeAdapter<Map<String, V>> {
+        private final TypeAdapter<V> valueAdapter;
+        private final Constructor<?> constructor;
+        private final boolean sorted;
+
+        Adapter(TypeAdapter<V> valueAdapter, Constructor<?> constructor, boolean sorted) {
+            this.valueAdapter = valueAdapter;
+            this.constructor = constructor;
+            this.sorted = sorted;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<String, V> newMap() {
+            if (constructor == null) {
+                return sorted ? new TreeMap<String, V>() : new LinkedHashMap<String, V>();
+            }
+            try {
+                return (Map<String, V>) constructor.newInstance();
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to create " + constructor.getDeclaringClass(), e);
+            }
+        }
+
+        @Override
+        public Map<String, V> read(JsonReader in) throws IOException {
+            JsonToken token = in.peek();
+            if (token == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Map<String, V> map = newMap();
+            if (token == JsonToken.BEGIN_ARRAY) {
+                //complexMapKeySerialization输出的[[key, value], ...]
+                in.beginArray();
+                while (in.hasNext()) {
+                    in.beginArray();
+                    put(map, in.nextString(), valueAdapter.read(in));
+                    in.endArray();
+                }
+                in.endArray();
+                return map;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                put(map, in.nextName(), valueAdapter.read(in));
+            }
+            in.endObject();
+            return map;
+        }
+
+        private void put(Map<String, V> map, String key, V value) {
+            if (map.put(key, value) != null) {
+                throw new JsonSyntaxException("duplicate key: " + key);
+            }
+        }
+
+        @Override
+        public void write(JsonWriter out, Map<String, V> map) throws IOException {
+            if (map == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            for (Map.Entry<String, V> entry : map.entrySet()) {
+                out.name(String.valueOf(entry.getKey()));
+                valueAdapter.write(out, entry.getValue());
+            }
+            out.endObject();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.http.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.http.common.bean.BaseResultEntity;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * author : taowang
+ * date :2018/8/27
+ * description:按响应的Content-Type选择解析格式，application/x-msgpack用MsgPackReader，其余按json解析。
+ * 两种格式使用相同配置的TypeAdapter，msgpack另外需要StringMapAdapterFactory，所以单独传入一个Gson；
+ * BaseResultEntity仍走流式信封解析；请求体仍由GsonConverterFactory处理
+ **/
+public class WireConverterFactory extends EnvelopeConverterFactory {
+
+    private final Gson msgPackGson;
+
+    /**
+     * @param gson 解析json
+     * @param msgPackGson 解析msgpack，需要注册StringMapAdapterFactory，见GsonProvider.getMsgPackGson
+     */
+    public static WireConverterFactory create(Gson gson, Gson msgPackGson) {
+        return new WireConverterFactory(gson, msgPackGson);
+    }
+
+    protected WireConverterFactory(Gson gson, Gson msgPackGson) {
+        super(gson);
+        this.msgPackGson = msgPackGson;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        Converter<ResponseBody, ?> envelope = super.responseBodyConverter(type, annotations, retrofit);
+        if (envelope != null) {
+            return envelope;
+        }
+        return new ResponseConverter<>(this, TypeToken.get(type));
+    }
+
+    @Override
+    protected JsonReader newJsonReader(ResponseBody body) throws IOException {
+        if (isMsgPack(body.contentType())) {
+            return new MsgPackReader(body.source());
+        }
+        return super.newJsonReader(body);
+    }
+
+    @Override
+    protected Gson gsonFor(JsonReader reader) {
+        return reader instanceof MsgPackReader ? msgPackGson : gson;
+    }
+
+    private static boolean isMsgPack(MediaType contentType) {
+        return contentType != null && contentType.subtype().toLowerCase().contains("msgpack");
+    }
+
+    private static final class ResponseConverter<T> implements Converter<ResponseBody, T> {
+        private final WireConverterFactory factory;
+        private final TypeToken<T> type;
+        private final TypeAdapter<T> adapter;
+
+        ResponseConverter(WireConverterFactory factory, TypeToken<T> type) {
+            this.factory = factory;
+            this.type = type;
+            this.adapter = factory.gson.getAdapter(type);
+        }
+
+        @Override
+        public T convert(ResponseBody value) throws IOException {
+            try {
+                JsonReader reader = factory.newJsonReader(value);
+                return factory.adapterFor(reader, type, adapter).read(reader);
+            } finally {
+                value.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.http.outbox;
+
+import android.content.Context;
+
+import com.http.util.HttpClientRegistry;
+import com.http.util.HttpDirector;
+import com.http.util.NetworkClassMonitor;
+import com.room.AppDatabase;
+import com.room.OutboxDao;
+import com.room.OutboxEntity;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.Call;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import retrofit2.Retrofit;
+
+/**
+ * author : taowang
+ * date :2018/9/1
+ * description:离线写请求的持久化队列，保存在AppDatabase的outbox表中。
+ * 网络恢复时按批重放，每个请求带Idempotency-Key由服务端去重；同一resourceKey的请求严格按入队顺序发送，
+ * 前一个失败时后面的等待，不同资源之间互不影响。失败按指数退避重试，服务端拒绝(4xx)或超过次数后标记为失败
+ **/
+public class RequestOutbox implements NetworkClassMonitor.OnNetworkClassChangedListener {
+
+    public static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private static final int BATCH_SIZE = 20;
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long BASE_BACKOFF_MILLIS = 2000;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static volatile RequestOutbox instance;
+
+    private final OutboxDao dao;
+    private final NetworkClassMonitor networkMonitor;
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    /**
+     * flush期间又有新请求或网络变化，结束后再跑一轮
+     */
+    private final AtomicBoolean flushAgain = new AtomicBoolean();
+
+    public static RequestOutbox getInstance(Context context) {
+        if (instance == null) {
+            synchronized (RequestOutbox.class) {
+                if (instance == null) {
+                    instance = new RequestOutbox(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private RequestOutbox(Context context) {
+        dao = AppDatabase.getInstance(context).outboxDao();
+        networkMonitor = NetworkClassMonitor.getInstance(context);
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                //上次进程退出时正在发送的请求，服务端可能已经收到，靠Idempotency-Key去重
+                dao.resetSending();
+                //添加时会立即回调一次当前状态
+                networkMonitor.addListener(RequestOutbox.this);
+            }
+        });
+    }
+
+    @Override
+    public void onNetworkClassChanged(String networkClass, boolean connected) {
+        if (connected) {
+            flush();
+        }
+    }
+
+    public boolean isConnected() {
+        return networkMonitor.isConnected();
+    }
+
+    /**
+     * 新的幂等key，请求第一次发出时就带上，入队后重放使用同一个key
+     */
+    public static String newIdempotencyKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * 同一资源是否还有没发出的请求，有的话新请求也要入队，不能越过它们先发
+     * @param resourceKey
+     * @return
+     */
+    public boolean hasUnsent(String resourceKey) {
+        return dao.countUnsent(resourceKey) > 0;
+    }
+
+    /**
+     * 保存请求，需要在io线程调用
+     * @param request 未经过公共参数处理的请求，重放时会重新加上公共参数和token
+     * @param resourceKey
+     * @param idempotencyKey
+     */
+    public void enqueue(Request request, String resourceKey, String idempotencyKey) throws IOException {
+        OutboxEntity entity = new OutboxEntity();
+        entity.idempotencyKey = idempotencyKey;
+        entity.resourceKey = resourceKey;
+        entity.method = request.method();
+        entity.url = request.url().toString();
+        entity.headers = request.headers().newBuilder().removeAll(HEADER_IDEMPOTENCY_KEY).build().toString();
+        RequestBody body = request.body();
+        if (body != null) {
+            MediaType contentType = body.contentType();
+            entity.contentType = contentType != null ? contentType.toString() : null;
+            Buffer buffer = new Buffer();
+            body.writeTo(buffer);
+            entity.body = buffer.readByteArray();
+        }
+        entity.status = OutboxEntity.STATUS_PENDING;
+        entity.createdAt = System.currentTimeMillis();
+        dao.insert(entity);
+        if (networkMonitor.isConnected()) {
+            flush();
+        }
+    }
+
+    /**
+     * 所有记录，表变化时重新发射，可以直接在界面上展示待提交和失败的请求
+     */
+    public Flowable<List<OutboxEntity>> observe() {
+        return dao.observeAll();
+    }
+
+    /**
+     * 失败的请求重新开始发送
+     */
+    public void retryFailed() {
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                dao.retryFailed();
+                flush();
+            }
+        });
+    }
+
+    /**
+     * 放弃一条请求
+     */
+    public void remove(final long id) {
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                dao.delete(id);
+            }
+        });
+    }
+
+    /**
+     * 在后台重放到期的请求，同一时间只有一轮在执行
+     */
+    public void flush() {
+        flushAgain.set(true);
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                long nextDelay = -1;
+                try {
+                    while (flushAgain.getAndSet(false)) {
+                        nextDelay = flushOnce();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    flushing.set(false);
+                }
+                if (flushAgain.get()) {
+                    flush();
+                } else if (nextDelay > 0) {
+                    scheduleFlush(nextDelay);
+                }
+            }
+        });
+    }
+
+    private void scheduleFlush(long delayMillis) {
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 还在退避中的请求最早到期的时间间隔，没有时返回-1
+     */
+    private long flushOnce() {
+        while (networkMonitor.isConnected()) {
+            long now = System.currentTimeMillis();
+            //前面的请求还在退避或在本批中失败的资源，后面同资源的请求不能越过
+            Set<String> blocked = new HashSet<>(dao.backingOffResources(now));
+            List<OutboxEntity> batch = dao.pendingDue(now, BATCH_SIZE);
+            boolean progressed = false;
+            for (OutboxEntity entity : batch) {
+                if (blocked.contains(entity.resourceKey)) {
+                    continue;
+                }
+                if (send(entity)) {
+                    progressed = true;
+                } else {
+                    blocked.add(entity.resourceKey);
+                }
+            }
+            if (!progressed || batch.size() < BATCH_SIZE) {
+                break;
+            }
+        }
+        if (!networkMonitor.isConnected()) {
+            //等网络恢复的回调
+            return -1;
+        }
+        long now = System.currentTimeMillis();
+        Long next = dao.nextAttemptAfter(now);
+        return next != null ? next - now : -1;
+    }
+
+    /**
+     * 发送一条请求
+     * @return 发送成功并已从表中删除
+     */
+    private boolean send(OutboxEntity entity) {
+        entity.status = OutboxEntity.STATUS_SENDING;
+        entity.attempts++;
+        dao.update(entity);
+        try {
+            Response response = callFactory().newCall(toRequest(entity)).execute();
+            int code = response.code();
+            response.close();
+            if (response.isSuccessful()) {
+                //业务失败也算送达，由服务端处理，不再重放
+                dao.delete(entity.id);
+                return true;
+            }
+            entity.lastError = "HTTP " + code;
+            if (code >= 400 && code < 500 && code != 408 && code != 429) {
+                entity.status = OutboxEntity.STATUS_FAILED;
+                dao.update(entity);
+                return false;
+            }
+        } catch (IOException e) {
+            entity.lastError = e.toString();
+        }
+        if (entity.attempts >= MAX_ATTEMPTS) {
+            entity.status = OutboxEntity.STATUS_FAILED;
+        } else {
+            entity.status = OutboxEntity.STATUS_PENDING;
+            entity.nextAttemptAt = System.currentTimeMillis() + backoff(entity.attempts);
+        }
+        dao.update(entity);
+        return false;
+    }
+
+    /**
+     * 第n次失败后的等待时间，从2秒开始翻倍，最长10分钟
+     */
+    static long backoff(int attempts) {
+        long delay = BASE_BACKOFF_MILLIS << Math.min(attempts - 1, 20);
+        return Math.min(delay, MAX_BACKOFF_MILLIS);
+    }
+
+    static Request toRequest(OutboxEntity entity) {
+        Headers.Builder headers = new Headers.Builder();
+        if (entity.headers != null) {
+            for (String line : entity.headers.split("\n")) {
+                if (line.indexOf(':') > 0) {
+                    headers.add(line);
+                }
+            }
+        }
+        headers.set(HEADER_IDEMPOTENCY_KEY, entity.idempotencyKey);
+        RequestBody body = null;
+        if (entity.body != null) {
+            MediaType contentType = entity.contentType != null ? MediaType.parse(entity.contentType) : null;
+            body = RequestBody.create(contentType, entity.body);
+        }
+        return new Request.Builder()
+                .url(entity.url)
+                .headers(headers.build())
+                .method(entity.method, body)
+                .build();
+    }
+
+    private static Call.Factory callFactory() {
+        Retrofit retrofit = HttpDirector.getInstance().getApiRetrofit();
+        return retrofit != null ? retrofit.callFactory() : HttpClientRegistry.getInstance().getRootClient();
+    }
+}
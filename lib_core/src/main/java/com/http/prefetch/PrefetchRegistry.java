@@ -0,0 +1,265 @@
+package com.http.prefetch;
+
+import android.os.Bundle;
+
+import com.http.common.intercept.PriorityIntercept;
+import com.http.util.HttpClientConfiguration;
+import com.http.util.HttpDirector;
+import com.http.util.RequestLanes;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.observables.ConnectableObservable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * author : taowang
+ * date :2018/9/3
+ * description:按ARouter路径登记页面的预加载请求。跳转开始时(PrefetchRouteInterceptor)发出请求，
+ * 结果短时间保存，页面的ViewModel通过consume取用，网络请求与页面创建、布局加载同时进行。
+ * 结果只能取一次，过期或没有预加载时使用调用方自己的请求。
+ * 预加载的请求固定进入RequestLanes的prefetch通道；不经过ARouter的跳转可以在跳转前直接调用fire
+ **/
+public class PrefetchRegistry {
+
+    private static final long DEFAULT_TTL_MILLIS = 10000;
+
+    private final ConcurrentHashMap<String, List<PrefetchTask<?>>> routes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Entry> parked = new ConcurrentHashMap<>();
+    private volatile long ttlMillis = DEFAULT_TTL_MILLIS;
+
+    private final AtomicLong firedCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    public static PrefetchRegistry getInstance() {
+        return Holder.instance;
+    }
+
+    private PrefetchRegistry() {
+
+    }
+
+    private static class Holder {
+        private static final PrefetchRegistry instance = new PrefetchRegistry();
+    }
+
+    /**
+     * 登记页面的预加载请求
+     * @param path ARouter路径，例如/login/check
+     * @param task
+     */
+    public void register(String path, PrefetchTask<?> task) {
+        List<PrefetchTask<?>> tasks = routes.get(path);
+        if (tasks == null) {
+            List<PrefetchTask<?>> created = new CopyOnWriteArrayList<>();
+            tasks = routes.putIfAbsent(path, created);
+            if (tasks == null) {
+                tasks = created;
+            }
+        }
+        tasks.add(task);
+    }
+
+    public void unregister(String path) {
+        routes.remove(path);
+    }
+
+    /**
+     * 结果的保存时长，超过后丢弃并取消未完成的请求
+     */
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 发出页面登记的预加载请求，已有未过期的同参数结果时跳过
+     * @param path
+     * @param extras 跳转参数
+     */
+    public void fire(String path, Bundle extras) {
+        List<PrefetchTask<?>> tasks = path != null ? routes.get(path) : null;
+        if (tasks == null || tasks.isEmpty()) {
+            return;
+        }
+        evictExpired();
+        if (!isPrefetchAllowed()) {
+            skippedCount.addAndGet(tasks.size());
+            return;
+        }
+        for (PrefetchTask<?> task : tasks) {
+            String key = key(path, task, extras);
+            if (parked.containsKey(key)) {
+                continue;
+            }
+            Observable<?> request;
+            try {
+                request = task.request(extras);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                continue;
+            }
+            if (request == null) {
+                continue;
+            }
+            //请求上的优先级头不生效，页面未打开前不和用户操作抢通道
+            ConnectableObservable<?> shared = PriorityIntercept.inLane(RequestLanes.LANE_PREFETCH, request)
+                    .subscribeOn(Schedulers.io())
+                    .replay(1);
+            Entry entry = new Entry(shared, now());
+            if (parked.putIfAbsent(key, entry) != null) {
+                continue;
+            }
+            firedCount.incrementAndGet();
+            entry.connection = shared.connect();
+        }
+    }
+
+    /**
+     * 取预加载的结果，取过之后移除
+     * @param path 当前页面的ARouter路径
+     * @param name PrefetchTask.name
+     * @param extras 当前页面收到的参数，getIntent().getExtras()
+     * @param fallback 没有可用结果时使用的请求
+     * @param <T>
+     * @return 预加载仍在进行时等待它完成；预加载失败时改用fallback
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Observable<T> consume(String path, String name, Bundle extras, Observable<T> fallback) {
+        evictExpired();
+        PrefetchTask<?> task = findTask(path, name);
+        if (task == null) {
+            missCount.incrementAndGet();
+            return fallback;
+        }
+        Entry entry = parked.remove(key(path, task, extras));
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return fallback;
+        }
+        if (entry.isExpired(now(), ttlMillis)) {
+            entry.dispose();
+            expiredCount.incrementAndGet();
+            missCount.incrementAndGet();
+            return fallback;
+        }
+        hitCount.incrementAndGet();
+        return ((Observable<T>) entry.observable).onErrorResumeNext(fallback);
+    }
+
+    private PrefetchTask<?> findTask(String path, String name) {
+        List<PrefetchTask<?>> tasks = path != null ? routes.get(path) : null;
+        if (tasks == null) {
+            return null;
+        }
+        for (PrefetchTask<?> task : tasks) {
+            if (task.name.equals(name)) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private static String key(String path, PrefetchTask<?> task, Bundle extras) {
+        return path + '#' + task.name + '?' + task.key(extras);
+    }
+
+    private boolean isPrefetchAllowed() {
+        HttpClientConfiguration config = HttpDirector.getInstance().getConfig();
+        return config == null || config.adaptivePolicy == null || config.adaptivePolicy.isPrefetchAllowed();
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private void evictExpired() {
+        long now = now();
+        Iterator<Map.Entry<String, Entry>> it = parked.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry.isExpired(now, ttlMillis)) {
+                it.remove();
+                entry.dispose();
+                expiredCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 丢弃全部未取用的结果
+     */
+    public void clear() {
+        Iterator<Map.Entry<String, Entry>> it = parked.entrySet().iterator();
+        while (it.hasNext()) {
+            it.next().getValue().dispose();
+            it.remove();
+        }
+    }
+
+    /**
+     * 发出的预加载请求数
+     */
+    public long firedCount() {
+        return firedCount.get();
+    }
+
+    /**
+     * 页面取到预加载结果的次数
+     */
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    public long missCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 没被取用就过期的结果数
+     */
+    public long expiredCount() {
+        return expiredCount.get();
+    }
+
+    public String dumpStats() {
+        return "fired=" + firedCount.get()
+                + ", hits=" + hitCount.get()
+                + ", misses=" + missCount.get()
+                + ", expired=" + expiredCount.get()
+                + ", skipped=" + skippedCount.get()
+                + ", parked=" + parked.size();
+    }
+
+    private static final class Entry {
+        final Observable<?> observable;
+        final long createdAt;
+        volatile Disposable connection;
+
+        Entry(Observable<?> observable, long createdAt) {
+            this.observable = observable;
+            this.createdAt = createdAt;
+        }
+
+        boolean isExpired(long now, long ttlMillis) {
+            return now - createdAt > ttlMillis;
+        }
+
+        void dispose() {
+            Disposable disposable = connection;
+            if (disposable != null) {
+                disposable.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.http.prefetch;
+
+import android.content.Context;
+
+import com.alibaba.android.arouter.facade.Postcard;
+import com.alibaba.android.arouter.facade.annotation.Interceptor;
+import com.alibaba.android.arouter.facade.callback.InterceptorCallback;
+import com.alibaba.android.arouter.facade.template.IInterceptor;
+
+/**
+ * author : taowang
+ * date :2018/9/3
+ * description:ARouter跳转开始时发出目标页面登记的预加载请求，不拦截跳转。
+ * 优先级设得很高，在其他拦截器(如登录检查)之前执行，尽早发出请求
+ **/
+@Interceptor(priority = 1, name = "prefetch")
+public class PrefetchRouteInterceptor implements IInterceptor {
+
+    @Override
+    public void process(Postcard postcard, InterceptorCallback callback) {
+        try {
+            PrefetchRegistry.getInstance().fire(postcard.getPath(), postcard.getExtras());
+        } catch (Exception e) {
+            //预加载失败不影响跳转
+            e.printStackTrace();
+        }
+        callback.onContinue(postcard);
+    }
+
+    @Override
+    public void init(Context context) {
+
+    }
+}
@@ -0,0 +1,39 @@
+package com.http.prefetch;
+
+import android.os.Bundle;
+
+import io.reactivex.Observable;
+
+/**
+ * author : taowang
+ * date :2018/9/3
+ * description:页面的预加载请求，跳转开始时按页面参数发出，页面创建后通过PrefetchRegistry.consume取结果
+ **/
+public abstract class PrefetchTask<T> {
+
+    public final String name;
+
+    /**
+     * @param name 同一个页面的多个预加载用name区分，consume时使用同一个name
+     */
+    public PrefetchTask(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 结果和哪些页面参数有关，参数不同的跳转不能共用结果
+     * @param extras 跳转参数，可能为null
+     * @return 默认与参数无关
+     */
+    public String key(Bundle extras) {
+        return "";
+    }
+
+    /**
+     * 创建请求，在跳转线程调用，请求本身会在io线程执行。
+     * 返回Retrofit的Observable即可，不要再subscribeOn切换线程，否则请求不会进入prefetch通道
+     * @param extras 跳转参数，可能为null
+     * @return 返回null表示这次不需要预加载
+     */
+    public abstract Observable<T> request(Bundle extras);
+}
@@ -0,0 +1,19 @@
+package com.http.rx;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:service接口上声明，参数相同的并发请求只发出一次。GET/HEAD请求默认合并，
+ * 用POST做查询的接口需要加上这个注解，提交类的接口不要加
+ **/
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Coalesce {
+}
@@ -0,0 +1,112 @@
+package com.http.rx;
+
+import com.http.common.intercept.PriorityIntercept;
+import com.http.util.CallTags;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Retrofit;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:包装RxJava2CallAdapterFactory，返回Observable的接口经过RequestCoalescer，
+ * key由Retrofit构造出的请求(method、url、请求头、规范化的请求体)生成，调用方不需要改动。
+ * GET/HEAD请求默认合并，其他方法需要在接口上声明@Coalesce。
+ * 共享的请求在单独的io线程执行，由RequestCoalescer登记到每个订阅者的CallTags owner下，
+ * 全部订阅者取消或者全部owner销毁后停止
+ **/
+public class CoalescingCallAdapterFactory extends CallAdapter.Factory {
+
+    private final CallAdapter.Factory delegate;
+    private final RequestCoalescer coalescer;
+
+    public static CoalescingCallAdapterFactory create(CallAdapter.Factory delegate) {
+        return new CoalescingCallAdapterFactory(delegate, RequestCoalescer.getInstance());
+    }
+
+    CoalescingCallAdapterFactory(CallAdapter.Factory delegate, RequestCoalescer coalescer) {
+        this.delegate = delegate;
+        this.coalescer = coalescer;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        CallAdapter<?, ?> adapter = delegate.get(returnType, annotations, retrofit);
+        if (adapter == null || getRawType(returnType) != Observable.class) {
+            return adapter;
+        }
+        boolean annotated = false;
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof Coalesce) {
+                annotated = true;
+                break;
+            }
+        }
+        return new CoalescingCallAdapter<>((CallAdapter<Object, Object>) adapter, annotated, coalescer);
+    }
+
+    private static final class CoalescingCallAdapter<R> implements CallAdapter<R, Object> {
+
+        private final CallAdapter<R, Object> delegate;
+        private final boolean annotated;
+        private final RequestCoalescer coalescer;
+
+        CoalescingCallAdapter(CallAdapter<R, Object> delegate, boolean annotated, RequestCoalescer coalescer) {
+            this.delegate = delegate;
+            this.annotated = annotated;
+            this.coalescer = coalescer;
+        }
+
+        @Override
+        public Type responseType() {
+            return delegate.responseType();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Object adapt(Call<R> call) {
+            Object adapted = delegate.adapt(call);
+            String key;
+            try {
+                Request request = call.request();
+                if (!annotated && !"GET".equals(request.method()) && !"HEAD".equals(request.method())) {
+                    return adapted;
+                }
+                key = RequestCoalescer.key(request);
+            } catch (IOException | RuntimeException e) {
+                //参数有误时交给原来的流程报错
+                return adapted;
+            }
+            if (key == null) {
+                return adapted;
+            }
+            return coalescer.coalesce(key, isolate((Observable<Object>) adapted));
+        }
+    }
+
+    /**
+     * 不在第一个订阅者的线程上执行：第一个订阅者取消时线程被中断，不应该影响其他仍在等待的页面。
+     * 发起方通过PriorityIntercept.inLane指定的通道和RequestCoalescer设置的CallTags登记范围保留下来
+     */
+    private static Observable<Object> isolate(final Observable<Object> upstream) {
+        return Observable.defer(new Callable<ObservableSource<Object>>() {
+            @Override
+            public ObservableSource<Object> call() {
+                Integer lane = PriorityIntercept.scopedLane();
+                Observable<Object> source = lane != null ? PriorityIntercept.inLane(lane, upstream) : upstream;
+                return CallTags.inCurrentScope(source).subscribeOn(Schedulers.io());
+            }
+        });
+    }
+}
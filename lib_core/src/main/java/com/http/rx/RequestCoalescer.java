@@ -0,0 +1,331 @@
+package com.http.rx;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.http.util.CallTags;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Observer;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.observers.DisposableObserver;
+import io.reactivex.subjects.ReplaySubject;
+import okhttp3.FormBody;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.Buffer;
+
+/**
+ * author : taowang
+ * date :2018/8/8
+ * description:相同请求合并(single-flight)，同一时刻相同的请求只发出一次，所有订阅者共享结果。
+ * 单个订阅者取消只影响自己，全部取消后才会取消真正的请求。
+ * 真正的请求登记到每个订阅者的CallTags owner下，最后一个owner取消时才取消。
+ * Retrofit的接口通过CoalescingCallAdapterFactory自动接入，key由请求本身生成
+ **/
+public class RequestCoalescer {
+
+    /**
+     * 请求体超过这个大小时不合并
+     */
+    private static final long MAX_KEY_BODY_BYTES = 16 * 1024;
+
+    private final ConcurrentHashMap<String, Flight<?>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong savedCount = new AtomicLong();
+
+    public static RequestCoalescer getInstance() {
+        return Holder.instance;
+    }
+
+    private RequestCoalescer() {
+
+    }
+
+    private static class Holder {
+        private static final RequestCoalescer instance = new RequestCoalescer();
+    }
+
+    /**
+     * 合并相同key的请求
+     * @param key 通过{@link #key(Request)}生成
+     * @param upstream 真正的请求
+     * @param <T>
+     * @return
+     */
+    public <T> Observable<T> coalesce(final String key, final Observable<T> upstream) {
+        return Observable.defer(new Callable<ObservableSource<T>>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public ObservableSource<T> call() throws Exception {
+                requestCount.incrementAndGet();
+                while (true) {
+                    Flight<T> existing = (Flight<T>) inFlight.get(key);
+                    if (existing != null) {
+                        if (existing.join()) {
+                            savedCount.incrementAndGet();
+                            return existing.observe();
+                        }
+                        //全部订阅者刚刚取消，请求已经停止
+                        inFlight.remove(key, existing);
+                        continue;
+                    }
+                    Flight<T> created = new Flight<>(key, upstream);
+                    created.join();
+                    if (inFlight.putIfAbsent(key, created) == null) {
+                        return created.observe();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 由请求生成key：method、url、请求头，加上规范化的请求体(表单参数排序，json字段排序)
+     * @param request
+     * @return 请求体不是文本或者太大时返回null，不合并
+     */
+    public static String key(Request request) throws IOException {
+        String url = request.url().toString();
+        String headers = request.headers().toString();
+        RequestBody body = request.body();
+        if (body == null) {
+            return key(request.method(), url, (String) null) + '\n' + headers;
+        }
+        if (body instanceof FormBody) {
+            FormBody form = (FormBody) body;
+            List<String> fields = new ArrayList<>(form.size());
+            for (int i = 0; i < form.size(); i++) {
+                fields.add(form.encodedName(i) + '=' + form.encodedValue(i));
+            }
+            //同名参数保留顺序，只按名称排序
+            Collections.sort(fields, new Comparator<String>() {
+                @Override
+                public int compare(String a, String b) {
+                    return a.substring(0, a.indexOf('=')).compareTo(b.substring(0, b.indexOf('=')));
+                }
+            });
+            StringBuilder sb = new StringBuilder();
+            for (String field : fields) {
+                if (sb.length() > 0) {
+                    sb.append('&');
+                }
+                sb.append(field);
+            }
+            return request.method() + ' ' + url + '\n' + headers + sb;
+        }
+        MediaType contentType = body.contentType();
+        long length = body.contentLength();
+        if (contentType == null || length < 0 || length > MAX_KEY_BODY_BYTES || !isText(contentType)) {
+            return null;
+        }
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        return key(request.method(), url, buffer.readUtf8()) + '\n' + headers;
+    }
+
+    private static boolean isText(MediaType contentType) {
+        String subtype = contentType.subtype().toLowerCase();
+        return "text".equals(contentType.type()) || subtype.contains("json");
+    }
+
+    /**
+     * 表单或者query参数的请求key，参数按名称排序
+     * @param method
+     * @param url
+     * @param params
+     * @return
+     */
+    public static String key(String method, String url, Map<String, ?> params) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(method).append(' ').append(url);
+        if (params != null && !params.isEmpty()) {
+            sb.append('?');
+            boolean first = true;
+            for (Map.Entry<String, ?> entry : new TreeMap<>(params).entrySet()) {
+                if (!first) {
+                    sb.append('&');
+                }
+                first = false;
+                sb.append(entry.getKey()).append('=').append(entry.getValue());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * json请求体的请求key，对象的字段按名称排序
+     * @param method
+     * @param url
+     * @param jsonBody
+     * @return
+     */
+    public static String key(String method, String url, String jsonBody) {
+        String body = jsonBody;
+        if (jsonBody != null) {
+            try {
+                body = canonicalize(new JsonParser().parse(jsonBody)).toString();
+            } catch (JsonSyntaxException e) {
+                //不是json，按原文处理
+                body = jsonBody;
+            }
+        }
+        return method + ' ' + url + (body == null ? "" : '\n' + body);
+    }
+
+    private static JsonElement canonicalize(JsonElement element) {
+        if (element.isJsonObject()) {
+            TreeMap<String, JsonElement> sorted = new TreeMap<>();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                sorted.put(entry.getKey(), canonicalize(entry.getValue()));
+            }
+            JsonObject object = new JsonObject();
+            for (Map.Entry<String, JsonElement> entry : sorted.entrySet()) {
+                object.add(entry.getKey(), entry.getValue());
+            }
+            return object;
+        }
+        if (element.isJsonArray()) {
+            JsonArray array = new JsonArray();
+            for (JsonElement item : element.getAsJsonArray()) {
+                array.add(canonicalize(item));
+            }
+            return array;
+        }
+        return element;
+    }
+
+    /**
+     * 经过合并层的请求总数
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 被合并掉(没有真正发出)的请求数
+     */
+    public long savedCount() {
+        return savedCount.get();
+    }
+
+    /**
+     * 当前正在进行中的请求数
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 一个正在进行的请求。结果保存在ReplaySubject中，请求结束的同时加入的订阅者也能拿到结果；
+     * 订阅者数降到0时取消请求，之后不能再加入
+     */
+    private final class Flight<T> {
+        private final String key;
+        private final Observable<T> upstream;
+        private final ReplaySubject<T> subject = ReplaySubject.createWithSize(1);
+        private final CallTags.Group group = new CallTags.Group();
+        private DisposableObserver<T> connection;
+        private int subscribers;
+        private boolean cancelled;
+
+        Flight(String key, Observable<T> upstream) {
+            this.key = key;
+            this.upstream = upstream;
+        }
+
+        synchronized boolean join() {
+            if (cancelled || group.isCancelled()) {
+                return false;
+            }
+            subscribers++;
+            return true;
+        }
+
+        /**
+         * 先订阅结果再发出请求，订阅者在请求进行中取消时可以停止请求。
+         * 在订阅线程上调用，记下订阅者的owner
+         */
+        Observable<T> observe() {
+            final Object token = group.join();
+            return new Observable<T>() {
+                @Override
+                protected void subscribeActual(Observer<? super T> observer) {
+                    subject.doFinally(new Action() {
+                        @Override
+                        public void run() throws Exception {
+                            group.leave(token);
+                            leave();
+                        }
+                    }).subscribe(observer);
+                    connect();
+                }
+            };
+        }
+
+        private void connect() {
+            DisposableObserver<T> observer;
+            synchronized (this) {
+                if (connection != null || cancelled) {
+                    return;
+                }
+                observer = new DisposableObserver<T>() {
+                    @Override
+                    public void onNext(T t) {
+                        subject.onNext(t);
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        //先移除，之后的订阅者发出新的请求
+                        inFlight.remove(key, Flight.this);
+                        group.release();
+                        subject.onError(e);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        inFlight.remove(key, Flight.this);
+                        group.release();
+                        subject.onComplete();
+                    }
+                };
+                connection = observer;
+            }
+            group.bind(upstream).subscribe(observer);
+        }
+
+        private void leave() {
+            Disposable disposable;
+            synchronized (this) {
+                if (--subscribers > 0) {
+                    return;
+                }
+                cancelled = true;
+                disposable = connection;
+            }
+            inFlight.remove(key, this);
+            if (disposable != null) {
+                disposable.dispose();
+            }
+            group.release();
+        }
+    }
+}
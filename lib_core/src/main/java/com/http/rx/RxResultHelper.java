@@ -2,12 +2,14 @@ package com.http.rx;
 
 
 import android.app.Activity;
+import android.support.v4.app.Fragment;
 
 import com.http.common.bean.BaseResultEntity;
 import com.http.dialog.DefaultHttpUiShow;
 import com.http.exception.ExceptionCont;
 import com.http.exception.ResponseThrowable;
 import com.http.exception.SessionException;
+import com.http.util.CallTags;
 import com.util.rxcommand.RxUtils;
 
 import io.reactivex.Observable;
@@ -63,7 +65,9 @@ public class RxResultHelper {
      */
     public static <R> void getHttpRepose(final Activity activity, final Observable<BaseResultEntity<R>> observable,
                                          final DataCallBackListener<R> listener) {
-        observable.compose(RxSchedulersHelper.<BaseResultEntity<R>>inMainCommand())
+        //Call登记在activity下，销毁时由HttpDirector.cancelByOwner直接取消
+        CallTags.tag(activity, observable)
+                .compose(RxSchedulersHelper.<BaseResultEntity<R>>inMainCommand())
                 .doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(Disposable disposable) throws Exception {
@@ -73,21 +77,44 @@ public class RxResultHelper {
                 .compose(RxUtils.<BaseResultEntity<R>>bindToLifecycle(activity))
                 .compose(RxSchedulersHelper.<BaseResultEntity<R>>inMainCommand())
                 .compose(RxResultHelper.<R>handleResult())
-                .subscribe(new RxResultSubscriber<R>() {
-                    @Override
-                    public void _onNext(R testResponse) {
-                        if (null != listener){
-                            listener.onSuccess(testResponse);
-                        }
-                    }
+                .subscribe(RxResultHelper.<R>resultSubscriber(listener));
+    }
 
-                    @Override
-                    public void _onError(String code,String msg) {
-                        if (null != listener){
-                            listener.onError(code,msg);
-                        }
-                    }
-                });
+    /**
+     *
+     * @param fragment
+     * @param observable
+     * @param listener
+     * @param <R>
+     *  处理请求进行转化,返回http结果，请求跟随fragment的生命周期
+     */
+    public static <R> void getHttpRepose(final Fragment fragment, final Observable<BaseResultEntity<R>> observable,
+                                         final DataCallBackListener<R> listener) {
+        //Call登记在fragment下，销毁时由HttpDirector.cancelByOwner直接取消
+        CallTags.tag(fragment, observable)
+                .compose(RxSchedulersHelper.<BaseResultEntity<R>>inMainCommand())
+                .compose(RxUtils.<BaseResultEntity<R>>bindToLifecycle(fragment))
+                .compose(RxSchedulersHelper.<BaseResultEntity<R>>inMainCommand())
+                .compose(RxResultHelper.<R>handleResult())
+                .subscribe(RxResultHelper.<R>resultSubscriber(listener));
+    }
+
+    private static <R> RxResultSubscriber<R> resultSubscriber(final DataCallBackListener<R> listener) {
+        return new RxResultSubscriber<R>() {
+            @Override
+            public void _onNext(R testResponse) {
+                if (null != listener){
+                    listener.onSuccess(testResponse);
+                }
+            }
+
+            @Override
+            public void _onError(String code,String msg) {
+                if (null != listener){
+                    listener.onError(code,msg);
+                }
+            }
+        };
     }
 
 
@@ -4,6 +4,8 @@ package com.http.rx;
 import android.net.ParseException;
 import android.util.MalformedJsonException;
 
+import com.http.exception.CircuitOpenException;
+import com.http.exception.QueuedOfflineException;
 import com.http.exception.ResponseThrowable;
 import com.http.exception.SessionException;
 import com.http.util.HttpDirector;
@@ -46,6 +48,14 @@ public abstract class RxResultSubscriber<T> implements Observer<T> {
             code = mSessionException.code;
             //Session过期重新登录
             HttpDirector.getInstance().commandSessionException(false, null);
+        } else if (e instanceof CircuitOpenException) {
+            //服务端异常过多，熔断中
+            code = ((CircuitOpenException) e).code;
+            msg = "服务繁忙，请稍后重试";
+        } else if (e instanceof QueuedOfflineException) {
+            //离线已保存，联网后自动提交
+            code = ((QueuedOfflineException) e).code;
+            msg = "网络不可用，已保存，联网后自动提交";
         } else if (e instanceof ResponseThrowable) {
             ResponseThrowable mResponseThrowable = (ResponseThrowable) e;
             //请求成功，但是，服务器返回了失败
@@ -0,0 +1,262 @@
+package com.http.upload;
+
+import com.http.common.HeaderCont;
+import com.http.util.HttpClientConfiguration;
+import com.http.util.HttpClientRegistry;
+import com.http.util.HttpDirector;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import retrofit2.Retrofit;
+
+/**
+ * author : taowang
+ * date :2018/8/29
+ * description:分片上传，按Content-Range逐片PUT到上传会话地址，文件从磁盘流式读取。
+ * 服务端对未完成的会话返回308，Range头为已收到的范围(bytes=0-N)，全部收到后返回200/201；
+ * 失败或重新订阅时先查询服务端已确认的位置，从该位置继续。
+ * 请求经过HttpDirector的client，公共请求头和token同样生效
+ **/
+public class ChunkedUploader {
+
+    private static final int RESUME_INCOMPLETE = 308;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    public static ChunkedUploader getInstance() {
+        return Holder.instance;
+    }
+
+    private ChunkedUploader() {
+
+    }
+
+    private static class Holder {
+        private static final ChunkedUploader instance = new ChunkedUploader();
+    }
+
+    /**
+     * 开始或继续上传，订阅后在io线程执行，取消订阅会中断当前分片
+     * @param task
+     * @return 进度，最后一个进度completed为true
+     */
+    public Observable<UploadProgress> upload(final UploadTask task) {
+        return Observable.create(new ObservableOnSubscribe<UploadProgress>() {
+            @Override
+            public void subscribe(ObservableEmitter<UploadProgress> emitter) throws Exception {
+                new Job(task, emitter).run();
+            }
+        }).subscribeOn(Schedulers.io());
+    }
+
+    private static Call.Factory callFactory() {
+        Retrofit retrofit = HttpDirector.getInstance().getApiRetrofit();
+        return retrofit != null ? retrofit.callFactory() : HttpClientRegistry.getInstance().getRootClient();
+    }
+
+    private static final class Job implements Cancellable {
+        private final UploadTask task;
+        private final ObservableEmitter<UploadProgress> emitter;
+        private final long total;
+        private volatile Call current;
+        private volatile boolean cancelled;
+        /**
+         * 服务端完成上传后的响应内容
+         */
+        private String result;
+
+        Job(UploadTask task, ObservableEmitter<UploadProgress> emitter) {
+            this.task = task;
+            this.emitter = emitter;
+            this.total = task.file.length();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Call call = current;
+            if (call != null) {
+                call.cancel();
+            }
+        }
+
+        void run() {
+            emitter.setCancellable(this);
+            try {
+                long offset = withRetry(-1);
+                while (offset >= 0) {
+                    if (offset == total) {
+                        //数据都已收到，再查询一次让服务端结束会话
+                        if (withRetry(-1) >= 0) {
+                            throw new UploadRejectedException("server did not finish the upload: " + task.url);
+                        }
+                        break;
+                    }
+                    offset = withRetry(offset);
+                }
+                emitter.onNext(new UploadProgress(total, total, result, true));
+                emitter.onComplete();
+            } catch (Throwable t) {
+                if (!cancelled) {
+                    emitter.tryOnError(t);
+                }
+            }
+        }
+
+        /**
+         * 上传offset开始的一片，失败时先查询服务端位置再重试，查询失败同样计入重试次数
+         * @param offset 为-1时只查询服务端位置
+         * @return 下一片的位置，全部完成时返回-1
+         */
+        private long withRetry(long offset) throws IOException, InterruptedException {
+            int attempt = 0;
+            boolean requery = false;
+            while (true) {
+                try {
+                    if (offset < 0) {
+                        return queryOffset();
+                    }
+                    if (requery) {
+                        //上一片可能已经部分写入，以服务端确认的位置为准
+                        long confirmed = queryOffset();
+                        requery = false;
+                        if (confirmed < 0 || confirmed == total) {
+                            return confirmed;
+                        }
+                        offset = confirmed;
+                    }
+                    return uploadChunk(offset);
+                } catch (IOException e) {
+                    if (cancelled || ++attempt > task.maxAttempts || !isRetryable(e)) {
+                        throw e;
+                    }
+                    Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+                    requery = true;
+                }
+            }
+        }
+
+        private boolean isRetryable(IOException e) {
+            return !(e instanceof UploadRejectedException);
+        }
+
+        private long queryOffset() throws IOException {
+            Request request = newRequest(RequestBody.create(task.contentType, new byte[0]), "bytes */" + total);
+            return handle(execute(request));
+        }
+
+        private long uploadChunk(final long offset) throws IOException {
+            long length = Math.min(task.chunkSize, total - offset);
+            RequestBody body = new ProgressRequestBody(new FileRegionRequestBody(task.contentType, task.file, offset, length),
+                    new ProgressRequestBody.Listener() {
+                        @Override
+                        public void onProgress(long written, long chunkTotal) {
+                            emitter.onNext(new UploadProgress(offset + written, total, null, false));
+                        }
+                    });
+            String range = "bytes " + offset + "-" + (offset + length - 1) + "/" + total;
+            return handle(execute(newRequest(body, range)));
+        }
+
+        /**
+         * 只在对应功能配置了时加标记，残留的标记由MarkerHeaderIntercept移除
+         */
+        private Request newRequest(RequestBody body, String contentRange) {
+            Request.Builder builder = new Request.Builder()
+                    .url(task.url)
+                    .header("Content-Range", contentRange)
+                    .put(body);
+            HttpClientConfiguration config = HttpDirector.getInstance().getConfig();
+            if (config == null) {
+                return builder.build();
+            }
+            if (config.gzipRequestThreshold > 0) {
+                //分片必须按原样发送，不能压缩
+                builder.header(HeaderCont.NO_COMPRESS, "true");
+            }
+            if (config.retryPolicy != null || config.retry > 0 || config.retryPolicies != null) {
+                //失败后由withRetry查询位置再重试，RetryIntercept再重试会使次数成倍增加
+                builder.header(HeaderCont.RETRY_POLICY, HeaderCont.RETRY_POLICY_NONE);
+            }
+            if (config.requestLanes != null) {
+                builder.header(HeaderCont.PRIORITY, "background");
+            }
+            return builder.build();
+        }
+
+        private Response execute(Request request) throws IOException {
+            if (cancelled) {
+                throw new InterruptedIOException("cancelled");
+            }
+            Call call = callFactory().newCall(request);
+            current = call;
+            try {
+                return call.execute();
+            } finally {
+                current = null;
+            }
+        }
+
+        /**
+         * @return 服务端确认后的下一片位置，完成时返回-1
+         */
+        private long handle(Response response) throws IOException {
+            try {
+                int code = response.code();
+                if (code == 200 || code == 201) {
+                    result = response.body() != null ? response.body().string() : null;
+                    return -1;
+                }
+                if (code == RESUME_INCOMPLETE) {
+                    long next = parseNextOffset(response.header("Range"));
+                    if (next > total) {
+                        throw new UploadRejectedException("server acknowledged " + next + " of " + total);
+                    }
+                    return next;
+                }
+                if (code >= 400 && code < 500 && code != 408 && code != 429) {
+                    throw new UploadRejectedException("HTTP " + code + " " + task.url);
+                }
+                throw new IOException("HTTP " + code + " " + task.url);
+            } finally {
+                response.close();
+            }
+        }
+
+        /**
+         * Range: bytes=0-N，没有Range时服务端未收到任何数据
+         */
+        private long parseNextOffset(String range) throws IOException {
+            if (range == null) {
+                return 0;
+            }
+            int dash = range.lastIndexOf('-');
+            if (dash < 0) {
+                throw new IOException("bad Range header: " + range);
+            }
+            try {
+                return Long.parseLong(range.substring(dash + 1).trim()) + 1;
+            } catch (NumberFormatException e) {
+                throw new IOException("bad Range header: " + range);
+            }
+        }
+    }
+
+    /**
+     * 服务端拒绝上传(会话失效、权限等)，不再重试
+     */
+    public static class UploadRejectedException extends IOException {
+        public UploadRejectedException(String message) {
+            super(message);
+        }
+    }
+}
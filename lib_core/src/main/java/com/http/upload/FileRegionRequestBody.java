@@ -0,0 +1,65 @@
+package com.http.upload;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * author : taowang
+ * date :2018/8/29
+ * description:从文件的指定区域流式读取的请求体，不把文件读入内存，可以重复写出(重试时)
+ **/
+public class FileRegionRequestBody extends RequestBody {
+
+    private final MediaType contentType;
+    private final File file;
+    private final long offset;
+    private final long length;
+
+    /**
+     * 整个文件
+     */
+    public FileRegionRequestBody(MediaType contentType, File file) {
+        this(contentType, file, 0, file.length());
+    }
+
+    public FileRegionRequestBody(MediaType contentType, File file, long offset, long length) {
+        this.contentType = contentType;
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        Source source = null;
+        try {
+            in.getChannel().position(offset);
+            source = Okio.source(in);
+            sink.write(source, length);
+        } finally {
+            if (source != null) {
+                source.close();
+            } else {
+                in.close();
+            }
+        }
+    }
+}
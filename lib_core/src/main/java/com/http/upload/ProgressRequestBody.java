@@ -0,0 +1,84 @@
+package com.http.upload;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * author : taowang
+ * date :2018/8/29
+ * description:统计写出字节数的请求体，回调按时间间隔节流，写完时一定回调一次。
+ * 可以直接作为service接口的@Body或@Part使用
+ **/
+public class ProgressRequestBody extends RequestBody {
+
+    /**
+     * 上传进度回调，在上传线程调用
+     */
+    public interface Listener {
+        /**
+         * @param written 本次已写出的字节数
+         * @param total 总字节数，未知时为-1
+         */
+        void onProgress(long written, long total);
+    }
+
+    private static final long DEFAULT_INTERVAL_MILLIS = 200;
+
+    private final RequestBody delegate;
+    private final Listener listener;
+    private final long intervalMillis;
+
+    public ProgressRequestBody(RequestBody delegate, Listener listener) {
+        this(delegate, listener, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public ProgressRequestBody(RequestBody delegate, Listener listener, long intervalMillis) {
+        this.delegate = delegate;
+        this.listener = listener;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        final long total = contentLength();
+        BufferedSink countingSink = Okio.buffer(new ForwardingSink(sink) {
+            private long written;
+            private long lastCallback = nowMillis() - intervalMillis;
+
+            @Override
+            public void write(Buffer source, long byteCount) throws IOException {
+                super.write(source, byteCount);
+                written += byteCount;
+                long now = nowMillis();
+                if (now - lastCallback >= intervalMillis || written == total) {
+                    lastCallback = now;
+                    listener.onProgress(written, total);
+                }
+            }
+        });
+        delegate.writeTo(countingSink);
+        countingSink.flush();
+    }
+
+    private static long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
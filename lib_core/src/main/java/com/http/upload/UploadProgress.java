@@ -0,0 +1,25 @@
+package com.http.upload;
+
+/**
+ * author : taowang
+ * date :2018/8/29
+ * description:上传进度，完成时result为服务端最后一次响应的内容
+ **/
+public class UploadProgress {
+
+    public final long uploadedBytes;
+    public final long totalBytes;
+    public final String result;
+    public final boolean completed;
+
+    UploadProgress(long uploadedBytes, long totalBytes, String result, boolean completed) {
+        this.uploadedBytes = uploadedBytes;
+        this.totalBytes = totalBytes;
+        this.result = result;
+        this.completed = completed;
+    }
+
+    public int percent() {
+        return totalBytes > 0 ? (int) (uploadedBytes * 100 / totalBytes) : 100;
+    }
+}
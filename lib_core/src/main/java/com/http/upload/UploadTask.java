@@ -0,0 +1,81 @@
+package com.http.upload;
+
+import java.io.File;
+
+import okhttp3.MediaType;
+
+/**
+ * author : taowang
+ * date :2018/8/29
+ * description:分片上传任务，url为服务端创建的上传会话地址，通过Builder构造
+ **/
+public class UploadTask {
+
+    public final String url;
+    public final File file;
+    public final MediaType contentType;
+    /**
+     * 每片的大小
+     */
+    public final long chunkSize;
+    /**
+     * 单片失败后的最大重试次数
+     */
+    public final int maxAttempts;
+
+    private UploadTask(Builder builder) {
+        this.url = builder.url;
+        this.file = builder.file;
+        this.contentType = builder.contentType;
+        this.chunkSize = builder.chunkSize;
+        this.maxAttempts = builder.maxAttempts;
+    }
+
+    public static class Builder {
+        private String url;
+        private File file;
+        private MediaType contentType = MediaType.parse("application/octet-stream");
+        private long chunkSize = 512 * 1024;
+        private int maxAttempts = 3;
+
+        public Builder url(String url) {
+
+            this.url = url;
+            return this;
+        }
+
+        public Builder file(File file) {
+
+            this.file = file;
+            return this;
+        }
+
+        public Builder contentType(MediaType contentType) {
+
+            this.contentType = contentType;
+            return this;
+        }
+
+        public Builder chunkSize(long chunkSize) {
+
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        public Builder maxAttempts(int maxAttempts) {
+
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public UploadTask build() {
+            if (url == null || file == null) {
+                throw new IllegalArgumentException("url and file are required");
+            }
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("chunkSize <= 0");
+            }
+            return new UploadTask(this);
+        }
+    }
+}
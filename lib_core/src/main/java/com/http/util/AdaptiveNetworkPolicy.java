@@ -0,0 +1,149 @@
+package com.http.util;
+
+import com.util.network.NetworkStateUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.Dispatcher;
+
+/**
+ * author : taowang
+ * date :2018/8/16
+ * description:根据网络类型调整超时时间、单host并发数、各优先级通道的并发数和预加载力度。
+ * 2G下减少并发、延长读超时，Wi-Fi下增加并发。
+ * Retrofit的Rx调用走execute，不经过Dispatcher的排队，实际限制并发的是RequestLanes
+ **/
+public class AdaptiveNetworkPolicy implements NetworkClassMonitor.OnNetworkClassChangedListener {
+
+    /**
+     * 某种网络类型下的参数
+     */
+    public static class Profile {
+        public final int connectTimeoutMillis;
+        public final int readTimeoutMillis;
+        public final int writeTimeoutMillis;
+        public final int maxRequestsPerHost;
+        /**
+         * RequestLanes中除用户等待通道外的总并发数，0表示不调整
+         */
+        public final int maxRequests;
+        /**
+         * 用户等待、普通、后台通道的并发数，0表示不调整
+         */
+        public final int userLimit;
+        public final int normalLimit;
+        public final int backgroundLimit;
+        /**
+         * 预加载通道的并发数，0表示不做预加载
+         */
+        public final int prefetchLimit;
+
+        /**
+         * 只调整预加载通道，其他通道保持RequestLanes中的设置
+         */
+        public Profile(int connectTimeoutMillis, int readTimeoutMillis, int writeTimeoutMillis,
+                       int maxRequestsPerHost, int prefetchLimit) {
+            this(connectTimeoutMillis, readTimeoutMillis, writeTimeoutMillis, maxRequestsPerHost,
+                    0, 0, 0, prefetchLimit, 0);
+        }
+
+        public Profile(int connectTimeoutMillis, int readTimeoutMillis, int writeTimeoutMillis,
+                       int maxRequestsPerHost, int maxRequests,
+                       int userLimit, int normalLimit, int prefetchLimit, int backgroundLimit) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            this.readTimeoutMillis = readTimeoutMillis;
+            this.writeTimeoutMillis = writeTimeoutMillis;
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            this.maxRequests = maxRequests;
+            this.userLimit = userLimit;
+            this.normalLimit = normalLimit;
+            this.prefetchLimit = prefetchLimit;
+            this.backgroundLimit = backgroundLimit;
+        }
+    }
+
+    private final Map<String, Profile> profiles = new HashMap<>();
+    private volatile Profile current;
+
+    private Dispatcher dispatcher;
+    private RequestLanes lanes;
+
+    public AdaptiveNetworkPolicy() {
+        profiles.put(NetworkStateUtil.NETWORK_TYPE_NAME_2G, new Profile(20000, 40000, 40000, 2, 3, 2, 2, 0, 1));
+        profiles.put(NetworkStateUtil.NETWORK_TYPE_NAME_3G, new Profile(15000, 25000, 25000, 4, 6, 4, 3, 1, 1));
+        profiles.put(NetworkStateUtil.NETWORK_TYPE_NAME_4G, new Profile(10000, 15000, 15000, 5, 8, 6, 5, 2, 2));
+        profiles.put(NetworkStateUtil.NETWORK_TYPE_NAME_WIFI, new Profile(10000, 10000, 10000, 8, 12, 8, 8, 4, 3));
+        profiles.put(NetworkStateUtil.NETWORK_TYPE_NAME_UNKNOWN, new Profile(15000, 25000, 25000, 4, 6, 4, 3, 1, 1));
+        current = profiles.get(NetworkStateUtil.NETWORK_TYPE_NAME_UNKNOWN);
+    }
+
+    /**
+     * 替换某种网络类型的参数
+     * @param networkClass NetworkStateUtil.NETWORK_TYPE_NAME_*
+     * @param profile
+     * @return
+     */
+    public AdaptiveNetworkPolicy profile(String networkClass, Profile profile) {
+        profiles.put(networkClass, profile);
+        return this;
+    }
+
+    /**
+     * 绑定到网络监听，网络类型变化时调整dispatcher和各通道的并发数
+     * @param monitor
+     * @param dispatcher 可以为null
+     * @param lanes 可以为null
+     */
+    public void attach(NetworkClassMonitor monitor, Dispatcher dispatcher, RequestLanes lanes) {
+        this.dispatcher = dispatcher;
+        this.lanes = lanes;
+        monitor.addListener(this);
+    }
+
+    @Override
+    public void onNetworkClassChanged(String networkClass, boolean connected) {
+        Profile profile = profiles.get(networkClass);
+        if (profile == null) {
+            profile = profiles.get(NetworkStateUtil.NETWORK_TYPE_NAME_UNKNOWN);
+        }
+        current = profile;
+        if (dispatcher != null) {
+            dispatcher.setMaxRequestsPerHost(profile.maxRequestsPerHost);
+        }
+        if (lanes != null) {
+            apply(lanes, profile);
+        }
+    }
+
+    static void apply(RequestLanes lanes, Profile profile) {
+        if (profile.maxRequests > 0) {
+            lanes.setMaxRequests(profile.maxRequests);
+        }
+        if (profile.userLimit > 0) {
+            lanes.setLimit(RequestLanes.LANE_USER_BLOCKING, profile.userLimit);
+        }
+        if (profile.normalLimit > 0) {
+            lanes.setLimit(RequestLanes.LANE_NORMAL, profile.normalLimit);
+        }
+        if (profile.backgroundLimit > 0) {
+            lanes.setLimit(RequestLanes.LANE_BACKGROUND, profile.backgroundLimit);
+        }
+        //不做预加载时仍保留一个并发，已经发出的预加载请求可以排队完成
+        lanes.setLimit(RequestLanes.LANE_PREFETCH, Math.max(1, profile.prefetchLimit));
+    }
+
+    /**
+     * 当前网络类型对应的参数
+     */
+    public Profile currentProfile() {
+        return current;
+    }
+
+    /**
+     * 当前网络下是否适合做预加载
+     */
+    public boolean isPrefetchAllowed() {
+        return current.prefetchLimit > 0;
+    }
+}
@@ -0,0 +1,288 @@
+package com.http.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.Dns;
+
+/**
+ * author : taowang
+ * date :2018/8/17
+ * description:带缓存的DNS解析，结果持久化到SharedPreferences，进程重启后仍可使用。
+ * 系统解析接口拿不到记录的TTL，这里使用固定的有效期，过期前在后台刷新；
+ * 过期但未超过maxStale的记录直接返回，同时在后台刷新，冷启动时不用等待系统解析。
+ * 持久化的记录在io线程读取，不阻塞创建它的主线程
+ **/
+public class CachingDns implements Dns {
+
+    private static final String SP_NAME = "http_dns_cache";
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long DEFAULT_MAX_STALE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final float REFRESH_AHEAD = 0.75f;
+    /**
+     * 解析时最多等待持久化记录读取完成的时间
+     */
+    private static final long LOAD_TIMEOUT_MILLIS = 1000;
+
+    private static volatile CachingDns instance;
+
+    private final SharedPreferences sp;
+    private final Dns upstream;
+    private final long ttlMillis;
+    private final long maxStaleMillis;
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> refreshing = new ConcurrentHashMap<>();
+    private final CountDownLatch loaded = new CountDownLatch(1);
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong staleHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong resolveCount = new AtomicLong();
+    private final AtomicLong resolveNanos = new AtomicLong();
+
+    public static CachingDns getInstance(Context context) {
+        if (instance == null) {
+            synchronized (CachingDns.class) {
+                if (instance == null) {
+                    instance = new CachingDns(context, DEFAULT_TTL_MILLIS, DEFAULT_MAX_STALE_MILLIS);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private CachingDns(Context context, long ttlMillis, long maxStaleMillis) {
+        this(context.getApplicationContext().getSharedPreferences(SP_NAME, Context.MODE_PRIVATE), Dns.SYSTEM,
+                ttlMillis, maxStaleMillis);
+    }
+
+    /**
+     * @param sp 持久化记录，在io线程读取
+     * @param upstream 真正的解析
+     */
+    CachingDns(SharedPreferences sp, Dns upstream, long ttlMillis, long maxStaleMillis) {
+        this.sp = sp;
+        this.upstream = upstream;
+        this.ttlMillis = ttlMillis;
+        this.maxStaleMillis = maxStaleMillis;
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    load();
+                } finally {
+                    loaded.countDown();
+                }
+            }
+        });
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        awaitLoaded();
+        Entry entry = cache.get(hostname);
+        if (entry != null) {
+            long age = System.currentTimeMillis() - entry.resolvedAt;
+            if (age >= 0 && age < ttlMillis) {
+                hitCount.incrementAndGet();
+                if (age > ttlMillis * REFRESH_AHEAD) {
+                    refreshAsync(hostname);
+                }
+                return entry.addresses;
+            }
+            if (age >= 0 && age < maxStaleMillis) {
+                //过期不久的记录大概率仍然可用，先返回，刷新后下次使用新的结果
+                staleHitCount.incrementAndGet();
+                refreshAsync(hostname);
+                return entry.addresses;
+            }
+        }
+
+        missCount.incrementAndGet();
+        return resolve(hostname);
+    }
+
+    private void awaitLoaded() {
+        try {
+            loaded.await(LOAD_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<InetAddress> resolve(String hostname) throws UnknownHostException {
+        long start = System.nanoTime();
+        List<InetAddress> addresses;
+        try {
+            addresses = upstream.lookup(hostname);
+        } finally {
+            resolveCount.incrementAndGet();
+            resolveNanos.addAndGet(System.nanoTime() - start);
+        }
+        Entry entry = new Entry(Collections.unmodifiableList(new ArrayList<>(addresses)), System.currentTimeMillis());
+        cache.put(hostname, entry);
+        save(hostname, entry);
+        return entry.addresses;
+    }
+
+    private void refreshAsync(final String hostname) {
+        if (refreshing.put(hostname, Boolean.TRUE) != null) {
+            return;
+        }
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    resolve(hostname);
+                } catch (UnknownHostException e) {
+                    e.printStackTrace();
+                } finally {
+                    refreshing.remove(hostname);
+                }
+            }
+        });
+    }
+
+    /**
+     * 在后台预解析，已缓存且未过期的host会跳过
+     * @param hostnames
+     */
+    public void prefetch(final String... hostnames) {
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                awaitLoaded();
+                for (String hostname : hostnames) {
+                    if (hostname == null || hostname.isEmpty()) {
+                        continue;
+                    }
+                    Entry entry = cache.get(hostname);
+                    if (entry == null
+                            || System.currentTimeMillis() - entry.resolvedAt > ttlMillis * REFRESH_AHEAD) {
+                        refreshAsync(hostname);
+                    }
+                }
+            }
+        });
+    }
+
+    private void load() {
+        for (Map.Entry<String, ?> item : sp.getAll().entrySet()) {
+            if (!(item.getValue() instanceof String)) {
+                continue;
+            }
+            Entry entry = Entry.decode(item.getKey(), (String) item.getValue());
+            if (entry != null) {
+                //读取完成前刷新得到的结果更新
+                cache.putIfAbsent(item.getKey(), entry);
+            }
+        }
+    }
+
+    private void save(String hostname, Entry entry) {
+        sp.edit().putString(hostname, entry.encode()).apply();
+    }
+
+    public void clear() {
+        cache.clear();
+        sp.edit().clear().apply();
+    }
+
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 直接返回过期记录并在后台刷新的次数
+     */
+    public long staleHitCount() {
+        return staleHitCount.get();
+    }
+
+    public long missCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 缓存命中率
+     */
+    public float hitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0f : (float) hits / total;
+    }
+
+    /**
+     * 系统解析的平均耗时(毫秒)，包括后台刷新
+     */
+    public long averageResolveMillis() {
+        long count = resolveCount.get();
+        return count == 0 ? 0 : resolveNanos.get() / count / 1000000;
+    }
+
+    public String dumpStats() {
+        return "hosts=" + cache.size()
+                + ", hitRate=" + hitRate()
+                + ", hits=" + hitCount()
+                + ", staleHits=" + staleHitCount()
+                + ", misses=" + missCount()
+                + ", avgResolve=" + averageResolveMillis() + "ms";
+    }
+
+    private static final class Entry {
+        final List<InetAddress> addresses;
+        final long resolvedAt;
+
+        Entry(List<InetAddress> addresses, long resolvedAt) {
+            this.addresses = addresses;
+            this.resolvedAt = resolvedAt;
+        }
+
+        /**
+         * 格式：解析时间|ip1,ip2
+         */
+        String encode() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(resolvedAt).append('|');
+            for (int i = 0; i < addresses.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(addresses.get(i).getHostAddress());
+            }
+            return sb.toString();
+        }
+
+        static Entry decode(String hostname, String value) {
+            int split = value.indexOf('|');
+            if (split <= 0) {
+                return null;
+            }
+            try {
+                long resolvedAt = Long.parseLong(value.substring(0, split));
+                List<InetAddress> addresses = new ArrayList<>();
+                for (String ip : value.substring(split + 1).split(",")) {
+                    if (!ip.isEmpty()) {
+                        //ip字面量不会触发真正的解析
+                        addresses.add(InetAddress.getByAddress(hostname, InetAddress.getByName(ip).getAddress()));
+                    }
+                }
+                return addresses.isEmpty() ? null : new Entry(Collections.unmodifiableList(addresses), resolvedAt);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.http.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import io.reactivex.Observable;
+import io.reactivex.Observer;
+import okhttp3.Call;
+
+/**
+ * author : taowang
+ * date :2018/9/5
+ * description:按所属的Activity/Fragment记录正在执行的OkHttp Call，页面销毁时直接取消Call，
+ * 不用等Rx的取消经过线程切换，重试中的请求也会立即停止。
+ * Retrofit的Rx适配器在订阅线程上同步执行Call，订阅期间通过ThreadLocal把owner传给CallTagIntercept。
+ * 合并后的请求通过{@link Group}登记到每个订阅者的owner下，最后一个owner取消时才取消Call。
+ * owner是弱引用，没有正常结束的请求不会让页面泄漏
+ **/
+public class CallTags {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    /**
+     * owner -> 正在执行的Call。Activity和Fragment没有重写equals，按实例区分
+     */
+    private static final Map<Object, List<Call>> CALLS = new WeakHashMap<>();
+
+    /**
+     * 多个owner共享的Call -> 共享它的Group，Group释放时移除
+     */
+    private static final Map<Call, Group> SHARED = new HashMap<>();
+
+    private CallTags() {
+
+    }
+
+    /**
+     * 给请求打上owner标记，需要在subscribeOn之前调用
+     * @param owner Activity或Fragment
+     * @param upstream Retrofit返回的Observable
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable<T> tag(Object owner, final Observable<T> upstream) {
+        if (owner == null) {
+            return upstream;
+        }
+        final WeakReference<Object> ownerRef = new WeakReference<>(owner);
+        return new Observable<T>() {
+            @Override
+            protected void subscribeActual(Observer<? super T> observer) {
+                OwnerScope scope = new OwnerScope(ownerRef);
+                try {
+                    subscribeIn(scope, upstream, observer);
+                } finally {
+                    scope.release();
+                }
+            }
+        };
+    }
+
+    /**
+     * 在当前线程的登记范围内订阅upstream，用于subscribeOn切换线程后继续登记到同一个Group。
+     * 需要在订阅线程上调用，例如Observable.defer中
+     * @param upstream
+     * @param <T>
+     * @return 当前线程没有登记范围时返回upstream
+     */
+    public static <T> Observable<T> inCurrentScope(final Observable<T> upstream) {
+        final Scope scope = CURRENT.get();
+        if (scope == null) {
+            return upstream;
+        }
+        return new Observable<T>() {
+            @Override
+            protected void subscribeActual(Observer<? super T> observer) {
+                subscribeIn(scope, upstream, observer);
+            }
+        };
+    }
+
+    private static <T> void subscribeIn(Scope scope, Observable<T> upstream, Observer<? super T> observer) {
+        Scope previous = CURRENT.get();
+        CURRENT.set(scope);
+        try {
+            upstream.subscribe(observer);
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * 当前线程上正在订阅的请求所属的owner记录Call，由CallTagIntercept调用
+     * @param call
+     */
+    public static void register(Call call) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.register(call);
+        }
+    }
+
+    /**
+     * 取消owner的全部Call，共享的Call在它的最后一个owner取消时才取消
+     * @param owner
+     * @return 取消的Call数
+     */
+    public static int cancel(Object owner) {
+        List<Call> cancelled = new ArrayList<>();
+        synchronized (CALLS) {
+            List<Call> calls = CALLS.remove(owner);
+            if (calls == null) {
+                return 0;
+            }
+            for (Call call : calls) {
+                Group group = SHARED.get(call);
+                if (group == null || group.cancelOwner(owner)) {
+                    cancelled.add(call);
+                }
+            }
+        }
+        int count = 0;
+        for (Call call : cancelled) {
+            if (!call.isCanceled()) {
+                call.cancel();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 正在执行的Call数
+     */
+    public static int inFlightCount(Object owner) {
+        synchronized (CALLS) {
+            List<Call> calls = CALLS.get(owner);
+            return calls == null ? 0 : calls.size();
+        }
+    }
+
+    /**
+     * 需要持有CALLS
+     */
+    private static void add(Object owner, Call call) {
+        List<Call> calls = CALLS.get(owner);
+        if (calls == null) {
+            calls = new ArrayList<>();
+            CALLS.put(owner, calls);
+        }
+        if (!calls.contains(call)) {
+            calls.add(call);
+        }
+    }
+
+    /**
+     * 需要持有CALLS
+     */
+    private static void remove(Object owner, List<Call> removed) {
+        List<Call> calls = CALLS.get(owner);
+        if (calls != null) {
+            calls.removeAll(removed);
+            if (calls.isEmpty()) {
+                CALLS.remove(owner);
+            }
+        }
+    }
+
+    /**
+     * 当前线程上订阅请求的owner
+     */
+    private static Object currentOwner() {
+        Scope scope = CURRENT.get();
+        return scope instanceof OwnerScope ? ((OwnerScope) scope).owner.get() : null;
+    }
+
+    private abstract static class Scope {
+        abstract void register(Call call);
+    }
+
+    private static final class OwnerScope extends Scope {
+        /**
+         * 请求执行期间不持有页面
+         */
+        final WeakReference<Object> owner;
+        final List<Call> calls = new ArrayList<>(1);
+
+        OwnerScope(WeakReference<Object> owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        void register(Call call) {
+            Object current = owner.get();
+            if (current == null) {
+                return;
+            }
+            synchronized (CALLS) {
+                if (calls.contains(call)) {
+                    return;
+                }
+                calls.add(call);
+                add(current, call);
+            }
+        }
+
+        /**
+         * 订阅结束，请求和解析都已完成
+         */
+        void release() {
+            Object current = owner.get();
+            synchronized (CALLS) {
+                if (current != null) {
+                    remove(current, calls);
+                }
+                calls.clear();
+            }
+        }
+    }
+
+    /**
+     * 多个订阅者共享的请求，例如RequestCoalescer合并后的请求。
+     * 订阅者加入时记下它的owner，共享的Call登记到每个owner下；
+     * 还有没被取消的owner或者没有owner的订阅者时，cancel不取消Call
+     */
+    public static final class Group {
+
+        private final Scope scope = new Scope() {
+            @Override
+            void register(Call call) {
+                Group.this.register(call);
+            }
+        };
+        private final List<WeakReference<Object>> owners = new ArrayList<>(2);
+        private final List<Call> calls = new ArrayList<>(1);
+        /**
+         * 没有owner的订阅者数
+         */
+        private int anonymous;
+        private boolean cancelled;
+
+        /**
+         * 当前线程上订阅请求的owner加入，需要在订阅线程上调用
+         * @return 离开时传给{@link #leave(Object)}
+         */
+        public Object join() {
+            Object owner = currentOwner();
+            synchronized (CALLS) {
+                if (owner == null) {
+                    anonymous++;
+                    return null;
+                }
+                WeakReference<Object> token = new WeakReference<>(owner);
+                owners.add(token);
+                for (Call call : calls) {
+                    add(owner, call);
+                }
+                return token;
+            }
+        }
+
+        /**
+         * 订阅者离开，不再持有共享的Call
+         * @param token {@link #join()}的返回值
+         */
+        public void leave(Object token) {
+            synchronized (CALLS) {
+                if (token == null) {
+                    anonymous--;
+                    return;
+                }
+                if (!owners.remove(token)) {
+                    return;
+                }
+                Object owner = ((WeakReference<?>) token).get();
+                if (owner != null) {
+                    remove(owner, calls);
+                }
+            }
+        }
+
+        /**
+         * 全部owner都已取消，Call已经或者即将被取消
+         */
+        public boolean isCancelled() {
+            synchronized (CALLS) {
+                return cancelled;
+            }
+        }
+
+        /**
+         * 在这个Group的登记范围内订阅upstream，upstream中执行的Call登记到全部owner下
+         */
+        public <T> Observable<T> bind(final Observable<T> upstream) {
+            return new Observable<T>() {
+                @Override
+                protected void subscribeActual(Observer<? super T> observer) {
+                    subscribeIn(scope, upstream, observer);
+                }
+            };
+        }
+
+        /**
+         * 请求结束，移除全部登记
+         */
+        public void release() {
+            synchronized (CALLS) {
+                for (WeakReference<Object> token : owners) {
+                    Object owner = token.get();
+                    if (owner != null) {
+                        remove(owner, calls);
+                    }
+                }
+                for (Call call : calls) {
+                    SHARED.remove(call);
+                }
+                calls.clear();
+            }
+        }
+
+        private void register(Call call) {
+            synchronized (CALLS) {
+                if (calls.contains(call)) {
+                    return;
+                }
+                calls.add(call);
+                SHARED.put(call, this);
+                for (WeakReference<Object> token : owners) {
+                    Object owner = token.get();
+                    if (owner != null) {
+                        add(owner, call);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 需要持有CALLS
+         * @return 没有剩下的订阅者，可以取消Call
+         */
+        private boolean cancelOwner(Object owner) {
+            Iterator<WeakReference<Object>> it = owners.iterator();
+            while (it.hasNext()) {
+                Object current = it.next().get();
+                if (current == null || current == owner) {
+                    it.remove();
+                }
+            }
+            if (owners.isEmpty() && anonymous <= 0) {
+                cancelled = true;
+            }
+            return cancelled;
+        }
+    }
+}
@@ -3,10 +3,19 @@ package com.http.util;
 import android.content.Context;
 
 import com.http.common.SessionOutCallback;
+import com.http.common.intercept.BatchIntercept;
+import com.http.common.intercept.CircuitBreakerIntercept;
+import com.http.common.intercept.HedgeIntercept;
+import com.http.common.intercept.RequestDecorIntercept;
+import com.http.common.intercept.SessionRefreshIntercept;
+import com.http.common.retry.RetryBudget;
+import com.http.common.retry.RetryPolicy;
 
 import org.apache.http.conn.ssl.SSLSocketFactory;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import okhttp3.Interceptor;
@@ -18,6 +27,9 @@ import okhttp3.Interceptor;
  **/
 public class HttpClientConfiguration {
 
+    private static final int DEFAULT_CACHE_MAX_STALE = 7 * 24 * 60 * 60;//离线缓存默认一周
+    private static final long DEFAULT_LOG_BODY_PREFIX = 4096;
+
     public int connectTimeout;
     public int responseTimeout;
     public int retry;
@@ -31,6 +43,30 @@ public class HttpClientConfiguration {
     public SSLSocketFactory sslSocketFactory;
     public Context context;
     public SessionOutCallback mSessionOutCallback;
+    public boolean validateEagerly;
+    public File cacheDir;
+    public long cacheSize;
+    public int cacheMaxAge;
+    public boolean offlineCache;
+    public int cacheMaxStale;
+    public RetryPolicy retryPolicy;
+    public Map<String, RetryPolicy> retryPolicies;
+    public RetryBudget retryBudget;
+    public CircuitBreakerIntercept circuitBreaker;
+    public HedgeIntercept hedge;
+    public RequestLanes requestLanes;
+    public AdaptiveNetworkPolicy adaptivePolicy;
+    public boolean cachingDns;
+    public long gzipRequestThreshold;
+    public long logBodyPrefix;
+    public int logSampleEvery;
+    public Map<String, RequestDecorIntercept.ValueSupplier> dynamicHeaders;
+    public Map<String, RequestDecorIntercept.ValueSupplier> dynamicParams;
+    public boolean preferMsgPack;
+    public ValidatorStore validatorStore;
+    public SessionRefreshIntercept sessionRefresh;
+    public boolean outbox;
+    public BatchIntercept batch;
     public Builder builder;
     /**
      * 构造者网络请求
@@ -49,6 +85,30 @@ public class HttpClientConfiguration {
         private SSLSocketFactory sslSocketFactory;
         private Context context;
         private SessionOutCallback mSessionOutCallback;
+        private boolean validateEagerly;
+        private File cacheDir;
+        private long cacheSize;
+        private int cacheMaxAge;
+        private boolean offlineCache;
+        private int cacheMaxStale = DEFAULT_CACHE_MAX_STALE;
+        private RetryPolicy retryPolicy;
+        private Map<String, RetryPolicy> retryPolicies;
+        private RetryBudget retryBudget;
+        private CircuitBreakerIntercept circuitBreaker;
+        private HedgeIntercept hedge;
+        private RequestLanes requestLanes;
+        private AdaptiveNetworkPolicy adaptivePolicy;
+        private boolean cachingDns;
+        private long gzipRequestThreshold;
+        private long logBodyPrefix = DEFAULT_LOG_BODY_PREFIX;
+        private int logSampleEvery = 1;
+        private Map<String, RequestDecorIntercept.ValueSupplier> dynamicHeaders;
+        private Map<String, RequestDecorIntercept.ValueSupplier> dynamicParams;
+        private boolean preferMsgPack;
+        private ValidatorStore validatorStore;
+        private SessionRefreshIntercept sessionRefresh;
+        private boolean outbox;
+        private BatchIntercept batch;
 
         public Builder listNetworkInterceptor(ArrayList<Interceptor> listNetworkInterceptor) {
 
@@ -114,6 +174,229 @@ public class HttpClientConfiguration {
             return this;
         }
 
+        /**
+         * 创建service代理时是否一次性解析全部方法注解，配合HttpDirector.warmUpReq在后台预热
+         */
+        public Builder validateEagerly(boolean validateEagerly) {
+
+            this.validateEagerly = validateEagerly;
+            return this;
+        }
+
+        /**
+         * 磁盘缓存目录，同一目录只会创建一个Cache
+         */
+        public Builder cacheDir(File cacheDir) {
+
+            this.cacheDir = cacheDir;
+            return this;
+        }
+
+        /**
+         * 磁盘缓存大小(字节)
+         */
+        public Builder cacheSize(long cacheSize) {
+
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * 服务端没有返回Cache-Control时默认的缓存时长(秒)，单个接口可以用HeaderCont.CACHE_MAX_AGE覆盖
+         */
+        public Builder cacheMaxAge(int cacheMaxAge) {
+
+            this.cacheMaxAge = cacheMaxAge;
+            return this;
+        }
+
+        /**
+         * 无网络或请求出错时是否使用过期缓存
+         */
+        public Builder offlineCache(boolean offlineCache) {
+
+            this.offlineCache = offlineCache;
+            return this;
+        }
+
+        /**
+         * 离线时允许使用的过期缓存时长(秒)
+         */
+        public Builder cacheMaxStale(int cacheMaxStale) {
+
+            this.cacheMaxStale = cacheMaxStale;
+            return this;
+        }
+
+        /**
+         * 默认的重试策略，设置后retry(int)不再生效
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * 命名的重试策略，接口上通过HeaderCont.RETRY_POLICY选择
+         */
+        public Builder retryPolicies(Map<String, RetryPolicy> retryPolicies) {
+
+            this.retryPolicies = retryPolicies;
+            return this;
+        }
+
+        /**
+         * 重试预算，不设置时使用RetryBudget.createDefault()
+         */
+        public Builder retryBudget(RetryBudget retryBudget) {
+
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        /**
+         * 按host熔断，熔断中的请求以ExceptionCont.CIRCUIT_OPEN快速失败
+         */
+        public Builder circuitBreaker(CircuitBreakerIntercept circuitBreaker) {
+
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * 对冲请求，只对标记了HeaderCont.HEDGE的GET请求生效
+         */
+        public Builder hedge(HedgeIntercept hedge) {
+
+            this.hedge = hedge;
+            return this;
+        }
+
+        /**
+         * 请求优先级通道，接口通过HeaderCont.PRIORITY选择通道
+         */
+        public Builder requestLanes(RequestLanes requestLanes) {
+
+            this.requestLanes = requestLanes;
+            return this;
+        }
+
+        /**
+         * 根据网络类型调整超时和并发，需要同时设置context。超时取connectTimeout/responseTimeout
+         * 和当前网络类型参数中较长的一个，maxConnections被覆盖
+         */
+        public Builder adaptivePolicy(AdaptiveNetworkPolicy adaptivePolicy) {
+
+            this.adaptivePolicy = adaptivePolicy;
+            return this;
+        }
+
+        /**
+         * 使用带缓存的DNS解析，并在创建retrofit时预解析baseUrl，需要同时设置context
+         */
+        public Builder cachingDns(boolean cachingDns) {
+
+            this.cachingDns = cachingDns;
+            return this;
+        }
+
+        /**
+         * 请求体超过这个字节数时gzip压缩，0表示不压缩
+         */
+        public Builder gzipRequestThreshold(long gzipRequestThreshold) {
+
+            this.gzipRequestThreshold = gzipRequestThreshold;
+            return this;
+        }
+
+        /**
+         * 日志最多记录的body字节数
+         */
+        public Builder logBodyPrefix(long logBodyPrefix) {
+
+            this.logBodyPrefix = logBodyPrefix;
+            return this;
+        }
+
+        /**
+         * 每个接口每N次请求记录一次日志
+         */
+        public Builder logSampleEvery(int logSampleEvery) {
+
+            this.logSampleEvery = logSampleEvery;
+            return this;
+        }
+
+        /**
+         * 每次请求时取值的请求头，例如会刷新的token
+         */
+        public Builder dynamicHeader(String name, RequestDecorIntercept.ValueSupplier supplier) {
+
+            if (dynamicHeaders == null) {
+                dynamicHeaders = new LinkedHashMap<>();
+            }
+            dynamicHeaders.put(name, supplier);
+            return this;
+        }
+
+        /**
+         * 每次请求时取值的公共参数
+         */
+        public Builder dynamicParam(String name, RequestDecorIntercept.ValueSupplier supplier) {
+
+            if (dynamicParams == null) {
+                dynamicParams = new LinkedHashMap<>();
+            }
+            dynamicParams.put(name, supplier);
+            return this;
+        }
+
+        /**
+         * 所有请求默认要求msgpack响应，单个接口可以用HeaderCont.WIRE_FORMAT改回json
+         */
+        public Builder preferMsgPack(boolean preferMsgPack) {
+
+            this.preferMsgPack = preferMsgPack;
+            return this;
+        }
+
+        /**
+         * GET请求按ETag/Last-Modified做条件请求，服务端返回304时使用保存的内容，不需要服务端返回Cache-Control
+         */
+        public Builder validatorStore(ValidatorStore validatorStore) {
+
+            this.validatorStore = validatorStore;
+            return this;
+        }
+
+        /**
+         * 掉线时只刷新一次会话并重发请求，需要HttpDirector.setmSessionOutCallback设置的是SessionRefreshCallback
+         */
+        public Builder sessionRefresh(SessionRefreshIntercept sessionRefresh) {
+
+            this.sessionRefresh = sessionRefresh;
+            return this;
+        }
+
+        /**
+         * 标记了HeaderCont.OUTBOX的写请求离线时保存到RequestOutbox，联网后重放，需要同时设置context
+         */
+        public Builder outbox(boolean outbox) {
+
+            this.outbox = outbox;
+            return this;
+        }
+
+        /**
+         * 合并标记了HeaderCont.BATCH的请求，例如 new BatchIntercept("/api/batch")
+         */
+        public Builder batch(BatchIntercept batch) {
+
+            this.batch = batch;
+            return this;
+        }
+
         public HttpClientConfiguration build() {
             return new HttpClientConfiguration(this);
         }
@@ -136,6 +419,30 @@ public class HttpClientConfiguration {
         this.context = builder.context;
         this.builder = builder;
         this.mSessionOutCallback = builder.mSessionOutCallback;
+        this.validateEagerly = builder.validateEagerly;
+        this.cacheDir = builder.cacheDir;
+        this.cacheSize = builder.cacheSize;
+        this.cacheMaxAge = builder.cacheMaxAge;
+        this.offlineCache = builder.offlineCache;
+        this.cacheMaxStale = builder.cacheMaxStale;
+        this.retryPolicy = builder.retryPolicy;
+        this.retryPolicies = builder.retryPolicies;
+        this.retryBudget = builder.retryBudget;
+        this.circuitBreaker = builder.circuitBreaker;
+        this.hedge = builder.hedge;
+        this.requestLanes = builder.requestLanes;
+        this.adaptivePolicy = builder.adaptivePolicy;
+        this.cachingDns = builder.cachingDns;
+        this.gzipRequestThreshold = builder.gzipRequestThreshold;
+        this.logBodyPrefix = builder.logBodyPrefix;
+        this.logSampleEvery = builder.logSampleEvery;
+        this.dynamicHeaders = builder.dynamicHeaders;
+        this.dynamicParams = builder.dynamicParams;
+        this.preferMsgPack = builder.preferMsgPack;
+        this.validatorStore = builder.validatorStore;
+        this.sessionRefresh = builder.sessionRefresh;
+        this.outbox = builder.outbox;
+        this.batch = builder.batch;
     }
 
 }
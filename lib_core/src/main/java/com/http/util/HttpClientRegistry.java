@@ -0,0 +1,173 @@
+package com.http.util;
+
+import com.facebook.stetho.okhttp3.StethoInterceptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * author : taowang
+ * date :2018/8/6
+ * description:OkHttpClient注册表，所有client都由同一个根client通过newBuilder()派生，
+ * 共享连接池、调度线程和TLS会话
+ **/
+public class HttpClientRegistry {
+
+    private final OkHttpClient rootClient;
+
+    /**
+     * 按配置缓存派生出来的client，HttpClientConfiguration未重写equals，按实例区分
+     */
+    private final ConcurrentHashMap<HttpClientConfiguration, OkHttpClient> clients = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public static HttpClientRegistry getInstance() {
+        return Holder.instance;
+    }
+
+    private HttpClientRegistry() {
+        rootClient = new OkHttpClient.Builder()
+                .addNetworkInterceptor(new StethoInterceptor())
+                .build();
+    }
+
+    private static class Holder {
+        private static final HttpClientRegistry instance = new HttpClientRegistry();
+    }
+
+    /**
+     * 根client，没有任何业务拦截器
+     * @return
+     */
+    public OkHttpClient getRootClient() {
+        return rootClient;
+    }
+
+    /**
+     * 从根client派生builder，派生出的client与根client共享连接池和dispatcher
+     * @return
+     */
+    public OkHttpClient.Builder newBuilder() {
+        return rootClient.newBuilder();
+    }
+
+    /**
+     * 获取配置对应的client
+     * @param config
+     * @return 没有缓存时返回null
+     */
+    public OkHttpClient getClient(HttpClientConfiguration config) {
+        if (config == null) {
+            return rootClient;
+        }
+        return clients.get(config);
+    }
+
+    /**
+     * 缓存配置对应的client，并发情况下以先放入的为准
+     * @param config
+     * @param client
+     * @return 实际缓存的client
+     */
+    public OkHttpClient putClient(HttpClientConfiguration config, OkHttpClient client) {
+        if (config == null) {
+            return rootClient;
+        }
+        OkHttpClient old = clients.putIfAbsent(config, client);
+        return old != null ? old : client;
+    }
+
+    /**
+     * 获取目录对应的磁盘缓存，OkHttp要求同一目录只能有一个Cache实例
+     * @param directory
+     * @param maxSize
+     * @return
+     */
+    public Cache getCache(File directory, long maxSize) {
+        String key = directory.getAbsolutePath();
+        Cache cache = caches.get(key);
+        if (cache == null) {
+            Cache created = new Cache(directory, maxSize);
+            cache = caches.putIfAbsent(key, created);
+            if (cache == null) {
+                cache = created;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 清空全部磁盘缓存。OkHttp按url缓存，token在请求头中，切换账号后旧账号的缓存不能再使用
+     */
+    public void evictCaches() {
+        for (Cache cache : caches.values()) {
+            try {
+                cache.evictAll();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public ConnectionPool connectionPool() {
+        return rootClient.connectionPool();
+    }
+
+    public Dispatcher dispatcher() {
+        return rootClient.dispatcher();
+    }
+
+    /**
+     * 连接池中的连接总数
+     */
+    public int connectionCount() {
+        return rootClient.connectionPool().connectionCount();
+    }
+
+    /**
+     * 连接池中空闲的连接数
+     */
+    public int idleConnectionCount() {
+        return rootClient.connectionPool().idleConnectionCount();
+    }
+
+    /**
+     * 正在执行的请求数
+     */
+    public int runningCallsCount() {
+        return rootClient.dispatcher().runningCallsCount();
+    }
+
+    /**
+     * 排队中的请求数
+     */
+    public int queuedCallsCount() {
+        return rootClient.dispatcher().queuedCallsCount();
+    }
+
+    /**
+     * 派生出的client数量
+     */
+    public int clientCount() {
+        return clients.size();
+    }
+
+    /**
+     * 连接复用情况，调试时输出
+     * @return
+     */
+    public String dumpStats() {
+        return "clients=" + clientCount()
+                + ", connections=" + connectionCount()
+                + ", idle=" + idleConnectionCount()
+                + ", running=" + runningCallsCount()
+                + ", queued=" + queuedCallsCount();
+    }
+}
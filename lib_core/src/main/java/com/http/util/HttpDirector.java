@@ -1,23 +1,44 @@
 package com.http.util;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
+import com.duiafudao.lib_core.BuildConfig;
 import com.http.common.SessionOutCallback;
-import com.http.common.intercept.CommonParamIntercept;
-import com.http.common.intercept.HeaderIntercept;
+import com.http.common.intercept.AdaptiveTimeoutIntercept;
+import com.http.common.intercept.AsyncLogIntercept;
+import com.http.common.intercept.CacheControlIntercept;
+import com.http.common.intercept.CallTagIntercept;
+import com.http.common.intercept.ConditionalCacheIntercept;
+import com.http.common.intercept.GzipRequestIntercept;
+import com.http.common.intercept.MarkerHeaderIntercept;
+import com.http.common.intercept.OfflineCacheIntercept;
+import com.http.common.intercept.OutboxIntercept;
+import com.http.common.intercept.PriorityIntercept;
+import com.http.common.intercept.RequestDecorIntercept;
 import com.http.common.intercept.RetryIntercept;
-import com.facebook.stetho.okhttp3.StethoInterceptor;
-import com.google.gson.GsonBuilder;
-
+import com.http.common.intercept.WireFormatIntercept;
+import com.http.common.retry.RetryBudget;
+import com.http.common.retry.RetryPolicy;
+import com.http.gson.GsonProvider;
+import com.http.gson.WireConverterFactory;
+import com.http.outbox.RequestOutbox;
+import com.http.rx.CoalescingCallAdapterFactory;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
 import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
-import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 import retrofit2.converter.gson.GsonConverterFactory;
@@ -37,6 +58,11 @@ public class HttpDirector {
     private Context mContext;
     private SessionOutCallback mmSessionOutCallback;
 
+    private static final long SESSION_COMMAND_INTERVAL = 3000;
+    private final AtomicLong lastSessionCommandAt = new AtomicLong();
+
+    private final CallTagIntercept callTagIntercept = new CallTagIntercept();
+
     public static HttpDirector getInstance() {
         return Holder.instance;
     }
@@ -51,9 +77,7 @@ public class HttpDirector {
 
 
     private OkHttpClient getDefaultHttpClient() {
-        return new OkHttpClient.Builder()
-                .addNetworkInterceptor(new StethoInterceptor())
-                .build();
+        return HttpClientRegistry.getInstance().getRootClient();
     }
 
 
@@ -74,12 +98,8 @@ public class HttpDirector {
             this.mContext = config.context;
             this.mmSessionOutCallback = config.mSessionOutCallback;
         }
-        retrofit = new Retrofit.Builder()
-                .baseUrl(TextUtils.isEmpty(baseUrl) ? UrlConstants.API_SERVER_URL : baseUrl)
-                .client(getHttpClientFromConfig(config))
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
-                .addConverterFactory(GsonConverterFactory.create(new GsonBuilder().create()))
-                .build();
+        this.config = config;
+        retrofit = getCachedRetrofit(config, TextUtils.isEmpty(baseUrl) ? UrlConstants.API_SERVER_URL : baseUrl);
         return retrofit;
     }
 
@@ -92,30 +112,82 @@ public class HttpDirector {
      */
     public <T> T createReq(Class<T> reqServer){
         if (retrofit == null) {
-            retrofit = new Retrofit.Builder()
-                    .baseUrl(TextUtils.isEmpty(baseUrl) ? UrlConstants.API_SERVER_URL : baseUrl)
-                    .client(getDefaultHttpClient())
-                    .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
-                    .addConverterFactory(GsonConverterFactory.create(new GsonBuilder().create()))
-                    .build();
+            retrofit = getCachedRetrofit(null, TextUtils.isEmpty(baseUrl) ? UrlConstants.API_SERVER_URL : baseUrl);
+        }
+        return RetrofitCache.getInstance().getService(retrofit, reqServer);
+    }
+
+
+    /**
+     * 在io线程提前创建service代理，配置了validateEagerly时会一并解析全部方法注解，
+     * 避免页面启动时才做反射解析
+     * @param reqServers
+     */
+    public void warmUpReq(final Class<?>... reqServers) {
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                for (Class<?> reqServer : reqServers) {
+                    try {
+                        createReq(reqServer);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+
+    /**
+     * 从缓存中获取retrofit，没有则构造并缓存
+     * @param config
+     * @param baseUrl
+     * @return
+     */
+    private Retrofit getCachedRetrofit(HttpClientConfiguration config, String baseUrl) {
+        RetrofitCache mRetrofitCache = RetrofitCache.getInstance();
+        Retrofit mRetrofit = mRetrofitCache.getRetrofit(baseUrl, config);
+        if (mRetrofit != null) {
+            return mRetrofit;
+        }
+        if (config != null && config.cachingDns && config.context != null) {
+            //提前解析域名，首个请求不用再等DNS
+            HttpUrl mHttpUrl = HttpUrl.parse(baseUrl);
+            if (mHttpUrl != null) {
+                CachingDns.getInstance(config.context).prefetch(mHttpUrl.host());
+            }
         }
-        return retrofit.create(reqServer);
+        mRetrofit = new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .client(config == null ? getDefaultHttpClient() : getHttpClientFromConfig(config))
+                //相同的并发请求只发出一次
+                .addCallAdapterFactory(CoalescingCallAdapterFactory.create(RxJava2CallAdapterFactory.create()))
+                //响应按Content-Type解析json或msgpack，BaseResultEntity走流式解析；请求体交给GsonConverterFactory
+                .addConverterFactory(WireConverterFactory.create(GsonProvider.getInstance().getGson(),
+                        GsonProvider.getInstance().getMsgPackGson()))
+                .addConverterFactory(GsonConverterFactory.create(GsonProvider.getInstance().getGson()))
+                .validateEagerly(config != null && config.validateEagerly)
+                .build();
+        return mRetrofitCache.putRetrofit(baseUrl, config, mRetrofit);
     }
 
 
     /**
-     * 构造okhttpclient
+     * 构造okhttpclient，同一个配置只构造一次，且都从根client派生以共享连接池和dispatcher
      * @param config
      * @return
      */
     private OkHttpClient getHttpClientFromConfig(HttpClientConfiguration config) {
 
-        OkHttpClient.Builder mBuilder = new OkHttpClient.Builder();
-        mBuilder.addNetworkInterceptor(new StethoInterceptor());
-        if(config == null){
-            return mBuilder.build();
+        HttpClientRegistry mRegistry = HttpClientRegistry.getInstance();
+        OkHttpClient mCachedClient = mRegistry.getClient(config);
+        if (mCachedClient != null) {
+            return mCachedClient;
         }
 
+        OkHttpClient.Builder mBuilder = mRegistry.newBuilder();
+
         if (config.connectTimeout > 0) {
             mBuilder.connectTimeout(config.connectTimeout, TimeUnit.SECONDS);
         }
@@ -128,8 +200,50 @@ public class HttpDirector {
             mBuilder.writeTimeout(config.responseTimeout, TimeUnit.SECONDS);
         }
 
-        if (config.retry > 0) {
-            mBuilder.addInterceptor(new RetryIntercept(config.retry));
+        if (config.cachingDns && config.context != null) {
+            mBuilder.dns(CachingDns.getInstance(config.context));
+        }
+
+        //最外层，页面销毁时取消的是调用方持有的Call
+        mBuilder.addInterceptor(callTagIntercept);
+
+        if (config.outbox && config.context != null) {
+            //放在最外层，重试都失败后才保存
+            mBuilder.addInterceptor(new OutboxIntercept(RequestOutbox.getInstance(config.context)));
+        }
+
+        if (config.cacheDir != null && config.cacheSize > 0) {
+            mBuilder.cache(mRegistry.getCache(config.cacheDir, config.cacheSize));
+            mBuilder.addNetworkInterceptor(new CacheControlIntercept(config.cacheMaxAge));
+            if (config.offlineCache && config.context != null) {
+                //网络状态由广播更新，请求时不再查询ConnectivityManager
+                mBuilder.addInterceptor(new OfflineCacheIntercept(NetworkClassMonitor.getInstance(config.context),
+                        config.cacheMaxStale));
+            }
+        }
+
+        RetryPolicy mRetryPolicy = config.retryPolicy;
+        if (mRetryPolicy == null && config.retry > 0) {
+            mRetryPolicy = new RetryPolicy.Builder().maxRetries(config.retry).build();
+        }
+        if (mRetryPolicy != null || config.retryPolicies != null) {
+            mBuilder.addInterceptor(new RetryIntercept(mRetryPolicy, config.retryPolicies,
+                    config.retryBudget != null ? config.retryBudget : RetryBudget.createDefault()));
+        }
+
+        if (config.sessionRefresh != null) {
+            //放在通道之外，挂起等待刷新的请求不占用通道；在公共参数之前，刷新后重发的请求会重新取token
+            mBuilder.addInterceptor(config.sessionRefresh);
+        }
+
+        if (config.requestLanes != null) {
+            //每次重试都重新排队，退避等待期间不占用通道
+            mBuilder.addInterceptor(new PriorityIntercept(config.requestLanes));
+        }
+
+        if (config.circuitBreaker != null) {
+            //放在重试之后，熔断后剩余的重试也会快速失败；放在通道之内，排队时间不计入慢请求
+            mBuilder.addInterceptor(config.circuitBreaker);
         }
 
         if (config.listInterceptor != null) {
@@ -144,30 +258,111 @@ public class HttpDirector {
             }
         }
 
+        if (config.validatorStore != null) {
+            //放在公共参数之前，按接口本身的url保存，不受时间戳等动态参数影响
+            mBuilder.addInterceptor(new ConditionalCacheIntercept(config.validatorStore));
+        }
 
-        if (config.headers != null) {
-            HeaderIntercept mHeaderIntercept = new HeaderIntercept(config.headers);
-            mBuilder.addInterceptor(mHeaderIntercept);
+        if (config.batch != null) {
+            //在会话刷新之内，拆分后的每个结果仍会检查掉线
+            mBuilder.addInterceptor(config.batch);
         }
-        if (config.commonParams != null) {
-            CommonParamIntercept mCommonParamIntercept = new CommonParamIntercept(config.commonParams);
-            mBuilder.addInterceptor(mCommonParamIntercept);
+
+        if (config.headers != null || config.commonParams != null
+                || config.dynamicHeaders != null || config.dynamicParams != null) {
+            RequestDecorIntercept mRequestDecorIntercept = new RequestDecorIntercept(config.headers,
+                    config.commonParams, config.dynamicHeaders, config.dynamicParams);
+            mBuilder.addInterceptor(mRequestDecorIntercept);
         }
+        mBuilder.addInterceptor(new WireFormatIntercept(config.preferMsgPack));
+
         if (config.isUseLogger) {
-            HttpLoggingInterceptor mHttpLoggingInterceptor = new HttpLoggingInterceptor();
-            mHttpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
-            mBuilder.addInterceptor(mHttpLoggingInterceptor);
+            //日志在后台线程格式化输出，公共请求头(如token)的值会被隐藏
+            List<String> mRedactHeaders = new ArrayList<>();
+            if (config.headers != null) {
+                mRedactHeaders.addAll(config.headers.keySet());
+            }
+            if (config.dynamicHeaders != null) {
+                mRedactHeaders.addAll(config.dynamicHeaders.keySet());
+            }
+            AsyncLogIntercept mAsyncLogIntercept = new AsyncLogIntercept(config.logBodyPrefix, config.logSampleEvery,
+                    mRedactHeaders);
+            mBuilder.addInterceptor(mAsyncLogIntercept);
+        }
+
+        if (config.gzipRequestThreshold > 0) {
+            //放在公共参数之后，压缩的是最终的请求体
+            mBuilder.addInterceptor(new GzipRequestIntercept(config.gzipRequestThreshold));
+        }
+
+        if (config.adaptivePolicy != null && config.context != null) {
+            //放在最后，超时设置只作用于真正发出的请求
+            config.adaptivePolicy.attach(NetworkClassMonitor.getInstance(config.context),
+                    mRegistry.dispatcher(), config.requestLanes);
+            mBuilder.addInterceptor(new AdaptiveTimeoutIntercept(config.adaptivePolicy));
+        }
+
+        //最后一个网络拦截器，对应功能没有配置时移除残留的标记请求头
+        mBuilder.addNetworkInterceptor(new MarkerHeaderIntercept());
+
+        //各阶段耗时统计，调试包退到后台时输出
+        mBuilder.eventListenerFactory(NetworkMetricsListener.FACTORY);
+        if (BuildConfig.DEBUG && config.context != null) {
+            NetworkMetrics.getInstance().dumpOnBackground(config.context);
         }
 
-        if (config.maxConnections > 0) {
-            OkHttpClient mOkHttpClient = mBuilder.build();
-            mOkHttpClient.dispatcher().setMaxRequestsPerHost(config.maxConnections);
-            return mOkHttpClient;
-        } else {
-            return mBuilder.build();
+        if (config.maxConnections > 0 && config.adaptivePolicy == null) {
+            //dispatcher是共享的，这里的设置对所有client生效
+            mRegistry.dispatcher().setMaxRequestsPerHost(config.maxConnections);
+        }
+        OkHttpClient mOkHttpClient = mBuilder.build();
+        if (config.batch != null) {
+            //批量请求单独发出，只经过合并之后的拦截器，不受被合并请求的取消、排队和重试影响
+            OkHttpClient.Builder mBatchBuilder = mOkHttpClient.newBuilder();
+            List<Interceptor> mBatchInterceptors = mBatchBuilder.interceptors();
+            mBatchInterceptors.subList(0, mBatchInterceptors.indexOf(config.batch) + 1).clear();
+            config.batch.setCallFactory(mBatchBuilder.build());
+        }
+        if (config.hedge != null) {
+            //对冲拦截器放在最外层，两次请求都经过完整的拦截器链
+            config.hedge.setCallFactory(mOkHttpClient);
+            OkHttpClient.Builder mHedgeBuilder = mOkHttpClient.newBuilder();
+            mHedgeBuilder.interceptors().add(0, config.hedge);
+            mHedgeBuilder.interceptors().add(0, callTagIntercept);
+            mOkHttpClient = mHedgeBuilder.build();
         }
+        return mRegistry.putClient(config, mOkHttpClient);
+
+    }
 
+    /**
+     * 取消owner的全部请求，在Activity/Fragment的onDestroy中调用，请求需要通过CallTags.tag打上标记
+     * @param owner
+     * @return 取消的请求数
+     */
+    public int cancelByOwner(Object owner) {
+        int count = CallTags.cancel(owner);
+        if (count > 0 && config != null && config.requestLanes != null) {
+            //排队中的请求立即退出
+            config.requestLanes.wakeUp();
+        }
+        return count;
+    }
 
+    /**
+     * 清除和账号相关的缓存，退出登录或切换账号时调用，会话过期时会自动调用
+     */
+    public void clearSessionCache() {
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                HttpClientRegistry.getInstance().evictCaches();
+                HttpClientConfiguration current = config;
+                if (current != null && current.validatorStore != null) {
+                    current.validatorStore.clear();
+                }
+            }
+        });
     }
 
     /**
@@ -177,6 +372,17 @@ public class HttpDirector {
      */
     public void commandSessionException(final boolean isBack,final Object object){
 
+        long now = SystemClock.elapsedRealtime();
+        long last = lastSessionCommandAt.get();
+        if (last != 0 && now - last < SESSION_COMMAND_INTERVAL) {
+            //同时掉线的多个请求只处理一次
+            return;
+        }
+        if (!lastSessionCommandAt.compareAndSet(last, now)) {
+            return;
+        }
+        //离线缓存不按账号区分，掉线后不能再给下一个账号使用
+        clearSessionCache();
         Observable.create(new ObservableOnSubscribe<Object>() {
             @Override
             public void subscribe(ObservableEmitter<Object> emitter) throws Exception {
@@ -204,13 +410,7 @@ public class HttpDirector {
      */
     public Retrofit getNewRetrofitFormConfig(HttpClientConfiguration config,String baseUrl) {
 
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(TextUtils.isEmpty(baseUrl) ? UrlConstants.API_SERVER_URL : baseUrl)
-                .client(getHttpClientFromConfig(config))
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
-                .addConverterFactory(GsonConverterFactory.create(new GsonBuilder().create()))
-                .build();
-        return retrofit;
+        return getCachedRetrofit(config, TextUtils.isEmpty(baseUrl) ? UrlConstants.API_SERVER_URL : baseUrl);
     }
 
 
@@ -222,13 +422,7 @@ public class HttpDirector {
      * @return
      */
     public <T> T createNewDefaultReq(Class<T> reqServer , String baseUrl){
-        Retrofit retrofit = new Retrofit.Builder()
-                    .baseUrl(baseUrl)
-                    .client(getDefaultHttpClient())
-                    .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
-                    .addConverterFactory(GsonConverterFactory.create(new GsonBuilder().create()))
-                    .build();
-        return retrofit.create(reqServer);
+        return RetrofitCache.getInstance().getService(getCachedRetrofit(null, baseUrl), reqServer);
     }
 
     public Context getmContext() {
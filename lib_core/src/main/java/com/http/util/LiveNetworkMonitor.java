@@ -9,13 +9,14 @@ import android.net.NetworkInfo;
  * date :2018/7/27
  * description:
  **/
-public class LiveNetworkMonitor {
+public class LiveNetworkMonitor implements NetworkMonitor {
     private final Context applicationContext;
 
     public LiveNetworkMonitor(Context context) {
         applicationContext = context.getApplicationContext();
     }
 
+    @Override
     public boolean isConnected() {
         ConnectivityManager cm =
                 (ConnectivityManager) applicationContext.getSystemService(Context.CONNECTIVITY_SERVICE);
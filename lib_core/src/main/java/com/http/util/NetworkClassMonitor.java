@@ -0,0 +1,106 @@
+package com.http.util;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+
+import com.util.network.NetworkStateUtil;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * author : taowang
+ * date :2018/8/16
+ * description:缓存当前的网络类型和连通状态，网络变化广播时更新，请求时不用再查询系统服务
+ **/
+public class NetworkClassMonitor implements NetworkMonitor {
+
+    /**
+     * 网络类型变化的回调
+     */
+    public interface OnNetworkClassChangedListener {
+        /**
+         * @param networkClass NetworkStateUtil.NETWORK_TYPE_NAME_*
+         * @param connected
+         */
+        void onNetworkClassChanged(String networkClass, boolean connected);
+    }
+
+    private static volatile NetworkClassMonitor instance;
+
+    private final Context applicationContext;
+    private volatile String networkClass = NetworkStateUtil.NETWORK_TYPE_NAME_UNKNOWN;
+    private volatile boolean connected = true;
+    private final CopyOnWriteArrayList<OnNetworkClassChangedListener> listeners = new CopyOnWriteArrayList<>();
+
+    public static NetworkClassMonitor getInstance(Context context) {
+        if (instance == null) {
+            synchronized (NetworkClassMonitor.class) {
+                if (instance == null) {
+                    instance = new NetworkClassMonitor(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private NetworkClassMonitor(Context context) {
+        applicationContext = context.getApplicationContext();
+        refresh();
+        applicationContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                refresh();
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    private void refresh() {
+        String newClass;
+        boolean newConnected;
+        try {
+            newClass = NetworkStateUtil.getCurrentNetworkTypeName(applicationContext);
+            newConnected = NetworkStateUtil.isConnected(applicationContext);
+        } catch (Exception e) {
+            //没有网络状态权限等情况
+            e.printStackTrace();
+            return;
+        }
+        boolean changed = !newClass.equals(networkClass) || newConnected != connected;
+        networkClass = newClass;
+        connected = newConnected;
+        if (changed) {
+            for (OnNetworkClassChangedListener listener : listeners) {
+                listener.onNetworkClassChanged(newClass, newConnected);
+            }
+        }
+    }
+
+    /**
+     * 当前网络类型
+     * @return NetworkStateUtil.NETWORK_TYPE_NAME_*
+     */
+    public String getNetworkClass() {
+        return networkClass;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * 添加监听，添加时立即回调一次当前状态
+     * @param listener
+     */
+    public void addListener(OnNetworkClassChangedListener listener) {
+        listeners.addIfAbsent(listener);
+        listener.onNetworkClassChanged(networkClass, connected);
+    }
+
+    public void removeListener(OnNetworkClassChangedListener listener) {
+        listeners.remove(listener);
+    }
+}
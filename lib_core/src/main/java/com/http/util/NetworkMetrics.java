@@ -0,0 +1,336 @@
+package com.http.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import okhttp3.HttpUrl;
+
+/**
+ * author : taowang
+ * date :2018/8/14
+ * description:网络请求各阶段耗时统计，按接口模板分组，每个阶段一个按2的幂分桶的直方图(毫秒)。
+ * 记录只做原子加法，不会分配对象
+ **/
+public class NetworkMetrics {
+
+    private static final String TAG = "NetworkMetrics";
+
+    public static final int PHASE_DNS = 0;
+    public static final int PHASE_CONNECT = 1;
+    public static final int PHASE_TLS = 2;
+    public static final int PHASE_REQUEST = 3;
+    public static final int PHASE_SERVER = 4;
+    public static final int PHASE_RESPONSE = 5;
+    public static final int PHASE_TOTAL = 6;
+    public static final int PHASE_COUNT = 7;
+
+    private static final String[] PHASE_NAMES = {"dns", "connect", "tls", "request", "server", "response", "total"};
+
+    /**
+     * 第i个桶记录[2^(i-1), 2^i)毫秒，第0个桶记录0毫秒，最后一个桶记录更大的值
+     */
+    public static final int BUCKET_COUNT = 18;
+
+    /**
+     * 最多缓存的接口模板数，路径中带id时每个id都是一条记录，超过后不再缓存
+     */
+    static final int MAX_CACHED_TEMPLATES = 512;
+
+    /**
+     * method -> host -> encodedPath -> 模板
+     */
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, ConcurrentHashMap<String, String>>> TEMPLATES =
+            new ConcurrentHashMap<>();
+    private static final AtomicInteger CACHED_TEMPLATES = new AtomicInteger();
+
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final AtomicBoolean dumpRegistered = new AtomicBoolean();
+
+    public static NetworkMetrics getInstance() {
+        return Holder.instance;
+    }
+
+    private NetworkMetrics() {
+
+    }
+
+    private static class Holder {
+        private static final NetworkMetrics instance = new NetworkMetrics();
+    }
+
+    /**
+     * 获取接口模板对应的统计，路径中的数字、uuid等替换为{id}
+     * @param method
+     * @param url
+     * @return
+     */
+    Endpoint endpoint(String method, HttpUrl url) {
+        String template = template(method, url);
+        Endpoint endpoint = endpoints.get(template);
+        if (endpoint == null) {
+            Endpoint created = new Endpoint();
+            endpoint = endpoints.putIfAbsent(template, created);
+            if (endpoint == null) {
+                endpoint = created;
+            }
+        }
+        return endpoint;
+    }
+
+    /**
+     * 接口模板，例如 GET api.1196u.cn/api/user/{id}，按(method, host, encodedPath)缓存
+     * @param method
+     * @param url
+     * @return
+     */
+    public static String template(String method, HttpUrl url) {
+        ConcurrentHashMap<String, String> paths = paths(method, url.host());
+        String path = url.encodedPath();
+        String template = paths.get(path);
+        if (template == null) {
+            template = buildTemplate(method, url);
+            if (CACHED_TEMPLATES.get() < MAX_CACHED_TEMPLATES && paths.putIfAbsent(path, template) == null) {
+                CACHED_TEMPLATES.incrementAndGet();
+            }
+        }
+        return template;
+    }
+
+    private static ConcurrentHashMap<String, String> paths(String method, String host) {
+        ConcurrentHashMap<String, ConcurrentHashMap<String, String>> hosts = TEMPLATES.get(method);
+        if (hosts == null) {
+            ConcurrentHashMap<String, ConcurrentHashMap<String, String>> created = new ConcurrentHashMap<>();
+            hosts = TEMPLATES.putIfAbsent(method, created);
+            if (hosts == null) {
+                hosts = created;
+            }
+        }
+        ConcurrentHashMap<String, String> paths = hosts.get(host);
+        if (paths == null) {
+            ConcurrentHashMap<String, String> created = new ConcurrentHashMap<>();
+            paths = hosts.putIfAbsent(host, created);
+            if (paths == null) {
+                paths = created;
+            }
+        }
+        return paths;
+    }
+
+    private static String buildTemplate(String method, HttpUrl url) {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(method).append(' ').append(url.host());
+        for (String segment : url.pathSegments()) {
+            sb.append('/');
+            sb.append(isIdSegment(segment) ? "{id}" : segment);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isIdSegment(String segment) {
+        if (segment.length() == 0) {
+            return false;
+        }
+        int digits = 0;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (!(c >= 'a' && c <= 'f') && !(c >= 'A' && c <= 'F') && c != '-') {
+                return false;
+            }
+        }
+        //纯数字，或者较长的十六进制/uuid
+        return digits == segment.length() || (digits > 0 && segment.length() >= 16);
+    }
+
+    static int bucketOf(long millis) {
+        if (millis <= 0) {
+            return 0;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(millis);
+        return bucket < BUCKET_COUNT ? bucket : BUCKET_COUNT - 1;
+    }
+
+    /**
+     * 获取当前所有接口的统计快照
+     * @return 接口模板 -> 快照，按模板排序
+     */
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> result = new TreeMap<>();
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * 输出各接口p50/p90/p99，调试时使用
+     * @return
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Snapshot> entry : snapshot().entrySet()) {
+            Snapshot snapshot = entry.getValue();
+            sb.append(entry.getKey())
+                    .append(" calls=").append(snapshot.calls)
+                    .append(" failed=").append(snapshot.failures)
+                    .append(" bytesIn=").append(snapshot.responseBytes)
+                    .append(" bytesOut=").append(snapshot.requestBytes)
+                    .append(" cancelled=").append(snapshot.cancelled)
+                    .append(" cancelledBytes=").append(snapshot.cancelledBytes)
+                    .append('\n');
+            for (int phase = 0; phase < PHASE_COUNT; phase++) {
+                if (snapshot.count(phase) == 0) {
+                    continue;
+                }
+                sb.append("    ").append(PHASE_NAMES[phase])
+                        .append(" n=").append(snapshot.count(phase))
+                        .append(" p50<=").append(snapshot.percentile(phase, 0.5f))
+                        .append("ms p90<=").append(snapshot.percentile(phase, 0.9f))
+                        .append("ms p99<=").append(snapshot.percentile(phase, 0.99f))
+                        .append("ms\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 输出到logcat
+     */
+    public void dumpToLog() {
+        Log.d(TAG, dump());
+    }
+
+    /**
+     * 应用退到后台时输出到logcat，只注册一次，调试包使用
+     * @param context
+     */
+    public void dumpOnBackground(Context context) {
+        if (!dumpRegistered.compareAndSet(false, true)) {
+            return;
+        }
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level == TRIM_MEMORY_UI_HIDDEN) {
+                    dumpToLog();
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+            }
+        });
+    }
+
+    /**
+     * 单个接口的统计
+     */
+    static final class Endpoint {
+        final AtomicLongArray histograms = new AtomicLongArray(PHASE_COUNT * BUCKET_COUNT);
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong requestBytes = new AtomicLong();
+        final AtomicLong responseBytes = new AtomicLong();
+        /**
+         * 页面销毁等原因被取消的请求，以及取消前已经传输的字节数
+         */
+        final AtomicLong cancelled = new AtomicLong();
+        final AtomicLong cancelledBytes = new AtomicLong();
+
+        void record(int phase, long millis) {
+            histograms.incrementAndGet(phase * BUCKET_COUNT + bucketOf(millis));
+        }
+
+        Snapshot snapshot() {
+            long[] buckets = new long[PHASE_COUNT * BUCKET_COUNT];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = histograms.get(i);
+            }
+            return new Snapshot(calls.get(), failures.get(), requestBytes.get(), responseBytes.get(),
+                    cancelled.get(), cancelledBytes.get(), buckets);
+        }
+    }
+
+    /**
+     * 统计快照
+     */
+    public static final class Snapshot {
+        public final long calls;
+        public final long failures;
+        public final long requestBytes;
+        public final long responseBytes;
+        public final long cancelled;
+        public final long cancelledBytes;
+        private final long[] buckets;
+
+        Snapshot(long calls, long failures, long requestBytes, long responseBytes,
+                 long cancelled, long cancelledBytes, long[] buckets) {
+            this.calls = calls;
+            this.failures = failures;
+            this.requestBytes = requestBytes;
+            this.responseBytes = responseBytes;
+            this.cancelled = cancelled;
+            this.cancelledBytes = cancelledBytes;
+            this.buckets = buckets;
+        }
+
+        /**
+         * 阶段的样本数
+         */
+        public long count(int phase) {
+            long count = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                count += buckets[phase * BUCKET_COUNT + i];
+            }
+            return count;
+        }
+
+        /**
+         * 阶段第bucket个桶的样本数
+         */
+        public long bucket(int phase, int bucket) {
+            return buckets[phase * BUCKET_COUNT + bucket];
+        }
+
+        /**
+         * 分位数所在桶的上限(毫秒)
+         * @param phase
+         * @param p 0~1
+         * @return 没有样本返回0
+         */
+        public long percentile(int phase, float p) {
+            long count = count(phase);
+            if (count == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(count * p);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[phase * BUCKET_COUNT + i];
+                if (seen >= target) {
+                    return i == 0 ? 0 : (1L << i) - 1;
+                }
+            }
+            return (1L << (BUCKET_COUNT - 1)) - 1;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.http.util;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+/**
+ * author : taowang
+ * date :2018/8/14
+ * description:记录单次请求各阶段的时间点，请求结束时写入NetworkMetrics。
+ * 每个请求一个实例，事件回调中只记录时间戳
+ **/
+public class NetworkMetricsListener extends EventListener {
+
+    public static final EventListener.Factory FACTORY = new EventListener.Factory() {
+        @Override
+        public EventListener create(Call call) {
+            return new NetworkMetricsListener();
+        }
+    };
+
+    /**
+     * 不统计的请求，请求本身不经过网络，由它发出的内层请求统计
+     */
+    private static final Set<Call> SKIPPED = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<Call, Boolean>()));
+
+    private long callStart;
+    private long dnsStart;
+    private long dnsEnd;
+    private long connectStart;
+    private long secureStart;
+    private long secureEnd;
+    private long connectEnd;
+    private long requestStart;
+    private long requestEnd;
+    private long responseStart;
+    private long responseEnd;
+    private long requestBytes;
+    private long responseBytes;
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        dnsEnd = System.nanoTime();
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        secureEnd = System.nanoTime();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        connectEnd = System.nanoTime();
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestStart = System.nanoTime();
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestEnd = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestEnd = System.nanoTime();
+        requestBytes += byteCount;
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        responseStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        responseEnd = System.nanoTime();
+        responseBytes += byteCount;
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        record(call, false);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        record(call, true);
+    }
+
+    /**
+     * 这次请求不计入统计，例如已经拆成对冲请求的外层请求
+     * @param call
+     */
+    public static void skip(Call call) {
+        SKIPPED.add(call);
+    }
+
+    private void record(Call call, boolean failed) {
+        if (SKIPPED.remove(call)) {
+            return;
+        }
+        long end = System.nanoTime();
+        NetworkMetrics.Endpoint endpoint = NetworkMetrics.getInstance()
+                .endpoint(call.request().method(), call.request().url());
+        endpoint.calls.incrementAndGet();
+        if (failed && call.isCanceled()) {
+            //主动取消的不算失败，记录浪费的流量
+            endpoint.cancelled.incrementAndGet();
+            endpoint.cancelledBytes.addAndGet(requestBytes + responseBytes);
+        } else if (failed) {
+            endpoint.failures.incrementAndGet();
+        }
+        endpoint.requestBytes.addAndGet(requestBytes);
+        endpoint.responseBytes.addAndGet(responseBytes);
+
+        recordPhase(endpoint, NetworkMetrics.PHASE_DNS, dnsStart, dnsEnd);
+        recordPhase(endpoint, NetworkMetrics.PHASE_CONNECT, connectStart, connectEnd);
+        recordPhase(endpoint, NetworkMetrics.PHASE_TLS, secureStart, secureEnd);
+        recordPhase(endpoint, NetworkMetrics.PHASE_REQUEST, requestStart, requestEnd);
+        recordPhase(endpoint, NetworkMetrics.PHASE_SERVER, requestEnd, responseStart);
+        recordPhase(endpoint, NetworkMetrics.PHASE_RESPONSE, responseStart, responseEnd);
+        recordPhase(endpoint, NetworkMetrics.PHASE_TOTAL, callStart, end);
+    }
+
+    private static void recordPhase(NetworkMetrics.Endpoint endpoint, int phase, long start, long end) {
+        if (start == 0 || end < start) {
+            return;
+        }
+        endpoint.record(phase, (end - start) / 1000000);
+    }
+
+    /**
+     * 请求体已发送的字节数
+     */
+    public long requestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * 响应体已读取的字节数
+     */
+    public long responseBytes() {
+        return responseBytes;
+    }
+}
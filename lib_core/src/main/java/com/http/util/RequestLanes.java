@@ -0,0 +1,201 @@
+package com.http.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import okhttp3.Call;
+
+/**
+ * author : taowang
+ * date :2018/8/15
+ * description:请求优先级通道，每个通道单独限制并发数。有高优先级请求在等待且能执行时，
+ * 低优先级请求让出位置；用户等待中的请求不受总并发数限制
+ **/
+public class RequestLanes {
+
+    public static final int LANE_USER_BLOCKING = 0;
+    public static final int LANE_NORMAL = 1;
+    public static final int LANE_PREFETCH = 2;
+    public static final int LANE_BACKGROUND = 3;
+    public static final int LANE_COUNT = 4;
+
+    public static final String[] LANE_NAMES = {"user", "normal", "prefetch", "background"};
+
+    /**
+     * OkHttp取消请求时没有通知，等待中的请求最晚隔这么久检查一次是否已取消。
+     * 通道空闲、设置变化和cancelByOwner都会立即唤醒，Rx取消订阅会中断等待的线程
+     */
+    private static final long CANCEL_CHECK_MILLIS = 1000;
+
+    private final int[] limits = {8, 6, 2, 2};
+    private int maxRequests = 10;
+
+    private final int[] inFlight = new int[LANE_COUNT];
+    private final int[] waiting = new int[LANE_COUNT];
+    private int totalInFlight;
+
+    private final AtomicLongArray waitCount = new AtomicLongArray(LANE_COUNT);
+    private final AtomicLongArray waitNanos = new AtomicLongArray(LANE_COUNT);
+    private final AtomicLongArray maxWaitNanos = new AtomicLongArray(LANE_COUNT);
+
+    /**
+     * 根据名称获取通道
+     * @param name {@link #LANE_NAMES}中的值
+     * @return 未知名称返回LANE_NORMAL
+     */
+    public static int laneOf(String name) {
+        if (name != null) {
+            for (int i = 0; i < LANE_COUNT; i++) {
+                if (LANE_NAMES[i].equalsIgnoreCase(name.trim())) {
+                    return i;
+                }
+            }
+        }
+        return LANE_NORMAL;
+    }
+
+    /**
+     * 设置通道的最大并发数
+     */
+    public synchronized RequestLanes setLimit(int lane, int limit) {
+        limits[lane] = Math.max(1, limit);
+        notifyAll();
+        return this;
+    }
+
+    public synchronized int getLimit(int lane) {
+        return limits[lane];
+    }
+
+    /**
+     * 设置除LANE_USER_BLOCKING外的总并发数
+     */
+    public synchronized RequestLanes setMaxRequests(int maxRequests) {
+        this.maxRequests = Math.max(1, maxRequests);
+        notifyAll();
+        return this;
+    }
+
+    public synchronized int getMaxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * 等待通道空闲，由release、setLimit、setMaxRequests和wakeUp唤醒，请求被取消时抛出异常
+     * @param lane
+     * @param call
+     * @throws IOException
+     */
+    public void acquire(int lane, Call call) throws IOException {
+        long start = System.nanoTime();
+        synchronized (this) {
+            waiting[lane]++;
+            try {
+                while (true) {
+                    if (call.isCanceled()) {
+                        throw new IOException("Canceled");
+                    }
+                    if (canRun(lane)) {
+                        break;
+                    }
+                    wait(CANCEL_CHECK_MILLIS);
+                }
+                inFlight[lane]++;
+                totalInFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("lane wait interrupted");
+            } finally {
+                waiting[lane]--;
+                if (waiting[lane] == 0 && lane < LANE_COUNT - 1) {
+                    //高优先级的等待者离开后，被它挡住的低优先级请求可能可以执行了
+                    notifyAll();
+                }
+            }
+        }
+        recordWait(lane, System.nanoTime() - start);
+    }
+
+    public synchronized void release(int lane) {
+        inFlight[lane]--;
+        totalInFlight--;
+        notifyAll();
+    }
+
+    /**
+     * 唤醒全部等待中的请求重新检查，取消请求后调用，被取消的请求立即退出排队
+     */
+    public synchronized void wakeUp() {
+        notifyAll();
+    }
+
+    private boolean canRun(int lane) {
+        if (inFlight[lane] >= limits[lane]) {
+            return false;
+        }
+        if (lane != LANE_USER_BLOCKING && totalInFlight >= maxRequests) {
+            return false;
+        }
+        for (int higher = 0; higher < lane; higher++) {
+            if (waiting[higher] > 0 && inFlight[higher] < limits[higher]) {
+                //让高优先级的请求先执行
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void recordWait(int lane, long nanos) {
+        waitCount.incrementAndGet(lane);
+        waitNanos.addAndGet(lane, nanos);
+        while (true) {
+            long max = maxWaitNanos.get(lane);
+            if (nanos <= max || maxWaitNanos.compareAndSet(lane, max, nanos)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 通道的平均排队时间(毫秒)
+     */
+    public long averageWaitMillis(int lane) {
+        long count = waitCount.get(lane);
+        return count == 0 ? 0 : waitNanos.get(lane) / count / 1000000;
+    }
+
+    /**
+     * 通道的最长排队时间(毫秒)
+     */
+    public long maxWaitMillis(int lane) {
+        return maxWaitNanos.get(lane) / 1000000;
+    }
+
+    public synchronized int inFlightCount(int lane) {
+        return inFlight[lane];
+    }
+
+    public synchronized int waitingCount(int lane) {
+        return waiting[lane];
+    }
+
+    /**
+     * 各通道排队情况，调试时输出
+     * @return
+     */
+    public String dumpStats() {
+        StringBuilder sb = new StringBuilder();
+        for (int lane = 0; lane < LANE_COUNT; lane++) {
+            sb.append(LANE_NAMES[lane])
+                    .append(" limit=").append(getLimit(lane))
+                    .append(" running=").append(inFlightCount(lane))
+                    .append(" waiting=").append(waitingCount(lane))
+                    .append(" requests=").append(waitCount.get(lane))
+                    .append(" avgWait=").append(averageWaitMillis(lane))
+                    .append("ms maxWait=").append(maxWaitMillis(lane))
+                    .append("ms\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package com.http.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import retrofit2.Retrofit;
+
+/**
+ * author : taowang
+ * date :2018/8/6
+ * description:Retrofit实例和service代理的缓存，避免重复的反射和注解解析
+ **/
+public class RetrofitCache {
+
+    /**
+     * (baseUrl, config) -> Retrofit
+     */
+    private final ConcurrentHashMap<Key, Retrofit> retrofits = new ConcurrentHashMap<>();
+
+    /**
+     * Retrofit -> (service接口 -> 代理)
+     */
+    private final ConcurrentHashMap<Retrofit, ConcurrentHashMap<Class<?>, Object>> services = new ConcurrentHashMap<>();
+
+    public static RetrofitCache getInstance() {
+        return Holder.instance;
+    }
+
+    private RetrofitCache() {
+
+    }
+
+    private static class Holder {
+        private static final RetrofitCache instance = new RetrofitCache();
+    }
+
+    /**
+     * 获取缓存的Retrofit
+     * @param baseUrl
+     * @param config 可以为null，表示默认client
+     * @return 没有缓存时返回null
+     */
+    public Retrofit getRetrofit(String baseUrl, HttpClientConfiguration config) {
+        return retrofits.get(new Key(baseUrl, config));
+    }
+
+    /**
+     * 缓存Retrofit，并发情况下以先放入的为准
+     * @return 实际缓存的Retrofit
+     */
+    public Retrofit putRetrofit(String baseUrl, HttpClientConfiguration config, Retrofit retrofit) {
+        Retrofit old = retrofits.putIfAbsent(new Key(baseUrl, config), retrofit);
+        return old != null ? old : retrofit;
+    }
+
+    /**
+     * 获取service代理，同一个Retrofit同一个接口只创建一次
+     * @param retrofit
+     * @param reqServer
+     * @param <T>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getService(Retrofit retrofit, Class<T> reqServer) {
+        ConcurrentHashMap<Class<?>, Object> proxies = services.get(retrofit);
+        if (proxies == null) {
+            ConcurrentHashMap<Class<?>, Object> created = new ConcurrentHashMap<>();
+            proxies = services.putIfAbsent(retrofit, created);
+            if (proxies == null) {
+                proxies = created;
+            }
+        }
+        Object service = proxies.get(reqServer);
+        if (service == null) {
+            //Retrofit开启validateEagerly时，create会一次性解析接口的全部方法
+            Object created = retrofit.create(reqServer);
+            service = proxies.putIfAbsent(reqServer, created);
+            if (service == null) {
+                service = created;
+            }
+        }
+        return (T) service;
+    }
+
+    public void clear() {
+        retrofits.clear();
+        services.clear();
+    }
+
+    private static final class Key {
+        private final String baseUrl;
+        private final HttpClientConfiguration config;
+
+        Key(String baseUrl, HttpClientConfiguration config) {
+            this.baseUrl = baseUrl;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return config == key.config
+                    && (baseUrl == null ? key.baseUrl == null : baseUrl.equals(key.baseUrl));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = baseUrl != null ? baseUrl.hashCode() : 0;
+            return 31 * result + System.identityHashCode(config);
+        }
+    }
+}
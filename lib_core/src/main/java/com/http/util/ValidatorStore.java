@@ -0,0 +1,388 @@
+package com.http.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Headers;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * author : taowang
+ * date :2018/8/30
+ * description:按url保存ETag/Last-Modified和对应的响应内容，供条件请求在304时使用。
+ * 内存中是按字节数限制的LRU，磁盘上每个url一个文件，超过上限时删除最久未使用的文件。
+ * 记录不区分账号，退出登录或会话过期时由HttpDirector.clearSessionCache清空
+ **/
+public class ValidatorStore {
+
+    private static final int FORMAT_VERSION = 2;
+    private static final String SUFFIX = ".v";
+    private static final String SUFFIX_TMP = ".tmp";
+
+    private final File dir;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+
+    /**
+     * accessOrder为true，遍历时最久未使用的在前
+     */
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    /**
+     * 磁盘占用，第一次写入时统计，-1表示还未统计
+     */
+    private long diskBytes = -1;
+    /**
+     * 每次clear加1，clear之前发出的请求不能再写入
+     */
+    private int generation;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * @param dir 磁盘目录，为null时只使用内存
+     * @param maxMemoryBytes 内存中最多保存的响应字节数
+     * @param maxDiskBytes 磁盘上最多保存的字节数
+     */
+    public ValidatorStore(File dir, long maxMemoryBytes, long maxDiskBytes) {
+        this.dir = dir;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    /**
+     * 获取url对应的记录，内存未命中时从磁盘读取
+     * @param url
+     * @return 没有记录返回null
+     */
+    public Entry get(String url) {
+        String key = key(url);
+        synchronized (this) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        Entry entry = readFile(key);
+        if (entry != null) {
+            synchronized (this) {
+                putMemory(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    public void put(String url, Entry entry) {
+        put(url, entry, generation());
+    }
+
+    /**
+     * @param generation 请求发出时的generation()，之后清空过时不保存
+     */
+    public void put(String url, Entry entry, int generation) {
+        String key = key(url);
+        synchronized (this) {
+            if (generation != this.generation) {
+                return;
+            }
+            putMemory(key, entry);
+        }
+        writeFile(key, entry, generation);
+    }
+
+    public synchronized int generation() {
+        return generation;
+    }
+
+    public void remove(String url) {
+        String key = key(url);
+        synchronized (this) {
+            Entry removed = memory.remove(key);
+            if (removed != null) {
+                memoryBytes -= removed.body.length;
+            }
+        }
+        if (dir != null) {
+            deleteFile(new File(dir, key + SUFFIX));
+        }
+    }
+
+    /**
+     * 清空内存和磁盘，例如切换账号时
+     */
+    public void clear() {
+        synchronized (this) {
+            memory.clear();
+            memoryBytes = 0;
+            diskBytes = -1;
+            generation++;
+        }
+        File[] files = dir != null ? dir.listFiles() : null;
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private void putMemory(String key, Entry entry) {
+        Entry old = memory.put(key, entry);
+        if (old != null) {
+            memoryBytes -= old.body.length;
+        }
+        memoryBytes += entry.body.length;
+        Iterator<Map.Entry<String, Entry>> it = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+            memoryBytes -= it.next().getValue().body.length;
+            it.remove();
+        }
+    }
+
+    private Entry readFile(String key) {
+        if (dir == null) {
+            return null;
+        }
+        File file = new File(dir, key + SUFFIX);
+        if (!file.exists()) {
+            return null;
+        }
+        BufferedSource source = null;
+        try {
+            source = Okio.buffer(Okio.source(file));
+            if (source.readInt() != FORMAT_VERSION) {
+                closeQuietly(source);
+                source = null;
+                deleteFile(file);
+                return null;
+            }
+            String etag = readString(source);
+            String lastModified = readString(source);
+            String contentType = readString(source);
+            Headers headers = parseHeaders(readString(source));
+            byte[] body = source.readByteArray(source.readInt());
+            //磁盘上按最近使用时间淘汰
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(etag, lastModified, contentType, headers, body);
+        } catch (IOException e) {
+            deleteFile(file);
+            return null;
+        } finally {
+            closeQuietly(source);
+        }
+    }
+
+    private void writeFile(String key, Entry entry, int generation) {
+        if (dir == null || entry.body.length > maxDiskBytes) {
+            return;
+        }
+        if (!dir.exists() && !dir.mkdirs()) {
+            return;
+        }
+        File file = new File(dir, key + SUFFIX);
+        File tmp = new File(dir, key + "." + Thread.currentThread().getId() + SUFFIX_TMP);
+        BufferedSink sink = null;
+        try {
+            sink = Okio.buffer(Okio.sink(tmp));
+            sink.writeInt(FORMAT_VERSION);
+            writeString(sink, entry.etag);
+            writeString(sink, entry.lastModified);
+            writeString(sink, entry.contentType);
+            writeString(sink, entry.headers != null ? entry.headers.toString() : null);
+            sink.writeInt(entry.body.length);
+            sink.write(entry.body);
+            sink.close();
+            sink = null;
+            long oldLength;
+            long newLength;
+            //重命名和clear的generation++互斥：clear之后不再写入，clear之前写入的文件会被clear删除
+            synchronized (this) {
+                if (generation != this.generation) {
+                    deleteFile(tmp);
+                    return;
+                }
+                oldLength = file.length();
+                if (!tmp.renameTo(file)) {
+                    deleteFile(tmp);
+                    return;
+                }
+                newLength = file.length();
+            }
+            trimDisk(newLength - oldLength);
+        } catch (IOException e) {
+            closeQuietly(sink);
+            deleteFile(tmp);
+        }
+    }
+
+    private void trimDisk(long delta) {
+        synchronized (this) {
+            if (diskBytes >= 0) {
+                diskBytes += delta;
+                if (diskBytes <= maxDiskBytes) {
+                    return;
+                }
+            }
+            File[] files = dir.listFiles();
+            if (files == null) {
+                return;
+            }
+            long total = 0;
+            for (File file : files) {
+                total += file.length();
+            }
+            if (total > maxDiskBytes) {
+                Arrays.sort(files, new Comparator<File>() {
+                    @Override
+                    public int compare(File a, File b) {
+                        long diff = a.lastModified() - b.lastModified();
+                        return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+                    }
+                });
+                for (int i = 0; i < files.length && total > maxDiskBytes; i++) {
+                    long length = files[i].length();
+                    if (files[i].delete()) {
+                        total -= length;
+                    }
+                }
+            }
+            diskBytes = total;
+        }
+    }
+
+    private static String key(String url) {
+        return ByteString.encodeUtf8(url).md5().hex();
+    }
+
+    private static void writeString(BufferedSink sink, String value) throws IOException {
+        if (value == null) {
+            sink.writeInt(-1);
+            return;
+        }
+        ByteString bytes = ByteString.encodeUtf8(value);
+        sink.writeInt(bytes.size());
+        sink.write(bytes);
+    }
+
+    private static String readString(BufferedSource source) throws IOException {
+        int length = source.readInt();
+        return length < 0 ? null : source.readUtf8(length);
+    }
+
+    private static Headers parseHeaders(String value) {
+        if (value == null) {
+            return null;
+        }
+        Headers.Builder builder = new Headers.Builder();
+        for (String line : value.split("\n")) {
+            if (line.indexOf(':') > 0) {
+                builder.add(line);
+            }
+        }
+        return builder.build();
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 记录一次带验证信息的请求
+     */
+    public void onRequest() {
+        requestCount.incrementAndGet();
+    }
+
+    /**
+     * 记录一次304，bodyLength为没有重新下载的字节数
+     */
+    public void onHit(long bodyLength) {
+        hitCount.incrementAndGet();
+        bytesSaved.addAndGet(bodyLength);
+    }
+
+    /**
+     * 发出的条件请求数
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 服务端返回304的次数
+     */
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 304节省的响应体字节数
+     */
+    public long bytesSaved() {
+        return bytesSaved.get();
+    }
+
+    public float hitRate() {
+        long total = requestCount.get();
+        return total == 0 ? 0f : (float) hitCount.get() / total;
+    }
+
+    public String dumpStats() {
+        int entries;
+        long bytes;
+        synchronized (this) {
+            entries = memory.size();
+            bytes = memoryBytes;
+        }
+        return "entries=" + entries
+                + ", memoryBytes=" + bytes
+                + ", hitRate=" + hitRate()
+                + ", hits=" + hitCount()
+                + ", requests=" + requestCount()
+                + ", bytesSaved=" + bytesSaved();
+    }
+
+    /**
+     * 一条记录，body为解压后的响应内容
+     */
+    public static final class Entry {
+        public final String etag;
+        public final String lastModified;
+        public final String contentType;
+        /**
+         * 保存时的响应头，304时用新的响应头更新
+         */
+        public final Headers headers;
+        public final byte[] body;
+
+        public Entry(String etag, String lastModified, String contentType, Headers headers, byte[] body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+}
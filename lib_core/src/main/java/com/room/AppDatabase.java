@@ -1,27 +1,30 @@
 package com.room;
 
-import android.arch.persistence.db.SupportSQLiteOpenHelper;
-import android.arch.persistence.room.DatabaseConfiguration;
-import android.arch.persistence.room.InvalidationTracker;
+import android.arch.persistence.room.Database;
+import android.arch.persistence.room.Room;
 import android.arch.persistence.room.RoomDatabase;
-import android.support.annotation.NonNull;
+import android.content.Context;
 
 /**
  * create by liumingrui at 2018/7/30
  **/
-public class AppDatabase extends RoomDatabase {
-  @NonNull
-  @Override
-  protected SupportSQLiteOpenHelper createOpenHelper(DatabaseConfiguration config) {
-    return null;
-  }
-  @NonNull
-  @Override
-  protected InvalidationTracker createInvalidationTracker() {
-    return null;
-  }
-  @Override
-  public void clearAllTables() {
+@Database(entities = {OutboxEntity.class}, version = 1, exportSchema = false)
+public abstract class AppDatabase extends RoomDatabase {
+
+  private static final String DB_NAME = "app.db";
 
+  private static volatile AppDatabase instance;
+
+  public static AppDatabase getInstance(Context context) {
+    if (instance == null) {
+      synchronized (AppDatabase.class) {
+        if (instance == null) {
+          instance = Room.databaseBuilder(context.getApplicationContext(), AppDatabase.class, DB_NAME).build();
+        }
+      }
+    }
+    return instance;
   }
+
+  public abstract OutboxDao outboxDao();
 }
@@ -0,0 +1,65 @@
+package com.room;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.Query;
+import android.arch.persistence.room.Update;
+
+import java.util.List;
+
+import io.reactivex.Flowable;
+
+/**
+ * author : taowang
+ * date :2018/9/1
+ * description:outbox表的读写
+ **/
+@Dao
+public interface OutboxDao {
+
+    @Insert
+    long insert(OutboxEntity entity);
+
+    @Update
+    void update(OutboxEntity entity);
+
+    @Query("DELETE FROM outbox WHERE id = :id")
+    void delete(long id);
+
+    /**
+     * 已到重试时间的请求，按入队顺序
+     */
+    @Query("SELECT * FROM outbox WHERE status = " + OutboxEntity.STATUS_PENDING
+            + " AND nextAttemptAt <= :now ORDER BY id LIMIT :limit")
+    List<OutboxEntity> pendingDue(long now, int limit);
+
+    /**
+     * 还在退避中的资源，这些资源后面的请求不能先发
+     */
+    @Query("SELECT DISTINCT resourceKey FROM outbox WHERE status = " + OutboxEntity.STATUS_PENDING
+            + " AND nextAttemptAt > :now")
+    List<String> backingOffResources(long now);
+
+    /**
+     * 最早的下次重试时间，没有退避中的请求时返回null
+     */
+    @Query("SELECT MIN(nextAttemptAt) FROM outbox WHERE status = " + OutboxEntity.STATUS_PENDING
+            + " AND nextAttemptAt > :now")
+    Long nextAttemptAfter(long now);
+
+    @Query("SELECT COUNT(*) FROM outbox WHERE resourceKey = :resourceKey AND status != " + OutboxEntity.STATUS_FAILED)
+    int countUnsent(String resourceKey);
+
+    @Query("UPDATE outbox SET status = " + OutboxEntity.STATUS_PENDING + " WHERE status = " + OutboxEntity.STATUS_SENDING)
+    void resetSending();
+
+    @Query("UPDATE outbox SET status = " + OutboxEntity.STATUS_PENDING + ", attempts = 0, nextAttemptAt = 0"
+            + " WHERE status = " + OutboxEntity.STATUS_FAILED)
+    void retryFailed();
+
+    /**
+     * 表变化时重新发射全部记录
+     */
+    @Query("SELECT * FROM outbox ORDER BY id")
+    Flowable<List<OutboxEntity>> observeAll();
+}
@@ -0,0 +1,52 @@
+package com.room;
+
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Index;
+import android.arch.persistence.room.PrimaryKey;
+
+/**
+ * author : taowang
+ * date :2018/9/1
+ * description:离线时保存的写请求，按id顺序重放，同一resourceKey内保证顺序
+ **/
+@Entity(tableName = "outbox",
+        indices = {@Index(value = "idempotencyKey", unique = true), @Index("resourceKey")})
+public class OutboxEntity {
+
+    /**
+     * 等待发送
+     */
+    public static final int STATUS_PENDING = 0;
+    /**
+     * 正在发送，进程被杀后重新启动时恢复为等待
+     */
+    public static final int STATUS_SENDING = 1;
+    /**
+     * 服务端拒绝或超过重试次数，不再自动发送
+     */
+    public static final int STATUS_FAILED = 2;
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+    /**
+     * 随请求发送的Idempotency-Key，服务端据此去重
+     */
+    public String idempotencyKey;
+    /**
+     * 同一资源的请求按顺序发送
+     */
+    public String resourceKey;
+    public String method;
+    public String url;
+    /**
+     * 每行一个"name: value"
+     */
+    public String headers;
+    public String contentType;
+    public byte[] body;
+    public int status;
+    public int attempts;
+    public long nextAttemptAt;
+    public long createdAt;
+    public String lastError;
+}
@@ -0,0 +1,85 @@
+package com.http.common.intercept;
+
+import com.http.util.AdaptiveNetworkPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * author : taowang
+ * date :2018/8/16
+ * description:网络类型的超时只作为下限，配置的更长超时和不限制的超时保留
+ **/
+public class AdaptiveTimeoutInterceptTest {
+
+    private MockWebServer server;
+    private int connectTimeout;
+    private int readTimeout;
+    private int writeTimeout;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void longerConfiguredTimeoutsAreKept() throws Exception {
+        //默认的UNKNOWN参数：连接15s，读写25s
+        call(new OkHttpClient.Builder()
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS));
+
+        assertEquals(30000, connectTimeout);
+        assertEquals(30000, readTimeout);
+        assertEquals(30000, writeTimeout);
+    }
+
+    @Test
+    public void shorterConfiguredTimeoutsAreRaised() throws Exception {
+        call(new OkHttpClient.Builder()
+                .connectTimeout(5, TimeUnit.SECONDS)
+                .readTimeout(5, TimeUnit.SECONDS)
+                .writeTimeout(0, TimeUnit.SECONDS));
+
+        assertEquals(15000, connectTimeout);
+        assertEquals(25000, readTimeout);
+        assertEquals(0, writeTimeout);
+    }
+
+    private void call(OkHttpClient.Builder builder) throws IOException {
+        server.enqueue(new MockResponse().setBody("ok"));
+        OkHttpClient client = builder
+                .addInterceptor(new AdaptiveTimeoutIntercept(new AdaptiveNetworkPolicy()))
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        connectTimeout = chain.connectTimeoutMillis();
+                        readTimeout = chain.readTimeoutMillis();
+                        writeTimeout = chain.writeTimeoutMillis();
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .build();
+        client.newCall(new Request.Builder().url(server.url("/")).build()).execute().close();
+    }
+}
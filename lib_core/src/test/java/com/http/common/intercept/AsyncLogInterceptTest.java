@@ -0,0 +1,151 @@
+package com.http.common.intercept;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/8/21
+ * description:按接口采样、隐藏敏感请求头、请求体只记录前缀、队列满时丢弃
+ **/
+public class AsyncLogInterceptTest {
+
+    private final BlockingQueue<String> printed = new LinkedBlockingQueue<>();
+    private AsyncLogIntercept.Printer original;
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        original = AsyncLogIntercept.printer;
+        AsyncLogIntercept.printer = new AsyncLogIntercept.Printer() {
+            @Override
+            public void print(String message) {
+                printed.add(message);
+            }
+        };
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        AsyncLogIntercept.printer = original;
+        server.shutdown();
+    }
+
+    @Test
+    public void samplesEachEndpointSeparately() {
+        AsyncLogIntercept intercept = new AsyncLogIntercept(64, 3, null);
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < 6; i++) {
+            if (intercept.sampled(new Request.Builder().url(server.url("/a")).build())) {
+                a++;
+            }
+            if (intercept.sampled(new Request.Builder().url(server.url("/b")).build())) {
+                b++;
+            }
+        }
+        assertEquals(2, a);
+        assertEquals(2, b);
+    }
+
+    @Test
+    public void redactsSensitiveHeaders() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Set-Cookie", "sid=1").setBody("ok"));
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new AsyncLogIntercept(64, 1, Collections.singleton("Token")))
+                .build();
+        client.newCall(new Request.Builder().url(server.url("/login"))
+                .header("Authorization", "Bearer secret")
+                .header("token", "abc")
+                .header("X-Device", "phone")
+                .build()).execute().close();
+
+        String log = printed.poll(5, TimeUnit.SECONDS);
+        assertNotNull(log);
+        assertTrue(log.contains("Authorization: ██"));
+        assertTrue(log.contains("token: ██"));
+        assertTrue(log.contains("Set-Cookie: ██"));
+        assertTrue(log.contains("X-Device: phone"));
+        assertFalse(log.contains("secret"));
+        assertFalse(log.contains("abc"));
+    }
+
+    @Test
+    public void longRequestBodyKeepsPrefix() throws Exception {
+        server.enqueue(new MockResponse().setBody("ok"));
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            body.append("0123456789");
+        }
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(new AsyncLogIntercept(16, 1, null)).build();
+        client.newCall(new Request.Builder().url(server.url("/upload"))
+                .post(RequestBody.create(MediaType.parse("text/plain"), body.toString()))
+                .build()).execute().close();
+
+        String log = printed.poll(5, TimeUnit.SECONDS);
+        assertNotNull(log);
+        assertTrue(log.contains("0123456789012345...(100 bytes)"));
+        //完整的请求体照常发出
+        assertEquals(body.toString(), server.takeRequest().getBody().readUtf8());
+    }
+
+    @Test
+    public void dropsWhenQueueIsFull() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        AsyncLogIntercept.printer = new AsyncLogIntercept.Printer() {
+            @Override
+            public void print(String message) {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+                printed.add(message);
+            }
+        };
+        AsyncLogIntercept intercept = new AsyncLogIntercept(64, 1, null);
+        intercept.enqueue(record(intercept));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        //输出线程卡住时，队列最多再放MAX_QUEUE_SIZE条
+        for (int i = 0; i < AsyncLogIntercept.MAX_QUEUE_SIZE + 5; i++) {
+            intercept.enqueue(record(intercept));
+        }
+        assertEquals(5, intercept.droppedCount());
+
+        release.countDown();
+        for (int i = 0; i < AsyncLogIntercept.MAX_QUEUE_SIZE + 1; i++) {
+            assertNotNull(printed.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private AsyncLogIntercept.LogRecord record(AsyncLogIntercept owner) {
+        AsyncLogIntercept.LogRecord record = new AsyncLogIntercept.LogRecord(owner);
+        record.method = "GET";
+        record.url = server.url("/").toString();
+        record.code = 200;
+        return record;
+    }
+}
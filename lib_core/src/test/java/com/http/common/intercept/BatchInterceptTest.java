@@ -0,0 +1,291 @@
+package com.http.common.intercept;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.http.common.HeaderCont;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:批量请求的拆分、服务端不支持时停用、传输失败和漏掉结果时GET与写请求的处理、取消，
+ * 以及被合并的请求占满Dispatcher名额时批量请求照常发出
+ **/
+public class BatchInterceptTest {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private MockWebServer server;
+    private BatchFixture fixture;
+    private BatchIntercept batch;
+    private OkHttpClient client;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new BatchFixture();
+        server = new MockWebServer();
+        server.setDispatcher(fixture);
+        server.start();
+        batch = new BatchIntercept("/batch", 100, 10);
+        batch.setCallFactory(new OkHttpClient());
+        client = new OkHttpClient.Builder().addInterceptor(batch).build();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.release.countDown();
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void splitsBatchResponse() throws Exception {
+        Future<String> a = submit(get("/a"));
+        Future<String> b = submit(get("/b"));
+        Future<String> c = submit(post("/c", "{\"x\":1}"));
+
+        assertEquals("GET /a", a.get(5, TimeUnit.SECONDS));
+        assertEquals("GET /b", b.get(5, TimeUnit.SECONDS));
+        assertEquals("POST /c {\"x\":1}", c.get(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, batch.batchCount());
+        assertEquals(3, batch.batchedCallCount());
+    }
+
+    @Test
+    public void singleRequestIsSentAlone() throws Exception {
+        assertEquals("GET /a", submit(get("/a")).get(5, TimeUnit.SECONDS));
+        assertEquals("/a", server.takeRequest().getPath());
+        assertEquals(0, batch.batchCount());
+    }
+
+    @Test
+    public void unsupportedBatchDisablesBatching() throws Exception {
+        fixture.batchStatus = 404;
+        Future<String> a = submit(get("/a"));
+        Future<String> b = submit(post("/b", "{}"));
+        assertEquals("GET /a", a.get(5, TimeUnit.SECONDS));
+        //整体被拒绝时写请求也没有执行过，可以单独发送
+        assertEquals("POST /b {}", b.get(5, TimeUnit.SECONDS));
+        assertEquals(3, server.getRequestCount());
+
+        a = submit(get("/a"));
+        b = submit(get("/b"));
+        assertEquals("GET /a", a.get(5, TimeUnit.SECONDS));
+        assertEquals("GET /b", b.get(5, TimeUnit.SECONDS));
+        assertEquals(5, server.getRequestCount());
+        assertEquals(1, batch.batchCount());
+        assertTrue(batch.dumpStats().endsWith("disabled=true"));
+    }
+
+    @Test
+    public void transitFailureRetriesGetAndFailsWrite() throws Exception {
+        fixture.disconnectBatch = true;
+        Future<String> a = submit(get("/a"));
+        Future<String> b = submit(post("/b", "{}"));
+
+        assertEquals("GET /a", a.get(5, TimeUnit.SECONDS));
+        assertFails(b);
+        //批量请求和GET的单独请求，写请求没有重发
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, batch.fallbackCount());
+    }
+
+    @Test
+    public void missingItemsRetryGetAndFailWrite() throws Exception {
+        fixture.dropped.add("/a");
+        fixture.dropped.add("/c");
+        Future<String> a = submit(get("/a"));
+        Future<String> b = submit(get("/b"));
+        Future<String> c = submit(post("/c", "{}"));
+
+        assertEquals("GET /a", a.get(5, TimeUnit.SECONDS));
+        assertEquals("GET /b", b.get(5, TimeUnit.SECONDS));
+        assertFails(c);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void cancelledLeaderDoesNotCancelFollowers() throws Exception {
+        fixture.hold = true;
+        Call leader = client.newCall(get("/a"));
+        Future<String> first = submit(leader);
+        Thread.sleep(20);
+        Future<String> b = submit(get("/b"));
+        Future<String> c = submit(get("/c"));
+        assertEquals("/batch", server.takeRequest(5, TimeUnit.SECONDS).getPath());
+
+        leader.cancel();
+        fixture.release.countDown();
+
+        assertFails(first);
+        assertEquals("GET /b", b.get(5, TimeUnit.SECONDS));
+        assertEquals("GET /c", c.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelledFollowerStopsWaiting() throws Exception {
+        fixture.hold = true;
+        Future<String> a = submit(get("/a"));
+        Call follower = client.newCall(get("/b"));
+        Future<String> b = submit(follower);
+        assertEquals("/batch", server.takeRequest(5, TimeUnit.SECONDS).getPath());
+
+        follower.cancel();
+        try {
+            b.get(2, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+        fixture.release.countDown();
+        assertEquals("GET /a", a.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void envelopeDoesNotWaitForDispatcherSlot() throws Exception {
+        okhttp3.Dispatcher dispatcher = new okhttp3.Dispatcher();
+        dispatcher.setMaxRequestsPerHost(1);
+        OkHttpClient base = new OkHttpClient.Builder().dispatcher(dispatcher).build();
+        batch.setCallFactory(base);
+        client = base.newBuilder().addInterceptor(batch).build();
+
+        //异步发出的请求占着唯一的名额等待批量结果
+        final CountDownLatch asyncDone = new CountDownLatch(1);
+        final String[] asyncBody = new String[1];
+        client.newCall(get("/a")).enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                asyncDone.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                asyncBody[0] = response.body().string();
+                asyncDone.countDown();
+            }
+        });
+        Thread.sleep(20);
+        Future<String> b = submit(get("/b"));
+
+        assertEquals("GET /b", b.get(5, TimeUnit.SECONDS));
+        assertTrue(asyncDone.await(5, TimeUnit.SECONDS));
+        assertEquals("GET /a", asyncBody[0]);
+        assertEquals(1, batch.batchCount());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    private Request get(String path) {
+        return new Request.Builder().url(server.url(path)).header(HeaderCont.BATCH, "true").build();
+    }
+
+    private Request post(String path, String body) {
+        return new Request.Builder().url(server.url(path)).header(HeaderCont.BATCH, "true")
+                .post(RequestBody.create(JSON, body)).build();
+    }
+
+    private Future<String> submit(Request request) {
+        return submit(client.newCall(request));
+    }
+
+    private Future<String> submit(final Call call) {
+        return executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                Response response = call.execute();
+                return response.body().string();
+            }
+        });
+    }
+
+    private static void assertFails(Future<String> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+    }
+
+    /**
+     * 批量接口的模拟实现，每个结果的body为"方法 路径 请求体"，单独的请求返回同样的内容
+     */
+    static final class BatchFixture extends Dispatcher {
+        final Set<String> dropped = new HashSet<>();
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile int batchStatus = 200;
+        volatile boolean disconnectBatch;
+        volatile boolean hold;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            String path = request.getPath();
+            if (!"/batch".equals(path)) {
+                String body = request.getBody().readUtf8();
+                return new MockResponse().setBody(request.getMethod() + " " + path + (body.isEmpty() ? "" : " " + body));
+            }
+            if (hold) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            if (disconnectBatch) {
+                return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            }
+            if (batchStatus != 200) {
+                return new MockResponse().setResponseCode(batchStatus);
+            }
+            JsonObject envelope = new JsonParser().parse(request.getBody().readUtf8()).getAsJsonObject();
+            JsonArray responses = new JsonArray();
+            for (JsonElement element : envelope.getAsJsonArray("requests")) {
+                JsonObject item = element.getAsJsonObject();
+                String url = item.get("url").getAsString();
+                if (dropped.contains(url)) {
+                    continue;
+                }
+                String text = item.get("method").getAsString() + " " + url
+                        + (item.has("body") ? " " + item.get("body").getAsString() : "");
+                JsonObject result = new JsonObject();
+                result.addProperty("id", item.get("id").getAsInt());
+                result.addProperty("status", 200);
+                result.addProperty("body", text);
+                responses.add(result);
+            }
+            JsonObject body = new JsonObject();
+            body.add("responses", responses);
+            return new MockResponse().setBody(body.toString());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.http.common.intercept;
+
+import com.http.common.HeaderCont;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * author : taowang
+ * date :2018/8/7
+ * description:服务端没有Cache-Control时补上默认或接口声明的时长，使磁盘缓存命中；服务端返回的Cache-Control保持不变
+ **/
+public class CacheControlInterceptTest {
+
+    private MockWebServer server;
+    private Cache cache;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        File dir = Files.createTempDirectory("cache-control").toFile();
+        cache = new Cache(dir, 1024 * 1024);
+        client = new OkHttpClient.Builder()
+                .cache(cache)
+                .addNetworkInterceptor(new CacheControlIntercept(60))
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache.delete();
+        server.shutdown();
+    }
+
+    @Test
+    public void defaultMaxAgeMakesResponseCacheable() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Pragma", "no-cache").setBody("v1"));
+
+        Response first = get(null);
+        assertEquals("public, max-age=60", first.header("Cache-Control"));
+        assertNull(first.header("Pragma"));
+        assertEquals("v1", first.body().string());
+
+        Response second = get(null);
+        assertEquals("v1", second.body().string());
+        assertNotNull(second.cacheResponse());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void declaredMaxAgeOverridesDefault() throws Exception {
+        server.enqueue(new MockResponse().setBody("v1"));
+
+        Response response = get("600");
+        assertEquals("public, max-age=600", response.header("Cache-Control"));
+        response.close();
+        //标记请求头不会发给服务端
+        assertNull(server.takeRequest().getHeader(HeaderCont.CACHE_MAX_AGE));
+    }
+
+    @Test
+    public void serverCacheControlIsKept() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "no-store").setBody("v1"));
+        server.enqueue(new MockResponse().setBody("v2"));
+
+        Response first = get(null);
+        assertEquals("no-store", first.header("Cache-Control"));
+        first.close();
+        assertEquals("v2", get(null).body().string());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void errorsAreNotMadeCacheable() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        Response response = get(null);
+        assertNull(response.header("Cache-Control"));
+        response.close();
+    }
+
+    private Response get(String maxAge) throws Exception {
+        Request.Builder builder = new Request.Builder().url(server.url("/a"));
+        if (maxAge != null) {
+            builder.header(HeaderCont.CACHE_MAX_AGE, maxAge);
+        }
+        return client.newCall(builder.build()).execute();
+    }
+}
@@ -0,0 +1,241 @@
+package com.http.common.intercept;
+
+import com.http.exception.CircuitOpenException;
+import com.http.exception.ExceptionCont;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * author : taowang
+ * date :2018/8/10
+ * description:失败率达到阈值后熔断并快速失败，熔断时间过后只放行探测请求，探测成功恢复、失败重新熔断；
+ * 慢请求按失败统计，过期的分桶不参与统计
+ **/
+public class CircuitBreakerInterceptTest {
+
+    private static final long OPEN_MILLIS = 15000;
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toMillis(1));
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void tripsAndFailsFast() throws Exception {
+        CircuitBreakerIntercept breaker = breaker(new CircuitBreakerIntercept.Builder());
+        OkHttpClient client = client(breaker, null);
+        trip(client);
+        assertEquals(CircuitBreakerIntercept.STATE_OPEN, breaker.getState(host()));
+
+        try {
+            execute(client);
+            fail();
+        } catch (CircuitOpenException e) {
+            assertEquals(ExceptionCont.CIRCUIT_OPEN, e.code);
+            assertEquals("1002", e.code);
+            assertEquals(host(), e.host);
+        }
+        //熔断中的请求没有发出
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @Test
+    public void belowMinRequestsStaysClosed() throws Exception {
+        CircuitBreakerIntercept breaker = breaker(new CircuitBreakerIntercept.Builder());
+        OkHttpClient client = client(breaker, null);
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+            execute(client).close();
+        }
+        assertEquals(CircuitBreakerIntercept.STATE_CLOSED, breaker.getState(host()));
+    }
+
+    @Test
+    public void singleProbeClosesOnSuccess() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean holdNext = new AtomicBoolean();
+        CircuitBreakerIntercept breaker = breaker(new CircuitBreakerIntercept.Builder());
+        OkHttpClient client = client(breaker, new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                if (holdNext.compareAndSet(true, false)) {
+                    entered.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return chain.proceed(chain.request());
+            }
+        });
+        trip(client);
+        now.addAndGet(OPEN_MILLIS);
+
+        //探测请求未返回时，其他请求仍然快速失败
+        holdNext.set(true);
+        server.enqueue(new MockResponse().setBody("ok"));
+        final CountDownLatch done = new CountDownLatch(1);
+        final int[] code = new int[1];
+        client.newCall(new Request.Builder().url(server.url("/a")).build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                done.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                code[0] = response.code();
+                response.close();
+                done.countDown();
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        assertEquals(CircuitBreakerIntercept.STATE_HALF_OPEN, breaker.getState(host()));
+        try {
+            execute(client);
+            fail();
+        } catch (CircuitOpenException expected) {
+        }
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(200, code[0]);
+        assertEquals(CircuitBreakerIntercept.STATE_CLOSED, breaker.getState(host()));
+
+        server.enqueue(new MockResponse().setBody("ok"));
+        assertEquals(200, execute(client).code());
+        assertEquals(6, server.getRequestCount());
+    }
+
+    @Test
+    public void failedProbeReopens() throws Exception {
+        CircuitBreakerIntercept breaker = breaker(new CircuitBreakerIntercept.Builder());
+        OkHttpClient client = client(breaker, null);
+        trip(client);
+        now.addAndGet(OPEN_MILLIS);
+
+        server.enqueue(new MockResponse().setResponseCode(503));
+        execute(client).close();
+        assertEquals(CircuitBreakerIntercept.STATE_OPEN, breaker.getState(host()));
+        //重新计算熔断时间
+        now.addAndGet(OPEN_MILLIS - 1);
+        try {
+            execute(client);
+            fail();
+        } catch (CircuitOpenException expected) {
+        }
+    }
+
+    @Test
+    public void slowCallsCountAsFailures() throws Exception {
+        CircuitBreakerIntercept breaker = breaker(new CircuitBreakerIntercept.Builder().slowCallMillis(1000));
+        //模拟每个请求耗时1秒
+        OkHttpClient client = client(breaker, new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                now.addAndGet(1000);
+                return chain.proceed(chain.request());
+            }
+        });
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setBody("ok"));
+            assertEquals(200, execute(client).code());
+        }
+        assertEquals(CircuitBreakerIntercept.STATE_OPEN, breaker.getState(host()));
+    }
+
+    @Test
+    public void expiredBucketsAreNotCounted() throws Exception {
+        CircuitBreakerIntercept breaker = breaker(new CircuitBreakerIntercept.Builder().windowSeconds(2));
+        OkHttpClient client = client(breaker, null);
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+            execute(client).close();
+        }
+        //同一个分桶被新的一秒复用，之前的失败不再统计
+        now.addAndGet(2000);
+        server.enqueue(new MockResponse().setResponseCode(500));
+        execute(client).close();
+        assertEquals(CircuitBreakerIntercept.STATE_CLOSED, breaker.getState(host()));
+
+        //窗口内的相邻分桶一起统计
+        now.addAndGet(1000);
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+            execute(client).close();
+        }
+        assertEquals(CircuitBreakerIntercept.STATE_OPEN, breaker.getState(host()));
+    }
+
+    private CircuitBreakerIntercept breaker(CircuitBreakerIntercept.Builder builder) {
+        CircuitBreakerIntercept breaker = builder
+                .minRequests(4)
+                .failureRateThreshold(0.5f)
+                .openMillis(OPEN_MILLIS)
+                .halfOpenProbes(1)
+                .build();
+        breaker.ticker = new CircuitBreakerIntercept.Ticker() {
+            @Override
+            public long millis() {
+                return now.get();
+            }
+        };
+        return breaker;
+    }
+
+    private static OkHttpClient client(CircuitBreakerIntercept breaker, Interceptor inner) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder().addInterceptor(breaker);
+        if (inner != null) {
+            builder.addInterceptor(inner);
+        }
+        return builder.build();
+    }
+
+    private void trip(OkHttpClient client) throws Exception {
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+            execute(client).close();
+            server.takeRequest();
+        }
+    }
+
+    private Response execute(OkHttpClient client) throws IOException {
+        return client.newCall(new Request.Builder().url(server.url("/a")).build()).execute();
+    }
+
+    private String host() {
+        return server.url("/").host();
+    }
+}
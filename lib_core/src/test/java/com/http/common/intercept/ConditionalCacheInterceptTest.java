@@ -0,0 +1,107 @@
+package com.http.common.intercept;
+
+import com.http.util.ValidatorStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * author : taowang
+ * date :2018/8/30
+ * description:304还原保存的内容，并用304的验证信息和响应头更新记录
+ **/
+public class ConditionalCacheInterceptTest {
+
+    private MockWebServer server;
+    private ValidatorStore store;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        store = new ValidatorStore(null, 1024 * 1024, 0);
+        client = new OkHttpClient.Builder().addInterceptor(new ConditionalCacheIntercept(store)).build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void notModifiedUpdatesValidatorsAndHeaders() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setHeader("X-Rev", "1")
+                .setHeader("Content-Type", "text/plain").setBody("hello"));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v2\"").setHeader("X-Rev", "2"));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        assertEquals("hello", get().body().string());
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+
+        Response second = get();
+        assertEquals(200, second.code());
+        assertEquals("hello", second.body().string());
+        assertEquals("2", second.header("X-Rev"));
+        assertEquals("text/plain", second.header("Content-Type"));
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+
+        Response third = get();
+        assertEquals("hello", third.body().string());
+        assertEquals("2", third.header("X-Rev"));
+        assertEquals("\"v2\"", server.takeRequest().getHeader("If-None-Match"));
+        assertEquals(2, store.hitCount());
+    }
+
+    @Test
+    public void clearedStoreSendsUnconditionalRequest() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody("user a"));
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody("user b"));
+
+        assertEquals("user a", get().body().string());
+        store.clear();
+        assertEquals("user b", get().body().string());
+        server.takeRequest();
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void chunkedBodyIsStoredWhenSmall() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setChunkedBody("hello", 2));
+
+        assertEquals("hello", get().body().string());
+        assertEquals("hello", new String(store.get(server.url("/res").toString()).body, "UTF-8"));
+    }
+
+    @Test
+    public void oversizedChunkedBodyStreamsThrough() throws Exception {
+        client = new OkHttpClient.Builder().addInterceptor(new ConditionalCacheIntercept(store, 1024)).build();
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            big.append("line ").append(i).append('\n');
+        }
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setChunkedBody(big.toString(), 256));
+
+        Response response = get();
+        //没有读入内存重新包装，长度仍然未知
+        assertEquals(-1, response.body().contentLength());
+        assertEquals(big.toString(), response.body().string());
+        assertNull(store.get(server.url("/res").toString()));
+    }
+
+    private Response get() throws IOException {
+        return client.newCall(new Request.Builder().url(server.url("/res")).build()).execute();
+    }
+}
@@ -0,0 +1,176 @@
+package com.http.common.intercept;
+
+import com.http.common.HeaderCont;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/8/20
+ * description:超过阈值的请求体gzip后发出，服务端解压后与原文一致；
+ * 阈值以下、X-No-Compress、multipart和已有Content-Encoding的请求原样发出，长度未知的请求体总是压缩
+ **/
+public class GzipRequestInterceptTest {
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final long THRESHOLD = 1024;
+
+    private MockWebServer server;
+    private GzipRequestIntercept intercept;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        intercept = new GzipRequestIntercept(THRESHOLD);
+        intercept.cpuClock = new GzipRequestIntercept.CpuClock() {
+            @Override
+            public long threadCpuNanos() {
+                return -1;
+            }
+        };
+        client = new OkHttpClient.Builder().addInterceptor(intercept).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void largeBodyIsGzipped() throws Exception {
+        String json = json(200);
+        RecordedRequest request = post(RequestBody.create(JSON, json), null);
+
+        assertEquals("gzip", request.getHeader("Content-Encoding"));
+        assertEquals("chunked", request.getHeader("Transfer-Encoding"));
+        assertNull(request.getHeader("Content-Length"));
+        assertTrue(request.getBodySize() < json.length());
+        assertEquals(json, gunzip(request.getBody()));
+
+        assertEquals(1, intercept.compressCount());
+        assertEquals(json.length() - request.getBodySize(), intercept.savedBytes());
+        assertTrue(intercept.compressionRatio() < 1f);
+    }
+
+    @Test
+    public void bodyBelowThresholdIsSentAsIs() throws Exception {
+        String json = json(5);
+        assertTrue(json.length() < THRESHOLD);
+        RecordedRequest request = post(RequestBody.create(JSON, json), null);
+
+        assertNull(request.getHeader("Content-Encoding"));
+        assertEquals(String.valueOf(json.length()), request.getHeader("Content-Length"));
+        assertEquals(json, request.getBody().readUtf8());
+        assertEquals(0, intercept.compressCount());
+    }
+
+    @Test
+    public void noCompressHeaderOptsOut() throws Exception {
+        String json = json(200);
+        RecordedRequest request = post(RequestBody.create(JSON, json), HeaderCont.NO_COMPRESS);
+
+        assertNull(request.getHeader("Content-Encoding"));
+        assertNull(request.getHeader(HeaderCont.NO_COMPRESS));
+        assertEquals(json, request.getBody().readUtf8());
+    }
+
+    @Test
+    public void multipartIsSkipped() throws Exception {
+        String json = json(200);
+        RequestBody body = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("file", "a.json", RequestBody.create(JSON, json))
+                .build();
+        RecordedRequest request = post(body, null);
+
+        assertNull(request.getHeader("Content-Encoding"));
+        assertTrue(request.getBody().readUtf8().contains(json));
+    }
+
+    @Test
+    public void unknownLengthIsAlwaysGzipped() throws Exception {
+        final String text = "small";
+        RequestBody body = new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public long contentLength() {
+                return -1;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                sink.writeUtf8(text);
+            }
+        };
+        RecordedRequest request = post(body, null);
+
+        assertEquals("gzip", request.getHeader("Content-Encoding"));
+        assertEquals(text, gunzip(request.getBody()));
+    }
+
+    @Test
+    public void existingContentEncodingIsKept() throws Exception {
+        byte[] raw = json(200).getBytes("UTF-8");
+        server.enqueue(new MockResponse());
+        client.newCall(new Request.Builder().url(server.url("/a"))
+                .header("Content-Encoding", "br")
+                .post(RequestBody.create(JSON, raw))
+                .build()).execute().close();
+        RecordedRequest request = server.takeRequest();
+
+        assertEquals("br", request.getHeader("Content-Encoding"));
+        assertEquals(raw.length, request.getBodySize());
+    }
+
+    private RecordedRequest post(RequestBody body, String extraHeader) throws Exception {
+        server.enqueue(new MockResponse());
+        Request.Builder builder = new Request.Builder().url(server.url("/a")).post(body);
+        if (extraHeader != null) {
+            builder.header(extraHeader, "true");
+        }
+        client.newCall(builder.build()).execute().close();
+        return server.takeRequest();
+    }
+
+    private static String gunzip(Buffer body) throws IOException {
+        return Okio.buffer(new GzipSource(body)).readUtf8();
+    }
+
+    private static String json(int items) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(i).append(",\"name\":\"item\",\"enabled\":true}");
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,101 @@
+package com.http.common.intercept;
+
+import com.http.common.HeaderCont;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:对冲请求只让成功的响应生效
+ **/
+public class HedgeInterceptTest {
+
+    private MockWebServer server;
+    private final LinkedBlockingQueue<Object[]> replies = new LinkedBlockingQueue<>();
+    private HedgeIntercept hedge;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        //按到达顺序取响应，在返回响应头之前等待指定的时间
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                Object[] reply = replies.take();
+                Thread.sleep((Long) reply[0]);
+                return (MockResponse) reply[1];
+            }
+        });
+        server.start();
+        hedge = new HedgeIntercept.Builder()
+                .defaultDelayMillis(100)
+                .minDelayMillis(100)
+                .build();
+        OkHttpClient inner = new OkHttpClient();
+        hedge.setCallFactory(inner);
+        client = inner.newBuilder().addInterceptor(hedge).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void fastServerErrorDoesNotBeatSlowSuccess() throws Exception {
+        reply(500, new MockResponse().setBody("healthy"));
+        reply(0, new MockResponse().setResponseCode(503).setBody("failing"));
+
+        Response response = client.newCall(hedgedGet()).execute();
+        assertEquals(200, response.code());
+        assertEquals("healthy", response.body().string());
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, hedge.hedgeSentCount());
+        assertEquals(0, hedge.hedgeWinCount());
+    }
+
+    @Test
+    public void errorReturnedWhenEveryAttemptFails() throws Exception {
+        reply(300, new MockResponse().setResponseCode(500));
+        reply(0, new MockResponse().setResponseCode(503));
+
+        Response response = client.newCall(hedgedGet()).execute();
+        assertEquals(503, response.code());
+        response.close();
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void hedgeWinsWhenItSucceedsFirst() throws Exception {
+        reply(1000, new MockResponse().setBody("slow"));
+        reply(0, new MockResponse().setBody("fast"));
+
+        Response response = client.newCall(hedgedGet()).execute();
+        assertEquals("fast", response.body().string());
+        assertEquals(1, hedge.hedgeWinCount());
+    }
+
+    private void reply(long delayMillis, MockResponse response) {
+        replies.add(new Object[]{delayMillis, response});
+    }
+
+    private Request hedgedGet() {
+        return new Request.Builder().url(server.url("/items")).header(HeaderCont.HEDGE, "true").build();
+    }
+}
@@ -0,0 +1,61 @@
+package com.http.common.intercept;
+
+import com.http.common.HeaderCont;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * author : taowang
+ * date :2018/8/29
+ * description:没有拦截器处理的标记请求头不会发到服务端，其他请求头保留
+ **/
+public class MarkerHeaderInterceptTest {
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void removesLeftoverMarkers() throws Exception {
+        server.enqueue(new MockResponse().setBody("ok"));
+        OkHttpClient client = new OkHttpClient.Builder().addNetworkInterceptor(new MarkerHeaderIntercept()).build();
+        client.newCall(new Request.Builder().url(server.url("/"))
+                .header(HeaderCont.NO_COMPRESS, "true")
+                .header(HeaderCont.RETRY_POLICY, HeaderCont.RETRY_POLICY_NONE)
+                .header(HeaderCont.PRIORITY, "background")
+                .header(HeaderCont.CACHE_MAX_AGE, "60")
+                .header(HeaderCont.BATCH, "true")
+                .header("X-Device", "phone")
+                .build()).execute().close();
+
+        RecordedRequest request = server.takeRequest();
+        assertNull(request.getHeader(HeaderCont.NO_COMPRESS));
+        assertNull(request.getHeader(HeaderCont.RETRY_POLICY));
+        assertNull(request.getHeader(HeaderCont.PRIORITY));
+        assertNull(request.getHeader(HeaderCont.CACHE_MAX_AGE));
+        assertNull(request.getHeader(HeaderCont.BATCH));
+        assertEquals("phone", request.getHeader("X-Device"));
+    }
+}
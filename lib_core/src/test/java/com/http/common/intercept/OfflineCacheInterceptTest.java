@@ -0,0 +1,150 @@
+package com.http.common.intercept;
+
+import com.http.util.NetworkMonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import okhttp3.Cache;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * author : taowang
+ * date :2018/8/7
+ * description:没有网络时直接读缓存，请求失败或5xx时使用过期缓存，缓存未命中时返回原结果，非GET请求不处理
+ **/
+public class OfflineCacheInterceptTest {
+
+    private MockWebServer server;
+    private Cache cache;
+    private OkHttpClient client;
+    private volatile boolean connected = true;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        File dir = Files.createTempDirectory("offline-cache").toFile();
+        cache = new Cache(dir, 1024 * 1024);
+        client = new OkHttpClient.Builder()
+                //连接失败直接交给拦截器处理
+                .retryOnConnectionFailure(false)
+                .cache(cache)
+                .addInterceptor(new OfflineCacheIntercept(new NetworkMonitor() {
+                    @Override
+                    public boolean isConnected() {
+                        return connected;
+                    }
+                }, 3600))
+                .addNetworkInterceptor(new CacheControlIntercept(0))
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache.delete();
+        server.shutdown();
+    }
+
+    @Test
+    public void offlineReadsCacheWithoutNetwork() throws Exception {
+        prime();
+        connected = false;
+
+        Response response = get();
+        assertEquals("v1", response.body().string());
+        assertNotNull(response.cacheResponse());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void offlineCacheMissIsUnsatisfiable() throws Exception {
+        connected = false;
+
+        Response response = get();
+        assertEquals(504, response.code());
+        response.close();
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void serverErrorFallsBackToStaleCache() throws Exception {
+        prime();
+        server.enqueue(new MockResponse().setResponseCode(503).setBody("down"));
+
+        Response response = get();
+        assertEquals(200, response.code());
+        assertEquals("v1", response.body().string());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void connectionFailureFallsBackToStaleCache() throws Exception {
+        prime();
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+
+        Response response = get();
+        assertEquals("v1", response.body().string());
+    }
+
+    @Test
+    public void serverErrorWithoutCacheIsReturned() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503).setBody("down"));
+
+        Response response = get();
+        assertEquals(503, response.code());
+        assertEquals("down", response.body().string());
+    }
+
+    @Test
+    public void connectionFailureWithoutCacheIsThrown() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+        try {
+            get();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void postIsNotServedFromCache() throws Exception {
+        prime();
+        connected = false;
+        server.enqueue(new MockResponse().setBody("posted"));
+
+        Response response = client.newCall(new Request.Builder().url(server.url("/a"))
+                .post(RequestBody.create(MediaType.parse("text/plain"), "x"))
+                .build()).execute();
+        assertEquals("posted", response.body().string());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    /**
+     * 写入一条立即过期的缓存
+     */
+    private void prime() throws IOException {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=0").setBody("v1"));
+        Response response = get();
+        assertEquals("v1", response.body().string());
+    }
+
+    private Response get() throws IOException {
+        return client.newCall(new Request.Builder().url(server.url("/a")).build()).execute();
+    }
+}
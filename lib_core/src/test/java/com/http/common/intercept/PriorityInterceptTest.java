@@ -0,0 +1,110 @@
+package com.http.common.intercept;
+
+import com.http.util.RequestLanes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:通道在响应体关闭时释放，取消的请求被唤醒后立即退出排队
+ **/
+public class PriorityInterceptTest {
+
+    private MockWebServer server;
+    private RequestLanes lanes;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        lanes = new RequestLanes().setLimit(RequestLanes.LANE_NORMAL, 1);
+        client = new OkHttpClient.Builder().addInterceptor(new PriorityIntercept(lanes)).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void laneHeldUntilBodyClosed() throws Exception {
+        server.enqueue(new MockResponse().setBody("first"));
+        server.enqueue(new MockResponse().setBody("second"));
+
+        Response first = client.newCall(get()).execute();
+        assertEquals(1, lanes.inFlightCount(RequestLanes.LANE_NORMAL));
+
+        final CountDownLatch done = new CountDownLatch(1);
+        client.newCall(get()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                response.close();
+                done.countDown();
+            }
+        });
+        assertFalse(done.await(300, TimeUnit.MILLISECONDS));
+        assertEquals(1, lanes.waitingCount(RequestLanes.LANE_NORMAL));
+
+        assertEquals("first", first.body().string());
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, lanes.inFlightCount(RequestLanes.LANE_NORMAL));
+    }
+
+    @Test
+    public void cancelledWaiterLeavesOnWakeUp() throws Exception {
+        server.enqueue(new MockResponse().setBody("first"));
+        Response first = client.newCall(get()).execute();
+
+        final CountDownLatch failed = new CountDownLatch(1);
+        final AtomicReference<IOException> error = new AtomicReference<>();
+        Call waiting = client.newCall(get());
+        waiting.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                error.set(e);
+                failed.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
+        Thread.sleep(100);
+        waiting.cancel();
+        lanes.wakeUp();
+        assertTrue(failed.await(500, TimeUnit.MILLISECONDS));
+        assertEquals(0, lanes.waitingCount(RequestLanes.LANE_NORMAL));
+        first.close();
+        assertEquals(1, server.getRequestCount());
+    }
+
+    private Request get() {
+        return new Request.Builder().url(server.url("/")).build();
+    }
+}
@@ -0,0 +1,88 @@
+package com.http.common.intercept;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.FormBody;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+/**
+ * author : taowang
+ * date :2018/8/22
+ * description:RequestDecorIntercept与原来的HeaderIntercept + CommonParamIntercept对比，
+ * 不走网络，请求体写到内存中以计入body的拼接开销。直接运行main
+ **/
+@SuppressWarnings("deprecation")
+public class RequestDecorInterceptBenchmark {
+
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 100000;
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < 6; i++) {
+            headers.put("header" + i, "value-" + i);
+            params.put("param" + i, "value " + i);
+        }
+
+        OkHttpClient legacy = client(new HeaderIntercept(headers), new CommonParamIntercept(params));
+        OkHttpClient decor = client(new RequestDecorIntercept(headers, params, null, null), null);
+
+        Request get = new Request.Builder().url("http://localhost/api/user?id=42").build();
+        Request form = new Request.Builder().url("http://localhost/api/user")
+                .post(new FormBody.Builder().add("name", "tao wang").add("age", "30").build()).build();
+
+        for (int round = 0; round < 3; round++) {
+            report("get  legacy", legacy, get);
+            report("get  decor ", decor, get);
+            report("form legacy", legacy, form);
+            report("form decor ", decor, form);
+        }
+    }
+
+    private static OkHttpClient client(Interceptor first, Interceptor second) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder().addInterceptor(first);
+        if (second != null) {
+            builder.addInterceptor(second);
+        }
+        return builder.addInterceptor(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Request request = chain.request();
+                if (request.body() != null) {
+                    request.body().writeTo(new Buffer());
+                }
+                return new Response.Builder()
+                        .request(request)
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .message("OK")
+                        .body(ResponseBody.create(MediaType.parse("text/plain"), ""))
+                        .build();
+            }
+        }).build();
+    }
+
+    private static void report(String name, OkHttpClient client, Request request) throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            client.newCall(request).execute().close();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            client.newCall(request).execute().close();
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println(name + ": " + nanos / ITERATIONS + " ns/op ("
+                + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms)");
+    }
+}
@@ -0,0 +1,153 @@
+package com.http.common.intercept;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.FormBody;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/8/22
+ * description:公共参数拼接到query、表单、json和multipart中
+ **/
+public class RequestDecorInterceptTest {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private Request sent;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("platform", "android");
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("v", "1.0");
+        params.put("channel", "a b&c");
+        Map<String, RequestDecorIntercept.ValueSupplier> dynamic = new LinkedHashMap<>();
+        dynamic.put("token", new RequestDecorIntercept.ValueSupplier() {
+            @Override
+            public String get() {
+                return "t1";
+            }
+        });
+        client = new OkHttpClient.Builder()
+                .addInterceptor(new RequestDecorIntercept(headers, params, dynamic, dynamic))
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) {
+                        sent = chain.request();
+                        return new Response.Builder()
+                                .request(sent)
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .message("OK")
+                                .body(ResponseBody.create(JSON, "{}"))
+                                .build();
+                    }
+                })
+                .build();
+    }
+
+    @Test
+    public void headers() throws IOException {
+        execute(new Request.Builder().url("http://localhost/a").build());
+        assertEquals("android", sent.header("platform"));
+        assertEquals("t1", sent.header("token"));
+    }
+
+    @Test
+    public void getAppendsQuery() throws IOException {
+        execute(new Request.Builder().url("http://localhost/a?id=3").build());
+        assertEquals("id=3&v=1.0&channel=a%20b%26c&token=t1", sent.url().encodedQuery());
+        assertEquals("a b&c", sent.url().queryParameter("channel"));
+    }
+
+    @Test
+    public void otherBodylessMethodsUntouched() throws IOException {
+        execute(new Request.Builder().url("http://localhost/a?id=3").delete().build());
+        assertEquals("id=3", sent.url().encodedQuery());
+        execute(new Request.Builder().url("http://localhost/a").head().build());
+        assertNull(sent.url().encodedQuery());
+    }
+
+    @Test
+    public void formAppendsFields() throws IOException {
+        execute(new Request.Builder().url("http://localhost/a")
+                .post(new FormBody.Builder().add("name", "x y").build()).build());
+        assertEquals("name=x%20y&v=1.0&channel=a%20b%26c&token=t1", bodyOf(sent));
+        assertEquals(bodyOf(sent).length(), sent.body().contentLength());
+    }
+
+    @Test
+    public void emptyForm() throws IOException {
+        execute(new Request.Builder().url("http://localhost/a")
+                .post(new FormBody.Builder().build()).build());
+        assertEquals("v=1.0&channel=a%20b%26c&token=t1", bodyOf(sent));
+        assertEquals(bodyOf(sent).length(), sent.body().contentLength());
+    }
+
+    @Test
+    public void jsonSplicedIntoObject() throws IOException {
+        execute(post(" {\"id\": 3}\n"));
+        assertEquals(" {\"id\": 3,\"v\":\"1.0\",\"channel\":\"a b\\u0026c\",\"token\":\"t1\"}\n", bodyOf(sent));
+
+        execute(post("{ }"));
+        assertEquals("{ \"v\":\"1.0\",\"channel\":\"a b\\u0026c\",\"token\":\"t1\"}", bodyOf(sent));
+    }
+
+    @Test
+    public void jsonArrayUntouched() throws IOException {
+        execute(post("[1,2]"));
+        assertEquals("[1,2]", bodyOf(sent));
+    }
+
+    @Test
+    public void multipartAppendsParts() throws IOException {
+        MultipartBody original = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("file", "a.txt", RequestBody.create(MediaType.parse("text/plain"), "hello"))
+                .build();
+        execute(new Request.Builder().url("http://localhost/a").post(original).build());
+
+        MultipartBody body = (MultipartBody) sent.body();
+        assertEquals(original.boundary(), body.boundary());
+        assertEquals(4, body.size());
+        assertTrue(original.part(0) == body.part(0));
+        String written = bodyOf(sent);
+        assertTrue(written.contains("name=\"channel\"\r\nContent-Length: 5\r\n\r\na b&c\r\n"));
+        assertTrue(written.contains("name=\"token\"\r\nContent-Length: 2\r\n\r\nt1\r\n"));
+    }
+
+    private Request post(String json) {
+        return new Request.Builder().url("http://localhost/a").post(RequestBody.create(JSON, json)).build();
+    }
+
+    private void execute(Request request) throws IOException {
+        client.newCall(request).execute().close();
+    }
+
+    private static String bodyOf(Request request) throws IOException {
+        Buffer buffer = new Buffer();
+        request.body().writeTo(buffer);
+        return buffer.readUtf8();
+    }
+}
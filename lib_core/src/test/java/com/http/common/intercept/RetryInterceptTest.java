@@ -0,0 +1,119 @@
+package com.http.common.intercept;
+
+import com.http.common.HeaderCont;
+import com.http.common.retry.RetryBudget;
+import com.http.common.retry.RetryPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * author : taowang
+ * date :2018/8/9
+ * description:POST默认不重试，接口通过HeaderCont.RETRY_POLICY指定策略后按策略重试，预算用完后停止
+ **/
+public class RetryInterceptTest {
+
+    private static final String POLICY = "check";
+
+    private MockWebServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        RetryPolicy policy = new RetryPolicy.Builder().maxRetries(2).baseDelayMillis(1).build();
+        client = new OkHttpClient.Builder()
+                .addInterceptor(new RetryIntercept(policy,
+                        Collections.singletonMap(POLICY, policy.newBuilder().retryNonIdempotent(true).build()),
+                        RetryBudget.createDefault()))
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void getIsRetried() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        Response response = client.newCall(new Request.Builder().url(server.url("/a")).build()).execute();
+        assertEquals("ok", response.body().string());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void postIsNotRetriedByDefault() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        Response response = client.newCall(post().build()).execute();
+        assertEquals(503, response.code());
+        response.close();
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void postIsRetriedWithNamedPolicy() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        Response response = client.newCall(post().header(HeaderCont.RETRY_POLICY, POLICY).build()).execute();
+        assertEquals("ok", response.body().string());
+        assertEquals(2, server.getRequestCount());
+        //策略名称不会发给服务端
+        assertNull(server.takeRequest().getHeader(HeaderCont.RETRY_POLICY));
+        assertEquals("phone=1", server.takeRequest().getBody().readUtf8());
+    }
+
+    @Test
+    public void noneDisablesRetry() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+
+        Response response = client.newCall(new Request.Builder().url(server.url("/a"))
+                .header(HeaderCont.RETRY_POLICY, HeaderCont.RETRY_POLICY_NONE).build()).execute();
+        assertEquals(503, response.code());
+        response.close();
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void stopsWhenBudgetIsExhausted() throws Exception {
+        OkHttpClient limited = new OkHttpClient.Builder()
+                .addInterceptor(new RetryIntercept(new RetryPolicy.Builder().maxRetries(5).baseDelayMillis(1).build(),
+                        null, new RetryBudget(0f, 1)))
+                .build();
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+
+        Response response = limited.newCall(new Request.Builder().url(server.url("/a")).build()).execute();
+        assertEquals(503, response.code());
+        response.close();
+        //预算只够1次重试
+        assertEquals(2, server.getRequestCount());
+    }
+
+    private Request.Builder post() {
+        return new Request.Builder().url(server.url("/login"))
+                .post(RequestBody.create(MediaType.parse("application/x-www-form-urlencoded"), "phone=1"));
+    }
+}
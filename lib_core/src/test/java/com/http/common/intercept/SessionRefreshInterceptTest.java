@@ -0,0 +1,162 @@
+package com.http.common.intercept;
+
+import com.http.common.HeaderCont;
+import com.http.common.SessionRefreshCallback;
+import com.http.util.HttpDirector;
+import com.http.util.RequestLanes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:通道已满时刷新会话，挂起的请求不占用通道，刷新请求能拿到通道
+ **/
+public class SessionRefreshInterceptTest {
+
+    private static final String SIGNED_OUT = "{\"code\":\"1001\",\"message\":\"signed out\"}";
+    private static final String OK = "{\"code\":\"0\",\"data\":\"ok\"}";
+
+    private MockWebServer server;
+    private RequestLanes lanes;
+    private OkHttpClient client;
+    private ExecutorService executor;
+    private volatile boolean refreshed;
+    private final AtomicInteger refreshCount = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/refresh")) {
+                    refreshed = true;
+                    return new MockResponse().setBody(OK);
+                }
+                return new MockResponse().setBody(refreshed ? OK : SIGNED_OUT);
+            }
+        });
+        server.start();
+        lanes = new RequestLanes().setLimit(RequestLanes.LANE_NORMAL, 1);
+        //与HttpDirector相同的顺序，会话刷新在通道之外
+        client = new OkHttpClient.Builder()
+                .addInterceptor(new SessionRefreshIntercept(8, 5000))
+                .addInterceptor(new PriorityIntercept(lanes))
+                .build();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        HttpDirector.getInstance().setmSessionOutCallback(null);
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void refreshGetsLaneWhileOthersAreParked() throws Exception {
+        final Future<?>[] other = new Future<?>[1];
+        HttpDirector.getInstance().setmSessionOutCallback(new SessionRefreshCallback() {
+            @Override
+            public boolean refreshSession() {
+                refreshCount.incrementAndGet();
+                //刷新期间更多请求到达并挂起，通道上限只有1
+                other[0] = executor.submit(fetch("/other"));
+                try {
+                    Thread.sleep(200);
+                    Response response = client.newCall(new Request.Builder().url(server.url("/refresh"))
+                            .header(HeaderCont.NO_SESSION_REFRESH, "true").build()).execute();
+                    response.close();
+                    return response.isSuccessful();
+                } catch (Exception e) {
+                    return false;
+                }
+            }
+
+            @Override
+            public void commandUi() {
+            }
+
+            @Override
+            public void commandBack(Object object) {
+            }
+        });
+
+        Future<String> first = executor.submit(fetch("/first"));
+
+        assertEquals(OK, first.get(5, TimeUnit.SECONDS));
+        assertEquals(OK, other[0].get(5, TimeUnit.SECONDS));
+        assertEquals(1, refreshCount.get());
+        assertEquals(0, lanes.inFlightCount(RequestLanes.LANE_NORMAL));
+    }
+
+    @Test
+    public void parkedRequestsResumeAfterRefresh() throws Exception {
+        final Future<?>[] parked = new Future<?>[3];
+        HttpDirector.getInstance().setmSessionOutCallback(new SessionRefreshCallback() {
+            @Override
+            public boolean refreshSession() {
+                refreshCount.incrementAndGet();
+                for (int i = 0; i < parked.length; i++) {
+                    parked[i] = executor.submit(fetch("/parked" + i));
+                }
+                try {
+                    Thread.sleep(200);
+                    //挂起的请求不占用通道
+                    assertEquals(0, lanes.inFlightCount(RequestLanes.LANE_NORMAL));
+                    Response response = client.newCall(new Request.Builder().url(server.url("/refresh"))
+                            .header(HeaderCont.NO_SESSION_REFRESH, "true").build()).execute();
+                    response.close();
+                    return true;
+                } catch (Exception e) {
+                    return false;
+                }
+            }
+
+            @Override
+            public void commandUi() {
+            }
+
+            @Override
+            public void commandBack(Object object) {
+            }
+        });
+
+        assertEquals(OK, executor.submit(fetch("/first")).get(5, TimeUnit.SECONDS));
+        for (Future<?> future : parked) {
+            assertEquals(OK, future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, refreshCount.get());
+    }
+
+    private Callable<String> fetch(final String path) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                Response response = client.newCall(new Request.Builder().url(server.url(path)).build()).execute();
+                return response.body().string();
+            }
+        };
+    }
+}
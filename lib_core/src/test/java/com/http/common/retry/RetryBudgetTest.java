@@ -0,0 +1,86 @@
+package com.http.common.retry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/8/9
+ * description:预算用完后拒绝重试，原始请求按比例补充，余额不超过reserve
+ **/
+public class RetryBudgetTest {
+
+    @Test
+    public void reserveIsAvailableUpFront() {
+        RetryBudget budget = new RetryBudget(0.1f, 3);
+        assertTrue(budget.tryAcquire());
+        assertTrue(budget.tryAcquire());
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+        assertEquals(3, budget.retryCount());
+        assertEquals(1, budget.rejectedCount());
+    }
+
+    @Test
+    public void requestsRefillByRatio() {
+        RetryBudget budget = new RetryBudget(0.1f, 1);
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+
+        for (int i = 0; i < 9; i++) {
+            budget.onRequest();
+        }
+        assertFalse(budget.tryAcquire());
+        //10个原始请求换1次重试
+        budget.onRequest();
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+        assertEquals(10, budget.requestCount());
+        assertEquals(3, budget.rejectedCount());
+    }
+
+    @Test
+    public void balanceIsCappedAtReserve() {
+        RetryBudget budget = new RetryBudget(0.5f, 2);
+        for (int i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+        assertTrue(budget.tryAcquire());
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+    }
+
+    @Test
+    public void reserveIsAtLeastOne() {
+        RetryBudget budget = new RetryBudget(0f, 0);
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+        budget.onRequest();
+        assertFalse(budget.tryAcquire());
+    }
+
+    @Test
+    public void concurrentAcquiresNeverOverdraw() throws Exception {
+        final RetryBudget budget = new RetryBudget(0.1f, 50);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100; j++) {
+                        budget.tryAcquire();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(50, budget.retryCount());
+        assertEquals(750, budget.rejectedCount());
+    }
+}
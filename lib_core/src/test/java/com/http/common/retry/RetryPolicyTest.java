@@ -0,0 +1,148 @@
+package com.http.common.retry;
+
+import org.junit.Test;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/8/9
+ * description:退避时间和抖动范围、位移上限、Retry-After、只重试幂等请求
+ **/
+public class RetryPolicyTest {
+
+    private static final String URL = "http://api.example.com/a";
+
+    @Test
+    public void backoffDoublesWithinJitterBounds() {
+        RetryPolicy policy = new RetryPolicy.Builder()
+                .baseDelayMillis(200)
+                .maxDelayMillis(5000)
+                .jitter(0.5f)
+                .build();
+        for (int i = 0; i < 200; i++) {
+            assertBetween(100, 200, policy.delayMillis(0, null));
+            assertBetween(200, 400, policy.delayMillis(1, null));
+            assertBetween(400, 800, policy.delayMillis(2, null));
+            //超过maxDelayMillis后不再增长
+            assertBetween(2500, 5000, policy.delayMillis(10, null));
+        }
+    }
+
+    @Test
+    public void zeroJitterIsDeterministic() {
+        RetryPolicy policy = new RetryPolicy.Builder().baseDelayMillis(100).maxDelayMillis(1000).jitter(0f).build();
+        assertEquals(100, policy.delayMillis(0, null));
+        assertEquals(400, policy.delayMillis(2, null));
+        assertEquals(1000, policy.delayMillis(4, null));
+    }
+
+    @Test
+    public void shiftIsCappedAndOverflowFallsBackToMaxDelay() {
+        RetryPolicy policy = new RetryPolicy.Builder().baseDelayMillis(1).maxDelayMillis(Long.MAX_VALUE).jitter(0f).build();
+        assertEquals(1L << 30, policy.delayMillis(30, null));
+        assertEquals(1L << 30, policy.delayMillis(Integer.MAX_VALUE, null));
+
+        //移位溢出为0或负数时按maxDelayMillis处理
+        RetryPolicy huge = new RetryPolicy.Builder().baseDelayMillis(1L << 40).maxDelayMillis(5000).jitter(0f).build();
+        assertEquals(5000, huge.delayMillis(30, null));
+    }
+
+    @Test
+    public void jitterIsClamped() {
+        RetryPolicy full = new RetryPolicy.Builder().baseDelayMillis(100).jitter(3f).build();
+        assertEquals(1f, full.jitter, 0f);
+        for (int i = 0; i < 200; i++) {
+            assertBetween(0, 100, full.delayMillis(0, null));
+        }
+        assertEquals(0f, new RetryPolicy.Builder().jitter(-1f).build().jitter, 0f);
+    }
+
+    @Test
+    public void retryAfterSecondsOverridesBackoff() {
+        RetryPolicy policy = new RetryPolicy.Builder().maxRetryAfterMillis(10000).build();
+        assertEquals(3000, policy.delayMillis(0, response(503, "3")));
+        assertEquals(0, policy.delayMillis(5, response(429, " 0 ")));
+        assertEquals(10000, policy.delayMillis(0, response(503, "10")));
+    }
+
+    @Test
+    public void retryAfterBeyondMaxGivesUp() {
+        RetryPolicy policy = new RetryPolicy.Builder().maxRetryAfterMillis(10000).build();
+        assertEquals(-1, policy.delayMillis(0, response(503, "11")));
+    }
+
+    @Test
+    public void unparseableRetryAfterFallsBackToBackoff() {
+        RetryPolicy policy = new RetryPolicy.Builder().baseDelayMillis(100).jitter(0f).build();
+        assertEquals(100, policy.delayMillis(0, response(503, "Wed, 21 Oct 2015 07:28:00 GMT")));
+        assertEquals(100, policy.delayMillis(0, response(503, "-5")));
+        assertEquals(100, policy.delayMillis(0, response(503, null)));
+    }
+
+    @Test
+    public void retryAfterIgnoredWhenNotHonored() {
+        RetryPolicy policy = new RetryPolicy.Builder().baseDelayMillis(100).jitter(0f).honorRetryAfter(false).build();
+        assertEquals(100, policy.delayMillis(0, response(503, "60")));
+    }
+
+    @Test
+    public void onlyIdempotentMethodsByDefault() {
+        RetryPolicy policy = new RetryPolicy.Builder().maxRetries(2).build();
+        assertTrue(policy.canRetry(request("GET"), 0));
+        assertTrue(policy.canRetry(request("PUT"), 0));
+        assertTrue(policy.canRetry(request("DELETE"), 1));
+        assertFalse(policy.canRetry(request("POST"), 0));
+        assertFalse(policy.canRetry(request("PATCH"), 0));
+        //次数用完
+        assertFalse(policy.canRetry(request("GET"), 2));
+
+        RetryPolicy any = policy.newBuilder().retryNonIdempotent(true).build();
+        assertTrue(any.canRetry(request("POST"), 0));
+        assertFalse(any.canRetry(request("POST"), 2));
+        assertFalse(RetryPolicy.NONE.canRetry(request("GET"), 0));
+    }
+
+    @Test
+    public void retryCodesAndConnectionFailures() {
+        RetryPolicy policy = new RetryPolicy.Builder().build();
+        assertTrue(policy.shouldRetry(null));
+        assertTrue(policy.shouldRetry(response(503, null)));
+        assertTrue(policy.shouldRetry(response(429, null)));
+        assertFalse(policy.shouldRetry(response(404, null)));
+
+        RetryPolicy custom = policy.newBuilder().retryCodes(404).retryOnConnectionFailure(false).build();
+        assertFalse(custom.shouldRetry(null));
+        assertTrue(custom.shouldRetry(response(404, null)));
+        assertFalse(custom.shouldRetry(response(503, null)));
+    }
+
+    private static void assertBetween(long min, long maxExclusive, long value) {
+        assertTrue(value + " < " + min, value >= min);
+        assertTrue(value + " >= " + maxExclusive, value < maxExclusive);
+    }
+
+    private static Request request(String method) {
+        RequestBody body = "GET".equals(method) || "HEAD".equals(method) ? null : RequestBody.create(null, new byte[0]);
+        return new Request.Builder().url(URL).method(method, body).build();
+    }
+
+    private static Response response(int code, String retryAfter) {
+        Response.Builder builder = new Response.Builder()
+                .request(request("GET"))
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("");
+        if (retryAfter != null) {
+            builder.header("Retry-After", retryAfter);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,184 @@
+package com.http.download;
+
+import com.http.gson.GsonProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
+import okio.Okio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * author : taowang
+ * date :2018/8/28
+ * description:分段下载、断点续传和服务端文件变化(If-Range返回200)的处理
+ **/
+public class DownloadManagerTest {
+
+    private static final int LENGTH = 3 * 1024 * 1024 + 123;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private byte[] content;
+    private volatile String etag = "\"v1\"";
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+    private File target;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[LENGTH];
+        new Random(1).nextBytes(content);
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return serve(request);
+            }
+        });
+        server.start();
+        target = new File(folder.getRoot(), "file.bin");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * 支持Range和If-Range的文件服务
+     */
+    private MockResponse serve(RecordedRequest request) {
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        ranges.add(range);
+        if (range == null || (ifRange != null && !ifRange.equals(etag))) {
+            return new MockResponse().setHeader("ETag", etag).setBody(new Buffer().write(content));
+        }
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        int start = Integer.parseInt(bounds[0]);
+        int end = bounds.length > 1 ? Integer.parseInt(bounds[1]) : content.length - 1;
+        return new MockResponse()
+                .setResponseCode(206)
+                .setHeader("ETag", etag)
+                .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + content.length)
+                .setBody(new Buffer().write(content, start, end - start + 1));
+    }
+
+    private DownloadTask task(int segments) {
+        return new DownloadTask.Builder()
+                .url(server.url("/file.bin").toString())
+                .target(target)
+                .segments(segments)
+                .checksum("MD5", ByteString.of(content).md5().hex())
+                .build();
+    }
+
+    @Test
+    public void splitsIntoSegments() throws IOException {
+        DownloadProgress last = DownloadManager.getInstance().download(task(3)).blockingLast();
+
+        assertTrue(last.isCompleted());
+        assertEquals(LENGTH, last.totalBytes);
+        assertArrayEquals(content, Okio.buffer(Okio.source(target)).readByteArray());
+        assertFalse(new File(target.getPath() + ".part").exists());
+        assertFalse(new File(target.getPath() + ".dl").exists());
+
+        int size = LENGTH / 3;
+        List<String> expected = new ArrayList<>();
+        expected.add("bytes=0-0");
+        expected.add("bytes=0-" + (size - 1));
+        expected.add("bytes=" + size + "-" + (2 * size - 1));
+        expected.add("bytes=" + 2 * size + "-" + (LENGTH - 1));
+        List<String> actual = new ArrayList<>(ranges);
+        Collections.sort(actual.subList(1, actual.size()));
+        Collections.sort(expected.subList(1, expected.size()));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void smallFileUsesOneSegment() throws IOException {
+        content = new byte[1000];
+        new Random(2).nextBytes(content);
+        DownloadManager.getInstance().download(task(3)).blockingLast();
+        assertArrayEquals(content, Okio.buffer(Okio.source(target)).readByteArray());
+        assertEquals(2, ranges.size());
+    }
+
+    @Test
+    public void resumesFromSavedProgress() throws Exception {
+        int done = 1000;
+        writeProgress("\"v1\"", done);
+
+        DownloadManager.getInstance().download(task(3)).blockingLast();
+
+        assertEquals(Collections.singletonList("bytes=" + done + "-" + (LENGTH - 1)), ranges);
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-Range"));
+        assertArrayEquals(content, Okio.buffer(Okio.source(target)).readByteArray());
+    }
+
+    @Test
+    public void changedFileDropsProgress() throws IOException {
+        writeProgress("\"v0\"", 1000);
+
+        try {
+            DownloadManager.getInstance().download(task(3)).blockingLast();
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause().getMessage().contains("file changed"));
+        }
+        assertFalse(new File(target.getPath() + ".part").exists());
+        assertFalse(new File(target.getPath() + ".dl").exists());
+
+        ranges.clear();
+        DownloadManager.getInstance().download(task(3)).blockingLast();
+        assertEquals("bytes=0-0", ranges.get(0));
+        assertArrayEquals(content, Okio.buffer(Okio.source(target)).readByteArray());
+    }
+
+    /**
+     * 模拟上次下载到done字节时中断
+     */
+    private void writeProgress(String savedEtag, int done) throws IOException {
+        DownloadState state = new DownloadState();
+        state.url = server.url("/file.bin").toString();
+        state.etag = savedEtag;
+        state.length = LENGTH;
+        state.rangeSupported = true;
+        DownloadState.Segment segment = new DownloadState.Segment(0, LENGTH - 1);
+        segment.downloaded = done;
+        state.segments.add(segment);
+        state.write(GsonProvider.getInstance().getGson(), new File(target.getPath() + ".dl"));
+
+        RandomAccessFile part = new RandomAccessFile(target.getPath() + ".part", "rw");
+        try {
+            part.setLength(LENGTH);
+            part.write(content, 0, done);
+        } finally {
+            part.close();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.http.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.http.common.bean.BaseResultEntity;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * author : taowang
+ * date :2018/8/23
+ * description:@GsonAdapter生成的TypeAdapter与Gson反射解析对比，使用登录接口形状的数据，不走网络。
+ * 首次解析每次新建Gson，包含创建TypeAdapter的开销；稳定状态复用同一个Gson。直接运行main
+ **/
+public class GeneratedAdapterBenchmark {
+
+    private static final int COLD_ITERATIONS = 2000;
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 200000;
+
+    @GsonAdapter
+    public static class Login {
+        public String token;
+        public String roleType;
+        public String loginAccount;
+        public String restaurantId;
+        public String name;
+        public String englishName;
+        public String chineseName;
+        public ArrayList<String> tags;
+    }
+
+    public static void main(String[] args) {
+        String json = "{\"code\":\"1\",\"description\":\"ok\",\"resultMap\":{"
+                + "\"token\":\"5f0c2a9e8b7d4c3e9a1b2c3d4e5f6a7b\",\"roleType\":\"2\",\"loginAccount\":\"13800000000\","
+                + "\"restaurantId\":\"100023\",\"name\":\"taowang\",\"englishName\":\"Tao\",\"chineseName\":\"王涛\","
+                + "\"tags\":[\"vip\",\"manager\",\"beta\"]}}";
+        Type type = new TypeToken<BaseResultEntity<Login>>() {
+        }.getType();
+        System.out.println(json.length() + " chars");
+
+        for (int round = 0; round < 3; round++) {
+            cold("reflection", false, json, type);
+            cold("generated ", true, json, type);
+            steady("reflection", gson(false), json, type);
+            steady("generated ", gson(true), json, type);
+        }
+    }
+
+    private static Gson gson(boolean generated) {
+        GsonBuilder builder = new GsonBuilder();
+        if (generated) {
+            builder.registerTypeAdapterFactory(new GeneratedAdapterFactory());
+        }
+        return builder.create();
+    }
+
+    /**
+     * 新建Gson后第一次解析，GeneratedAdapterFactory按类型缓存构造方法，同样每次新建
+     */
+    private static void cold(String name, boolean generated, String json, Type type) {
+        long start = System.nanoTime();
+        for (int i = 0; i < COLD_ITERATIONS; i++) {
+            gson(generated).fromJson(json, type);
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println(name + " first parse: " + nanos / COLD_ITERATIONS / 1000 + " us/op");
+    }
+
+    private static void steady(String name, Gson gson, String json, Type type) {
+        for (int i = 0; i < WARMUP; i++) {
+            gson.fromJson(json, type);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            gson.fromJson(json, type);
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println(name + " steady: " + nanos / ITERATIONS + " ns/op ("
+                + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms)");
+    }
+}
@@ -0,0 +1,108 @@
+package com.http.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.http.common.bean.BaseResultEntity;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * author : taowang
+ * date :2018/8/23
+ * description:@GsonAdapter生成的TypeAdapter与Gson反射解析结果一致
+ **/
+public class GeneratedAdapterTest {
+
+    @GsonAdapter
+    public static class Base {
+        public long id;
+    }
+
+    @GsonAdapter
+    public static class Sample extends Base {
+        public int count;
+        public double score;
+        public boolean vip;
+        public char grade;
+        public String name;
+        @SerializedName(value = "nick_name", alternate = {"nickName"})
+        public String nick;
+        public String flag;
+        public List<String> tags;
+        public int[] codes;
+        public transient String ignored;
+    }
+
+    private final Gson generated = new GsonBuilder().registerTypeAdapterFactory(new GeneratedAdapterFactory()).create();
+    private final Gson reflective = new Gson();
+
+    @Test
+    public void usesGeneratedAdapter() {
+        TypeAdapter<Sample> adapter = generated.getAdapter(Sample.class);
+        assertEquals("GeneratedAdapterTest_Sample_TypeAdapter", adapter.getClass().getSimpleName());
+    }
+
+    @Test
+    public void readMatchesReflection() {
+        String json = "{\"id\":7,\"count\":3,\"score\":1.5,\"vip\":true,\"grade\":\"A\",\"name\":\"tao\","
+                + "\"nickName\":\"t\",\"flag\":true,\"tags\":[\"a\",\"b\"],\"codes\":[1,2],"
+                + "\"unknown\":{\"x\":[1,{}]},\"ignored\":\"x\",\"count2\":null}";
+        Sample sample = generated.fromJson(json, Sample.class);
+        Sample expected = reflective.fromJson(json, Sample.class);
+
+        assertEquals(7, sample.id);
+        assertEquals(expected.count, sample.count);
+        assertEquals(expected.score, sample.score, 0);
+        assertEquals(expected.vip, sample.vip);
+        assertEquals(expected.grade, sample.grade);
+        assertEquals(expected.name, sample.name);
+        assertEquals("t", sample.nick);
+        assertEquals("true", sample.flag);
+        assertEquals(Arrays.asList("a", "b"), sample.tags);
+        assertArrayEquals(new int[]{1, 2}, sample.codes);
+        assertNull(sample.ignored);
+    }
+
+    @Test
+    public void writeMatchesReflection() {
+        Sample sample = new Sample();
+        sample.id = 9;
+        sample.count = 2;
+        sample.score = 0.25;
+        sample.grade = 'B';
+        sample.nick = "n";
+        sample.tags = Arrays.asList("x");
+        sample.ignored = "skip";
+
+        assertEquals(reflective.toJson(sample), generated.toJson(sample));
+        Sample back = generated.fromJson(generated.toJson(sample), Sample.class);
+        assertEquals(9, back.id);
+        assertEquals('B', back.grade);
+        assertEquals("n", back.nick);
+        assertNull(back.name);
+    }
+
+    @Test
+    public void genericEnvelope() {
+        String json = "{\"code\":\"1\",\"description\":\"ok\",\"resultMap\":{\"id\":1,\"name\":\"a\"}}";
+        BaseResultEntity<Sample> result = generated.fromJson(json,
+                new TypeToken<BaseResultEntity<Sample>>() {
+                }.getType());
+        assertEquals("BaseResultEntity_TypeAdapter",
+                generated.getAdapter(BaseResultEntity.class).getClass().getSimpleName());
+        assertEquals("1", result.code);
+        assertEquals(1, result.resultMap.id);
+        assertEquals("a", result.resultMap.name);
+        assertEquals(reflective.toJson(result), generated.toJson(result));
+    }
+}
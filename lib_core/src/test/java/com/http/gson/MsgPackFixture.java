@@ -0,0 +1,130 @@
+package com.http.gson;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.util.Map;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * author : taowang
+ * date :2018/8/27
+ * description:测试用的MessagePack编码和模拟服务端。
+ * 服务端按Accept返回同一份数据的json或msgpack，与支持协商的真实服务端行为一致
+ **/
+public final class MsgPackFixture {
+
+    public static final String MSGPACK = "application/x-msgpack";
+
+    private MsgPackFixture() {
+
+    }
+
+    /**
+     * 按Accept头返回json或msgpack
+     */
+    public static Dispatcher dispatcher(final Map<String, String> jsonByPath) {
+        return new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String json = jsonByPath.get(request.getPath());
+                if (json == null) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                String accept = request.getHeader("Accept");
+                if (accept != null && accept.contains("msgpack")) {
+                    return new MockResponse()
+                            .setHeader("Content-Type", MSGPACK)
+                            .setBody(new Buffer().write(encode(json)));
+                }
+                return new MockResponse()
+                        .setHeader("Content-Type", "application/json; charset=utf-8")
+                        .setBody(json);
+            }
+        };
+    }
+
+    public static byte[] encode(String json) {
+        Buffer buffer = new Buffer();
+        write(buffer, new JsonParser().parse(json));
+        return buffer.readByteArray();
+    }
+
+    private static void write(Buffer out, JsonElement element) {
+        if (element.isJsonNull()) {
+            out.writeByte(0xc0);
+        } else if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            header(out, object.size(), 0x80, 0xde, 0xdf);
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                writeString(out, entry.getKey());
+                write(out, entry.getValue());
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            header(out, array.size(), 0x90, 0xdc, 0xdd);
+            for (JsonElement item : array) {
+                write(out, item);
+            }
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                out.writeByte(primitive.getAsBoolean() ? 0xc3 : 0xc2);
+            } else if (primitive.isString()) {
+                writeString(out, primitive.getAsString());
+            } else {
+                writeNumber(out, primitive.getAsString());
+            }
+        }
+    }
+
+    private static void header(Buffer out, int size, int fix, int code16, int code32) {
+        if (size < 16) {
+            out.writeByte(fix | size);
+        } else if (size <= 0xffff) {
+            out.writeByte(code16).writeShort(size);
+        } else {
+            out.writeByte(code32).writeInt(size);
+        }
+    }
+
+    private static void writeString(Buffer out, String value) {
+        byte[] bytes = value.getBytes(java.nio.charset.Charset.forName("UTF-8"));
+        if (bytes.length < 32) {
+            out.writeByte(0xa0 | bytes.length);
+        } else if (bytes.length <= 0xff) {
+            out.writeByte(0xd9).writeByte(bytes.length);
+        } else if (bytes.length <= 0xffff) {
+            out.writeByte(0xda).writeShort(bytes.length);
+        } else {
+            out.writeByte(0xdb).writeInt(bytes.length);
+        }
+        out.write(bytes);
+    }
+
+    private static void writeNumber(Buffer out, String value) {
+        long integer;
+        try {
+            integer = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            out.writeByte(0xcb).writeLong(Double.doubleToLongBits(Double.parseDouble(value)));
+            return;
+        }
+        if (integer >= 0 && integer <= 0x7f) {
+            out.writeByte((int) integer);
+        } else if (integer < 0 && integer >= -32) {
+            out.writeByte((int) integer);
+        } else if (integer >= Integer.MIN_VALUE && integer <= Integer.MAX_VALUE) {
+            out.writeByte(0xd2).writeInt((int) integer);
+        } else {
+            out.writeByte(0xd3).writeLong(integer);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.http.gson;
+
+import com.google.gson.stream.JsonToken;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/8/27
+ * description:按MessagePack规范手工编码各种类型，检查MsgPackReader的读取结果
+ **/
+public class MsgPackReaderTest {
+
+    @Test
+    public void fixint() throws IOException {
+        MsgPackReader reader = reader(new Buffer().writeByte(0x93).writeByte(0x00).writeByte(0x7f).writeByte(0xe0));
+        reader.beginArray();
+        assertEquals(JsonToken.NUMBER, reader.peek());
+        assertEquals(0, reader.nextInt());
+        assertEquals(127, reader.nextLong());
+        assertEquals(-32, reader.nextInt());
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void sizedIntegers() throws IOException {
+        Buffer buffer = new Buffer().writeByte(0x96)
+                .writeByte(0xcc).writeByte(0xff)
+                .writeByte(0xcd).writeShort(0xffff)
+                .writeByte(0xce).writeInt(0xffffffff)
+                .writeByte(0xd0).writeByte(0x80)
+                .writeByte(0xd3).writeLong(Long.MIN_VALUE)
+                .writeByte(0xd3).writeLong(Long.MAX_VALUE);
+        MsgPackReader reader = reader(buffer);
+        reader.beginArray();
+        assertEquals(255, reader.nextInt());
+        assertEquals(65535, reader.nextInt());
+        assertEquals(4294967295L, reader.nextLong());
+        assertEquals(-128, reader.nextInt());
+        assertEquals(Long.MIN_VALUE, reader.nextLong());
+        assertEquals(String.valueOf(Long.MAX_VALUE), reader.nextString());
+        reader.endArray();
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void int64OverflowsInt() throws IOException {
+        reader(new Buffer().writeByte(0xd3).writeLong(1L << 40)).nextInt();
+    }
+
+    @Test
+    public void floats() throws IOException {
+        Buffer buffer = new Buffer().writeByte(0x94)
+                .writeByte(0xca).writeInt(Float.floatToIntBits(1.5f))
+                .writeByte(0xcb).writeLong(Double.doubleToLongBits(-0.125))
+                .writeByte(0xcb).writeLong(Double.doubleToLongBits(3.0))
+                .writeByte(0xca).writeInt(Float.floatToIntBits(2.5f));
+        MsgPackReader reader = reader(buffer);
+        reader.beginArray();
+        assertEquals(1.5, reader.nextDouble(), 0);
+        assertEquals(-0.125, reader.nextDouble(), 0);
+        assertEquals(3, reader.nextInt());
+        assertEquals("2.5", reader.nextString());
+        reader.endArray();
+    }
+
+    @Test
+    public void nilAndBoolean() throws IOException {
+        MsgPackReader reader = reader(new Buffer().writeByte(0x93).writeByte(0xc0).writeByte(0xc3).writeByte(0xc2));
+        reader.beginArray();
+        assertEquals(JsonToken.NULL, reader.peek());
+        reader.nextNull();
+        assertEquals(JsonToken.BOOLEAN, reader.peek());
+        assertTrue(reader.nextBoolean());
+        assertFalse(reader.nextBoolean());
+        reader.endArray();
+    }
+
+    @Test
+    public void strings() throws IOException {
+        String str8 = repeat('a', 200);
+        String str16 = repeat('b', 300);
+        String str32 = repeat('中', 10);
+        Buffer buffer = new Buffer().writeByte(0x94);
+        buffer.writeByte(0xa2).writeUtf8("hi");
+        buffer.writeByte(0xd9).writeByte(200).writeUtf8(str8);
+        buffer.writeByte(0xda).writeShort(300).writeUtf8(str16);
+        buffer.writeByte(0xdb).writeInt(30).writeUtf8(str32);
+        MsgPackReader reader = reader(buffer);
+        reader.beginArray();
+        assertEquals(JsonToken.STRING, reader.peek());
+        assertEquals("hi", reader.nextString());
+        assertEquals(str8, reader.nextString());
+        assertEquals(str16, reader.nextString());
+        assertEquals(JsonToken.STRING, reader.peek());
+        assertEquals(str32, reader.nextString());
+        reader.endArray();
+    }
+
+    @Test
+    public void map16WithStringAndIntegerKeys() throws IOException {
+        Buffer buffer = new Buffer().writeByte(0xde).writeShort(2)
+                .writeByte(0xa4).writeUtf8("name").writeByte(0xa3).writeUtf8("tao")
+                .writeByte(0x07).writeByte(0xc3);
+        MsgPackReader reader = reader(buffer);
+        assertEquals(JsonToken.BEGIN_OBJECT, reader.peek());
+        reader.beginObject();
+        assertEquals(JsonToken.NAME, reader.peek());
+        assertEquals("name", reader.nextName());
+        assertEquals("tao", reader.nextString());
+        assertEquals("7", reader.nextName());
+        assertTrue(reader.nextBoolean());
+        assertEquals(JsonToken.END_OBJECT, reader.peek());
+        reader.endObject();
+        assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void array32() throws IOException {
+        Buffer buffer = new Buffer().writeByte(0xdd).writeInt(3).writeByte(1).writeByte(2).writeByte(3);
+        MsgPackReader reader = reader(buffer);
+        assertEquals(JsonToken.BEGIN_ARRAY, reader.peek());
+        reader.beginArray();
+        int sum = 0;
+        while (reader.hasNext()) {
+            sum += reader.nextInt();
+        }
+        reader.endArray();
+        assertEquals(6, sum);
+    }
+
+    @Test
+    public void skipValueOnNestedContainers() throws IOException {
+        byte[] bytes = MsgPackFixture.encode("{\"skip\":{\"a\":[1,-200,{\"b\":\"x\",\"c\":[null,true,1.5]}],"
+                + "\"d\":{\"e\":{}},\"f\":[]},\"long\":\"" + repeat('z', 70000) + "\",\"keep\":42}");
+        MsgPackReader reader = reader(new Buffer().write(bytes));
+        reader.beginObject();
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+        assertEquals("long", reader.nextName());
+        reader.skipValue();
+        reader.skipValue();
+        assertEquals(42, reader.nextInt());
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void deepNesting() throws IOException {
+        Buffer buffer = new Buffer();
+        for (int i = 0; i < 100; i++) {
+            buffer.writeByte(0x91);
+        }
+        buffer.writeByte(0x05);
+        MsgPackReader reader = reader(buffer);
+        for (int i = 0; i < 100; i++) {
+            reader.beginArray();
+        }
+        assertEquals(5, reader.nextInt());
+        for (int i = 0; i < 100; i++) {
+            reader.endArray();
+        }
+        assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void endArrayBeforeLastElement() throws IOException {
+        MsgPackReader reader = reader(new Buffer().writeByte(0x92).writeByte(1).writeByte(2));
+        reader.beginArray();
+        reader.nextInt();
+        reader.endArray();
+    }
+
+    private static MsgPackReader reader(Buffer buffer) {
+        return new MsgPackReader(buffer);
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
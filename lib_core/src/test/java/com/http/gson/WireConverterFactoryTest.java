@@ -0,0 +1,142 @@
+package com.http.gson;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.http.common.bean.BaseResultEntity;
+import com.http.common.intercept.WireFormatIntercept;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/8/27
+ * description:同一份数据分别以json和msgpack返回，解析结果一致
+ **/
+public class WireConverterFactoryTest {
+
+    static final String USER = "{\"code\":\"1\",\"description\":\"ok\",\"resultMap\":{\"id\":12345678901,"
+            + "\"name\":\"tao\",\"score\":98.5,\"vip\":true,\"tags\":[\"a\",\"b\"],"
+            + "\"counts\":{\"likes\":3,\"follows\":-40},\"extra\":{\"nested\":[1,{\"x\":null}]}}}";
+    static final String SIGN_OUT = "{\"resultMap\":{\"id\":1},\"code\":\"-1\",\"description\":\"sign out\"}";
+    static final String SCORES = "{\"1\":\"one\",\"2\":\"two\"}";
+
+    public static class User {
+        public long id;
+        public String name;
+        public double score;
+        public boolean vip;
+        public List<String> tags;
+        public Map<String, Integer> counts;
+    }
+
+    interface Api {
+        @GET("user")
+        Call<BaseResultEntity<User>> user();
+
+        @GET("signOut")
+        Call<BaseResultEntity<User>> signOut();
+
+        @GET("scores")
+        Call<Map<String, String>> scores();
+    }
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        Map<String, String> paths = new HashMap<>();
+        paths.put("/user", USER);
+        paths.put("/signOut", SIGN_OUT);
+        paths.put("/scores", SCORES);
+        server = new MockWebServer();
+        server.setDispatcher(MsgPackFixture.dispatcher(paths));
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void envelopeSameInBothFormats() throws Exception {
+        BaseResultEntity<User> json = api(false).user().execute().body();
+        BaseResultEntity<User> msgPack = api(true).user().execute().body();
+        String jsonAccept = server.takeRequest().getHeader("Accept");
+        assertTrue(jsonAccept == null || !jsonAccept.contains("msgpack"));
+        assertTrue(server.takeRequest().getHeader("Accept").contains("msgpack"));
+
+        for (BaseResultEntity<User> result : Arrays.asList(json, msgPack)) {
+            assertTrue(result.isOk());
+            assertEquals("ok", result.description);
+            assertEquals(12345678901L, result.resultMap.id);
+            assertEquals("tao", result.resultMap.name);
+            assertEquals(98.5, result.resultMap.score, 0);
+            assertTrue(result.resultMap.vip);
+            assertEquals(Arrays.asList("a", "b"), result.resultMap.tags);
+            assertEquals(Integer.valueOf(-40), result.resultMap.counts.get("follows"));
+        }
+    }
+
+    @Test
+    public void failedEnvelopeSkipsResultMap() throws IOException {
+        for (boolean msgPack : new boolean[]{false, true}) {
+            BaseResultEntity<User> result = api(msgPack).signOut().execute().body();
+            assertEquals("-1", result.code);
+            assertNull(result.resultMap);
+        }
+    }
+
+    @Test
+    public void plainMapInBothFormats() throws IOException {
+        assertEquals("two", api(false).scores().execute().body().get("2"));
+        assertEquals("two", api(true).scores().execute().body().get("2"));
+    }
+
+    @Test
+    public void stringMapAdapterOnlyForMsgPack() {
+        TypeToken<Map<String, Integer>> type = new TypeToken<Map<String, Integer>>() {
+        };
+        TypeAdapter<?> json = GsonProvider.getInstance().getGson().getAdapter(type);
+        TypeAdapter<?> msgPack = GsonProvider.getInstance().getMsgPackGson().getAdapter(type);
+        assertFalse(json.getClass().getName().startsWith(StringMapAdapterFactory.class.getName()));
+        assertTrue(msgPack.getClass().getName().startsWith(StringMapAdapterFactory.class.getName()));
+        //json仍支持非String的key
+        Map<Integer, String> byId = GsonProvider.getInstance().getGson().fromJson(SCORES,
+                new TypeToken<Map<Integer, String>>() {
+                }.getType());
+        assertEquals("one", byId.get(1));
+    }
+
+    private Api api(boolean msgPack) {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new WireFormatIntercept(msgPack))
+                .build();
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(client)
+                .addConverterFactory(WireConverterFactory.create(GsonProvider.getInstance().getGson(),
+                        GsonProvider.getInstance().getMsgPackGson()))
+                .build()
+                .create(Api.class);
+    }
+}
@@ -0,0 +1,76 @@
+package com.http.gson;
+
+import com.google.gson.reflect.TypeToken;
+import com.http.common.bean.BaseResultEntity;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * author : taowang
+ * date :2018/8/27
+ * description:同一份列表数据用json和msgpack解析的耗时与体积对比，不走网络。直接运行main
+ **/
+public class WireFormatBenchmark {
+
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 10000;
+
+    static class Page {
+        public int total;
+        public List<WireConverterFactoryTest.User> users;
+    }
+
+    public static void main(String[] args) throws IOException {
+        StringBuilder users = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) {
+                users.append(',');
+            }
+            users.append("{\"id\":").append(1000000000L + i)
+                    .append(",\"name\":\"user").append(i).append("\",\"score\":").append(i * 1.25)
+                    .append(",\"vip\":").append(i % 2 == 0)
+                    .append(",\"tags\":[\"math\",\"grade").append(i % 6).append("\"]")
+                    .append(",\"counts\":{\"likes\":").append(i * 7).append(",\"follows\":").append(i).append("}}");
+        }
+        String json = "{\"code\":\"1\",\"description\":\"ok\",\"resultMap\":{\"total\":100,\"users\":[" + users + "]}}";
+        byte[] jsonBytes = json.getBytes("UTF-8");
+        byte[] msgPackBytes = MsgPackFixture.encode(json);
+        System.out.println("json " + jsonBytes.length + " bytes, msgpack " + msgPackBytes.length + " bytes");
+
+        Type type = new TypeToken<BaseResultEntity<Page>>() {
+        }.getType();
+        Retrofit retrofit = new Retrofit.Builder().baseUrl("http://localhost/").build();
+        Converter<ResponseBody, ?> converter = WireConverterFactory.create(GsonProvider.getInstance().getGson(),
+                GsonProvider.getInstance().getMsgPackGson()).responseBodyConverter(type, new Annotation[0], retrofit);
+        MediaType jsonType = MediaType.parse("application/json; charset=utf-8");
+        MediaType msgPackType = MediaType.parse(MsgPackFixture.MSGPACK);
+
+        for (int round = 0; round < 3; round++) {
+            report("json   ", converter, jsonType, jsonBytes);
+            report("msgpack", converter, msgPackType, msgPackBytes);
+        }
+    }
+
+    private static void report(String name, Converter<ResponseBody, ?> converter, MediaType type, byte[] bytes)
+            throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            converter.convert(ResponseBody.create(type, bytes));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            converter.convert(ResponseBody.create(type, bytes));
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println(name + ": " + nanos / ITERATIONS / 1000 + " us/op ("
+                + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms)");
+    }
+}
@@ -0,0 +1,75 @@
+package com.http.outbox;
+
+import com.room.OutboxEntity;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:退避时间和从表中还原请求
+ **/
+public class RequestOutboxTest {
+
+    @Test
+    public void backoffDoublesFromTwoSeconds() {
+        assertEquals(2000, RequestOutbox.backoff(1));
+        assertEquals(4000, RequestOutbox.backoff(2));
+        assertEquals(8000, RequestOutbox.backoff(3));
+        assertEquals(256000, RequestOutbox.backoff(8));
+    }
+
+    @Test
+    public void backoffIsCappedAtTenMinutes() {
+        long max = TimeUnit.MINUTES.toMillis(10);
+        assertEquals(max, RequestOutbox.backoff(10));
+        assertEquals(max, RequestOutbox.backoff(30));
+        //位移次数有上限，不会溢出成负数
+        assertEquals(max, RequestOutbox.backoff(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void toRequestRestoresHeadersBodyAndKey() throws Exception {
+        OutboxEntity entity = new OutboxEntity();
+        entity.idempotencyKey = "key-1";
+        entity.method = "PUT";
+        entity.url = "http://example.com/profile/7";
+        entity.headers = "X-Client: 3\nAccept: application/json\n";
+        entity.contentType = "application/json; charset=utf-8";
+        entity.body = "{\"name\":\"a\"}".getBytes("UTF-8");
+
+        Request request = RequestOutbox.toRequest(entity);
+
+        assertEquals("PUT", request.method());
+        assertEquals("http://example.com/profile/7", request.url().toString());
+        assertEquals("3", request.header("X-Client"));
+        assertEquals("application/json", request.header("Accept"));
+        assertEquals("key-1", request.header(RequestOutbox.HEADER_IDEMPOTENCY_KEY));
+        assertEquals("application/json; charset=utf-8", request.body().contentType().toString());
+        Buffer buffer = new Buffer();
+        request.body().writeTo(buffer);
+        assertEquals("{\"name\":\"a\"}", buffer.readUtf8());
+    }
+
+    @Test
+    public void toRequestWithoutBody() {
+        OutboxEntity entity = new OutboxEntity();
+        entity.idempotencyKey = "key-2";
+        entity.method = "DELETE";
+        entity.url = "http://example.com/profile/7";
+
+        Request request = RequestOutbox.toRequest(entity);
+
+        assertEquals("DELETE", request.method());
+        assertNull(request.body());
+        assertEquals("key-2", request.header(RequestOutbox.HEADER_IDEMPOTENCY_KEY));
+    }
+}
@@ -0,0 +1,124 @@
+package com.http.prefetch;
+
+import android.os.Bundle;
+
+import com.http.common.HeaderCont;
+import com.http.common.intercept.PriorityIntercept;
+import com.http.util.RequestLanes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:预加载固定进入prefetch通道，consume时清理过期结果
+ **/
+public class PrefetchRegistryTest {
+
+    private static final String PATH = "/test/prefetch";
+    private static final String OTHER_PATH = "/test/other";
+
+    private final PrefetchRegistry registry = PrefetchRegistry.getInstance();
+    private MockWebServer server;
+    private RequestLanes lanes;
+    private OkHttpClient client;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(5, TimeUnit.SECONDS);
+                return new MockResponse().setBody("data" + request.getPath());
+            }
+        });
+        server.start();
+        lanes = new RequestLanes();
+        client = new OkHttpClient.Builder().addInterceptor(new PriorityIntercept(lanes)).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        registry.clear();
+        registry.unregister(PATH);
+        registry.unregister(OTHER_PATH);
+        registry.setTtlMillis(10000);
+        server.shutdown();
+    }
+
+    @Test
+    public void prefetchIgnoresPriorityHeader() throws Exception {
+        registry.register(PATH, task("page", "/page"));
+
+        registry.fire(PATH, null);
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+
+        //请求上标记的user不生效
+        assertEquals(1, lanes.inFlightCount(RequestLanes.LANE_PREFETCH));
+        assertEquals(0, lanes.inFlightCount(RequestLanes.LANE_USER_BLOCKING));
+
+        release.countDown();
+        String result = registry.consume(PATH, "page", null, Observable.just("fallback"))
+                .blockingFirst();
+        assertEquals("data/page", result);
+    }
+
+    @Test
+    public void consumeEvictsExpiredEntries() throws Exception {
+        release.countDown();
+        registry.register(PATH, task("page", "/page"));
+        registry.register(OTHER_PATH, task("other", "/other"));
+        registry.setTtlMillis(50);
+        long expired = registry.expiredCount();
+
+        registry.fire(PATH, null);
+        registry.fire(OTHER_PATH, null);
+        Thread.sleep(150);
+
+        String result = registry.consume(PATH, "page", null, Observable.just("fallback"))
+                .blockingFirst();
+
+        assertEquals("fallback", result);
+        //没有被取用的另一个页面的结果也一起清理
+        assertEquals(expired + 2, registry.expiredCount());
+        assertTrue(registry.dumpStats().endsWith("parked=0"));
+    }
+
+    private PrefetchTask<String> task(String name, final String path) {
+        return new PrefetchTask<String>(name) {
+            @Override
+            public Observable<String> request(Bundle extras) {
+                return Observable.fromCallable(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        Response response = client.newCall(new Request.Builder().url(server.url(path))
+                                .header(HeaderCont.PRIORITY, "user").build()).execute();
+                        return response.body().string();
+                    }
+                });
+            }
+        };
+    }
+}
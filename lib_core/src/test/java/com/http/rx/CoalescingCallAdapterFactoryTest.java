@@ -0,0 +1,182 @@
+package com.http.rx;
+
+import com.http.common.intercept.CallTagIntercept;
+import com.http.util.CallTags;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import retrofit2.http.Field;
+import retrofit2.http.FormUrlEncoded;
+import retrofit2.http.GET;
+import retrofit2.http.POST;
+import retrofit2.http.Query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:通过Retrofit发出的相同并发请求只到达服务端一次，第一个订阅者的页面销毁不影响其他订阅者，
+ * 最后一个页面销毁时取消共享的Call
+ **/
+public class CoalescingCallAdapterFactoryTest {
+
+    interface Api {
+        @GET("items")
+        Observable<String> items(@Query("page") int page);
+
+        @Coalesce
+        @FormUrlEncoded
+        @POST("check")
+        Observable<String> check(@Field("phone") String phone);
+
+        @FormUrlEncoded
+        @POST("submit")
+        Observable<String> submit(@Field("phone") String phone);
+    }
+
+    private MockWebServer server;
+    private Api api;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        api = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(new OkHttpClient.Builder().addInterceptor(new CallTagIntercept()).build())
+                .addCallAdapterFactory(CoalescingCallAdapterFactory.create(RxJava2CallAdapterFactory.create()))
+                .addConverterFactory(new StringConverterFactory())
+                .build()
+                .create(Api.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void identicalGetsShareOneCall() throws Exception {
+        server.enqueue(new MockResponse().setBody("page1").setBodyDelay(300, TimeUnit.MILLISECONDS));
+        TestObserver<String> first = api.items(1).subscribeOn(Schedulers.io()).test();
+        Thread.sleep(100);
+        TestObserver<String> second = api.items(1).subscribeOn(Schedulers.io()).test();
+
+        first.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        second.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        first.assertResult("page1");
+        second.assertResult("page1");
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void differentParamsAreNotShared() throws Exception {
+        server.enqueue(new MockResponse().setBody("a").setBodyDelay(200, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody("b").setBodyDelay(200, TimeUnit.MILLISECONDS));
+        TestObserver<String> first = api.items(1).subscribeOn(Schedulers.io()).test();
+        TestObserver<String> second = api.items(2).subscribeOn(Schedulers.io()).test();
+
+        first.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        second.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void annotatedPostIsShared() throws Exception {
+        server.enqueue(new MockResponse().setBody("ok").setBodyDelay(300, TimeUnit.MILLISECONDS));
+        TestObserver<String> first = api.check("1").subscribeOn(Schedulers.io()).test();
+        Thread.sleep(100);
+        TestObserver<String> second = api.check("1").subscribeOn(Schedulers.io()).test();
+
+        first.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        second.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        second.assertResult("ok");
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void plainPostIsNotShared() throws Exception {
+        server.enqueue(new MockResponse().setBody("1").setBodyDelay(300, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody("2").setBodyDelay(300, TimeUnit.MILLISECONDS));
+        TestObserver<String> first = api.submit("1").subscribeOn(Schedulers.io()).test();
+        Thread.sleep(100);
+        TestObserver<String> second = api.submit("1").subscribeOn(Schedulers.io()).test();
+
+        first.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        second.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void sharedCallSurvivesFirstOwner() throws Exception {
+        server.enqueue(new MockResponse().setBody("page1").setBodyDelay(500, TimeUnit.MILLISECONDS));
+        Object firstOwner = new Object();
+        Object secondOwner = new Object();
+        TestObserver<String> first = CallTags.tag(firstOwner, api.items(1)).subscribeOn(Schedulers.io()).test();
+        Thread.sleep(100);
+        TestObserver<String> second = CallTags.tag(secondOwner, api.items(1)).subscribeOn(Schedulers.io()).test();
+        Thread.sleep(100);
+
+        //共享的Call登记在两个页面下，第二个页面还在等待，不取消
+        assertEquals(1, CallTags.inFlightCount(firstOwner));
+        assertEquals(1, CallTags.inFlightCount(secondOwner));
+        assertEquals(0, CallTags.cancel(firstOwner));
+        //subscribeOn取消时会中断第一个订阅者的线程
+        first.dispose();
+
+        second.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        second.assertResult("page1");
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void cancelByOnlyOwnerCancelsSharedCall() throws Exception {
+        server.enqueue(new MockResponse().setBody("page1").setBodyDelay(2, TimeUnit.SECONDS));
+        Object owner = new Object();
+        TestObserver<String> observer = CallTags.tag(owner, api.items(1)).subscribeOn(Schedulers.io()).test();
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, CallTags.inFlightCount(owner));
+
+        assertEquals(1, CallTags.cancel(owner));
+
+        observer.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        observer.assertNoValues();
+        assertEquals(1, observer.errorCount());
+        assertEquals(0, RequestCoalescer.getInstance().inFlightCount());
+    }
+
+    @Test
+    public void sharedCallIsCancelledWithLastOwner() throws Exception {
+        server.enqueue(new MockResponse().setBody("page1").setBodyDelay(2, TimeUnit.SECONDS));
+        Object firstOwner = new Object();
+        Object secondOwner = new Object();
+        TestObserver<String> first = CallTags.tag(firstOwner, api.items(1)).subscribeOn(Schedulers.io()).test();
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        TestObserver<String> second = CallTags.tag(secondOwner, api.items(1)).subscribeOn(Schedulers.io()).test();
+        Thread.sleep(100);
+
+        assertEquals(0, CallTags.cancel(firstOwner));
+        assertEquals(1, CallTags.cancel(secondOwner));
+
+        first.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        second.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        assertEquals(1, first.errorCount());
+        assertEquals(1, second.errorCount());
+        assertEquals(1, server.getRequestCount());
+    }
+}
@@ -0,0 +1,209 @@
+package com.http.rx;
+
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.functions.Action;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+import okhttp3.FormBody;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:RequestCoalescer的合并、按订阅者取消和结束时刚好到达的订阅者
+ **/
+public class RequestCoalescerTest {
+
+    private final RequestCoalescer coalescer = RequestCoalescer.getInstance();
+
+    @Test
+    public void concurrentSubscribersShareOneUpstream() {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        final PublishSubject<String> subject = PublishSubject.create();
+        Observable<String> upstream = Observable.defer(new Callable<ObservableSource<String>>() {
+            @Override
+            public ObservableSource<String> call() {
+                subscriptions.incrementAndGet();
+                return subject;
+            }
+        });
+        String key = newKey();
+        long saved = coalescer.savedCount();
+
+        TestObserver<String> first = coalescer.coalesce(key, upstream).test();
+        TestObserver<String> second = coalescer.coalesce(key, upstream).test();
+        subject.onNext("result");
+        subject.onComplete();
+
+        assertEquals(1, subscriptions.get());
+        first.assertResult("result");
+        second.assertResult("result");
+        assertEquals(saved + 1, coalescer.savedCount());
+        assertFalse(isInFlight(key, upstream));
+    }
+
+    @Test
+    public void upstreamDisposedOnlyAfterLastSubscriber() {
+        final AtomicBoolean disposed = new AtomicBoolean();
+        final PublishSubject<String> subject = PublishSubject.create();
+        Observable<String> upstream = subject.doOnDispose(new Action() {
+            @Override
+            public void run() {
+                disposed.set(true);
+            }
+        });
+        String key = newKey();
+
+        TestObserver<String> first = coalescer.coalesce(key, upstream).test();
+        TestObserver<String> second = coalescer.coalesce(key, upstream).test();
+        first.dispose();
+        assertFalse(disposed.get());
+        assertTrue(subject.hasObservers());
+
+        subject.onNext("result");
+        second.assertValue("result");
+        second.dispose();
+        assertTrue(disposed.get());
+        assertFalse(subject.hasObservers());
+        first.assertNoValues();
+    }
+
+    @Test
+    public void subscriberAfterCompletionStartsNewCall() {
+        final AtomicInteger calls = new AtomicInteger();
+        Observable<Integer> upstream = Observable.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return calls.incrementAndGet();
+            }
+        });
+        String key = newKey();
+
+        coalescer.coalesce(key, upstream).test().assertResult(1);
+        coalescer.coalesce(key, upstream).test().assertResult(2);
+        assertEquals(2, calls.get());
+    }
+
+    /**
+     * 订阅者在请求结束的同时加入，拿到的可能是已经结束的共享请求，也必须收到一个结果，不能直接完成或一直等待
+     */
+    @Test
+    public void lateSubscriberRacingCompletionGetsAResult() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            final AtomicInteger calls = new AtomicInteger();
+            final Observable<Integer> upstream = Observable.fromCallable(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return calls.incrementAndGet();
+                }
+            }).subscribeOn(Schedulers.io());
+            final String key = newKey();
+            final int subscribers = 8;
+            final CountDownLatch start = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(subscribers);
+            final AtomicInteger failures = new AtomicInteger();
+            for (int i = 0; i < subscribers; i++) {
+                Schedulers.newThread().scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            TestObserver<Integer> observer = coalescer.coalesce(key, upstream).test();
+                            if (!observer.awaitTerminalEvent(5, TimeUnit.SECONDS)
+                                    || observer.valueCount() != 1 || observer.errorCount() != 0) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (InterruptedException e) {
+                            failures.incrementAndGet();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+            start.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(0, failures.get());
+            assertTrue(calls.get() >= 1 && calls.get() <= subscribers);
+        }
+    }
+
+    @Test
+    public void keyIgnoresFormFieldOrder() throws Exception {
+        Request a = new Request.Builder().url("http://example.com/api/check")
+                .post(new FormBody.Builder().add("phone", "1").add("type", "2").build()).build();
+        Request b = new Request.Builder().url("http://example.com/api/check")
+                .post(new FormBody.Builder().add("type", "2").add("phone", "1").build()).build();
+        Request c = new Request.Builder().url("http://example.com/api/check")
+                .post(new FormBody.Builder().add("type", "2").add("phone", "3").build()).build();
+        assertEquals(RequestCoalescer.key(a), RequestCoalescer.key(b));
+        assertNotEquals(RequestCoalescer.key(a), RequestCoalescer.key(c));
+    }
+
+    @Test
+    public void keyIgnoresJsonFieldOrder() throws Exception {
+        MediaType json = MediaType.parse("application/json; charset=utf-8");
+        Request a = new Request.Builder().url("http://example.com/api/list")
+                .post(RequestBody.create(json, "{\"page\":1,\"filter\":{\"a\":1,\"b\":2}}")).build();
+        Request b = new Request.Builder().url("http://example.com/api/list")
+                .post(RequestBody.create(json, "{\"filter\":{\"b\":2,\"a\":1},\"page\":1}")).build();
+        assertEquals(RequestCoalescer.key(a), RequestCoalescer.key(b));
+    }
+
+    @Test
+    public void keyDistinguishesMethodAndHeaders() throws Exception {
+        Request get = new Request.Builder().url("http://example.com/api/a").build();
+        Request head = new Request.Builder().url("http://example.com/api/a").head().build();
+        Request ranged = new Request.Builder().url("http://example.com/api/a").header("Range", "bytes=0-").build();
+        assertNotEquals(RequestCoalescer.key(get), RequestCoalescer.key(head));
+        assertNotEquals(RequestCoalescer.key(get), RequestCoalescer.key(ranged));
+    }
+
+    @Test
+    public void multipartIsNotCoalesced() throws Exception {
+        Request request = new Request.Builder().url("http://example.com/api/upload")
+                .post(new MultipartBody.Builder().setType(MultipartBody.FORM).addFormDataPart("a", "b").build())
+                .build();
+        assertNull(RequestCoalescer.key(request));
+    }
+
+    private static String newKey() {
+        return "GET http://example.com/" + UUID.randomUUID();
+    }
+
+    /**
+     * 共享请求结束后会从表中移除，新的订阅会重新发出
+     */
+    private boolean isInFlight(String key, Observable<String> upstream) {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        TestObserver<String> probe = coalescer.coalesce(key, Observable.defer(new Callable<ObservableSource<String>>() {
+            @Override
+            public ObservableSource<String> call() {
+                subscriptions.incrementAndGet();
+                return Observable.just("probe");
+            }
+        })).test();
+        probe.dispose();
+        return subscriptions.get() == 0;
+    }
+}
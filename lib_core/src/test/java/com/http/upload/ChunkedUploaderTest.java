@@ -0,0 +1,96 @@
+package com.http.upload;
+
+import com.http.common.HeaderCont;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import okhttp3.MediaType;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.BufferedSink;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/8/29
+ * description:分片失败后查询服务端位置，查询本身失败时同样重试
+ **/
+public class ChunkedUploaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        byte[] content = new byte[2500];
+        new Random(3).nextBytes(content);
+        file = folder.newFile("upload.bin");
+        BufferedSink sink = Okio.buffer(Okio.sink(file));
+        sink.write(content);
+        sink.close();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void requeryFailureIsRetried() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(308));
+        server.enqueue(new MockResponse().setResponseCode(308).setHeader("Range", "bytes=0-999"));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        //分片失败后的查询也失败
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(308).setHeader("Range", "bytes=0-1999"));
+        server.enqueue(new MockResponse().setResponseCode(201).setBody("done"));
+
+        UploadTask task = new UploadTask.Builder()
+                .url(server.url("/session").toString())
+                .file(file)
+                .contentType(MediaType.parse("application/octet-stream"))
+                .chunkSize(1000)
+                .maxAttempts(3)
+                .build();
+        UploadProgress last = ChunkedUploader.getInstance().upload(task).blockingLast();
+
+        assertTrue(last.completed);
+        assertEquals("done", last.result);
+        assertEquals("bytes */2500", take().getHeader("Content-Range"));
+        assertEquals("bytes 0-999/2500", take().getHeader("Content-Range"));
+        RecordedRequest failed = take();
+        assertEquals("bytes 1000-1999/2500", failed.getHeader("Content-Range"));
+        //没有配置重试、压缩和通道时不带标记
+        assertNull(failed.getHeader(HeaderCont.RETRY_POLICY));
+        assertNull(failed.getHeader(HeaderCont.NO_COMPRESS));
+        assertNull(failed.getHeader(HeaderCont.PRIORITY));
+        assertEquals("bytes */2500", take().getHeader("Content-Range"));
+        assertEquals("bytes */2500", take().getHeader("Content-Range"));
+        RecordedRequest lastChunk = take();
+        assertEquals("bytes 2000-2499/2500", lastChunk.getHeader("Content-Range"));
+        assertEquals(500, lastChunk.getBodySize());
+        assertEquals(6, server.getRequestCount());
+    }
+
+    private RecordedRequest take() throws InterruptedException {
+        return server.takeRequest();
+    }
+}
@@ -0,0 +1,35 @@
+package com.http.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * author : taowang
+ * date :2018/8/16
+ * description:网络类型对应的参数写入RequestLanes
+ **/
+public class AdaptiveNetworkPolicyTest {
+
+    @Test
+    public void profileDrivesEveryLane() {
+        RequestLanes lanes = new RequestLanes();
+        AdaptiveNetworkPolicy.apply(lanes, new AdaptiveNetworkPolicy.Profile(1, 1, 1, 2, 3, 2, 2, 0, 1));
+
+        assertEquals(2, lanes.getLimit(RequestLanes.LANE_USER_BLOCKING));
+        assertEquals(2, lanes.getLimit(RequestLanes.LANE_NORMAL));
+        assertEquals(1, lanes.getLimit(RequestLanes.LANE_PREFETCH));
+        assertEquals(1, lanes.getLimit(RequestLanes.LANE_BACKGROUND));
+        assertEquals(3, lanes.getMaxRequests());
+    }
+
+    @Test
+    public void zeroKeepsLaneSettings() {
+        RequestLanes lanes = new RequestLanes().setLimit(RequestLanes.LANE_NORMAL, 7).setMaxRequests(9);
+        AdaptiveNetworkPolicy.apply(lanes, new AdaptiveNetworkPolicy.Profile(1, 1, 1, 2, 3));
+
+        assertEquals(7, lanes.getLimit(RequestLanes.LANE_NORMAL));
+        assertEquals(9, lanes.getMaxRequests());
+        assertEquals(3, lanes.getLimit(RequestLanes.LANE_PREFETCH));
+    }
+}
@@ -0,0 +1,237 @@
+package com.http.util;
+
+import android.content.SharedPreferences;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Dns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/8/17
+ * description:有效期内直接命中，接近过期时后台刷新，过期不久的持久化记录先返回再刷新，
+ * 超过maxStale才等待解析；持久化记录不在创建线程上读取
+ **/
+public class CachingDnsTest {
+
+    private static final String HOST = "api.example.com";
+    private static final long TTL = TimeUnit.MINUTES.toMillis(10);
+    private static final long MAX_STALE = TimeUnit.DAYS.toMillis(1);
+
+    private final FakeDns upstream = new FakeDns();
+
+    @Test
+    public void freshEntryIsServedWithoutResolving() throws Exception {
+        CachingDns dns = new CachingDns(persisted(TimeUnit.MINUTES.toMillis(1)), upstream, TTL, MAX_STALE);
+
+        assertEquals("10.0.0.1", dns.lookup(HOST).get(0).getHostAddress());
+        Thread.sleep(100);
+        assertEquals(0, upstream.calls.get());
+        assertEquals(1, dns.hitCount());
+    }
+
+    @Test
+    public void refreshesAheadOfExpiry() throws Exception {
+        MapPreferences sp = persisted(TimeUnit.MINUTES.toMillis(8));
+        CachingDns dns = new CachingDns(sp, upstream, TTL, MAX_STALE);
+
+        assertEquals("10.0.0.1", dns.lookup(HOST).get(0).getHostAddress());
+        assertTrue(upstream.resolved.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        assertEquals("10.0.0.2", dns.lookup(HOST).get(0).getHostAddress());
+        assertTrue(sp.getString(HOST, "").endsWith("|10.0.0.2"));
+        assertEquals(1, upstream.calls.get());
+    }
+
+    @Test
+    public void staleEntryIsServedWhileRefreshing() throws Exception {
+        upstream.block = new CountDownLatch(1);
+        CachingDns dns = new CachingDns(persisted(TimeUnit.MINUTES.toMillis(30)), upstream, TTL, MAX_STALE);
+
+        //解析卡住时也立即返回过期记录
+        long start = System.nanoTime();
+        assertEquals("10.0.0.1", dns.lookup(HOST).get(0).getHostAddress());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertEquals(1, dns.staleHitCount());
+
+        upstream.block.countDown();
+        assertTrue(upstream.resolved.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals("10.0.0.2", dns.lookup(HOST).get(0).getHostAddress());
+    }
+
+    @Test
+    public void entryOlderThanMaxStaleIsResolved() throws Exception {
+        CachingDns dns = new CachingDns(persisted(TimeUnit.DAYS.toMillis(2)), upstream, TTL, MAX_STALE);
+
+        assertEquals("10.0.0.2", dns.lookup(HOST).get(0).getHostAddress());
+        assertEquals(1, upstream.calls.get());
+        assertEquals(1, dns.missCount());
+    }
+
+    @Test
+    public void persistedEntriesAreLoadedOffTheCallingThread() throws Exception {
+        MapPreferences sp = persisted(TimeUnit.MINUTES.toMillis(1));
+        CachingDns dns = new CachingDns(sp, upstream, TTL, MAX_STALE);
+
+        dns.lookup(HOST);
+        assertNotSame(Thread.currentThread(), sp.getAllThread);
+    }
+
+    private static MapPreferences persisted(long age) {
+        MapPreferences sp = new MapPreferences();
+        sp.values.put(HOST, (System.currentTimeMillis() - age) + "|10.0.0.1");
+        return sp;
+    }
+
+    private static final class FakeDns implements Dns {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch resolved = new CountDownLatch(1);
+        volatile CountDownLatch block;
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            calls.incrementAndGet();
+            try {
+                if (block != null) {
+                    block.await(5, TimeUnit.SECONDS);
+                }
+                return Collections.singletonList(InetAddress.getByAddress(hostname, new byte[]{10, 0, 0, 2}));
+            } catch (InterruptedException e) {
+                throw new UnknownHostException(hostname);
+            } finally {
+                resolved.countDown();
+            }
+        }
+    }
+
+    private static final class MapPreferences implements SharedPreferences {
+        final Map<String, Object> values = Collections.synchronizedMap(new HashMap<String, Object>());
+        volatile Thread getAllThread;
+
+        @Override
+        public Map<String, ?> getAll() {
+            getAllThread = Thread.currentThread();
+            synchronized (values) {
+                return new HashMap<>(values);
+            }
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            Object value = values.get(key);
+            return value != null ? (String) value : defValue;
+        }
+
+        @Override
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            return defValues;
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            return defValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            return defValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return defValue;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new Editor() {
+                @Override
+                public Editor putString(String key, String value) {
+                    values.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putStringSet(String key, Set<String> value) {
+                    return this;
+                }
+
+                @Override
+                public Editor putInt(String key, int value) {
+                    return this;
+                }
+
+                @Override
+                public Editor putLong(String key, long value) {
+                    return this;
+                }
+
+                @Override
+                public Editor putFloat(String key, float value) {
+                    return this;
+                }
+
+                @Override
+                public Editor putBoolean(String key, boolean value) {
+                    return this;
+                }
+
+                @Override
+                public Editor remove(String key) {
+                    values.remove(key);
+                    return this;
+                }
+
+                @Override
+                public Editor clear() {
+                    values.clear();
+                    return this;
+                }
+
+                @Override
+                public boolean commit() {
+                    return true;
+                }
+
+                @Override
+                public void apply() {
+                }
+            };
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.http.util;
+
+import com.http.common.intercept.CallTagIntercept;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * author : taowang
+ * date :2018/9/6
+ * description:按owner取消Call，请求执行期间不强引用owner
+ **/
+public class CallTagsTest {
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(5, TimeUnit.SECONDS);
+                return new MockResponse().setBody("ok");
+            }
+        });
+        server.start();
+        client = new OkHttpClient.Builder().addInterceptor(new CallTagIntercept()).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        server.shutdown();
+    }
+
+    @Test
+    public void cancelStopsTaggedCall() throws Exception {
+        Object owner = new Object();
+        TestObserver<String> observer = CallTags.tag(owner, fetch())
+                .subscribeOn(Schedulers.io())
+                .test();
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        assertEquals(1, CallTags.inFlightCount(owner));
+
+        assertEquals(1, CallTags.cancel(owner));
+
+        observer.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        observer.assertNoValues();
+        assertEquals(1, observer.errorCount());
+        assertEquals(0, CallTags.inFlightCount(owner));
+    }
+
+    @Test
+    public void ownerIsNotRetainedByRunningCall() throws Exception {
+        Object owner = new Object();
+        WeakReference<Object> ref = new WeakReference<>(owner);
+        TestObserver<String> observer = CallTags.tag(owner, fetch())
+                .subscribeOn(Schedulers.io())
+                .test();
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        assertEquals(1, CallTags.inFlightCount(owner));
+
+        owner = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(ref.get());
+
+        release.countDown();
+        observer.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        observer.assertResult("ok");
+    }
+
+    private Observable<String> fetch() {
+        return Observable.fromCallable(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return client.newCall(new Request.Builder().url(server.url("/")).build())
+                        .execute().body().string();
+            }
+        });
+    }
+}
@@ -0,0 +1,109 @@
+package com.http.util;
+
+import org.junit.Test;
+
+import okhttp3.HttpUrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * author : taowang
+ * date :2018/8/14
+ * description:耗时分桶边界、快照分位数、接口模板替换和缓存
+ **/
+public class NetworkMetricsTest {
+
+    @Test
+    public void bucketBoundaries() {
+        assertEquals(0, NetworkMetrics.bucketOf(-5));
+        assertEquals(0, NetworkMetrics.bucketOf(0));
+        assertEquals(1, NetworkMetrics.bucketOf(1));
+        assertEquals(2, NetworkMetrics.bucketOf(2));
+        assertEquals(2, NetworkMetrics.bucketOf(3));
+        assertEquals(3, NetworkMetrics.bucketOf(4));
+        assertEquals(10, NetworkMetrics.bucketOf(1023));
+        assertEquals(11, NetworkMetrics.bucketOf(1024));
+        //最后一个桶记录更大的值
+        assertEquals(NetworkMetrics.BUCKET_COUNT - 1, NetworkMetrics.bucketOf(1L << 16));
+        assertEquals(NetworkMetrics.BUCKET_COUNT - 1, NetworkMetrics.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesReportBucketUpperBound() {
+        NetworkMetrics.Endpoint endpoint = new NetworkMetrics.Endpoint();
+        //90个10ms，9个100ms，1个1000ms
+        for (int i = 0; i < 90; i++) {
+            endpoint.record(NetworkMetrics.PHASE_TOTAL, 10);
+        }
+        for (int i = 0; i < 9; i++) {
+            endpoint.record(NetworkMetrics.PHASE_TOTAL, 100);
+        }
+        endpoint.record(NetworkMetrics.PHASE_TOTAL, 1000);
+
+        NetworkMetrics.Snapshot snapshot = endpoint.snapshot();
+        assertEquals(100, snapshot.count(NetworkMetrics.PHASE_TOTAL));
+        assertEquals(90, snapshot.bucket(NetworkMetrics.PHASE_TOTAL, NetworkMetrics.bucketOf(10)));
+        assertEquals(15, snapshot.percentile(NetworkMetrics.PHASE_TOTAL, 0.5f));
+        assertEquals(15, snapshot.percentile(NetworkMetrics.PHASE_TOTAL, 0.9f));
+        assertEquals(127, snapshot.percentile(NetworkMetrics.PHASE_TOTAL, 0.99f));
+        assertEquals(1023, snapshot.percentile(NetworkMetrics.PHASE_TOTAL, 1f));
+        //其他阶段没有样本
+        assertEquals(0, snapshot.count(NetworkMetrics.PHASE_DNS));
+        assertEquals(0, snapshot.percentile(NetworkMetrics.PHASE_DNS, 0.5f));
+    }
+
+    @Test
+    public void percentileOfZeroAndOverflowBuckets() {
+        NetworkMetrics.Endpoint endpoint = new NetworkMetrics.Endpoint();
+        endpoint.record(NetworkMetrics.PHASE_DNS, 0);
+        endpoint.record(NetworkMetrics.PHASE_DNS, 1L << 20);
+
+        NetworkMetrics.Snapshot snapshot = endpoint.snapshot();
+        assertEquals(0, snapshot.percentile(NetworkMetrics.PHASE_DNS, 0.5f));
+        assertEquals((1L << (NetworkMetrics.BUCKET_COUNT - 1)) - 1, snapshot.percentile(NetworkMetrics.PHASE_DNS, 0.99f));
+    }
+
+    @Test
+    public void snapshotIsDetachedFromLaterRecords() {
+        NetworkMetrics.Endpoint endpoint = new NetworkMetrics.Endpoint();
+        endpoint.record(NetworkMetrics.PHASE_SERVER, 50);
+        NetworkMetrics.Snapshot snapshot = endpoint.snapshot();
+        endpoint.record(NetworkMetrics.PHASE_SERVER, 50);
+
+        assertEquals(1, snapshot.count(NetworkMetrics.PHASE_SERVER));
+        assertEquals(2, endpoint.snapshot().count(NetworkMetrics.PHASE_SERVER));
+    }
+
+    @Test
+    public void templateReplacesIds() {
+        assertEquals("GET api.example.com/api/user/{id}/orders",
+                NetworkMetrics.template("GET", HttpUrl.parse("http://api.example.com/api/user/123/orders?page=2")));
+        assertEquals("POST api.example.com/api/item/{id}",
+                NetworkMetrics.template("POST", HttpUrl.parse("http://api.example.com/api/item/3f2a9c1e-7b4d-4e8a")));
+        //短的十六进制单词不替换
+        assertEquals("GET api.example.com/api/feed",
+                NetworkMetrics.template("GET", HttpUrl.parse("http://api.example.com/api/feed")));
+    }
+
+    @Test
+    public void templateIsCachedPerMethodHostAndPath() {
+        String first = NetworkMetrics.template("GET", HttpUrl.parse("http://cache.example.com/api/list?page=1"));
+        String second = NetworkMetrics.template("GET", HttpUrl.parse("http://cache.example.com/api/list?page=2"));
+        assertSame(first, second);
+
+        assertEquals("POST cache.example.com/api/list",
+                NetworkMetrics.template("POST", HttpUrl.parse("http://cache.example.com/api/list")));
+        assertEquals("GET other.example.com/api/list",
+                NetworkMetrics.template("GET", HttpUrl.parse("http://other.example.com/api/list")));
+    }
+
+    @Test
+    public void uncachedTemplatesAreStillCorrect() {
+        //超过缓存上限后直接计算
+        for (int i = 0; i < NetworkMetrics.MAX_CACHED_TEMPLATES + 10; i++) {
+            assertEquals("GET many.example.com/api/user/{id}",
+                    NetworkMetrics.template("GET", HttpUrl.parse("http://many.example.com/api/user/" + i)));
+        }
+    }
+}
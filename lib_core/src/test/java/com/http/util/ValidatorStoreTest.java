@@ -0,0 +1,123 @@
+package com.http.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import okhttp3.Headers;
+import okio.ByteString;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * author : taowang
+ * date :2018/8/30
+ * description:内存LRU按字节淘汰、磁盘按最近使用时间裁剪、清空和重新加载
+ **/
+public class ValidatorStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void memoryEvictsLeastRecentlyUsed() {
+        ValidatorStore store = new ValidatorStore(null, 250, 0);
+        store.put("a", entry("a", 100));
+        store.put("b", entry("b", 100));
+        //访问a后，b成为最久未使用的
+        assertNotNull(store.get("a"));
+        store.put("c", entry("c", 100));
+
+        assertNotNull(store.get("a"));
+        assertNull(store.get("b"));
+        assertNotNull(store.get("c"));
+    }
+
+    @Test
+    public void oversizedEntryIsNotKept() {
+        ValidatorStore store = new ValidatorStore(null, 100, 0);
+        store.put("a", entry("a", 50));
+        store.put("big", entry("big", 150));
+        assertNull(store.get("big"));
+        assertNull(store.get("a"));
+    }
+
+    @Test
+    public void reloadsFromDisk() throws IOException {
+        File dir = folder.newFolder();
+        Headers headers = new Headers.Builder().add("X-Version", "3").add("Content-Type", "text/plain").build();
+        ValidatorStore first = new ValidatorStore(dir, 1024, 1024);
+        first.put("http://a/1", new ValidatorStore.Entry("\"e1\"", "Mon, 27 Aug 2018 08:00:00 GMT",
+                "text/plain", headers, new byte[]{1, 2, 3}));
+
+        ValidatorStore.Entry loaded = new ValidatorStore(dir, 1024, 1024).get("http://a/1");
+        assertEquals("\"e1\"", loaded.etag);
+        assertEquals("Mon, 27 Aug 2018 08:00:00 GMT", loaded.lastModified);
+        assertEquals("text/plain", loaded.contentType);
+        assertEquals(headers, loaded.headers);
+        assertArrayEquals(new byte[]{1, 2, 3}, loaded.body);
+    }
+
+    @Test
+    public void diskTrimsOldestFiles() throws IOException {
+        File dir = folder.newFolder();
+        ValidatorStore store = new ValidatorStore(dir, 0, 600);
+        store.put("old", entry("old", 200));
+        store.put("recent", entry("recent", 200));
+        fileOf(dir, "old").setLastModified(System.currentTimeMillis() - 60000);
+        fileOf(dir, "recent").setLastModified(System.currentTimeMillis() - 30000);
+        //未超过上限时不删除
+        assertTrue(fileOf(dir, "old").exists());
+
+        store.put("new", entry("new", 200));
+
+        assertFalse(fileOf(dir, "old").exists());
+        assertTrue(fileOf(dir, "recent").exists());
+        assertTrue(fileOf(dir, "new").exists());
+        assertNull(store.get("old"));
+        assertNotNull(store.get("recent"));
+    }
+
+    @Test
+    public void entryLargerThanDiskLimitStaysInMemory() throws IOException {
+        File dir = folder.newFolder();
+        ValidatorStore store = new ValidatorStore(dir, 1024, 100);
+        store.put("big", entry("big", 200));
+        assertFalse(fileOf(dir, "big").exists());
+        assertNotNull(store.get("big"));
+    }
+
+    @Test
+    public void clearDropsEverythingAndStalePuts() throws IOException {
+        File dir = folder.newFolder();
+        ValidatorStore store = new ValidatorStore(dir, 1024, 1024);
+        store.put("a", entry("a", 10));
+        int before = store.generation();
+
+        store.clear();
+        //clear之前发出的请求返回后不再写入
+        store.put("b", entry("b", 10), before);
+
+        assertNull(store.get("a"));
+        assertNull(store.get("b"));
+        assertEquals(0, dir.listFiles().length);
+        store.put("c", entry("c", 10));
+        assertNotNull(new ValidatorStore(dir, 1024, 1024).get("c"));
+    }
+
+    private static ValidatorStore.Entry entry(String etag, int size) {
+        return new ValidatorStore.Entry(etag, null, null, null, new byte[size]);
+    }
+
+    private static File fileOf(File dir, String url) {
+        return new File(dir, ByteString.encodeUtf8(url).md5().hex() + ".v");
+    }
+}
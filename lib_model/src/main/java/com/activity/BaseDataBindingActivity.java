@@ -9,6 +9,7 @@ import android.support.annotation.Nullable;
 import android.view.View;
 
 import com.butterKnife.KnifeCommand;
+import com.http.util.HttpDirector;
 import com.trello.rxlifecycle2.components.support.RxAppCompatActivity;
 import com.viewModel.BaseViewModel;
 
@@ -47,6 +48,8 @@ public abstract class BaseDataBindingActivity<V extends ViewDataBinding, VM exte
 
     @Override
     protected void onDestroy() {
+        //同步取消本页面的请求，包括正在重试的
+        HttpDirector.getInstance().cancelByOwner(this);
         super.onDestroy();
         viewModel.removeRxBus();
         viewModel.onDestroy();
@@ -9,6 +9,7 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import com.butterKnife.KnifeCommand;
+import com.http.util.HttpDirector;
 import com.viewModel.BaseViewModel;
 import com.trello.rxlifecycle2.components.support.RxFragment;
 
@@ -31,6 +32,8 @@ public abstract class BaseDataBindingFragment<V extends ViewDataBinding, VM exte
 
     @Override
     public void onDestroy() {
+        //同步取消通过RxResultHelper.getHttpRepose(this, ...)或CallTags.tag(this, ...)登记的请求
+        HttpDirector.getInstance().cancelByOwner(this);
         super.onDestroy();
         viewModel.removeRxBus();
         viewModel.onDestroy();